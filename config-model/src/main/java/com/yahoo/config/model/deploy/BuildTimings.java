@@ -0,0 +1,75 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.config.model.deploy;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * The time spent in each phase of building a model, in the order the phases were first entered.
+ * A phase which is entered several times, e.g., once per cluster, is given the sum of the times spent in it.
+ * This is thread safe.
+ *
+ * Usage: <code>try (var __ = timings.phase("schemas")) { ... }</code>
+ */
+public class BuildTimings {
+
+    private final Clock clock;
+    private final Map<String, Duration> phases = new LinkedHashMap<>();
+
+    public BuildTimings() {
+        this(Clock.systemUTC());
+    }
+
+    BuildTimings(Clock clock) {
+        this.clock = clock;
+    }
+
+    /** Starts timing the given phase, which ends when the returned phase is closed */
+    public Phase phase(String name) {
+        return new Phase(name, clock.instant());
+    }
+
+    /** Returns the time spent in each phase so far */
+    public synchronized Map<String, Duration> asMap() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(phases));
+    }
+
+    /** Returns the time spent in the given phase so far, which is zero if it has not been entered */
+    public synchronized Duration get(String phase) {
+        return phases.getOrDefault(phase, Duration.ZERO);
+    }
+
+    private synchronized void add(String phase, Duration duration) {
+        phases.merge(phase, duration, Duration::plus);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return phases.entrySet().stream()
+                     .map(phase -> phase.getKey() + ": " + phase.getValue().toMillis() + " ms")
+                     .collect(Collectors.joining(", "));
+    }
+
+    public class Phase implements AutoCloseable {
+
+        private final String name;
+        private final Instant start;
+
+        private Phase(String name, Instant start) {
+            this.name = name;
+            this.start = start;
+        }
+
+        @Override
+        public void close() {
+            add(name, Duration.between(start, clock.instant()));
+        }
+
+    }
+
+}
@@ -34,11 +34,13 @@ import com.yahoo.schema.Application;
 import com.yahoo.schema.ApplicationBuilder;
 import com.yahoo.schema.RankProfileRegistry;
 import com.yahoo.schema.Schema;
+import com.yahoo.schema.derived.DerivedRankProfiles;
 import com.yahoo.search.query.profile.QueryProfileRegistry;
 import com.yahoo.vespa.config.ConfigDefinition;
 import com.yahoo.vespa.config.ConfigDefinitionBuilder;
 import com.yahoo.vespa.config.ConfigDefinitionKey;
 import com.yahoo.vespa.documentmodel.DocumentModel;
+import com.yahoo.vespa.model.VespaModel;
 import com.yahoo.vespa.model.container.search.QueryProfiles;
 import com.yahoo.vespa.model.container.search.QueryProfilesBuilder;
 import com.yahoo.vespa.model.container.search.SemanticRules;
@@ -49,6 +51,7 @@ import java.io.IOException;
 import java.io.Reader;
 import java.io.UncheckedIOException;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -56,7 +59,10 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
 
 import static com.yahoo.vespa.model.container.search.SemanticRules.SemanticRuleBuilder;
 
@@ -91,6 +97,8 @@ public class DeployState implements ConfigDefinitionStore {
     private final Reindexing reindexing;
     private final ExecutorService executor;
     private final OnnxModelCost onnxModelCost;
+    private final BuildTimings buildTimings;
+    private final DerivedRankProfiles derivedRankProfiles = new DerivedRankProfiles();
 
     private DeployState(Application application,
                         RankProfileRegistry rankProfileRegistry,
@@ -114,8 +122,10 @@ public class DeployState implements ConfigDefinitionStore {
                         Optional<DockerImage> wantedDockerImageRepo,
                         Reindexing reindexing,
                         Optional<ValidationOverrides> validationOverrides,
-                        OnnxModelCost onnxModelCost) {
+                        OnnxModelCost onnxModelCost,
+                        BuildTimings buildTimings) {
         this.logger = deployLogger;
+        this.buildTimings = buildTimings;
         this.fileRegistry = fileRegistry;
         this.executor = executor;
         this.rankProfileRegistry = rankProfileRegistry;
@@ -133,7 +143,9 @@ public class DeployState implements ConfigDefinitionStore {
         this.zone = zone;
         this.queryProfiles = queryProfiles; // TODO: Remove this by seeing how pagetemplates are propagated
         this.semanticRules = semanticRules; // TODO: Remove this by seeing how pagetemplates are propagated
-        this.importedModels = importMlModels(applicationPackage, modelImporters, executor);
+        try (var __ = buildTimings.phase("import models")) {
+            this.importedModels = importMlModels(applicationPackage, modelImporters, executor);
+        }
 
         this.validationOverrides = validationOverrides.orElse(applicationPackage.getValidationOverrides().map(ValidationOverrides::fromXml)
                                                       .orElse(ValidationOverrides.empty));
@@ -270,6 +282,51 @@ public class DeployState implements ConfigDefinitionStore {
 
     public ExecutorService getExecutor() { return executor; }
 
+    /**
+     * Runs the given tasks on the executor of this, and returns their results in the order of the tasks.
+     * The calling thread runs the tasks not yet started by the executor, so tasks may themselves call this
+     * without risking a deadlock when all the threads of the executor are waiting.
+     *
+     * @throws IllegalArgumentException or IllegalStateException if a task throws either, and IllegalStateException otherwise
+     */
+    public <T> List<T> runInParallel(List<Callable<T>> tasks) {
+        List<FutureTask<T>> futures = new ArrayList<>(tasks.size());
+        for (Callable<T> task : tasks) {
+            FutureTask<T> future = new FutureTask<>(task);
+            futures.add(future);
+            if (tasks.size() > 1)
+                executor.execute(future);
+        }
+        try {
+            List<T> results = new ArrayList<>(tasks.size());
+            for (FutureTask<T> future : futures) {
+                future.run(); // No-op if already started by the executor
+                results.add(future.get());
+            }
+            return results;
+        }
+        catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof IllegalArgumentException iArg) throw iArg;
+            if (e.getCause() instanceof IllegalStateException iState) throw iState;
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /** Returns the time spent in each phase of building the model of this so far */
+    public BuildTimings getBuildTimings() { return buildTimings; }
+
+    /** Returns the rank profiles derived from the schemas of the model of this, for reuse by the next model */
+    public DerivedRankProfiles derivedRankProfiles() { return derivedRankProfiles; }
+
+    /** Returns the rank profiles derived from the schemas of the previous model, if it is available and of this version */
+    public Optional<DerivedRankProfiles> previousDerivedRankProfiles() {
+        return previousModel.filter(model -> model instanceof VespaModel)
+                            .map(model -> ((VespaModel) model).derivedRankProfiles());
+    }
+
     public Version getWantedNodeVespaVersion() { return wantedNodeVespaVersion; }
 
     public Optional<DockerImage> getWantedDockerImageRepo() { return wantedDockerImageRepo; }
@@ -452,12 +509,19 @@ public class DeployState implements ConfigDefinitionStore {
         }
 
         public DeployState build(ValidationParameters validationParameters) {
-            if (queryProfiles == null)
-                queryProfiles = new QueryProfilesBuilder().build(applicationPackage, logger);
-            SemanticRules semanticRules = new SemanticRuleBuilder().build(applicationPackage);
-            Application application = new ApplicationBuilder(applicationPackage, fileRegistry, logger, properties,
-                                                             rankProfileRegistry, queryProfiles.getRegistry())
-                    .build(! validationParameters.ignoreValidationErrors());
+            BuildTimings buildTimings = new BuildTimings();
+            SemanticRules semanticRules;
+            try (var __ = buildTimings.phase("query profiles and semantic rules")) {
+                if (queryProfiles == null)
+                    queryProfiles = new QueryProfilesBuilder().build(applicationPackage, logger);
+                semanticRules = new SemanticRuleBuilder().build(applicationPackage);
+            }
+            Application application;
+            try (var __ = buildTimings.phase("schemas")) {
+                application = new ApplicationBuilder(applicationPackage, fileRegistry, logger, properties,
+                                                     rankProfileRegistry, queryProfiles.getRegistry())
+                        .build(! validationParameters.ignoreValidationErrors());
+            }
             return new DeployState(application,
                                    rankProfileRegistry,
                                    fileRegistry,
@@ -480,7 +544,8 @@ public class DeployState implements ConfigDefinitionStore {
                                    wantedDockerImageRepo,
                                    reindexing,
                                    validationOverrides,
-                                   onnxModelCost);
+                                   onnxModelCost,
+                                   buildTimings);
         }
 
     }
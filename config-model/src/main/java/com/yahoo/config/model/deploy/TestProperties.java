@@ -80,6 +80,7 @@ public class TestProperties implements ModelContext.Properties, ModelContext.Fea
     private boolean useTriton = false;
     private boolean scaleMetricsproxyHeapByNodeCount = false;
     private boolean ignoreConnectivityChecksAtStartup = false;
+    private boolean incrementalModelBuild = false;
 
     @Override public ModelContext.FeatureFlags featureFlags() { return this; }
     @Override public boolean multitenant() { return multitenant; }
@@ -139,6 +140,7 @@ public class TestProperties implements ModelContext.Properties, ModelContext.Fea
     @Override public ModelContext.FeatureFlag<Boolean> useTritonFlag() { return () -> useTriton; }
     @Override public boolean scaleMetricsproxyHeapByNodeCount() { return scaleMetricsproxyHeapByNodeCount; }
     @Override public boolean ignoreConnectivityChecksAtStartup() { return ignoreConnectivityChecksAtStartup; }
+    @Override public boolean incrementalModelBuild() { return incrementalModelBuild; }
 
     public TestProperties maxUnCommittedMemory(int maxUnCommittedMemory) {
         this.maxUnCommittedMemory = maxUnCommittedMemory;
@@ -314,6 +316,11 @@ public class TestProperties implements ModelContext.Properties, ModelContext.Fea
         return this;
     }
 
+    public TestProperties setIncrementalModelBuild(boolean incrementalModelBuild) {
+        this.incrementalModelBuild = incrementalModelBuild;
+        return this;
+    }
+
     public TestProperties setContainerEndpoints(Set<ContainerEndpoint> containerEndpoints) {
         this.endpoints = containerEndpoints;
         return this;
@@ -0,0 +1,271 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.schema.derived;
+
+import com.yahoo.config.application.api.ApplicationFile;
+import com.yahoo.config.application.api.ApplicationPackage;
+import com.yahoo.config.model.deploy.DeployState;
+import com.yahoo.io.IOUtils;
+import com.yahoo.io.reader.NamedReader;
+import com.yahoo.path.Path;
+import com.yahoo.schema.DistributableResource;
+import com.yahoo.schema.DocumentReference;
+import com.yahoo.schema.RankProfile;
+import com.yahoo.schema.RankingExpressionBody;
+import com.yahoo.schema.Schema;
+import com.yahoo.schema.document.SDDocumentType;
+import com.yahoo.search.query.profile.types.FieldDescription;
+import com.yahoo.search.query.profile.types.QueryProfileType;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The rank profiles derived from the schemas of a model, by a fingerprint of everything they are derived from,
+ * such that the next model can reuse those of schemas whose fingerprint is unchanged instead of deriving them again.
+ * <p>
+ * The fingerprint of a schema covers the sources of the schema and the schemas it depends on, the files of their
+ * rank profiles, models and constants, the query profile types, the models directory, the Vespa version and the
+ * settings used by the derivation. Rank profiles which use machine learned models converted into the application
+ * package during derivation (see {@link com.yahoo.vespa.model.ml.ConvertedModel}) are never reused, as the converted
+ * models must be stored in each new application package.
+ * <p>
+ * This is thread safe.
+ */
+public class DerivedRankProfiles {
+
+    private static final Logger log = Logger.getLogger(DerivedRankProfiles.class.getName());
+
+    private final Map<String, Entry> bySchemaFingerprint = new ConcurrentHashMap<>();
+    private final AtomicInteger reused = new AtomicInteger();
+
+    // Hashes of inputs shared by schemas, which are computed at most once per model
+    private final Map<String, String> fileHashes = new ConcurrentHashMap<>();
+    private Map<String, String> schemaSourceHashes = null; // guarded by this
+    private String commonHash = null; // guarded by this
+
+    /** Returns the rank profiles derived from a schema with the given fingerprint, if any */
+    Optional<Entry> get(String fingerprint) {
+        return Optional.ofNullable(bySchemaFingerprint.get(fingerprint));
+    }
+
+    /** Stores the rank profiles derived from a schema with the given fingerprint, unless they cannot be reused */
+    void put(String fingerprint, Entry entry, ApplicationPackage applicationPackage) {
+        if (usesConvertedModels(entry, applicationPackage)) return;
+        bySchemaFingerprint.put(fingerprint, entry);
+    }
+
+    /** Stores rank profiles which were reused rather than derived */
+    void putReused(String fingerprint, Entry entry) {
+        bySchemaFingerprint.put(fingerprint, entry);
+        reused.incrementAndGet();
+    }
+
+    /** Returns the number of schemas whose rank profiles are stored in this */
+    public int size() { return bySchemaFingerprint.size(); }
+
+    /** Returns the number of times the rank profiles of a schema were reused rather than derived when building this */
+    public int reused() { return reused.get(); }
+
+    /**
+     * Returns the fingerprint of everything the rank profiles of the given schema are derived from,
+     * or empty if this cannot be determined
+     */
+    Optional<String> fingerprint(Schema schema, DeployState deployState) {
+        try {
+            MessageDigest digest = sha256();
+            update(digest, common(deployState));
+            for (Schema dependency : dependencies(schema, deployState)) {
+                String source = schemaSourceHashes(deployState).get(dependency.getName());
+                if (source == null) return Optional.empty();
+                update(digest, dependency.getName());
+                update(digest, source);
+                for (Path directory : List.of(ApplicationPackage.SCHEMAS_DIR, ApplicationPackage.SEARCH_DEFINITIONS_DIR))
+                    updateWithDirectory(digest, directory.append(dependency.getName()), deployState);
+                for (DistributableResource resource : resourcesOf(dependency, deployState))
+                    updateWithResource(digest, resource.getName(), resource.getPathType(), resource.getFileName(), deployState);
+                for (RankProfile.Constant constant : constantsOf(dependency, deployState))
+                    if (constant.valuePath().isPresent())
+                        updateWithResource(digest, constant.name().toString(), constant.pathType().orElse(DistributableResource.PathType.FILE),
+                                           constant.valuePath().get(), deployState);
+            }
+            return Optional.of(HexFormat.of().formatHex(digest.digest()));
+        }
+        catch (IOException | UncheckedIOException | IllegalArgumentException e) {
+            log.log(Level.FINE, () -> "Could not fingerprint the inputs of " + schema + ": " + e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /** Returns the given schema followed by all schemas it depends on, directly or indirectly */
+    private static Set<Schema> dependencies(Schema schema, DeployState deployState) {
+        Set<Schema> dependencies = new LinkedHashSet<>();
+        List<Schema> remaining = new ArrayList<>(List.of(schema));
+        while ( ! remaining.isEmpty()) {
+            Schema next = remaining.remove(0);
+            if ( ! dependencies.add(next)) continue;
+
+            next.inherited().ifPresent(remaining::add);
+            SDDocumentType document = next.getDocument();
+            if (document == null) continue;
+            for (SDDocumentType inherited : document.getInheritedTypes())
+                deployState.getSchemas().stream()
+                           .filter(s -> s.getDocument() != null && s.getDocument().getName().equals(inherited.getName()))
+                           .forEach(remaining::add);
+            document.getDocumentReferences().ifPresent(references -> references.referenceMap().values().stream()
+                                                                                  .map(DocumentReference::targetSearch)
+                                                                                  .forEach(remaining::add));
+        }
+        return dependencies;
+    }
+
+    private static List<DistributableResource> resourcesOf(Schema schema, DeployState deployState) {
+        List<DistributableResource> resources = new ArrayList<>(schema.onnxModels().values());
+        for (RankProfile profile : deployState.rankProfileRegistry().rankProfilesOf(schema))
+            resources.addAll(profile.onnxModels().values());
+        return resources;
+    }
+
+    private static List<RankProfile.Constant> constantsOf(Schema schema, DeployState deployState) {
+        List<RankProfile.Constant> constants = new ArrayList<>(schema.constants().values());
+        for (RankProfile profile : deployState.rankProfileRegistry().rankProfilesOf(schema))
+            constants.addAll(profile.constants().values());
+        return constants;
+    }
+
+    /** Returns the hash of the inputs which are the same for all schemas */
+    private synchronized String common(DeployState deployState) throws IOException {
+        if (commonHash != null) return commonHash;
+
+        MessageDigest digest = sha256();
+        update(digest, deployState.getVespaVersion().toFullString());
+        update(digest, String.valueOf(deployState.getProperties().featureFlags().sortBlueprintsByCost()));
+        update(digest, String.valueOf(deployState.isHosted()));
+        Set<String> queryFeatures = new TreeSet<>(); // Rank profiles use the query features declared in any type
+        for (QueryProfileType type : deployState.getQueryProfiles().getRegistry().getTypeRegistry().allComponents())
+            for (FieldDescription field : type.declaredFields().values())
+                queryFeatures.add(type.getId() + "." + field.getName() + ":" + field.getType().stringValue());
+        queryFeatures.forEach(feature -> update(digest, feature));
+        updateWithDirectory(digest, ApplicationPackage.MODELS_DIR, deployState);
+        return commonHash = HexFormat.of().formatHex(digest.digest());
+    }
+
+    /** Returns the hashes of the sources of all schemas, by schema name */
+    private synchronized Map<String, String> schemaSourceHashes(DeployState deployState) throws IOException {
+        if (schemaSourceHashes != null) return schemaSourceHashes;
+
+        Map<String, String> hashes = new HashMap<>();
+        for (NamedReader reader : deployState.getApplicationPackage().getSchemas()) {
+            try (reader) {
+                String name = Path.fromString(reader.getName()).last();
+                if (name.endsWith(ApplicationPackage.SD_NAME_SUFFIX))
+                    name = name.substring(0, name.length() - ApplicationPackage.SD_NAME_SUFFIX.length());
+                hashes.put(name, hash(IOUtils.readAll(reader).getBytes(StandardCharsets.UTF_8)));
+            }
+        }
+        return schemaSourceHashes = hashes;
+    }
+
+    private void updateWithDirectory(MessageDigest digest, Path directory, DeployState deployState) throws IOException {
+        ApplicationFile root = deployState.getApplicationPackage().getFile(directory);
+        if ( ! root.exists()) return;
+        List<ApplicationFile> files = new ArrayList<>(root.listFiles(true));
+        files.sort(null);
+        for (ApplicationFile file : files) {
+            if (file.isDirectory()) continue;
+            update(digest, file.getPath().getRelative());
+            update(digest, fileHash(file.getPath(), deployState));
+        }
+    }
+
+    private void updateWithResource(MessageDigest digest, String name, DistributableResource.PathType type, String path,
+                                    DeployState deployState) throws IOException {
+        update(digest, name);
+        update(digest, type.name());
+        update(digest, path);
+        if (type == DistributableResource.PathType.FILE)
+            update(digest, fileHash(Path.fromString(path), deployState));
+    }
+
+    private String fileHash(Path path, DeployState deployState) throws IOException {
+        String hash = fileHashes.get(path.getRelative());
+        if (hash != null) return hash;
+
+        ApplicationFile file = deployState.getApplicationPackage().getFile(path);
+        if ( ! file.exists()) {
+            hash = "missing";
+        }
+        else {
+            MessageDigest digest = sha256();
+            try (InputStream in = file.createInputStream()) {
+                byte[] buffer = new byte[1 << 16];
+                for (int read; (read = in.read(buffer)) > 0; )
+                    digest.update(buffer, 0, read);
+            }
+            hash = HexFormat.of().formatHex(digest.digest());
+        }
+        fileHashes.put(path.getRelative(), hash);
+        return hash;
+    }
+
+    /** Returns whether any rank profile of the given entry may have stored converted models in the application package */
+    private static boolean usesConvertedModels(Entry entry, ApplicationPackage applicationPackage) {
+        Set<String> storedModels = new HashSet<>();
+        for (Path directory : List.of(ApplicationPackage.MODELS_GENERATED_DIR, ApplicationPackage.MODELS_GENERATED_REPLICATED_DIR)) {
+            ApplicationFile models = applicationPackage.getFile(directory);
+            if (models.exists() && models.isDirectory())
+                models.listFiles().forEach(model -> storedModels.add(model.getPath().last()));
+        }
+        // Models converted for a rank profile are named by the rank profile, see ModelName
+        return entry.rankProfiles().stream()
+                    .anyMatch(profile -> storedModels.stream().anyMatch(model -> model.startsWith(profile.getName() + ".")));
+    }
+
+    private static String hash(byte[] bytes) {
+        return HexFormat.of().formatHex(sha256().digest(bytes));
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        digest.update(Integer.toString(bytes.length).getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) ':');
+        digest.update(bytes);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** The rank profiles derived from a schema, and the large ranking expressions they added to it */
+    record Entry(List<RawRankProfile> rankProfiles, List<RankingExpressionBody> largeExpressions) {
+
+        Entry {
+            rankProfiles = List.copyOf(rankProfiles);
+            largeExpressions = List.copyOf(largeExpressions);
+        }
+
+    }
+
+}
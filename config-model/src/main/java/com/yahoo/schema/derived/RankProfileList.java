@@ -2,7 +2,6 @@
 package com.yahoo.schema.derived;
 
 import ai.vespa.rankingexpression.importer.configmodelview.ImportedMlModels;
-import com.yahoo.config.model.api.ModelContext;
 import com.yahoo.config.model.deploy.DeployState;
 import com.yahoo.schema.RankingExpressionBody;
 import com.yahoo.search.query.profile.QueryProfileRegistry;
@@ -24,10 +23,11 @@ import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Future;
+import java.util.concurrent.Callable;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * The derived rank profiles of a schema
@@ -36,6 +36,8 @@ import java.util.concurrent.Future;
  */
 public class RankProfileList extends Derived {
 
+    private static final Logger log = Logger.getLogger(RankProfileList.class.getName());
+
     private final Map<String, RawRankProfile> rankProfiles;
     private final FileDistributedConstants constants;
     private final LargeRankingExpressions largeRankingExpressions;
@@ -76,6 +78,38 @@ public class RankProfileList extends Derived {
     private Map<String, RawRankProfile> deriveRankProfiles(Schema schema,
                                                             AttributeFields attributeFields,
                                                             DeployState deployState) {
+        if (schema == null || ! deployState.featureFlags().incrementalModelBuild())
+            return deriveAllRankProfiles(schema, attributeFields, deployState);
+
+        DerivedRankProfiles derived = deployState.derivedRankProfiles();
+        Optional<String> fingerprint = derived.fingerprint(schema, deployState);
+        if (fingerprint.isEmpty())
+            return deriveAllRankProfiles(schema, attributeFields, deployState);
+
+        Optional<DerivedRankProfiles.Entry> reusable = derived.get(fingerprint.get())
+                                                              .or(() -> deployState.previousDerivedRankProfiles()
+                                                                                   .flatMap(previous -> previous.get(fingerprint.get())));
+        if (reusable.isPresent()) {
+            log.log(Level.FINE, () -> "Reusing the rank profiles of " + schema + ", as their inputs are unchanged");
+            for (RankingExpressionBody expression : reusable.get().largeExpressions())
+                largeRankingExpressions.add(new RankingExpressionBody(expression.getName(), expression.getBlob().duplicate()));
+            Map<String, RawRankProfile> rawRankProfiles = new LinkedHashMap<>();
+            for (RawRankProfile rawRank : reusable.get().rankProfiles())
+                rawRankProfiles.put(rawRank.getName(), rawRank.copy());
+            derived.putReused(fingerprint.get(), reusable.get());
+            return rawRankProfiles;
+        }
+
+        Map<String, RawRankProfile> rawRankProfiles = deriveAllRankProfiles(schema, attributeFields, deployState);
+        derived.put(fingerprint.get(),
+                    new DerivedRankProfiles.Entry(List.copyOf(rawRankProfiles.values()), List.copyOf(largeRankingExpressions.expressions())),
+                    deployState.getApplicationPackage());
+        return rawRankProfiles;
+    }
+
+    private Map<String, RawRankProfile> deriveAllRankProfiles(Schema schema,
+                                                               AttributeFields attributeFields,
+                                                               DeployState deployState) {
         Map<String,  RawRankProfile> rawRankProfiles = new LinkedHashMap<>();
         if (schema != null) { // profiles belonging to a schema have a default profile
             RawRankProfile rawRank = new RawRankProfile(deployState.rankProfileRegistry().get(schema, "default"),
@@ -100,8 +134,7 @@ public class RankProfileList extends Derived {
                                                        deployState.getQueryProfiles().getRegistry(),
                                                        deployState.getImportedModels(),
                                                        attributeFields,
-                                                       deployState.getProperties(),
-                                                       deployState.getExecutor()));
+                                                       deployState));
             ready.forEach(rank -> remaining.remove(rank.name()));
         }
         return rawRankProfiles;
@@ -111,28 +144,15 @@ public class RankProfileList extends Derived {
                                                             QueryProfileRegistry queryProfiles,
                                                             ImportedMlModels importedModels,
                                                             AttributeFields attributeFields,
-                                                            ModelContext.Properties deployProperties,
-                                                            ExecutorService executor) {
-        Map<String, Future<RawRankProfile>> futureRawRankProfiles = new LinkedHashMap<>();
-        for (RankProfile profile : profiles) {
-            futureRawRankProfiles.put(profile.name(), executor.submit(() -> new RawRankProfile(profile, largeRankingExpressions, queryProfiles, importedModels,
-                                                                                               attributeFields, deployProperties)));
-        }
-        try {
-            Map<String,  RawRankProfile> rawRankProfiles = new LinkedHashMap<>();
-            for (Future<RawRankProfile> rawFuture : futureRawRankProfiles.values()) {
-                RawRankProfile rawRank = rawFuture.get();
-                rawRankProfiles.put(rawRank.getName(), rawRank);
-            }
-            return rawRankProfiles;
-        } catch (InterruptedException e) {
-            throw new IllegalStateException(e);
-        }
-        catch (ExecutionException e) {
-            if (e.getCause() instanceof IllegalArgumentException iArg) throw iArg;
-            if (e.getCause() instanceof IllegalStateException iState) throw iState;
-            throw new IllegalStateException(e);
-        }
+                                                            DeployState deployState) {
+        List<Callable<RawRankProfile>> tasks = new ArrayList<>();
+        for (RankProfile profile : profiles)
+            tasks.add(() -> new RawRankProfile(profile, largeRankingExpressions, queryProfiles, importedModels,
+                                               attributeFields, deployState.getProperties()));
+        Map<String,  RawRankProfile> rawRankProfiles = new LinkedHashMap<>();
+        for (RawRankProfile rawRank : deployState.runInParallel(tasks))
+            rawRankProfiles.put(rawRank.getName(), rawRank);
+        return rawRankProfiles;
     }
 
     private static FileDistributedConstants deriveFileDistributedConstants(Schema schema,
@@ -79,6 +79,17 @@ public class RawRankProfile {
         this.featureNormalizers = compiled.getFeatureNormalizers();
     }
 
+    private RawRankProfile(RawRankProfile other) {
+        this.name = other.name;
+        this.compressedProperties = other.compressedProperties;
+        this.featureNormalizers = other.featureNormalizers;
+        this.constants = other.constants;
+        this.onnxModels = other.onnxModels.stream().map(OnnxModel::clone).toList();
+    }
+
+    /** Returns a copy of this which can be used in another model, as the onnx models are registered per model */
+    RawRankProfile copy() { return new RawRankProfile(this); }
+
     public Collection<RankProfile.Constant> constants() { return constants; }
     public Collection<OnnxModel> onnxModels() { return onnxModels; }
 
@@ -22,6 +22,7 @@ import com.yahoo.config.model.api.ApplicationClusterInfo;
 import com.yahoo.config.model.api.HostInfo;
 import com.yahoo.config.model.api.Model;
 import com.yahoo.config.model.api.Provisioned;
+import com.yahoo.config.model.deploy.BuildTimings;
 import com.yahoo.config.model.deploy.DeployState;
 import com.yahoo.config.model.deploy.TestProperties;
 import com.yahoo.config.model.producer.AnyConfigProducer;
@@ -36,6 +37,7 @@ import com.yahoo.schema.OnnxModel;
 import com.yahoo.schema.RankProfile;
 import com.yahoo.schema.RankProfileRegistry;
 import com.yahoo.schema.derived.AttributeFields;
+import com.yahoo.schema.derived.DerivedRankProfiles;
 import com.yahoo.schema.derived.RankProfileList;
 import com.yahoo.schema.derived.SchemaInfo;
 import com.yahoo.schema.document.SDField;
@@ -120,6 +122,10 @@ public final class VespaModel extends AbstractConfigProducerRoot implements Mode
 
     private final Provisioned provisioned;
 
+    private final BuildTimings buildTimings;
+
+    private final DerivedRankProfiles derivedRankProfiles;
+
     /** Creates a Vespa Model from internal model types only */
     public VespaModel(ApplicationPackage app) throws IOException, SAXException {
         this(app, new NullConfigModelRegistry());
@@ -160,27 +166,42 @@ public final class VespaModel extends AbstractConfigProducerRoot implements Mode
         validationOverrides = deployState.validationOverrides();
         applicationPackage = deployState.getApplicationPackage();
         provisioned = deployState.provisioned();
+        buildTimings = deployState.getBuildTimings();
+        derivedRankProfiles = deployState.derivedRankProfiles();
         VespaModelBuilder builder = new VespaDomBuilder();
         root = builder.getRoot(VespaModel.ROOT_CONFIGID, deployState, this);
 
-        createGlobalRankProfiles(deployState);
-        rankProfileList = new RankProfileList(null, // null search -> global
-                                              new LargeRankingExpressions(deployState.getFileRegistry()),
-                                              AttributeFields.empty,
-                                              deployState);
+        try (var __ = buildTimings.phase("global rank profiles")) {
+            createGlobalRankProfiles(deployState);
+            rankProfileList = new RankProfileList(null, // null search -> global
+                                                  new LargeRankingExpressions(deployState.getFileRegistry()),
+                                                  AttributeFields.empty,
+                                                  deployState);
+        }
 
         HostSystem hostSystem = root.hostSystem();
         if (complete) { // create a completed, frozen model
             root.useFeatureFlags(deployState.getProperties().featureFlags());
-            configModelRepo.readConfigModels(deployState, this, builder, root, new VespaConfigModelRegistry(configModelRegistry));
-            setupRouting(deployState);
-            getAdmin().addPerHostServices(hostSystem.getHosts(), deployState);
-            freezeModelTopology();
-            root.prepare(configModelRepo);
-            configModelRepo.prepareConfigModels(deployState);
-            validateWrapExceptions();
+            try (var __ = buildTimings.phase("config models")) {
+                configModelRepo.readConfigModels(deployState, this, builder, root, new VespaConfigModelRegistry(configModelRegistry));
+                setupRouting(deployState);
+                getAdmin().addPerHostServices(hostSystem.getHosts(), deployState);
+                freezeModelTopology();
+            }
+            try (var __ = buildTimings.phase("prepare")) {
+                root.prepare(configModelRepo);
+                configModelRepo.prepareConfigModels(deployState);
+            }
+            try (var __ = buildTimings.phase("validation")) {
+                validateWrapExceptions();
+            }
             hostSystem.dumpPortAllocations();
             propagateRestartOnDeploy();
+            log.log(Level.FINE, () -> "Built model for " + applicationPackage.getApplicationId() + ": " + buildTimings +
+                                      ". Reused the rank profiles of " + derivedRankProfiles.reused() + " schemas");
+            // Shown in the deploy log of verbose deployments
+            deployState.getDeployLogger().log(Level.FINE, () -> "Time spent building the model of Vespa " +
+                                                                version.toFullString() + ": " + buildTimings);
         }
         // else: create a model with no services instantiated (no-op)
 
@@ -188,6 +209,15 @@ public final class VespaModel extends AbstractConfigProducerRoot implements Mode
         this.allocatedHosts = AllocatedHosts.withHosts(hostSystem.getHostSpecs());
     }
 
+    /**
+     * Returns the time spent in each phase of building this. Note that schema derivation is part of building
+     * the config models, and that the phases before the model itself was built are included.
+     */
+    public BuildTimings buildTimings() { return buildTimings; }
+
+    /** Returns the rank profiles derived from the schemas of this, which the next model may reuse */
+    public DerivedRankProfiles derivedRankProfiles() { return derivedRankProfiles; }
+
     @Override
     public Map<String, Set<String>> documentTypesByCluster() {
         return getContentClusters().entrySet().stream()
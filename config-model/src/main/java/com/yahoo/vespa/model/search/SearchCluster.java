@@ -17,12 +17,14 @@ import com.yahoo.vespa.configdefinition.IlscriptsConfig;
 import com.yahoo.config.model.producer.AnyConfigProducer;
 import com.yahoo.config.model.producer.TreeConfigProducer;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 /**
  * Represents a search cluster.
@@ -86,13 +88,24 @@ public abstract class SearchCluster extends TreeConfigProducer<AnyConfigProducer
      * Must be called after cluster is built, to derive schema configs.
      * Derives the schemas from the application package.
      * Also stores the document names contained in the schemas.
+     * The schemas are derived in parallel, while the producers for them are added in schema order.
      */
     public void deriveFromSchemas(DeployState deployState) {
-        for (SchemaInfo spec : schemas().values()) {
-            if (spec.fullSchema() instanceof DocumentOnlySchema) continue; // TODO verify if this special handling is necessary
+        List<SchemaInfo> specs = schemas().values().stream()
+                                          .filter(spec -> ! (spec.fullSchema() instanceof DocumentOnlySchema)) // TODO verify if this special handling is necessary
+                                          .toList();
+        List<Callable<DerivedConfiguration>> tasks = new ArrayList<>();
+        for (SchemaInfo spec : specs)
+            tasks.add(() -> new DerivedConfiguration(deployState, spec.fullSchema(), spec.getIndexMode()));
+        List<DerivedConfiguration> derivedConfigurations;
+        try (var __ = deployState.getBuildTimings().phase("schema derivation")) {
+            derivedConfigurations = deployState.runInParallel(tasks);
+        }
 
+        for (int i = 0; i < specs.size(); i++) {
+            SchemaInfo spec = specs.get(i);
             String schemaName = spec.fullSchema().getName();
-            var derived = new DerivedConfiguration(deployState, spec.fullSchema(), spec.getIndexMode());
+            var derived = derivedConfigurations.get(i);
             documentDbs.put(schemaName, new DocumentDatabase(this, schemaName, derived));
             if (spec.getIndexMode() == SchemaInfo.IndexMode.STREAMING) {
                 var parent = (TreeConfigProducer<AnyConfigProducer>)getParent();
@@ -14,17 +14,25 @@ import com.yahoo.config.provision.ApplicationId;
 import com.yahoo.vespa.config.ConfigDefinition;
 import com.yahoo.vespa.config.ConfigDefinitionKey;
 import com.yahoo.vespa.model.VespaModel;
+import com.yahoo.vespa.model.test.utils.DeployLoggerStub;
 import org.junit.jupiter.api.Test;
 import org.xml.sax.SAXException;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
@@ -105,6 +113,50 @@ public class DeployStateTest {
         assertEquals(endpoints, new DeployState.Builder().endpoints(endpoints).build().getEndpoints());
     }
 
+    @Test
+    void testRunInParallelKeepsOrderAndAllowsNestedTasks() {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            DeployState state = new DeployState.Builder().executor(executor).build();
+            List<Callable<List<Integer>>> tasks = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                int outer = i;
+                tasks.add(() -> { // Nested tasks would deadlock if all executor threads waited for them
+                    List<Callable<Integer>> inner = new ArrayList<>();
+                    for (int j = 0; j < 8; j++) {
+                        int value = outer * 8 + j;
+                        inner.add(() -> value);
+                    }
+                    return state.runInParallel(inner);
+                });
+            }
+            List<Integer> results = state.runInParallel(tasks).stream().flatMap(List::stream).toList();
+            assertEquals(IntStream.range(0, 64).boxed().toList(), results);
+
+            IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                                                      () -> state.runInParallel(List.of(() -> 1, () -> { throw new IllegalArgumentException("bad"); })));
+            assertEquals("bad", e.getMessage());
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testBuildTimings() throws IOException, SAXException {
+        DeployLoggerStub logger = new DeployLoggerStub();
+        DeployState state = TestDeployState.createBuilder().applicationPackage(MockApplicationPackage.createEmpty())
+                                           .deployLogger(logger)
+                                           .build();
+        VespaModel model = new VespaModel(state);
+        assertEquals(List.of("query profiles and semantic rules", "schemas", "import models",
+                             "global rank profiles", "config models", "prepare", "validation"),
+                     List.copyOf(model.buildTimings().asMap().keySet()));
+        assertTrue(logger.entries.stream().anyMatch(entry -> entry.level == Level.FINE &&
+                                                             entry.message.contains(model.buildTimings().toString())),
+                   "Build timings are in the deploy log: " + logger.entries);
+    }
+
     private DeployState createDeployState(ApplicationPackage app, Map<ConfigDefinitionKey, com.yahoo.vespa.config.buildergen.ConfigDefinition> defs) {
         DeployState.Builder builder = new DeployState.Builder().applicationPackage(app);
         builder.configDefinitionRepo(new ConfigDefinitionRepo() {
@@ -0,0 +1,121 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.schema.derived;
+
+import com.yahoo.config.model.deploy.DeployState;
+import com.yahoo.config.model.deploy.TestProperties;
+import com.yahoo.vespa.config.search.RankProfilesConfig;
+import com.yahoo.vespa.config.search.core.OnnxModelsConfig;
+import com.yahoo.vespa.config.search.core.RankingConstantsConfig;
+import com.yahoo.vespa.config.search.core.RankingExpressionsConfig;
+import com.yahoo.vespa.model.VespaModel;
+import com.yahoo.vespa.model.test.utils.VespaModelCreatorWithMockPkg;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Tests reusing the rank profiles derived for a previous model.
+ */
+public class DerivedRankProfilesTestCase {
+
+    @Test
+    void testIncrementalBuildGivesTheSameRankProfilesAsFullBuild() {
+        VespaModel first = model(List.of(schema("a", "attribute(f) * 2"), schema("b", largeExpression())), true, null);
+        assertEquals(2, first.derivedRankProfiles().size());
+        assertEquals(0, first.derivedRankProfiles().reused());
+
+        List<String> changed = List.of(schema("a", "attribute(f) * 3"), schema("b", largeExpression()));
+        VespaModel incremental = model(changed, true, first);
+        VespaModel full = model(changed, false, null);
+        assertEquals(1, incremental.derivedRankProfiles().reused());
+        assertEquals(0, full.derivedRankProfiles().size());
+        assertSameRankProfiles(full, incremental);
+        assertFalse(incremental.getConfig(RankingExpressionsConfig.class, configId("b")).expression().isEmpty());
+
+        VespaModel next = model(changed, true, incremental);
+        assertEquals(2, next.derivedRankProfiles().reused());
+        assertSameRankProfiles(full, next);
+    }
+
+    @Test
+    void testRankProfilesAreNotReusedWithoutTheFlag() {
+        List<String> schemas = List.of(schema("a", "attribute(f) * 2"), schema("b", "attribute(f) * 4"));
+        VespaModel first = model(schemas, true, null);
+        VespaModel second = model(schemas, false, first);
+        assertEquals(0, second.derivedRankProfiles().reused());
+        assertSameRankProfiles(first, second);
+    }
+
+    private static void assertSameRankProfiles(VespaModel expected, VespaModel actual) {
+        for (String schema : List.of("a", "b")) {
+            String configId = configId(schema);
+            assertEquals(expected.getConfig(RankProfilesConfig.class, configId).toString(),
+                         actual.getConfig(RankProfilesConfig.class, configId).toString());
+            assertEquals(expected.getConfig(RankingExpressionsConfig.class, configId).toString(),
+                         actual.getConfig(RankingExpressionsConfig.class, configId).toString());
+            assertEquals(expected.getConfig(RankingConstantsConfig.class, configId).toString(),
+                         actual.getConfig(RankingConstantsConfig.class, configId).toString());
+            assertEquals(expected.getConfig(OnnxModelsConfig.class, configId).toString(),
+                         actual.getConfig(OnnxModelsConfig.class, configId).toString());
+        }
+    }
+
+    private static VespaModel model(List<String> schemas, boolean incremental, VespaModel previous) {
+        DeployState.Builder builder = new DeployState.Builder().properties(new TestProperties().setIncrementalModelBuild(incremental));
+        if (previous != null)
+            builder.previousModel(previous);
+        return new VespaModelCreatorWithMockPkg(null, services, schemas).create(builder);
+    }
+
+    private static String configId(String schema) {
+        return "test/search/cluster.test/" + schema;
+    }
+
+    private static String schema(String name, String expression) {
+        return "schema " + name + " {\n" +
+               "  document " + name + " {\n" +
+               "    field f type double {\n" +
+               "      indexing: attribute\n" +
+               "    }\n" +
+               "  }\n" +
+               "  rank-profile first {\n" +
+               "    function g() {\n" +
+               "      expression: " + expression + "\n" +
+               "    }\n" +
+               "    first-phase {\n" +
+               "      expression: g\n" +
+               "    }\n" +
+               "  }\n" +
+               "  rank-profile second inherits first {\n" +
+               "    second-phase {\n" +
+               "      expression: g * 2\n" +
+               "    }\n" +
+               "  }\n" +
+               "}\n";
+    }
+
+    private static String largeExpression() {
+        StringBuilder expression = new StringBuilder("attribute(f)");
+        for (int i = 0; i < 1000; i++)
+            expression.append(" + attribute(f) * ").append(i);
+        return expression.toString();
+    }
+
+    private static final String services =
+            "<services version='1.0'>" +
+            "  <content id='test' version='1.0'>" +
+            "    <redundancy>1</redundancy>" +
+            "    <documents>" +
+            "      <document type='a' mode='index'/>" +
+            "      <document type='b' mode='index'/>" +
+            "    </documents>" +
+            "    <nodes>" +
+            "      <node hostalias='node0' distribution-key='0'/>" +
+            "    </nodes>" +
+            "  </content>" +
+            "</services>";
+
+}
@@ -2,28 +2,45 @@
 package com.yahoo.vespa.model.search.test;
 
 import com.yahoo.component.ComponentId;
+import com.yahoo.config.ConfigInstance;
+import com.yahoo.config.model.deploy.DeployState;
 import com.yahoo.config.model.test.MockApplicationPackage;
 import com.yahoo.container.QrSearchersConfig;
 import com.yahoo.document.DataType;
+import com.yahoo.prelude.fastsearch.DocumentdbInfoConfig;
 import com.yahoo.search.config.ClusterConfig;
+import com.yahoo.search.config.SchemaInfoConfig;
 import com.yahoo.schema.Schema;
 import com.yahoo.schema.ApplicationBuilder;
 import com.yahoo.schema.document.Attribute;
 import com.yahoo.schema.document.SDDocumentType;
 import com.yahoo.schema.document.SDField;
 import com.yahoo.search.dispatch.ReconfigurableDispatcher;
+import com.yahoo.vespa.config.search.AttributesConfig;
 import com.yahoo.vespa.config.search.DispatchNodesConfig;
+import com.yahoo.vespa.config.search.IndexschemaConfig;
+import com.yahoo.vespa.config.search.RankProfilesConfig;
+import com.yahoo.vespa.config.search.SummaryConfig;
+import com.yahoo.vespa.config.search.core.RankingExpressionsConfig;
+import com.yahoo.vespa.configdefinition.IlscriptsConfig;
 import com.yahoo.vespa.indexinglanguage.expressions.AttributeExpression;
 import com.yahoo.vespa.indexinglanguage.expressions.ScriptExpression;
 import com.yahoo.vespa.indexinglanguage.expressions.StatementExpression;
 import com.yahoo.vespa.model.VespaModel;
 import com.yahoo.vespa.model.container.ContainerCluster;
 import com.yahoo.vespa.model.container.component.Component;
+import com.yahoo.vespa.model.search.DocumentDatabase;
 import com.yahoo.vespa.model.search.SearchCluster;
 import com.yahoo.vespa.model.test.utils.ApplicationPackageUtils;
 import com.yahoo.vespa.model.test.utils.VespaModelCreatorWithMockPkg;
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
@@ -168,6 +185,55 @@ public class SchemaClusterTest {
         verifyDispatch(model, containerCluster1, "xbulk", "node0host");
     }
 
+    @Test
+    void schemas_derived_in_parallel_give_the_same_configs_as_when_derived_sequentially() {
+        String services = """
+                          <services version='1.0'>
+                            <content id='test' version='1.0'>
+                              <redundancy>1</redundancy>
+                              <documents>
+                                <document type='music' mode='index'/>
+                                <document type='book' mode='index'/>
+                                <document type='movie' mode='index'/>
+                                <document type='song' mode='streaming'/>
+                              </documents>
+                              <nodes>
+                                <node hostalias='node0' distribution-key='0'/>
+                              </nodes>
+                            </content>
+                          </services>
+                          """;
+        List<String> schemas = ApplicationPackageUtils.generateSchemas("music", "book", "movie", "song");
+        VespaModel sequential = new VespaModelCreatorWithMockPkg(null, services, schemas).create(new DeployState.Builder());
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            VespaModel parallel = new VespaModelCreatorWithMockPkg(null, services, schemas)
+                                          .create(new DeployState.Builder().executor(executor));
+            assertEquals(4, sequential.getSearchClusters().stream().mapToInt(cluster -> cluster.getDocumentDbs().size()).sum());
+            assertEquals(derivedConfigs(sequential), derivedConfigs(parallel));
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    /** Returns the configs derived from schemas, by config id and type */
+    private static Map<String, String> derivedConfigs(VespaModel model) {
+        Map<String, String> configs = new TreeMap<>();
+        for (SearchCluster cluster : model.getSearchClusters()) {
+            for (DocumentDatabase db : cluster.getDocumentDbs())
+                for (Class<? extends ConfigInstance> type : List.of(RankProfilesConfig.class, RankingExpressionsConfig.class,
+                                                                    AttributesConfig.class, IndexschemaConfig.class,
+                                                                    SummaryConfig.class, IlscriptsConfig.class,
+                                                                    SchemaInfoConfig.class))
+                    configs.put(db.getConfigId() + " " + type.getSimpleName(), model.getConfig(type, db.getConfigId()).toString());
+            for (Class<? extends ConfigInstance> type : List.of(DocumentdbInfoConfig.class, SchemaInfoConfig.class,
+                                                                IlscriptsConfig.class, AttributesConfig.class))
+                configs.put(cluster.getConfigId() + " " + type.getSimpleName(), model.getConfig(type, cluster.getConfigId()).toString());
+        }
+        return configs;
+    }
+
     private void verifyDispatch(VespaModel model, ContainerCluster containerCluster, String cluster, String host) {
         Component<?,?> dispatcher = (Component<?, ?>)containerCluster.getComponentsMap().get(new ComponentId("dispatcher." + cluster));
         assertNotNull(dispatcher);
@@ -100,6 +100,11 @@ public class ConfigProxyRpcServer implements Runnable, TargetWatcher {
                 .requireCapabilities(Capability.CONFIGPROXY__CONFIG_API)
                 .methodDesc("list cached configs with cache content)")
                 .returnDesc(0, "data", "string array of configs"));
+        supervisor.addMethod(new Method("cacheStatistics", "", "S",
+                this::cacheStatistics)
+                .requireCapabilities(Capability.CONFIGPROXY__CONFIG_API)
+                .methodDesc("memory use and hit rate of the config cache")
+                .returnDesc(0, "data", "string array of statistics"));
         supervisor.addMethod(new Method("listSourceConnections", "", "S",
                 this::listSourceConnections)
                 .requireCapabilities(Capability.CONFIGPROXY__CONFIG_API)
@@ -168,6 +173,13 @@ public class ConfigProxyRpcServer implements Runnable, TargetWatcher {
         dispatchRpcRequest(req, () -> listCachedConfig(req, true));
     }
 
+    private void cacheStatistics(Request req) {
+        dispatchRpcRequest(req, () -> {
+            req.returnValues().add(new StringArray(proxyServer.memoryCache().statistics().toLines().toArray(new String[0])));
+            req.returnRequest();
+        });
+    }
+
     private void listSourceConnections(Request req) {
         dispatchRpcRequest(req, () -> {
             String[] ret = new String[2];
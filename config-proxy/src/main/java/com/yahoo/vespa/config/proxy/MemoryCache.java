@@ -2,11 +2,13 @@
 package com.yahoo.vespa.config.proxy;
 
 import com.yahoo.io.IOUtils;
+import com.yahoo.text.Text;
 import com.yahoo.vespa.config.ConfigCacheKey;
 import com.yahoo.vespa.config.ConfigKey;
 import com.yahoo.vespa.config.RawConfig;
 import com.yahoo.vespa.config.protocol.CompressionType;
 import com.yahoo.vespa.config.protocol.Payload;
+import com.yahoo.vespa.config.proxy.PayloadStore.StoredPayload;
 import com.yahoo.vespa.defaults.Defaults;
 
 import java.io.File;
@@ -14,12 +16,17 @@ import java.io.IOException;
 import java.io.Writer;
 import java.nio.file.Files;
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
+ * Cache of the configs received from config sources, with one entry per config key and def md5.
+ * Payloads are stored once for all configs having the same payload, see {@link PayloadStore}.
+ *
  * @author hmusum
  */
 public class MemoryCache {
@@ -30,10 +37,15 @@ public class MemoryCache {
     private final static String separator = ":";
     private static final String DEFAULT_DUMP_DIR = Defaults.getDefaults().underVespaHome("var/vespa/cache/config");
 
-    private final ConcurrentHashMap<ConfigCacheKey, RawConfig> cache = new ConcurrentHashMap<>(500, 0.75f);
+    private final ConcurrentHashMap<ConfigCacheKey, CachedConfig> cache = new ConcurrentHashMap<>(500, 0.75f);
+    private final PayloadStore payloads = new PayloadStore();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
 
     public Optional<RawConfig> get(ConfigCacheKey key) {
-        return Optional.ofNullable(cache.get(key));
+        CachedConfig cached = cache.get(key);
+        (cached == null ? misses : hits).increment();
+        return Optional.ofNullable(cached).map(CachedConfig::toRawConfig);
     }
 
     /**
@@ -41,18 +53,21 @@ public class MemoryCache {
      *
      * @param config config to update in cache
      */
-    public void update(RawConfig config) {
+    public synchronized void update(RawConfig config) {
         // Do not cache errors
         if (config.isError()) return;
 
         // Do not cache empty configs (which have generation 0), remove everything in cache
         if (config.getGeneration() == 0) {
-            cache.clear();
+            clear();
             return;
         }
 
         log.log(Level.FINE, () -> "Putting '" + config + "' into memory cache");
-        cache.put(new ConfigCacheKey(config.getKey(), config.getDefMd5()), config);
+        CachedConfig previous = cache.put(new ConfigCacheKey(config.getKey(), config.getDefMd5()),
+                                          new CachedConfig(config, payloads.add(config.getPayload(), config.getPayloadChecksums())));
+        if (previous != null)
+            payloads.remove(previous.payload);
     }
 
     boolean containsKey(ConfigCacheKey key) {
@@ -60,20 +75,74 @@ public class MemoryCache {
     }
 
     Collection<RawConfig> values() {
-        return cache.values();
+        return cache.values().stream().map(CachedConfig::toRawConfig).toList();
     }
 
     public int size() {
         return cache.size();
     }
 
-    public void clear() {
+    public synchronized void clear() {
         cache.clear();
+        payloads.clear();
+    }
+
+    /** Returns statistics about the memory use and hit rate of this cache */
+    Statistics statistics() {
+        long jsonBytes = cache.values().stream().mapToLong(cached -> cached.payload.jsonLength()).sum();
+        return new Statistics(cache.size(), payloads.size(), payloads.bytes(), jsonBytes, hits.sum(), misses.sum());
     }
 
     @Override
     public String toString() {
-        return cache.toString();
+        return values().toString();
+    }
+
+    /**
+     * Statistics about this cache.
+     *
+     * @param configs the number of configs in the cache
+     * @param payloads the number of distinct payloads of these configs
+     * @param payloadBytes the size of the distinct payloads as stored
+     * @param jsonBytes the total size of the payloads of all configs as json, which is what storing each of them would take
+     * @param hits the number of lookups which found a config
+     * @param misses the number of lookups which did not find a config
+     */
+    record Statistics(int configs, int payloads, long payloadBytes, long jsonBytes, long hits, long misses) {
+
+        double hitRate() { return hits + misses == 0 ? 0 : (double) hits / (hits + misses); }
+
+        List<String> toLines() {
+            return List.of("configs: " + configs,
+                           "distinct payloads: " + payloads,
+                           "payload bytes: " + payloadBytes,
+                           "payload bytes as json, without deduplication: " + jsonBytes,
+                           "hits: " + hits,
+                           "misses: " + misses,
+                           "hit rate: " + Text.format("%.3f", hitRate()));
+        }
+
+    }
+
+    /** A config without its payload, and the stored payload of it */
+    private static class CachedConfig {
+
+        private final RawConfig config;
+        private final StoredPayload payload;
+
+        CachedConfig(RawConfig config, StoredPayload payload) {
+            this.config = new RawConfig(config.getKey(), config.getDefMd5(), null, config.getPayloadChecksums(),
+                                        config.getGeneration(), config.applyOnRestart(), config.errorCode(),
+                                        config.getDefContent(), config.getVespaVersion());
+            this.payload = payload;
+        }
+
+        RawConfig toRawConfig() {
+            return new RawConfig(config.getKey(), config.getDefMd5(), payload.toPayload(), config.getPayloadChecksums(),
+                                 config.getGeneration(), config.applyOnRestart(), config.errorCode(),
+                                 config.getDefContent(), config.getVespaVersion());
+        }
+
     }
 
     String dumpCacheToDisk(String path, MemoryCache cache) {
@@ -0,0 +1,106 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.config.proxy;
+
+import com.yahoo.text.Utf8Array;
+import com.yahoo.vespa.config.PayloadChecksums;
+import com.yahoo.vespa.config.protocol.CompressionInfo;
+import com.yahoo.vespa.config.protocol.CompressionType;
+import com.yahoo.vespa.config.protocol.Payload;
+import net.jpountz.xxhash.XXHash64;
+import net.jpountz.xxhash.XXHashFactory;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Config payloads, each stored once however many configs and generations of configs have it.
+ * <p>
+ * Payloads are stored as received, usually compressed, and returned as they are. They are looked up by
+ * the checksums config servers send with them, and compared byte by byte only when these match.
+ */
+class PayloadStore {
+
+    private static final XXHash64 hasher = XXHashFactory.fastestInstance().hash64();
+
+    private final Map<StoredPayload, StoredPayload> payloads = new HashMap<>();
+    private long bytes = 0;
+
+    /** Adds a reference to the given payload, and returns the stored payload to use in place of it */
+    synchronized StoredPayload add(Payload payload, PayloadChecksums checksums) {
+        StoredPayload received = StoredPayload.of(payload, checksums);
+        StoredPayload stored = payloads.computeIfAbsent(received, __ -> {
+            bytes += received.data.length;
+            return received;
+        });
+        stored.references++;
+        return stored;
+    }
+
+    /** Removes a reference to the given stored payload, and drops it when there are no references left */
+    synchronized void remove(StoredPayload stored) {
+        if (--stored.references > 0) return;
+        if (payloads.get(stored) == stored) { // Not if cleared since it was added
+            payloads.remove(stored);
+            bytes -= stored.data.length;
+        }
+    }
+
+    synchronized void clear() {
+        payloads.clear();
+        bytes = 0;
+    }
+
+    /** Returns the number of distinct payloads stored */
+    synchronized int size() { return payloads.size(); }
+
+    /** Returns the total size of the payloads stored, in bytes */
+    synchronized long bytes() { return bytes; }
+
+    static final class StoredPayload {
+
+        private final byte[] data;
+        private final CompressionInfo compressionInfo;
+        private final int hash;
+        private int references = 0; // guarded by the store
+
+        private StoredPayload(byte[] data, CompressionInfo compressionInfo, int hash) {
+            this.data = data;
+            this.compressionInfo = compressionInfo;
+            this.hash = hash;
+        }
+
+        static StoredPayload of(Payload payload, PayloadChecksums checksums) {
+            ByteBuffer buffer = payload.getData().wrap();
+            byte[] data = new byte[buffer.remaining()];
+            buffer.get(data);
+            // Payloads from old config servers may come without checksums
+            int hash = checksums.isEmpty() ? Long.hashCode(hasher.hash(data, 0, data.length, 0)) : checksums.hashCode();
+            return new StoredPayload(data, payload.getCompressionInfo(), hash);
+        }
+
+        /** Returns this as the payload it was received as */
+        Payload toPayload() {
+            return Payload.from(new Utf8Array(data), compressionInfo);
+        }
+
+        /** Returns the size of this payload as json, in bytes */
+        int jsonLength() {
+            return compressionInfo.getCompressionType() == CompressionType.UNCOMPRESSED ? data.length
+                                                                                         : compressionInfo.getUncompressedSize();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == this) return true;
+            if ( ! (o instanceof StoredPayload other)) return false;
+            return hash == other.hash && compressionInfo.equals(other.compressionInfo) && Arrays.equals(data, other.data);
+        }
+
+        @Override
+        public int hashCode() { return hash; }
+
+    }
+
+}
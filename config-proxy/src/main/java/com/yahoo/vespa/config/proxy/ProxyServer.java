@@ -60,7 +60,7 @@ public class ProxyServer implements Runnable {
         this.supervisor = new Supervisor(new Transport("proxy-server", JRT_TRANSPORT_THREADS)).setDropEmptyBuffers(true);
         this.rpcServer = createRpcServer(spec);
         this.configClient = Objects.requireNonNull(configClient);
-        this.fileDistributionAndUrlDownload = new FileDistributionAndUrlDownload(supervisor, source);
+        this.fileDistributionAndUrlDownload = new FileDistributionAndUrlDownload(supervisor, source, spec.port());
     }
 
     @Override
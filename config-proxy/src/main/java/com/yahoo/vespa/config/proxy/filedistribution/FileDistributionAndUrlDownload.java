@@ -18,8 +18,12 @@ public class FileDistributionAndUrlDownload {
     private final UrlDownloadRpcServer urlDownloadRpcServer;
     private final FileReferencesAndDownloadsMaintainer maintainer;
 
-    public FileDistributionAndUrlDownload(Supervisor supervisor, ConfigSourceSet source) {
-        fileDistributionRpcServer = new FileDistributionRpcServer(supervisor, createDownloader(supervisor, source));
+    /**
+     * @param port the port the given supervisor listens on, where file references downloaded
+     *             by this are served to other nodes, if downloading from peers is enabled
+     */
+    public FileDistributionAndUrlDownload(Supervisor supervisor, ConfigSourceSet source, int port) {
+        fileDistributionRpcServer = new FileDistributionRpcServer(supervisor, createDownloader(supervisor, source, port));
         urlDownloadRpcServer = new UrlDownloadRpcServer(supervisor);
         maintainer = new FileReferencesAndDownloadsMaintainer();
     }
@@ -30,10 +34,17 @@ public class FileDistributionAndUrlDownload {
         maintainer.close();
     }
 
-    private FileDownloader createDownloader(Supervisor supervisor, ConfigSourceSet source) {
-        return new FileDownloader(new FileDistributionConnectionPool(source, supervisor),
-                                  supervisor,
-                                  Duration.ofSeconds(55)); // Should be lower than the timeout in FileAcquirer
+    private FileDownloader createDownloader(Supervisor supervisor, ConfigSourceSet source, int port) {
+        var connectionPool = new FileDistributionConnectionPool(source, supervisor);
+        var timeout = Duration.ofSeconds(55); // Should be lower than the timeout in FileAcquirer
+        return downloadFromPeers()
+                ? new FileDownloader(connectionPool, supervisor, timeout, port)
+                : new FileDownloader(connectionPool, supervisor, timeout);
+    }
+
+    // Config servers must also have the file-distribution-from-peers flag set to hand out peers
+    private static boolean downloadFromPeers() {
+        return Boolean.parseBoolean(System.getenv("VESPA_FILE_DISTRIBUTION_FROM_PEERS"));
     }
 
 }
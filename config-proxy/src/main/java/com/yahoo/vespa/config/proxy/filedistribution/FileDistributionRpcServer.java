@@ -4,6 +4,7 @@ package com.yahoo.vespa.config.proxy.filedistribution;
 import com.yahoo.concurrent.DaemonThreadFactory;
 import com.yahoo.config.FileReference;
 import com.yahoo.jrt.DoubleArray;
+import com.yahoo.jrt.Int32Value;
 import com.yahoo.jrt.Method;
 import com.yahoo.jrt.Request;
 import com.yahoo.jrt.StringArray;
@@ -11,18 +12,33 @@ import com.yahoo.jrt.StringValue;
 import com.yahoo.jrt.Supervisor;
 import com.yahoo.net.HostName;
 import com.yahoo.security.tls.Capability;
+import com.yahoo.vespa.filedistribution.FileApiErrorCodes;
 import com.yahoo.vespa.filedistribution.FileDownloader;
 import com.yahoo.vespa.filedistribution.FileReferenceDownload;
+import com.yahoo.vespa.filedistribution.FileReferenceParts;
+import com.yahoo.vespa.filedistribution.FileReferenceSender;
+import com.yahoo.vespa.filedistribution.LazyFileReferenceData;
+import com.yahoo.yolean.Exceptions;
 
 import java.io.File;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import static com.yahoo.vespa.filedistribution.FileApiErrorCodes.NOT_FOUND;
+import static com.yahoo.vespa.filedistribution.FileApiErrorCodes.OK;
+import static com.yahoo.vespa.filedistribution.FileApiErrorCodes.TRANSFER_FAILED;
+import static com.yahoo.vespa.filedistribution.FileReferenceData.CompressionType;
+import static com.yahoo.vespa.filedistribution.FileReferenceData.Type;
+
 /**
  * An RPC server that handles file distribution requests.
  *
@@ -36,6 +52,11 @@ class FileDistributionRpcServer {
     private final FileDownloader downloader;
     private final ExecutorService rpcDownloadExecutor = Executors.newFixedThreadPool(Math.max(8, Runtime.getRuntime().availableProcessors()),
                                                                                      new DaemonThreadFactory("Rpc executor"));
+    // Serving other nodes comes second to this node's own work: Requests beyond a few are rejected,
+    // and the node requesting tries another source
+    private final ExecutorService peerServingExecutor = new ThreadPoolExecutor(2, 2, 0, TimeUnit.SECONDS,
+                                                                               new ArrayBlockingQueue<>(8),
+                                                                               new DaemonThreadFactory("Peer file server"));
 
     FileDistributionRpcServer(Supervisor supervisor, FileDownloader downloader) {
         this.supervisor = supervisor;
@@ -45,8 +66,10 @@ class FileDistributionRpcServer {
 
     void close() {
         rpcDownloadExecutor.shutdownNow();
+        peerServingExecutor.shutdownNow();
         try {
             rpcDownloadExecutor.awaitTermination(10, TimeUnit.SECONDS);
+            peerServingExecutor.awaitTermination(10, TimeUnit.SECONDS);
         } catch (InterruptedException e) {
             throw new RuntimeException(e);
         }
@@ -69,6 +92,14 @@ class FileDistributionRpcServer {
                                      .methodDesc("download status for file references")
                                      .returnDesc(0, "file references", "array of file references")
                                      .returnDesc(1, "download status", "percentage downloaded of each file reference in above array"));
+        if ( ! downloader.usesPeers()) return;
+
+        supervisor.addMethod(new Method("filedistribution.serveFile", "si*", "is", this::serveFile)
+                                     .requireCapabilities(Capability.CONFIGPROXY__FILEDISTRIBUTION_API)
+                                     .methodDesc("send a file reference downloaded by this node to the calling node")
+                                     .paramDesc(0, "file reference", "file reference")
+                                     .returnDesc(0, "error code", "0 if the file reference was sent")
+                                     .returnDesc(1, "error description", "description of the error code"));
     }
 
 
@@ -103,6 +134,51 @@ class FileDistributionRpcServer {
         req.returnValues().add(new DoubleArray(downloadStatusArray));
     }
 
+    private void serveFile(Request req) {
+        req.detach();
+        try {
+            peerServingExecutor.execute(() -> returnServeFile(req, serveFileToPeer(req)));
+        } catch (RejectedExecutionException e) {
+            log.log(Level.FINE, () -> "Too many file references being served, rejecting request from " + req.target());
+            returnServeFile(req, TRANSFER_FAILED);
+        }
+    }
+
+    /**
+     * Serves a downloaded file reference to a downloader a config server has handed this out to as a peer.
+     * Receivers verify the content against the hash they got from the config server.
+     */
+    private FileApiErrorCodes serveFileToPeer(Request req) {
+        FileReference fileReference = new FileReference(req.parameters().get(0).asString());
+        try {
+            // The downloader is identified by the address it connects from, and should otherwise use config servers
+            if ( ! downloader.mayServeToPeer(fileReference, req.target().peerSpec().host())) return NOT_FOUND;
+
+            // Only files are served, as directories compressed here would differ from those from other sources
+            Optional<File> file = downloader.downloadedFile(fileReference).filter(File::isFile);
+            boolean acceptsUncompressed = List.of(req.parameters().get(2).asStringArray()).contains(CompressionType.none.name());
+            if (file.isEmpty() || ! acceptsUncompressed) return NOT_FOUND;
+
+            FileReferenceParts parts = FileReferenceParts.from(req.parameters(), 3);
+            if ( ! parts.includesAny(file.get().length(), Type.file)) return OK;
+
+            log.log(Level.FINE, () -> "Serving " + fileReference + " (" + parts + ") to " + req.target());
+            try (var fileData = new LazyFileReferenceData(fileReference, file.get().getName(), Type.file, file.get(), CompressionType.none)) {
+                new FileReferenceSender(req.target(), parts).send(fileData, OK.code(), OK.description());
+            }
+            return OK;
+        } catch (Exception e) {
+            log.log(Level.INFO, "Failed serving " + fileReference + " to " + req.target() + ": " + Exceptions.toMessageString(e));
+            return TRANSFER_FAILED;
+        }
+    }
+
+    private static void returnServeFile(Request req, FileApiErrorCodes result) {
+        req.returnValues().add(new Int32Value(result.code()));
+        req.returnValues().add(new StringValue(result.description()));
+        req.returnRequest();
+    }
+
     private void downloadFile(Request req) {
         FileReference fileReference = new FileReference(req.parameters().get(0).asString());
         log.log(Level.FINE, () -> "getFile() called for file reference '" + fileReference.value() + "'");
@@ -129,6 +129,24 @@ public class ConfigProxyRpcServerTest {
                                  ret[0]);
     }
 
+    /**
+     * Tests cacheStatistics RPC command
+     */
+    @Test
+    void testRpcMethodCacheStatistics() throws ListenFailedException {
+        reset();
+        server.proxyServer().memoryCache().update(ProxyServerTest.fooConfig);
+
+        Request req = new Request("cacheStatistics");
+        client.invoke(req);
+
+        assertFalse(req.isError(), req.errorMessage());
+        assertEquals(1, req.returnValues().size());
+        String[] ret = req.returnValues().get(0).asStringArray();
+        assertEquals("configs: 1", ret[0]);
+        assertEquals("distinct payloads: 1", ret[1]);
+    }
+
     /**
      * Tests listSourceConnections RPC command
      */
@@ -1,17 +1,20 @@
 // Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.vespa.config.proxy;
 
+import com.yahoo.slime.Cursor;
 import com.yahoo.slime.Slime;
 import com.yahoo.vespa.config.ConfigCacheKey;
 import com.yahoo.vespa.config.ConfigKey;
 import com.yahoo.vespa.config.ConfigPayload;
 import com.yahoo.vespa.config.PayloadChecksums;
 import com.yahoo.vespa.config.RawConfig;
+import com.yahoo.vespa.config.protocol.CompressionType;
 import com.yahoo.vespa.config.protocol.Payload;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -118,4 +121,52 @@ public class MemoryCacheTest {
         cache.clear();
         assertEquals(0, cache.size());
     }
+
+    @Test
+    void payloadsAreStoredOnce() {
+        Slime slime = new Slime();
+        Cursor rankProfiles = slime.setObject().setArray("rankprofile");
+        for (int i = 0; i < 100; i++) {
+            Cursor rankProfile = rankProfiles.addObject();
+            rankProfile.setString("name", "profile" + i);
+            rankProfile.setDouble("weight", i / 2.0);
+            rankProfile.setBool("enabled", true);
+        }
+        Payload largePayload = Payload.from(new ConfigPayload(slime)).withCompression(CompressionType.LZ4);
+        List<String> defContent = List.of("bar string");
+
+        MemoryCache cache = new MemoryCache();
+        cache.update(new RawConfig(configKey, defMd5, largePayload, checksums, generation, false, defContent, Optional.empty()));
+        cache.update(new RawConfig(configKey2, defMd52, largePayload, checksums, generation, false, defContent, Optional.empty()));
+        // New generation with the same payload
+        cache.update(new RawConfig(configKey, defMd5, largePayload, checksums, generation + 1, false, defContent, Optional.empty()));
+
+        MemoryCache.Statistics statistics = cache.statistics();
+        assertEquals(2, statistics.configs());
+        assertEquals(1, statistics.payloads());
+        // Stored once, as received
+        assertEquals(largePayload.getData().getByteLength(), statistics.payloadBytes());
+        assertEquals(2L * largePayload.getCompressionInfo().getUncompressedSize(), statistics.jsonBytes());
+
+        RawConfig response = cache.get(cacheKey).orElseThrow();
+        assertEquals(largePayload.toString(), response.getPayload().toString());
+        assertEquals(largePayload.getCompressionInfo(), response.getPayload().getCompressionInfo());
+        assertEquals(generation + 1, response.getGeneration());
+        assertEquals(checksums, response.getPayloadChecksums());
+        assertTrue(cache.get(cacheKeyDifferentMd5).isEmpty());
+
+        cache.update(config);
+        cache.update(config2);
+        statistics = cache.statistics();
+        assertEquals(2, statistics.payloads());
+        assertEquals(1, statistics.hits());
+        assertEquals(1, statistics.misses());
+        assertEquals(0.5, statistics.hitRate(), 1e-9);
+        assertEquals(payload.toString(), cache.get(cacheKey).orElseThrow().getPayload().toString());
+
+        cache.clear();
+        assertEquals(0, cache.statistics().payloads());
+        assertEquals(0, cache.statistics().payloadBytes());
+    }
+
 }
@@ -13,6 +13,7 @@ const Method methods[] = {
     {"getmode", "getMode", 0},
     {"invalidatecache", "invalidateCache", 0},
     {"cachefull", "listCachedConfigFull", 0},
+    {"cachestats", "cacheStatistics", 0},
     {"sources", "listSourceConnections", 0},
     {"setmode", "setMode", 1}, // { default | memorycache }
     {"updatesources", "updateSources", 1},
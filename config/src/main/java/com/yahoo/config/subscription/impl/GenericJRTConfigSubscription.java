@@ -6,8 +6,10 @@ import com.yahoo.vespa.config.RawConfig;
 import com.yahoo.vespa.config.TimingValues;
 import com.yahoo.vespa.config.protocol.DefContent;
 import com.yahoo.vespa.config.protocol.JRTClientConfigRequest;
+import com.yahoo.vespa.config.protocol.Payload;
 
 import java.util.List;
+import java.util.Optional;
 
 import static java.util.logging.Level.FINE;
 
@@ -74,6 +76,14 @@ public class GenericJRTConfigSubscription extends JRTConfigSubscription<RawConfi
         return getConfigState().getConfig();
     }
 
+    /** Returns the payload of the current config, as config sources may respond with a delta against it */
+    @Override
+    public Optional<Payload> deltaBase() {
+        RawConfig config = getConfigState().getConfig();
+        if (config == null || config.getPayload() == null || config.getPayloadChecksums().isEmpty()) return Optional.empty();
+        return Optional.of(config.getPayload());
+    }
+
     /**
      * The config definition schema
      *
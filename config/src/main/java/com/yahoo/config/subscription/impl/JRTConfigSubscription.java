@@ -217,6 +217,15 @@ public class JRTConfigSubscription<T extends ConfigInstance> extends ConfigSubsc
         return timingValues;
     }
 
+    /**
+     * Returns the payload of the config of this, if the config source may respond with a
+     * {@link com.yahoo.vespa.config.protocol.PayloadDelta} against it instead of the full payload.
+     * This is empty by default, as the config instances of this are not kept as payloads.
+     */
+    public Optional<Payload> deltaBase() {
+        return Optional.empty();
+    }
+
     // Used in integration tests
     @SuppressWarnings("UnusedDeclaration")
     public JRTConfigRequester requester() {
@@ -40,6 +40,10 @@ public final class JRTClientConfigRequestV3 implements JRTClientConfigRequest {
     protected final SlimeRequestData requestData;
     protected final Request request;
     private final SlimeResponseData responseData;
+    /** The payload of the request checksums, which the response may be a delta against */
+    private final Optional<Payload> deltaBase;
+    private Payload newPayload = null;
+    private boolean invalidDelta = false;
 
     protected JRTClientConfigRequestV3(ConfigKey<?> key,
                                        String hostname,
@@ -49,7 +53,8 @@ public final class JRTClientConfigRequestV3 implements JRTClientConfigRequest {
                                        long timeout,
                                        Trace trace,
                                        CompressionType compressionType,
-                                       Optional<VespaVersion> vespaVersion) {
+                                       Optional<VespaVersion> vespaVersion,
+                                       Optional<Payload> deltaBase) {
         Slime data = SlimeRequestData.encodeRequest(key,
                                                     hostname,
                                                     defSchema,
@@ -59,13 +64,15 @@ public final class JRTClientConfigRequestV3 implements JRTClientConfigRequest {
                                                     trace,
                                                     getProtocolVersion(),
                                                     compressionType,
-                                                    vespaVersion);
+                                                    vespaVersion,
+                                                    deltaBase.isPresent());
         Request jrtReq = new Request(getJRTMethodName());
         jrtReq.parameters().add(new StringValue(encodeAsUtf8String(data)));
 
         this.requestData = new SlimeRequestData(jrtReq, data);
         this.responseData = new SlimeResponseData(jrtReq);
         this.request = jrtReq;
+        this.deltaBase = deltaBase;
     }
 
     protected static String encodeAsUtf8String(Slime data) {
@@ -86,11 +93,26 @@ public final class JRTClientConfigRequestV3 implements JRTClientConfigRequest {
         return JRTMethods.checkV3ReturnTypes(request);
     }
 
+    /**
+     * Returns the payload of the response, which is the result of applying it to the payload of this if it is a delta.
+     * Payloads given by deltas are compressed as requested, like full payloads.
+     */
     @Override
     public Payload getNewPayload() {
+        if (newPayload == null)
+            newPayload = responseData.getResponseIsDelta() ? appliedDelta().withCompression(requestData.getCompressionType())
+                                                           : responsePayload();
+        return newPayload;
+    }
+
+    private Payload responsePayload() {
         CompressionInfo compressionInfo = getResponseData().getCompressionInfo();
-        Utf8Array payload = new Utf8Array(request.returnValues().get(1).asData());
-        return Payload.from(payload, compressionInfo);
+        return Payload.from(new Utf8Array(request.returnValues().get(1).asData()), compressionInfo);
+    }
+
+    /** Returns the uncompressed payload given by applying the delta in the response to the payload of this */
+    private Payload appliedDelta() {
+        return PayloadDelta.apply(deltaBase.orElseThrow(), responsePayload());
     }
 
     @Override
@@ -108,7 +130,15 @@ public final class JRTClientConfigRequestV3 implements JRTClientConfigRequest {
                 timeout,
                 Trace.createNew(),
                 requestData.getCompressionType(),
-                requestData.getVespaVersion());
+                requestData.getVespaVersion(),
+                nextDeltaBase());
+    }
+
+    /** Returns the payload the next request may get a delta against: The one of the response, if any */
+    private Optional<Payload> nextDeltaBase() {
+        if (deltaBase.isEmpty() || invalidDelta) return Optional.empty(); // Get the full payload after a delta has failed
+        if (isError()) return deltaBase;
+        return newConfigChecksums().equals(getRequestConfigChecksums()) ? deltaBase : Optional.of(getNewPayload());
     }
 
     public static <T extends ConfigInstance> JRTClientConfigRequest createFromSub(JRTConfigSubscription<T> sub,
@@ -116,15 +146,16 @@ public final class JRTClientConfigRequestV3 implements JRTClientConfigRequest {
                                                                                   CompressionType compressionType,
                                                                                   Optional<VespaVersion> vespaVersion) {
         ConfigSubscription.ConfigState<T> configState = sub.getConfigState();
-        return createWithParams(sub.getKey(),
-                                sub.getDefContent(),
-                                ConfigUtils.getCanonicalHostName(),
-                                configState.getChecksums(),
-                                configState.getGeneration(),
-                                sub.timingValues().getSubscribeTimeout(),
-                                trace,
-                                compressionType,
-                                vespaVersion);
+        return new JRTClientConfigRequestV3(sub.getKey(),
+                                            ConfigUtils.getCanonicalHostName(),
+                                            sub.getDefContent(),
+                                            configState.getChecksums(),
+                                            configState.getGeneration(),
+                                            sub.timingValues().getSubscribeTimeout(),
+                                            trace,
+                                            compressionType,
+                                            vespaVersion,
+                                            sub.deltaBase());
     }
 
     public static JRTClientConfigRequest createFromRaw(RawConfig config,
@@ -161,7 +192,8 @@ public final class JRTClientConfigRequestV3 implements JRTClientConfigRequest {
                                             serverTimeout,
                                             trace,
                                             compressionType,
-                                            vespaVersion);
+                                            vespaVersion,
+                                            Optional.empty());
     }
 
     @Override
@@ -246,7 +278,7 @@ public final class JRTClientConfigRequestV3 implements JRTClientConfigRequest {
 
     @Override
     public boolean isError() {
-        return request.isError();
+        return request.isError() || invalidDelta;
     }
 
     @Override
@@ -290,10 +322,37 @@ public final class JRTClientConfigRequestV3 implements JRTClientConfigRequest {
         } else if (!checkReturnTypes(request)) {
             log.warning("Invalid return types for config response: " + errorMessage());
             return false;
+        } else if (responseData.getResponseIsDelta() && ! validateDelta()) {
+            invalidDelta = true;
+            return false;
         }
         return true;
     }
 
+    /** Returns whether the delta in the response applies to the payload of this, and gives the payload of the response checksums */
+    private boolean validateDelta() {
+        if (deltaBase.isEmpty()) {
+            log.warning("Got a delta response for " + getConfigKey() + " without asking for one");
+            return false;
+        }
+        try {
+            Payload applied = appliedDelta();
+            PayloadChecksum expected = getNewChecksums().getForType(XXHASH64);
+            PayloadChecksum actual = PayloadChecksum.fromPayload(applied, XXHASH64); // Checksums are of uncompressed payloads
+            if (expected != null && expected.equals(actual)) {
+                newPayload = applied.withCompression(requestData.getCompressionType());
+                return true;
+            }
+
+            log.log(Level.INFO, "Payload from delta response for " + getConfigKey() + " has checksum " + actual +
+                                ", expected " + expected + ", will get the full payload");
+        } catch (RuntimeException e) {
+            log.log(Level.INFO, "Could not apply delta response for " + getConfigKey() + ": " + e.getMessage() +
+                                ", will get the full payload");
+        }
+        return false;
+    }
+
     @Override
     public boolean validateParameters() {
         int errorCode = RequestValidation.validateRequest(this);
@@ -39,6 +39,24 @@ public interface JRTServerConfigRequest extends JRTConfigRequest, GetConfigReque
      */
     void addOkResponse(Payload payload, long generation, boolean applyOnRestart, PayloadChecksums payloadChecksums);
 
+    /**
+     * Signal that the request was handled, with a delta against the payload the client has instead of the full payload.
+     * This must only be used when {@link #acceptsDelta()} is true.
+     *
+     * @param delta the {@link PayloadDelta} from the payload the client has to the payload it should receive.
+     * @param generation The config generation of the payload the client should receive.
+     * @param applyOnRestart true if this config should only be applied on the next restart,
+     *                       false if it should be applied right away
+     * @param payloadChecksums checksums of the payload the client should receive, not of the delta.
+     */
+    void addOkDeltaResponse(Payload delta, long generation, boolean applyOnRestart, PayloadChecksums payloadChecksums);
+
+    /**
+     * Returns whether the client accepts a {@link PayloadDelta} against the payload it has,
+     * as given by the checksums of the request.
+     */
+    boolean acceptsDelta();
+
     /**
      * Returns the md5 of the config definition in the request.
      *
@@ -71,6 +71,18 @@ public class JRTServerConfigRequestV3 implements JRTServerConfigRequest {
 
     @Override
     public void addOkResponse(Payload payload, long generation, boolean applyOnRestart, PayloadChecksums checksums) {
+        addOkResponse(payload, generation, applyOnRestart, checksums, false);
+    }
+
+    @Override
+    public void addOkDeltaResponse(Payload delta, long generation, boolean applyOnRestart, PayloadChecksums checksums) {
+        if ( ! acceptsDelta())
+            throw new IllegalStateException("Client does not accept a delta response for " + this);
+        addOkResponse(delta, generation, applyOnRestart, checksums, true);
+    }
+
+    private void addOkResponse(Payload payload, long generation, boolean applyOnRestart, PayloadChecksums checksums,
+                               boolean isDelta) {
         this.applyOnRestart = applyOnRestart;
         Payload responsePayload = payload.withCompression(getCompressionType());
         if (responsePayload == null)
@@ -85,6 +97,8 @@ public class JRTServerConfigRequestV3 implements JRTServerConfigRequest {
             addPayloadCheckSums(jsonGenerator, checksums);
             setResponseField(jsonGenerator, SlimeResponseData.RESPONSE_CONFIG_GENERATION, generation);
             setResponseField(jsonGenerator, SlimeResponseData.RESPONSE_APPLY_ON_RESTART, applyOnRestart);
+            if (isDelta)
+                setResponseField(jsonGenerator, SlimeResponseData.RESPONSE_DELTA, true);
             jsonGenerator.writeObjectFieldStart(SlimeResponseData.RESPONSE_COMPRESSION_INFO);
             responsePayload.getCompressionInfo().serialize(jsonGenerator);
             jsonGenerator.writeEndObject();
@@ -175,6 +189,9 @@ public class JRTServerConfigRequestV3 implements JRTServerConfigRequest {
 
     public PayloadChecksums getRequestConfigChecksums() { return requestData.getRequestConfigChecksums(); }
 
+    @Override
+    public boolean acceptsDelta() { return requestData.getAcceptDelta(); }
+
     private void addErrorResponse(int errorCode) {
         addErrorResponse(errorCode, ErrorCode.getName(errorCode));
     }
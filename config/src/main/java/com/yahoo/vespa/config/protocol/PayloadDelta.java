@@ -0,0 +1,215 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.config.protocol;
+
+import com.yahoo.slime.ArrayInserter;
+import com.yahoo.slime.ArrayTraverser;
+import com.yahoo.slime.Cursor;
+import com.yahoo.slime.Injector;
+import com.yahoo.slime.Inserter;
+import com.yahoo.slime.Inspector;
+import com.yahoo.slime.JsonDecoder;
+import com.yahoo.slime.JsonFormat;
+import com.yahoo.slime.ObjectInserter;
+import com.yahoo.slime.ObjectTraverser;
+import com.yahoo.slime.Slime;
+import com.yahoo.slime.SlimeInserter;
+import com.yahoo.slime.Type;
+import com.yahoo.text.Utf8Array;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The structural difference between two config payloads, which is sent instead of the new payload
+ * to clients which hold the old one, and ask for this.
+ * <p>
+ * A delta has the same structure as the payload it applies to, where each value is one of
+ * <ul>
+ *     <li><code>{}</code>: The value is unchanged.</li>
+ *     <li><code>{"=": value}</code>: The value is replaced by the given one.</li>
+ *     <li><code>{"o": {name: delta, ...}, "r": [name, ...], "f": [name, ...]}</code>: The fields of an object
+ *         are changed by the given deltas, and the fields in "r" are removed. "f" is the new order of the fields,
+ *         and is present only when fields are added.</li>
+ *     <li><code>{"a": [[index, delta], ...], "n": length}</code>: The entries of an array at the given indices are
+ *         changed by the given deltas, and the array gets the given length.</li>
+ * </ul>
+ * As the order of fields and entries is kept, applying a delta gives the exact payload the delta was made from,
+ * which clients verify using the checksums of the response.
+ */
+public class PayloadDelta {
+
+    private static final String REPLACE = "=";
+    private static final String OBJECT = "o";
+    private static final String REMOVED = "r";
+    private static final String FIELD_ORDER = "f";
+    private static final String ARRAY = "a";
+    private static final String LENGTH = "n";
+
+    private static final Injector injector = new Injector();
+
+    private PayloadDelta() {}
+
+    /** Returns the uncompressed delta which turns the first payload into the second */
+    public static Payload diff(Payload from, Payload to) {
+        return toPayload(diff(toSlime(from).get(), toSlime(to).get()));
+    }
+
+    /** Returns the uncompressed payload given by applying the given delta to the given base payload */
+    public static Payload apply(Payload base, Payload delta) {
+        return toPayload(apply(toSlime(base).get(), toSlime(delta).get()));
+    }
+
+    /** Returns the delta which turns the first value into the second */
+    public static Slime diff(Inspector from, Inspector to) {
+        Slime delta = new Slime();
+        diff(from, to, delta.setObject());
+        return delta;
+    }
+
+    /**
+     * Returns the value given by applying the given delta to the given base value
+     *
+     * @throws IllegalArgumentException if the delta does not apply to the given value
+     */
+    public static Slime apply(Inspector base, Inspector delta) {
+        Slime result = new Slime();
+        apply(base, delta, new SlimeInserter(result));
+        return result;
+    }
+
+    private static void diff(Inspector from, Inspector to, Cursor delta) {
+        if (from.equalTo(to)) return;
+
+        if (from.type() == Type.OBJECT && to.type() == Type.OBJECT)
+            diffObject(from, to, delta);
+        else if (from.type() == Type.ARRAY && to.type() == Type.ARRAY)
+            diffArray(from, to, delta);
+        else
+            injector.inject(to, new ObjectInserter(delta, REPLACE));
+    }
+
+    private static void diffObject(Inspector from, Inspector to, Cursor delta) {
+        Cursor fields = delta.setObject(OBJECT);
+        List<String> order = new ArrayList<>();
+        boolean[] added = { false };
+        to.traverse((ObjectTraverser) (name, value) -> {
+            order.add(name);
+            Inspector old = from.field(name);
+            if ( ! old.valid()) {
+                added[0] = true;
+                injector.inject(value, new ObjectInserter(fields.setObject(name), REPLACE));
+            }
+            else if ( ! old.equalTo(value)) {
+                diff(old, value, fields.setObject(name));
+            }
+        });
+        List<String> removed = new ArrayList<>();
+        from.traverse((ObjectTraverser) (name, value) -> {
+            if ( ! to.field(name).valid())
+                removed.add(name);
+        });
+        if ( ! removed.isEmpty()) {
+            Cursor removedArray = delta.setArray(REMOVED);
+            removed.forEach(removedArray::addString);
+        }
+        if (added[0]) {
+            Cursor orderArray = delta.setArray(FIELD_ORDER);
+            order.forEach(orderArray::addString);
+        }
+    }
+
+    private static void diffArray(Inspector from, Inspector to, Cursor delta) {
+        Cursor entries = delta.setArray(ARRAY);
+        to.traverse((ArrayTraverser) (index, value) -> {
+            Inspector old = from.entry(index);
+            if ( ! old.valid()) {
+                Cursor entry = entries.addArray();
+                entry.addLong(index);
+                injector.inject(value, new ObjectInserter(entry.addObject(), REPLACE));
+            }
+            else if ( ! old.equalTo(value)) {
+                Cursor entry = entries.addArray();
+                entry.addLong(index);
+                diff(old, value, entry.addObject());
+            }
+        });
+        delta.setLong(LENGTH, to.entries());
+    }
+
+    private static void apply(Inspector base, Inspector delta, Inserter inserter) {
+        if (delta.type() != Type.OBJECT)
+            throw new IllegalArgumentException("Expected a delta object, got " + delta.type());
+
+        if (delta.field(REPLACE).valid())
+            injector.inject(delta.field(REPLACE), inserter);
+        else if (delta.field(OBJECT).valid())
+            applyObject(base, delta, inserter.insertOBJECT());
+        else if (delta.field(ARRAY).valid())
+            applyArray(base, delta, inserter.insertARRAY());
+        else if (base.valid())
+            injector.inject(base, inserter);
+        else
+            throw new IllegalArgumentException("Delta refers to a value which is not present");
+    }
+
+    private static void applyObject(Inspector base, Inspector delta, Cursor object) {
+        if (base.type() != Type.OBJECT)
+            throw new IllegalArgumentException("Object delta applied to " + base.type());
+
+        Set<String> removed = new HashSet<>();
+        delta.field(REMOVED).traverse((ArrayTraverser) (__, name) -> removed.add(name.asString()));
+        List<String> order = new ArrayList<>();
+        if (delta.field(FIELD_ORDER).valid())
+            delta.field(FIELD_ORDER).traverse((ArrayTraverser) (__, name) -> order.add(name.asString()));
+        else
+            base.traverse((ObjectTraverser) (name, __) -> order.add(name));
+
+        Inspector fields = delta.field(OBJECT);
+        for (String name : order) {
+            if (removed.contains(name)) continue;
+            Inspector fieldDelta = fields.field(name);
+            if (fieldDelta.valid())
+                apply(base.field(name), fieldDelta, new ObjectInserter(object, name));
+            else if (base.field(name).valid())
+                injector.inject(base.field(name), new ObjectInserter(object, name));
+            else
+                throw new IllegalArgumentException("Delta refers to field '" + name + "' which is not present");
+        }
+    }
+
+    private static void applyArray(Inspector base, Inspector delta, Cursor array) {
+        if (base.type() != Type.ARRAY)
+            throw new IllegalArgumentException("Array delta applied to " + base.type());
+
+        Map<Integer, Inspector> entryDeltas = new HashMap<>();
+        delta.field(ARRAY).traverse((ArrayTraverser) (__, entry) -> entryDeltas.put((int) entry.entry(0).asLong(), entry.entry(1)));
+        long length = delta.field(LENGTH).asLong();
+        ArrayInserter inserter = new ArrayInserter(array);
+        for (int i = 0; i < length; i++) {
+            Inspector entryDelta = entryDeltas.get(i);
+            if (entryDelta != null)
+                apply(base.entry(i), entryDelta, inserter);
+            else if (base.entry(i).valid())
+                injector.inject(base.entry(i), inserter);
+            else
+                throw new IllegalArgumentException("Delta refers to array entry " + i + " which is not present");
+        }
+    }
+
+    private static Slime toSlime(Payload payload) {
+        ByteBuffer json = payload.withCompression(CompressionType.UNCOMPRESSED).getData().wrap();
+        byte[] bytes = new byte[json.remaining()];
+        json.get(bytes);
+        return new JsonDecoder().decodeOrThrow(new Slime(), bytes);
+    }
+
+    private static Payload toPayload(Slime slime) {
+        return Payload.from(new Utf8Array(JsonFormat.toJsonBytes(slime)));
+    }
+
+}
@@ -127,6 +127,46 @@ public class JRTConfigRequestV3Test {
         assertTrue(clientReq.hasUpdatedGeneration());
     }
 
+    @Test
+    public void delta_response_gives_new_payload() {
+        Payload base = createPayload("bar");
+        Payload payload = createPayload("baz");
+        JRTClientConfigRequest client = createDeltaReq(base);
+        JRTServerConfigRequest server = createReq(client.getRequest());
+        assertTrue(server.acceptsDelta());
+        assertFalse(serverReq.acceptsDelta());
+
+        server.addOkDeltaResponse(PayloadDelta.diff(base, payload), 4L, false, PayloadChecksums.fromPayload(payload));
+        assertTrue(client.validateResponse());
+        assertFalse(client.isError());
+        assertThat(client.getNewPayload().getCompressionInfo().getCompressionType(), is(CompressionType.LZ4));
+        assertThat(client.getNewPayload().withCompression(CompressionType.UNCOMPRESSED).getData().toString(), is(payload.getData().toString()));
+        assertThat(client.getNewChecksums(), is(PayloadChecksums.fromPayload(payload)));
+        assertThat(client.getNewGeneration(), is(4L));
+
+        JRTServerConfigRequest next = createReq(client.nextRequest(6).getRequest());
+        assertTrue(next.acceptsDelta());
+        assertThat(next.getRequestConfigChecksums(), is(PayloadChecksums.fromPayload(payload)));
+    }
+
+    @Test
+    public void invalid_delta_response_gives_full_payload_next() {
+        Payload base = createPayload("bar");
+        Payload payload = createPayload("baz");
+        JRTClientConfigRequest client = createDeltaReq(base);
+        JRTServerConfigRequest server = createReq(client.getRequest());
+
+        // The checksums do not match the payload given by the delta
+        server.addOkDeltaResponse(PayloadDelta.diff(base, payload), 4L, false, PayloadChecksums.fromPayload(createPayload("qux")));
+        assertFalse(client.validateResponse());
+        assertTrue(client.isError());
+
+        JRTServerConfigRequest next = createReq(client.nextRequest(6).getRequest());
+        assertFalse(next.acceptsDelta());
+        assertThat(next.getRequestConfigChecksums(), is(client.getRequestConfigChecksums()));
+        assertThat(next.getRequestGeneration(), is(client.getRequestGeneration()));
+    }
+
     @Test
     public void error_response_adds_common_elements() {
         serverReq.addErrorResponse(ErrorCode.APPLICATION_NOT_LOADED, ErrorCode.getName(ErrorCode.APPLICATION_NOT_LOADED));
@@ -273,6 +313,19 @@ public class JRTConfigRequestV3Test {
                                                          vespaVersion);
     }
 
+    private JRTClientConfigRequest createDeltaReq(Payload base) {
+        return new JRTClientConfigRequestV3(ConfigKey.createFull(defName, configId, defNamespace),
+                                            hostname,
+                                            DefContent.fromList(List.of(configDefinition)),
+                                            PayloadChecksums.fromPayload(base),
+                                            currentGeneration,
+                                            timeout,
+                                            Trace.createNew(),
+                                            CompressionType.LZ4,
+                                            vespaVersion,
+                                            Optional.of(base));
+    }
+
     private JRTServerConfigRequest createReq(Request request) {
         return JRTServerConfigRequestV3.createFromRequest(request);
     }
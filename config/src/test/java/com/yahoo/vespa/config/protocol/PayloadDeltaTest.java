@@ -0,0 +1,90 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.config.protocol;
+
+import com.yahoo.slime.JsonDecoder;
+import com.yahoo.slime.Slime;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+public class PayloadDeltaTest {
+
+    @Test
+    public void unchangedPayloadGivesEmptyDelta() {
+        String json = "{\"a\":1,\"b\":[1,2,3],\"c\":{\"d\":\"e\"}}";
+        assertDelta("{}", json, json);
+    }
+
+    @Test
+    public void changedValuesAreReplaced() {
+        assertDelta("{\"o\":{\"a\":{\"=\":2}}}",
+                    "{\"a\":1,\"b\":\"same\"}",
+                    "{\"a\":2,\"b\":\"same\"}");
+        assertDelta("{\"o\":{\"a\":{\"=\":[1]}}}",
+                    "{\"a\":{\"b\":1}}",
+                    "{\"a\":[1]}");
+    }
+
+    @Test
+    public void fieldsAreAddedRemovedAndKeepTheirOrder() {
+        assertDelta("{\"o\":{\"x\":{\"=\":0}},\"r\":[\"b\"],\"f\":[\"x\",\"a\",\"c\"]}",
+                    "{\"a\":1,\"b\":2,\"c\":3}",
+                    "{\"x\":0,\"a\":1,\"c\":3}");
+        assertDelta("{\"o\":{},\"r\":[\"a\"]}",
+                    "{\"a\":1,\"b\":2}",
+                    "{\"b\":2}");
+        assertDelta("{\"o\":{\"a\":{\"o\":{\"b\":{\"o\":{\"c\":{\"=\":\"new\"}}}}}}}",
+                    "{\"a\":{\"b\":{\"c\":\"old\",\"d\":[1,2]}}}",
+                    "{\"a\":{\"b\":{\"c\":\"new\",\"d\":[1,2]}}}");
+    }
+
+    @Test
+    public void arraysGrowAndShrink() {
+        assertDelta("{\"a\":[[3,{\"=\":4}]],\"n\":4}", "[1,2,3]", "[1,2,3,4]");
+        assertDelta("{\"a\":[],\"n\":2}", "[1,2,3]", "[1,2]");
+        assertDelta("{\"a\":[[1,{\"o\":{\"v\":{\"=\":\"c\"}}}]],\"n\":2}",
+                    "[{\"v\":\"a\"},{\"v\":\"b\"}]",
+                    "[{\"v\":\"a\"},{\"v\":\"c\"}]");
+    }
+
+    @Test
+    public void largePayloadsGiveSmallDeltas() {
+        StringBuilder from = new StringBuilder("{\"values\":[");
+        StringBuilder to = new StringBuilder("{\"values\":[");
+        for (int i = 0; i < 1000; i++) {
+            String separator = i == 0 ? "" : ",";
+            from.append(separator).append("{\"name\":\"value-").append(i).append("\",\"weight\":").append(i).append("}");
+            to.append(separator).append("{\"name\":\"value-").append(i).append("\",\"weight\":").append(i == 500 ? -1 : i).append("}");
+        }
+        from.append("]}");
+        to.append("]}");
+
+        Payload delta = PayloadDelta.diff(Payload.from(from.toString()), Payload.from(to.toString()));
+        assertEquals("{\"o\":{\"values\":{\"a\":[[500,{\"o\":{\"weight\":{\"=\":-1}}}]],\"n\":1000}}}", delta.toString());
+        assertEquals(to.toString(), PayloadDelta.apply(Payload.from(from.toString()), delta).toString());
+    }
+
+    @Test
+    public void deltasWhichDoNotApplyAreRejected() {
+        assertThrows(IllegalArgumentException.class,
+                     () -> PayloadDelta.apply(slime("[1,2]").get(), slime("{\"o\":{}}").get()));
+        assertThrows(IllegalArgumentException.class,
+                     () -> PayloadDelta.apply(slime("{\"a\":1}").get(), slime("{\"o\":{},\"f\":[\"a\",\"b\"]}").get()));
+        assertThrows(IllegalArgumentException.class,
+                     () -> PayloadDelta.apply(slime("[1,2]").get(), slime("{\"a\":[],\"n\":3}").get()));
+    }
+
+    private static void assertDelta(String expectedDelta, String from, String to) {
+        Payload delta = PayloadDelta.diff(Payload.from(from), Payload.from(to));
+        assertEquals(expectedDelta, delta.toString());
+        assertEquals(to, PayloadDelta.apply(Payload.from(from), delta).toString());
+    }
+
+    private static Slime slime(String json) {
+        return new JsonDecoder().decodeOrThrow(new Slime(), json.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
@@ -59,8 +59,18 @@ public class ZooKeeperDeployer {
     private final Client client;
 
     public ZooKeeperDeployer(Curator curator, DeployLogger logger, ApplicationId applicationId, long sessionId) {
+        this(curator, logger, applicationId, sessionId, false);
+    }
+
+    /**
+     * @param compressLargeData whether to compress large files and file registries, and split them into chunks,
+     *                          see {@link Curator#setLarge}. Such data can only be read by config servers which
+     *                          read it with {@link Curator#getLarge}
+     */
+    public ZooKeeperDeployer(Curator curator, DeployLogger logger, ApplicationId applicationId, long sessionId,
+                             boolean compressLargeData) {
         Path sessionPath = getSessionPath(applicationId.tenant(), sessionId);
-        this.client = new Client(curator, logger, sessionPath);
+        this.client = new Client(curator, logger, sessionPath, compressLargeData);
     }
 
     /**
@@ -93,13 +103,19 @@ public class ZooKeeperDeployer {
         private final Curator curator;
         private final DeployLogger logger;
         private final Path sessionPath; // session id
+        private final boolean compressLargeData;
 
         private static final ApplicationFile.PathFilter xmlFilter = path -> path.getName().endsWith(".xml");
 
         public Client(Curator curator, DeployLogger logger, Path sessionPath) {
+            this(curator, logger, sessionPath, false);
+        }
+
+        public Client(Curator curator, DeployLogger logger, Path sessionPath, boolean compressLargeData) {
             this.curator = curator;
             this.logger = logger;
             this.sessionPath = sessionPath;
+            this.compressLargeData = compressLargeData;
         }
 
         /**
@@ -147,7 +163,7 @@ public class ZooKeeperDeployer {
             writeDir(app.getFile(ApplicationPackage.SEARCH_DEFINITIONS_DIR), zkPath);
             writeDir(app.getFile(ApplicationPackage.SCHEMAS_DIR), zkPath);
             for (NamedReader sd : schemas) {
-                curator.set(zkPath.append(sd.getName()), Utf8.toBytes(com.yahoo.io.IOUtils.readAll(sd.getReader())));
+                set(zkPath.append(sd.getName()), Utf8.toBytes(com.yahoo.io.IOUtils.readAll(sd.getReader())));
                 sd.getReader().close();
             }
         }
@@ -235,7 +251,7 @@ public class ZooKeeperDeployer {
             try (InputStream inputStream = file.createInputStream()) {
                 inputStream.transferTo(baos);
                 baos.flush();
-                curator.set(zkPath.append(file.getPath().getName()), baos.toByteArray());
+                set(zkPath.append(file.getPath().getName()), baos.toByteArray());
             }
         }
 
@@ -272,8 +288,8 @@ public class ZooKeeperDeployer {
 
         private void write(Version vespaVersion, FileRegistry fileRegistry) {
             String exportedRegistry = FileDBRegistry.exportRegistry(fileRegistry);
-            curator.set(getZooKeeperAppPath(ZKApplicationPackage.fileRegistryNode).append(vespaVersion.toFullString()),
-                        Utf8.toBytes(exportedRegistry));
+            set(getZooKeeperAppPath(ZKApplicationPackage.fileRegistryNode).append(vespaVersion.toFullString()),
+                Utf8.toBytes(exportedRegistry));
         }
 
         /**
@@ -286,6 +302,13 @@ public class ZooKeeperDeployer {
             curator.set(getZooKeeperAppPath(META_ZK_PATH), metaData.asJsonBytes());
         }
 
+        private void set(Path path, byte[] data) {
+            if (compressLargeData)
+                curator.setLarge(path, data);
+            else if (curator.set(path, data).getNumChildren() > 0) // Files have no children, except chunks of earlier data
+                curator.deleteLargeDataChunks(path);
+        }
+
         void cleanupZooKeeper() {
             try {
                 List.of(DEFCONFIGS_ZK_SUBPATH, USER_DEFCONFIGS_ZK_SUBPATH, USERAPP_ZK_SUBPATH)
@@ -318,8 +341,7 @@ public class ZooKeeperDeployer {
         }
 
         public void write(AllocatedHosts hosts) throws IOException {
-            curator.set(sessionPath.append(ZKApplicationPackage.allocatedHostsNode),
-                        AllocatedHostsSerializer.toJson(hosts));
+            set(sessionPath.append(ZKApplicationPackage.allocatedHostsNode), AllocatedHostsSerializer.toJson(hosts));
         }
 
         public void write(Map<Version, FileRegistry> fileRegistryMap) {
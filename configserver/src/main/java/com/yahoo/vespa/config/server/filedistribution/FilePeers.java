@@ -0,0 +1,142 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.config.server.filedistribution;
+
+import com.yahoo.config.FileReference;
+import com.yahoo.jrt.Spec;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The nodes which have downloaded file references and serve them to other nodes, as reported by the nodes.
+ * Each peer is handed out to at most {@link #maxDownloadersPerPeer} downloaders within {@link #handoutPeriod},
+ * so each node serves a bounded number of others, which in turn serve others when they are done.
+ * Nodes which are handed out no peers download from config servers, which are the root of this tree.
+ * Peers only serve downloaders they were handed out to, as verified with {@link #isHandedOut}.
+ */
+public class FilePeers {
+
+    /** The max number of peers handed out to each downloader */
+    static final int maxPeersPerDownloader = 3;
+
+    /** The max number of downloaders each peer is handed out to within the handout period */
+    static final int maxDownloadersPerPeer = 2;
+
+    /** The time a download from a peer is assumed to take at most */
+    static final Duration handoutPeriod = Duration.ofMinutes(1);
+
+    /** Peers not reporting a file reference again within this time are assumed to have removed it */
+    static final Duration peerTtl = Duration.ofHours(6);
+
+    /** The max number of peers kept for each file reference */
+    static final int maxPeersPerFileReference = 1000;
+
+    private final Clock clock;
+    private final Map<FileReference, Map<String, Peer>> peers = new HashMap<>();
+    private Instant lastExpiry = Instant.EPOCH;
+
+    public FilePeers() { this(Clock.systemUTC()); }
+
+    FilePeers(Clock clock) { this.clock = clock; }
+
+    /** Adds a peer having the given file reference */
+    public synchronized void add(FileReference fileReference, String spec) {
+        Instant now = clock.instant();
+        if (now.isAfter(lastExpiry.plus(handoutPeriod)))
+            expire(now);
+        Map<String, Peer> peersOfFile = peers.computeIfAbsent(fileReference, __ -> new LinkedHashMap<>());
+        Peer peer = peersOfFile.get(spec);
+        if (peer != null)
+            peer.added = now;
+        else if (peersOfFile.size() < maxPeersPerFileReference)
+            peersOfFile.put(spec, new Peer(spec, now));
+    }
+
+    /**
+     * Returns peers having the given file reference, which are not on the given host, and which have been
+     * handed out to the fewest other downloaders recently, or an empty list if all of them are busy.
+     */
+    public synchronized List<String> get(FileReference fileReference, String downloaderHost) {
+        Map<String, Peer> peersOfFile = peers.get(fileReference);
+        if (peersOfFile == null) return List.of();
+
+        Instant now = clock.instant();
+        List<Peer> candidates = new ArrayList<>();
+        for (Peer peer : peersOfFile.values()) {
+            if (peer.added.isBefore(now.minus(peerTtl))) continue;
+            if (peer.host.equals(downloaderHost)) continue;
+            if (peer.handouts(now) >= maxDownloadersPerPeer) continue;
+            candidates.add(peer);
+        }
+        candidates.sort(Comparator.comparingInt(peer -> peer.handouts(now))); // Stable, so older peers are preferred
+
+        List<String> handedOut = new ArrayList<>();
+        for (Peer peer : candidates.subList(0, Math.min(maxPeersPerDownloader, candidates.size()))) {
+            peer.handedOut.add(new Handout(now, downloaderHost));
+            handedOut.add(peer.spec);
+        }
+        return handedOut;
+    }
+
+    /**
+     * Returns whether a peer on the given host was handed out to the given downloader host for the given file
+     * reference within the handout period, such that the peer may serve the file reference to it.
+     */
+    public synchronized boolean isHandedOut(FileReference fileReference, String peerHost, String downloaderHost) {
+        Map<String, Peer> peersOfFile = peers.get(fileReference);
+        if (peersOfFile == null) return false;
+
+        Instant now = clock.instant();
+        for (Peer peer : peersOfFile.values()) {
+            if ( ! peer.host.equals(peerHost)) continue;
+            peer.handouts(now); // expires old handouts
+            if (peer.handedOut.stream().anyMatch(handout -> handout.downloaderHost.equals(downloaderHost)))
+                return true;
+        }
+        return false;
+    }
+
+    private void expire(Instant now) {
+        lastExpiry = now;
+        for (var iterator = peers.values().iterator(); iterator.hasNext(); ) {
+            Map<String, Peer> peersOfFile = iterator.next();
+            peersOfFile.values().removeIf(peer -> peer.added.isBefore(now.minus(peerTtl)));
+            if (peersOfFile.isEmpty())
+                iterator.remove();
+        }
+    }
+
+    private static class Peer {
+
+        private final String spec;
+        private final String host;
+        private final Deque<Handout> handedOut = new ArrayDeque<>();
+        private Instant added;
+
+        Peer(String spec, Instant added) {
+            this.spec = spec;
+            this.host = new Spec(spec).host();
+            this.added = added;
+        }
+
+        /** Returns the number of times this is handed out within the handout period */
+        int handouts(Instant now) {
+            while ( ! handedOut.isEmpty() && handedOut.peekFirst().at().isBefore(now.minus(handoutPeriod)))
+                handedOut.removeFirst();
+            return handedOut.size();
+        }
+
+    }
+
+    private record Handout(Instant at, String downloaderHost) {}
+
+}
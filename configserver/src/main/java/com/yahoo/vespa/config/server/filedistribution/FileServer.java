@@ -6,6 +6,8 @@ import com.yahoo.component.annotation.Inject;
 import com.yahoo.concurrent.DaemonThreadFactory;
 import com.yahoo.config.FileReference;
 import com.yahoo.config.subscription.ConfigSourceSet;
+import com.yahoo.jrt.DataArray;
+import com.yahoo.jrt.DataValue;
 import com.yahoo.jrt.Int32Value;
 import com.yahoo.jrt.Request;
 import com.yahoo.jrt.StringValue;
@@ -15,12 +17,18 @@ import com.yahoo.vespa.config.ConnectionPool;
 import com.yahoo.vespa.filedistribution.FileApiErrorCodes;
 import com.yahoo.vespa.filedistribution.FileDistributionConnectionPool;
 import com.yahoo.vespa.filedistribution.FileDownloader;
+import com.yahoo.vespa.filedistribution.FileReferenceChunks;
 import com.yahoo.vespa.filedistribution.FileReferenceCompressor;
 import com.yahoo.vespa.filedistribution.FileReferenceData;
 import com.yahoo.vespa.filedistribution.FileReferenceDownload;
+import com.yahoo.vespa.filedistribution.FileReferenceParts;
+import com.yahoo.vespa.filedistribution.FileReferencePeers;
 import com.yahoo.vespa.filedistribution.LazyFileReferenceData;
 import com.yahoo.vespa.filedistribution.LazyTemporaryStorageFileReferenceData;
+import com.yahoo.vespa.flags.BooleanFlag;
 import com.yahoo.vespa.flags.FlagSource;
+import com.yahoo.vespa.flags.Flags;
+import com.yahoo.yolean.Exceptions;
 
 import java.io.File;
 import java.io.IOException;
@@ -30,11 +38,18 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -63,11 +78,34 @@ public class FileServer {
     private static final List<CompressionType> compressionTypesToServe = List.of(zstd, lz4, gzip, none);
     private static final String tempFilereferencedataPrefix = "filereferencedata";
     private static final Path tempFilereferencedataDir = Paths.get(System.getProperty("java.io.tmpdir"));
+    private static final int maxCachedChunkLists = 20;
+    private static final int maxChunkListThreads = 2;
+    private static final int maxQueuedChunkLists = 100;
+    private static final int maxCachedFileHashes = 1000;
 
     private final FileDirectory fileDirectory;
     private final ThreadPoolExecutor executor;
     private final FileDownloader downloader; // downloads files from other config servers
     private final List<CompressionType> compressionTypes; // compression types to use, in preferred order
+    private final FilePeers peers = new FilePeers(); // nodes serving file references to other nodes
+    private final BooleanFlag fileDistributionFromPeers;
+    // Creating chunk lists and file hashes reads all content, so this is kept off the executor serving files
+    private final ThreadPoolExecutor chunkListExecutor =
+            new ThreadPoolExecutor(maxChunkListThreads, maxChunkListThreads, 0L, TimeUnit.MILLISECONDS,
+                                   new LinkedBlockingQueue<>(maxQueuedChunkLists), new DaemonThreadFactory("file-server-chunk-lists-"));
+    private final Map<FileReference, CompletableFuture<FileReferenceChunks>> chunks = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<FileReference, CompletableFuture<FileReferenceChunks>> eldest) {
+            return size() > maxCachedChunkLists;
+        }
+    };
+
+    private final Map<FileReference, CompletableFuture<Long>> fileHashes = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<FileReference, CompletableFuture<Long>> eldest) {
+            return size() > maxCachedFileHashes;
+        }
+    };
 
     public static class ReplayStatus {
         private final int code;
@@ -90,7 +128,8 @@ public class FileServer {
     public FileServer(ConfigserverConfig configserverConfig, FlagSource flagSource, FileDirectory fileDirectory) {
         this(createFileDownloader(getOtherConfigServersInCluster(configserverConfig)),
              compressionTypesToServe,
-             fileDirectory);
+             fileDirectory,
+             flagSource);
         // Clean up temporary files from previous runs (e.g. if JVM was killed)
         try (var files = uncheck(() -> Files.list(tempFilereferencedataDir))) {
             files.filter(path -> path.toFile().isFile())
@@ -99,12 +138,14 @@ public class FileServer {
         }
     }
 
-    FileServer(FileDownloader fileDownloader, List<CompressionType> compressionTypes, FileDirectory fileDirectory) {
+    FileServer(FileDownloader fileDownloader, List<CompressionType> compressionTypes, FileDirectory fileDirectory,
+               FlagSource flagSource) {
         this.downloader = fileDownloader;
         this.fileDirectory = fileDirectory;
         this.executor = (ThreadPoolExecutor) Executors.newFixedThreadPool(Math.max(8, Runtime.getRuntime().availableProcessors()),
                                                                           new DaemonThreadFactory("file-server-"));
         this.compressionTypes = compressionTypes;
+        this.fileDistributionFromPeers = Flags.FILE_DISTRIBUTION_FROM_PEERS.bindTo(flagSource);
     }
 
     boolean hasFile(String fileReference) {
@@ -160,12 +201,22 @@ public class FileServer {
                           Set<CompressionType> acceptedCompressionTypes,
                           Request request,
                           Receiver receiver) {
-        log.log(FINE, () -> "Received request for " + fileReference + " from " + request.target().peerSpec().host() +
+        serveFile(fileReference, downloadFromOtherSourceIfNotFound, acceptedCompressionTypes, FileReferenceParts.all(), request, receiver);
+    }
+
+    /** Serves the given parts of a file reference, where the receiver is responsible for sending only those parts */
+    public void serveFile(FileReference fileReference,
+                          boolean downloadFromOtherSourceIfNotFound,
+                          Set<CompressionType> acceptedCompressionTypes,
+                          FileReferenceParts parts,
+                          Request request,
+                          Receiver receiver) {
+        log.log(FINE, () -> "Received request for " + fileReference + " (" + parts + ") from " + request.target().peerSpec().host() +
                 ", download from other source: " + downloadFromOtherSourceIfNotFound);
         String client = request.target().toString();
         log.log(FINE, executor.getActiveCount() + " out of " + executor.getMaximumPoolSize() + " threads are active");
         executor.execute(() -> {
-            var result = serveFileInternal(fileReference, downloadFromOtherSourceIfNotFound, client, receiver, acceptedCompressionTypes);
+            var result = serveFileInternal(fileReference, downloadFromOtherSourceIfNotFound, client, receiver, acceptedCompressionTypes, parts);
             request.returnValues()
                    .add(new Int32Value(result.code()))
                    .add(new StringValue(result.description()));
@@ -178,11 +229,17 @@ public class FileServer {
                                                 boolean downloadFromOtherSourceIfNotFound,
                                                 String client,
                                                 Receiver receiver,
-                                                Set<CompressionType> acceptedCompressionTypes) {
+                                                Set<CompressionType> acceptedCompressionTypes,
+                                                FileReferenceParts parts) {
         try {
             var fileReferenceDownload = new FileReferenceDownload(fileReference, client, downloadFromOtherSourceIfNotFound);
             var file = getFileDownloadIfNeeded(fileReferenceDownload);
             if (file.isEmpty()) return NOT_FOUND;
+            // Directories are compressed and sent as one stripe, so avoid compressing when no parts are selected
+            if (file.get().isDirectory() ? parts.stripe() > 0 : ! parts.includesAny(file.get().length(), Type.file)) {
+                log.log(FINE, () -> "No parts of " + fileReference + " to send to " + client + " for " + parts);
+                return OK;
+            }
 
             startFileServing(fileReference, file.get(), receiver, acceptedCompressionTypes);
         } catch (Exception e) {
@@ -193,6 +250,109 @@ public class FileServer {
         return OK;
     }
 
+    /**
+     * Returns the chunk list of a file reference to the given request, see {@link FileReferenceChunks},
+     * if the requester has an earlier version of it, i.e., a file with the same name
+     */
+    public void serveChunkList(FileReference fileReference, List<String> localNames, Request request) {
+        Optional<File> file = fileDirectory.getFile(fileReference);
+        if (file.isEmpty() || ! file.get().exists() || ! localNames.contains(file.get().getName())) {
+            returnChunkList(request, NOT_FOUND, new byte[0]);
+            return;
+        }
+        chunks(fileReference, file.get()).whenComplete((chunks, e) -> {
+            if (e != null) {
+                log.warning("Failed creating chunk list of " + fileReference + " for " + request.target() + ": " + Exceptions.toMessageString(e));
+                returnChunkList(request, TRANSFER_FAILED, new byte[0]);
+            }
+            else {
+                returnChunkList(request, OK, chunks.toBytes());
+            }
+        });
+    }
+
+    private static void returnChunkList(Request request, FileApiErrorCodes result, byte[] chunks) {
+        request.returnValues().add(new Int32Value(result.code())).add(new DataValue(chunks));
+        request.returnRequest();
+    }
+
+    /** Returns the chunks with the given hashes of a file reference to the given request */
+    public void serveChunks(FileReference fileReference, byte[][] hashes, Request request) {
+        Optional<File> file = fileDirectory.getFile(fileReference);
+        if (file.isEmpty() || ! file.get().exists()) {
+            returnChunks(request, NOT_FOUND, new byte[0][]);
+            return;
+        }
+        chunks(fileReference, file.get()).whenCompleteAsync((chunks, e) -> {
+            if (e != null) {
+                log.warning("Failed creating chunk list of " + fileReference + " for " + request.target() + ": " + Exceptions.toMessageString(e));
+                returnChunks(request, TRANSFER_FAILED, new byte[0][]);
+                return;
+            }
+            FileApiErrorCodes result = OK;
+            byte[][] contents = new byte[hashes.length][];
+            try {
+                long size = 0;
+                for (int i = 0; i < hashes.length && result == OK; i++) {
+                    Optional<byte[]> content = chunks.read(file.get(), hashes[i]);
+                    if (content.isEmpty())
+                        result = NOT_FOUND;
+                    else if ((size += content.get().length) > FileReferenceChunks.maxBytesPerRequest)
+                        result = TRANSFER_FAILED;
+                    else
+                        contents[i] = content.get();
+                }
+            } catch (Exception ex) {
+                log.warning("Failed reading chunks of " + fileReference + " for " + request.target() + ": " + ex.getMessage());
+                result = TRANSFER_FAILED;
+            }
+            returnChunks(request, result, result == OK ? contents : new byte[0][]);
+        }, executor);
+    }
+
+    private static void returnChunks(Request request, FileApiErrorCodes result, byte[][] contents) {
+        request.returnValues().add(new Int32Value(result.code())).add(new DataArray(contents));
+        request.returnRequest();
+    }
+
+    /**
+     * Returns the chunk list of the given file of a file reference. This is created at most once at a time
+     * per file reference, by a bounded number of threads, and the most recently used ones are kept.
+     */
+    private CompletableFuture<FileReferenceChunks> chunks(FileReference fileReference, File file) {
+        return computeOnce(chunks, fileReference, "chunk list", () -> FileReferenceChunks.of(file));
+    }
+
+    /** Returns the value in the given cache, or starts computing it on the chunk list executor if absent */
+    private <T> CompletableFuture<T> computeOnce(Map<FileReference, CompletableFuture<T>> cache, FileReference fileReference,
+                                                 String description, Callable<T> computation) {
+        synchronized (cache) {
+            CompletableFuture<T> cached = cache.get(fileReference);
+            if (cached != null) return cached;
+
+            CompletableFuture<T> created = new CompletableFuture<>();
+            cache.put(fileReference, created);
+            try {
+                chunkListExecutor.execute(() -> {
+                    try {
+                        var start = Instant.now();
+                        created.complete(computation.call());
+                        log.log(FINE, () -> "Created " + description + " of " + fileReference + " in " + Duration.between(start, Instant.now()));
+                    } catch (Throwable e) {
+                        created.completeExceptionally(e);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                created.completeExceptionally(e);
+            }
+            // Let later requests try again
+            created.whenComplete((__, e) -> {
+                if (e != null) synchronized (cache) { cache.remove(fileReference, created); }
+            });
+            return created;
+        }
+    }
+
     /* Choose the first compression type (list is in preferred order) that matches an accepted compression type, or fail */
     private CompressionType chooseCompressionType(Set<CompressionType> acceptedCompressionTypes) {
         for (CompressionType compressionType : compressionTypes) {
@@ -228,9 +388,29 @@ public class FileServer {
 
     public FileDownloader downloader() { return downloader; }
 
+    public FilePeers peers() { return peers; }
+
+    /** Returns whether nodes should be handed out as peers to download file references from */
+    public boolean distributesFromPeers() { return fileDistributionFromPeers.value(); }
+
+    /**
+     * Returns the xxhash64 of the content of the given file reference, if it is a plain file found on this server,
+     * which is what peers serve, and what downloaders verify content from peers against.
+     * The hash is computed once per file reference, in the background, and this is empty until it is ready.
+     */
+    public Optional<Long> fileHash(FileReference fileReference) {
+        Optional<File> file = fileDirectory.getFile(fileReference).filter(File::isFile);
+        if (file.isEmpty()) return Optional.empty();
+
+        CompletableFuture<Long> hash = computeOnce(fileHashes, fileReference, "hash", () -> FileReferencePeers.xxhash(file.get()));
+        if ( ! hash.isDone() || hash.isCompletedExceptionally()) return Optional.empty();
+        return Optional.of(hash.join());
+    }
+
     public void close() {
         downloader.close();
         executor.shutdown();
+        chunkListExecutor.shutdown();
     }
 
     private static FileDownloader createFileDownloader(List<String> configServers) {
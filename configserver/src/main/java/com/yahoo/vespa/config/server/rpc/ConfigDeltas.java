@@ -0,0 +1,174 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.config.server.rpc;
+
+import com.yahoo.vespa.config.PayloadChecksum;
+import com.yahoo.vespa.config.protocol.CompressionType;
+import com.yahoo.vespa.config.protocol.Payload;
+import com.yahoo.vespa.config.protocol.PayloadDelta;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.yahoo.vespa.config.PayloadChecksum.Type.XXHASH64;
+
+/**
+ * Recently served config payloads, and the deltas between them, for responding to clients which accept
+ * deltas (see {@link PayloadDelta}) with the changes to the payload they have, rather than the whole new payload.
+ * <p>
+ * Deltas are computed once for each pair of payloads, and are used only for payloads large enough for this to
+ * matter, and only when much smaller than the full payload. Both payloads and deltas are bounded by their total
+ * size, and the least recently used ones are dropped first.
+ */
+class ConfigDeltas {
+
+    private static final Logger log = Logger.getLogger(ConfigDeltas.class.getName());
+
+    /** The min size of a payload, in bytes, for responding with a delta to be worthwhile */
+    static final int minPayloadSize = 16 * 1024;
+
+    /** The max size of a delta, as a fraction of the size of the payload it gives */
+    static final double maxDeltaFraction = 0.5;
+
+    /** The size counted for each delta in addition to its content, such that pairs without a delta are bounded too */
+    private static final int deltaOverhead = 128;
+
+    private static final Payload unchanged = PayloadDelta.diff(Payload.from("{}"), Payload.from("{}"));
+
+    private final long maxPayloadBytes;
+    private final long maxDeltaBytes;
+    private final Map<PayloadChecksum, Payload> payloads = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Pair, CompletableFuture<Optional<Payload>>> deltas = new LinkedHashMap<>(16, 0.75f, true);
+    private long payloadBytes = 0; // guarded by payloads
+    private long deltaBytes = 0; // guarded by deltas
+
+    ConfigDeltas(long maxPayloadBytes, long maxDeltaBytes) {
+        this.maxPayloadBytes = maxPayloadBytes;
+        this.maxDeltaBytes = maxDeltaBytes;
+    }
+
+    /** Records the given payload, with the given xxhash64 checksum, as served, so clients may later get deltas against it */
+    void add(PayloadChecksum checksum, Payload payload) {
+        if (checksum == null || checksum.isEmpty() || checksum.type() != XXHASH64) return;
+
+        int size = uncompressedSize(payload);
+        if (size < minPayloadSize || size > maxPayloadBytes) return;
+        synchronized (payloads) {
+            if (payloads.get(checksum) != null) return;
+        }
+
+        Payload uncompressed = payload.withCompression(CompressionType.UNCOMPRESSED);
+        synchronized (payloads) {
+            if (payloads.putIfAbsent(checksum, uncompressed) != null) return;
+
+            payloadBytes += size;
+            var iterator = payloads.values().iterator();
+            while (payloadBytes > maxPayloadBytes && iterator.hasNext()) {
+                payloadBytes -= iterator.next().getData().getByteLength();
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns the uncompressed delta which turns the payload with the first checksum into the given payload,
+     * with the second checksum, if the first payload is known, and the delta is small enough to be worth using
+     */
+    Optional<Payload> delta(PayloadChecksum from, PayloadChecksum to, Payload payload) {
+        if (from == null || from.isEmpty() || to == null || to.isEmpty()) return Optional.empty();
+        if (from.equals(to)) return Optional.of(unchanged);
+
+        Pair pair = new Pair(from, to);
+        CompletableFuture<Optional<Payload>> delta;
+        synchronized (deltas) {
+            delta = deltas.get(pair);
+        }
+        if (delta != null) return delta.join();
+
+        Payload base;
+        synchronized (payloads) {
+            base = payloads.get(from);
+        }
+        if (base == null) return Optional.empty(); // Not known, and may become known later
+
+        // Other requests for the same delta wait for this to compute it
+        CompletableFuture<Optional<Payload>> computing = new CompletableFuture<>();
+        synchronized (deltas) {
+            delta = deltas.putIfAbsent(pair, computing);
+        }
+        if (delta != null) return delta.join();
+
+        Optional<Payload> computed = Optional.empty();
+        try {
+            computed = computeDelta(base, payload, to);
+        }
+        finally {
+            synchronized (deltas) {
+                computing.complete(computed);
+                if (deltas.get(pair) == computing) { // Not if dropped while computing
+                    deltaBytes += sizeOf(computing);
+                    var iterator = deltas.values().iterator();
+                    while (deltaBytes > maxDeltaBytes && iterator.hasNext()) {
+                        CompletableFuture<Optional<Payload>> dropped = iterator.next();
+                        if (dropped.isDone()) deltaBytes -= sizeOf(dropped);
+                        iterator.remove();
+                    }
+                }
+            }
+        }
+        return computed;
+    }
+
+    private static Optional<Payload> computeDelta(Payload base, Payload payload, PayloadChecksum checksum) {
+        int size = uncompressedSize(payload);
+        if (size < minPayloadSize) return Optional.empty();
+
+        try {
+            Payload uncompressed = payload.withCompression(CompressionType.UNCOMPRESSED);
+            Payload delta = PayloadDelta.diff(base, uncompressed);
+            if (delta.getData().getByteLength() > maxDeltaFraction * size) return Optional.empty();
+
+            // Clients verify the payload they get from the delta, so make sure it is exactly the one we have
+            if ( ! checksum.equals(PayloadChecksum.fromPayload(PayloadDelta.apply(base, delta), XXHASH64)))
+                return Optional.empty();
+
+            return Optional.of(delta);
+        }
+        catch (RuntimeException e) {
+            log.log(Level.FINE, () -> "Could not compute delta for payload with checksum " + checksum + ": " + e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /** Returns the size of the given payload when uncompressed, without decompressing it */
+    private static int uncompressedSize(Payload payload) {
+        return payload.getCompressionInfo().getCompressionType() == CompressionType.UNCOMPRESSED
+               ? payload.getData().getByteLength()
+               : payload.getCompressionInfo().getUncompressedSize();
+    }
+
+    /** Returns the size counted for a computed delta */
+    private static long sizeOf(CompletableFuture<Optional<Payload>> delta) {
+        return deltaOverhead + delta.join().map(payload -> payload.getData().getByteLength()).orElse(0);
+    }
+
+    /** Returns the number of payloads recorded */
+    int size() {
+        synchronized (payloads) {
+            return payloads.size();
+        }
+    }
+
+    /** Returns the number of deltas, or pairs of payloads without a delta, recorded */
+    int deltas() {
+        synchronized (deltas) {
+            return deltas.size();
+        }
+    }
+
+    private record Pair(PayloadChecksum from, PayloadChecksum to) {}
+
+}
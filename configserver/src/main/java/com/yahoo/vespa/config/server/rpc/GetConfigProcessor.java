@@ -9,6 +9,7 @@ import com.yahoo.jrt.Request;
 import com.yahoo.net.HostName;
 import com.yahoo.vespa.config.ConfigPayload;
 import com.yahoo.vespa.config.ErrorCode;
+import com.yahoo.vespa.config.PayloadChecksum;
 import com.yahoo.vespa.config.PayloadChecksums;
 import com.yahoo.vespa.config.UnknownConfigIdException;
 import com.yahoo.vespa.config.protocol.ConfigResponse;
@@ -25,6 +26,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import static com.yahoo.vespa.config.ErrorCode.APPLICATION_NOT_LOADED;
+import static com.yahoo.vespa.config.PayloadChecksum.Type.XXHASH64;
 import static com.yahoo.vespa.config.protocol.SlimeConfigResponse.fromConfigPayload;
 
 /**
@@ -134,7 +136,7 @@ class GetConfigProcessor implements Runnable {
             }
 
             // debugLog(trace, "config response before encoding:" + config.toString());
-            request.addOkResponse(request.payloadFromResponse(config), config.getGeneration(), config.applyOnRestart(), config.getPayloadChecksums());
+            addOkResponse(request, config);
             debugLog(trace, "return response: " + request.getShortDescription());
             respond(request);
         } else {
@@ -159,6 +161,24 @@ class GetConfigProcessor implements Runnable {
         });
     }
 
+    /** Responds with a delta against the payload the client has, if it accepts that, and the delta is much smaller */
+    private void addOkResponse(JRTServerConfigRequest request, ConfigResponse config) {
+        Payload payload = request.payloadFromResponse(config);
+        PayloadChecksum checksum = config.getPayloadChecksums().getForType(XXHASH64);
+        if (request.acceptsDelta()) {
+            // Only clients accepting deltas will ask for deltas against payloads they get
+            ConfigDeltas deltas = rpcServer.configDeltas();
+            deltas.add(checksum, payload);
+            Optional<Payload> delta = deltas.delta(request.getRequestConfigChecksums().getForType(XXHASH64), checksum, payload);
+            if (delta.isPresent()) {
+                debugLog(request.getRequestTrace(), "responding with delta of " + delta.get().getData().getByteLength() + " bytes");
+                request.addOkDeltaResponse(delta.get(), config.getGeneration(), config.applyOnRestart(), config.getPayloadChecksums());
+                return;
+            }
+        }
+        request.addOkResponse(payload, config.getGeneration(), config.applyOnRestart(), config.getPayloadChecksums());
+    }
+
     private boolean isSentinelConfigRequest(JRTServerConfigRequest request) {
         return request.getConfigKey().getName().equals(SentinelConfig.getDefName()) &&
                request.getConfigKey().getNamespace().equals(SentinelConfig.getDefNamespace());
@@ -9,13 +9,13 @@ import com.yahoo.config.FileReference;
 import com.yahoo.config.provision.ApplicationId;
 import com.yahoo.config.provision.TenantName;
 import com.yahoo.jrt.Acceptor;
-import com.yahoo.jrt.DataValue;
 import com.yahoo.jrt.Int32Value;
 import com.yahoo.jrt.Int64Value;
 import com.yahoo.jrt.ListenFailedException;
 import com.yahoo.jrt.Method;
 import com.yahoo.jrt.Request;
 import com.yahoo.jrt.Spec;
+import com.yahoo.jrt.StringArray;
 import com.yahoo.jrt.StringValue;
 import com.yahoo.jrt.Supervisor;
 import com.yahoo.jrt.Target;
@@ -41,13 +41,14 @@ import com.yahoo.vespa.config.server.tenant.Tenant;
 import com.yahoo.vespa.config.server.tenant.TenantListener;
 import com.yahoo.vespa.config.server.tenant.TenantRepository;
 import com.yahoo.vespa.filedistribution.FileDownloader;
-import com.yahoo.vespa.filedistribution.FileReceiver;
+import com.yahoo.vespa.filedistribution.FileReferenceChunks;
 import com.yahoo.vespa.filedistribution.FileReferenceData;
 import com.yahoo.vespa.filedistribution.FileReferenceDownload;
+import com.yahoo.vespa.filedistribution.FileReferenceParts;
+import com.yahoo.vespa.filedistribution.FileReferencePeers;
+import com.yahoo.vespa.filedistribution.FileReferenceSender;
 import com.yahoo.yolean.Exceptions;
 
-import java.nio.ByteBuffer;
-import java.time.Duration;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
@@ -94,6 +95,7 @@ public class RpcServer implements Runnable, ConfigActivationListener, TenantList
     private static final Logger log = Logger.getLogger(RpcServer.class.getName());
 
     private final DelayedConfigResponses delayedConfigResponses;
+    private final ConfigDeltas configDeltas = new ConfigDeltas(256 * 1024 * 1024, 64 * 1024 * 1024);
 
     private final HostRegistry hostRegistry;
     private final Map<TenantName, Tenant> tenants = new ConcurrentHashMap<>();
@@ -228,6 +230,38 @@ public class RpcServer implements Runnable, ConfigActivationListener, TenantList
                                           .paramDesc(0, "file references", "file reference to download")
                                           .paramDesc(1, "address", "address (jrt spec) for a source to download from")
                                           .returnDesc(0, "ret", "0 if success, 1 otherwise"));
+        getSupervisor().addMethod(new Method(FileReferencePeers.GET_PEERS_METHOD, "s", "Sl", this::getPeers)
+                                          .requireCapabilities(Capability.CONFIGSERVER__FILEDISTRIBUTION_API)
+                                          .methodDesc("get nodes to download a file reference from")
+                                          .paramDesc(0, "file reference", "file reference to download")
+                                          .returnDesc(0, "peers", "addresses (jrt specs) of nodes to download from, if any")
+                                          .returnDesc(1, "xxhash", "xxhash64 of the file to verify content from peers against"));
+        getSupervisor().addMethod(new Method(FileReferencePeers.VERIFY_DOWNLOADER_METHOD, "ss", "i", this::verifyDownloader)
+                                          .requireCapabilities(Capability.CONFIGSERVER__FILEDISTRIBUTION_API)
+                                          .methodDesc("check whether the calling node was handed out as a peer to a downloader")
+                                          .paramDesc(0, "file reference", "file reference requested from the calling node")
+                                          .paramDesc(1, "downloader", "host of the node requesting the file reference")
+                                          .returnDesc(0, "ret", "1 if the calling node may serve the file reference to the downloader, 0 otherwise"));
+        getSupervisor().addMethod(new Method(FileReferencePeers.ADD_PEER_METHOD, "si", "i", this::addPeer)
+                                          .requireCapabilities(Capability.CONFIGSERVER__FILEDISTRIBUTION_API)
+                                          .methodDesc("report that the calling node serves a file reference to other nodes")
+                                          .paramDesc(0, "file reference", "file reference downloaded by the calling node")
+                                          .paramDesc(1, "port", "port the calling node serves file references on")
+                                          .returnDesc(0, "ret", "0 if success, 1 otherwise"));
+        getSupervisor().addMethod(new Method(FileReferenceChunks.GET_CHUNK_LIST_METHOD, "sS", "ix", this::getChunkList)
+                                          .requireCapabilities(Capability.CONFIGSERVER__FILEDISTRIBUTION_API)
+                                          .methodDesc("get the files of a file reference, split into chunks identified by their hash")
+                                          .paramDesc(0, "file reference", "file reference")
+                                          .paramDesc(1, "names", "names of files the calling node has earlier versions of")
+                                          .returnDesc(0, "ret", "0 if success, see FileApiErrorCodes otherwise")
+                                          .returnDesc(1, "chunks", "the chunks of the files of the file reference"));
+        getSupervisor().addMethod(new Method(FileReferenceChunks.GET_CHUNKS_METHOD, "sX", "iX", this::getChunks)
+                                          .requireCapabilities(Capability.CONFIGSERVER__FILEDISTRIBUTION_API)
+                                          .methodDesc("get chunks of a file reference")
+                                          .paramDesc(0, "file reference", "file reference")
+                                          .paramDesc(1, "hashes", "the hashes of the chunks to get")
+                                          .returnDesc(0, "ret", "0 if success, see FileApiErrorCodes otherwise")
+                                          .returnDesc(1, "chunks", "the content of each chunk requested"));
     }
 
     /**
@@ -446,10 +480,24 @@ public class RpcServer implements Runnable, ConfigActivationListener, TenantList
         return useRequestVersion;
     }
 
+    ConfigDeltas configDeltas() {
+        return configDeltas;
+    }
+
     static class ChunkedFileReceiver implements FileServer.Receiver {
+
         final Target target;
+        final FileReferenceParts parts;
+        private final FileReferenceSender sender;
+
         ChunkedFileReceiver(Target target) {
+            this(target, FileReferenceParts.all());
+        }
+
+        ChunkedFileReceiver(Target target, FileReferenceParts parts) {
             this.target = target;
+            this.parts = parts;
+            this.sender = new FileReferenceSender(target, parts);
         }
 
         @Override
@@ -459,95 +507,14 @@ public class RpcServer implements Runnable, ConfigActivationListener, TenantList
 
         @Override
         public void receive(FileReferenceData fileData, FileServer.ReplayStatus status) {
-            int session = sendMeta(fileData);
-            sendParts(session, fileData);
-            sendEof(session, fileData, status);
-        }
-
-        private void sendParts(int session, FileReferenceData fileData) {
-            ByteBuffer bb = ByteBuffer.allocate(0x100000);
-            for (int partId = 0, read = fileData.nextContent(bb); read >= 0; partId++, read = fileData.nextContent(bb)) {
-                byte [] buf = bb.array();
-                if (buf.length != bb.position()) {
-                    buf = new byte [bb.position()];
-                    bb.flip();
-                    bb.get(buf);
-                }
-                sendPart(session, fileData.fileReference(), partId, buf);
-                bb.clear();
-            }
-        }
-
-        private int sendMeta(FileReferenceData fileData) {
-            Request request = createMetaRequest(fileData);
-            invokeRpcIfValidConnection(request);
-            if (request.isError()) {
-                log.log(WARNING, () -> "Failed delivering meta for reference '" + fileData.fileReference().value() +
-                        "' with file '" + fileData.filename() + "' to " +
-                        target.toString() + " with error: '" + request.errorMessage() + "'.");
-                return 1;
-            } else {
-                if (request.returnValues().get(0).asInt32() != 0) {
-                    throw new IllegalArgumentException("Unknown error from target '" + target.toString() + "' during rpc call " + request.methodName());
-                }
-                return request.returnValues().get(1).asInt32();
-            }
+            sender.send(fileData, status.getCode(), status.getDescription());
         }
 
         // non-private for testing
         static Request createMetaRequest(FileReferenceData fileData) {
-            Request request = new Request(FileReceiver.RECEIVE_META_METHOD);
-            request.parameters().add(new StringValue(fileData.fileReference().value()));
-            request.parameters().add(new StringValue(fileData.filename()));
-            request.parameters().add(new StringValue(fileData.type().name()));
-            request.parameters().add(new Int64Value(fileData.size()));
-            request.parameters().add(new StringValue(fileData.compressionType().name()));
-            return request;
-        }
-
-        private void sendPart(int session, FileReference ref, int partId, byte [] buf) {
-            Request request = new Request(FileReceiver.RECEIVE_PART_METHOD);
-            request.parameters().add(new StringValue(ref.value()));
-            request.parameters().add(new Int32Value(session));
-            request.parameters().add(new Int32Value(partId));
-            request.parameters().add(new DataValue(buf));
-            invokeRpcIfValidConnection(request);
-            if (request.isError()) {
-                throw new IllegalArgumentException("Failed delivering part of reference '" + ref.value() + "' to " +
-                                                           target.toString() + " with error: '" + request.errorMessage() + "'.");
-            } else {
-                if (request.returnValues().get(0).asInt32() != 0) {
-                    throw new IllegalArgumentException("Unknown error from target '" + target.toString() + "' during rpc call " + request.methodName());
-                }
-            }
+            return FileReferenceSender.createMetaRequest(fileData, false);
         }
 
-        private void sendEof(int session, FileReferenceData fileData, FileServer.ReplayStatus status) {
-            Request request = new Request(FileReceiver.RECEIVE_EOF_METHOD);
-            request.parameters().add(new StringValue(fileData.fileReference().value()));
-            request.parameters().add(new Int32Value(session));
-            request.parameters().add(new Int64Value(fileData.xxhash()));
-            request.parameters().add(new Int32Value(status.getCode()));
-            request.parameters().add(new StringValue(status.getDescription()));
-            invokeRpcIfValidConnection(request);
-            if (request.isError()) {
-                throw new IllegalArgumentException("Failed delivering eof for reference '" + fileData.fileReference().value() +
-                                                           "' with file '" + fileData.filename() + "' to " +
-                                                           target.toString() + " with error: '" + request.errorMessage() + "'.");
-            } else {
-                if (request.returnValues().get(0).asInt32() != 0) {
-                    throw new IllegalArgumentException("Unknown error from target '" + target.toString() + "' during rpc call " + request.methodName());
-                }
-            }
-        }
-
-        private void invokeRpcIfValidConnection(Request request) {
-            if (target.isValid()) {
-                target.invokeSync(request, Duration.ofMinutes(10));
-            } else {
-                throw new RuntimeException("Connection to " + target + " is invalid", target.getConnectionLostReason());
-            }
-        }
     }
 
     private void serveFile(Request request) {
@@ -559,11 +526,73 @@ public class RpcServer implements Runnable, ConfigActivationListener, TenantList
                     var acceptedCompressionTypes = Arrays.stream(request.parameters().get(2).asStringArray())
                             .map(CompressionType::valueOf)
                             .collect(Collectors.toSet());
-                    var receiver = new ChunkedFileReceiver(request.target());
-                    fileServer.serveFile(reference, downloadFromOtherSourceIfNotFound, acceptedCompressionTypes, request, receiver);
+                    var parts = FileReferenceParts.from(request.parameters(), 3);
+                    var receiver = new ChunkedFileReceiver(request.target(), parts);
+                    fileServer.serveFile(reference, downloadFromOtherSourceIfNotFound, acceptedCompressionTypes, parts, request, receiver);
                 });
     }
 
+    private void getChunkList(Request req) {
+        req.detach();
+        rpcAuthorizer.authorizeFileRequest(req)
+                     .thenRun(() -> fileServer.serveChunkList(new FileReference(req.parameters().get(0).asString()),
+                                                              List.of(req.parameters().get(1).asStringArray()),
+                                                              req));
+    }
+
+    private void getChunks(Request req) {
+        req.detach();
+        rpcAuthorizer.authorizeFileRequest(req)
+                     .thenRun(() -> fileServer.serveChunks(new FileReference(req.parameters().get(0).asString()),
+                                                           req.parameters().get(1).asDataArray(),
+                                                           req));
+    }
+
+    private void getPeers(Request req) {
+        req.detach();
+        rpcAuthorizer.authorizeFileRequest(req)
+                     .thenRun(() -> {
+                         FileReference reference = new FileReference(req.parameters().get(0).asString());
+                         // Peers are only handed out with the hash of the content, so downloaders need not trust them,
+                         // and none are handed out until that hash has been computed in the background
+                         Optional<Long> hash = fileServer.distributesFromPeers() ? fileServer.fileHash(reference)
+                                                                                 : Optional.empty();
+                         List<String> peers = hash.isEmpty() ? List.of()
+                                                             : fileServer.peers().get(reference, req.target().peerSpec().host());
+                         log.log(FINE, () -> "Peers for " + reference + " to " + req.target() + ": " + peers);
+                         req.returnValues().add(new StringArray(peers.toArray(new String[0])));
+                         req.returnValues().add(new Int64Value(hash.orElse(0L)));
+                         req.returnRequest();
+                     });
+    }
+
+    private void addPeer(Request req) {
+        req.detach();
+        rpcAuthorizer.authorizeFileRequest(req)
+                     .thenRun(() -> {
+                         FileReference reference = new FileReference(req.parameters().get(0).asString());
+                         // The address is that of the connection, so nodes can only add themselves
+                         var peerSpec = new Spec(req.target().peerSpec().host(), req.parameters().get(1).asInt32());
+                         if (fileServer.distributesFromPeers())
+                             fileServer.peers().add(reference, peerSpec.toString());
+                         req.returnValues().add(new Int32Value(0));
+                         req.returnRequest();
+                     });
+    }
+
+    private void verifyDownloader(Request req) {
+        req.detach();
+        rpcAuthorizer.authorizeFileRequest(req)
+                     .thenRun(() -> {
+                         FileReference reference = new FileReference(req.parameters().get(0).asString());
+                         boolean handedOut = fileServer.peers().isHandedOut(reference,
+                                                                            req.target().peerSpec().host(),
+                                                                            req.parameters().get(1).asString());
+                         req.returnValues().add(new Int32Value(handedOut ? 1 : 0));
+                         req.returnRequest();
+                     });
+    }
+
     private void triggerDownload(Request req) {
         req.detach();
         rpcAuthorizer.authorizeFileRequest(req)
@@ -102,7 +102,7 @@ public class ZKApplication {
     }
 
     private byte[] getBytesInternal(Path path) {
-        return curator.getData(path)
+        return curator.getLarge(path)
                       .orElseThrow(() -> new IllegalArgumentException("Could not get data from '" +
                                                                       path + "' in zookeeper"));
     }
@@ -111,8 +111,9 @@ public class ZKApplication {
         return getBytesInternal(getFullPath(path));
     }
 
+    /** Returns the size of the data at the given path, which is the uncompressed size of data set as large data */
     public long getSize(Path path) {
-        return curator.getStat(path).map(stat -> (long)stat.getDataLength())
+        return curator.getLargeSize(path)
                 .orElseThrow(() -> new IllegalArgumentException(
                         "Could not get size from '" + path + "' in zookeeper"));
     }
@@ -171,7 +172,9 @@ public class ZKApplication {
      * @return a list of file names, which is empty (never null) if the path does not exist
      */
     public List<String> getChildren(Path path) {
-        return curator.getChildren(getFullPath(path));
+        return curator.getChildren(getFullPath(path)).stream()
+                      .filter(child -> ! Curator.isLargeDataChunk(child))
+                      .toList();
     }
 
     private static Reader reader(String string) {
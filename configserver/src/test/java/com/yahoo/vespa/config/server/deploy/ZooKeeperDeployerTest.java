@@ -14,6 +14,7 @@ import com.yahoo.config.model.application.provider.MockFileRegistry;
 import com.yahoo.config.provision.AllocatedHosts;
 import com.yahoo.config.provision.ApplicationId;
 import com.yahoo.config.provision.HostSpec;
+import com.yahoo.config.provision.serialization.AllocatedHostsSerializer;
 import com.yahoo.io.IOUtils;
 import com.yahoo.path.Path;
 import com.yahoo.text.Utf8;
@@ -29,6 +30,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -192,6 +194,23 @@ public class ZooKeeperDeployerTest {
         assertEquals(hosts, deserialized.getHosts());
     }
 
+    @Test
+    public void testWritingLargeDataCompressed() throws IOException {
+        Curator zk = new MockCurator();
+        Path app = Path.fromString("/1");
+        ZooKeeperDeployer.Client client = new ZooKeeperDeployer.Client(zk, new BaseDeployLogger(), app, true);
+        client.initialize();
+        Set<HostSpec> hosts = new HashSet<>();
+        for (int i = 0; i < 1000; i++)
+            hosts.add(new HostSpec("host" + i + ".yahoo.com", Optional.empty()));
+        client.write(AllocatedHosts.withHosts(hosts));
+        Path hostsPath = app.append(ZKApplicationPackage.allocatedHostsNode);
+
+        byte[] json = AllocatedHostsSerializer.toJson(AllocatedHosts.withHosts(hosts));
+        assertTrue(zk.getData(hostsPath).get().length < json.length);
+        assertEquals(hosts, fromJson(zk.getLarge(hostsPath).get()).getHosts());
+    }
+
     public void deploy(ApplicationPackage applicationPackage, Curator curator, long sessionId) throws IOException {
         ZooKeeperDeployer deployer = new ZooKeeperDeployer(curator, new MockDeployLogger(), applicationPackage.getApplicationId(), sessionId);
         deployer.deploy(applicationPackage, Map.of(new Version(1, 0, 0), new MockFileRegistry()), AllocatedHosts.withHosts(Set.of()));
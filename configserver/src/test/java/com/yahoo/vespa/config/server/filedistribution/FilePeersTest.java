@@ -0,0 +1,67 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.config.server.filedistribution;
+
+import com.yahoo.config.FileReference;
+import com.yahoo.test.ManualClock;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FilePeersTest {
+
+    private final FileReference fileReference = new FileReference("foo");
+    private final ManualClock clock = new ManualClock();
+    private final FilePeers peers = new FilePeers(clock);
+
+    @Test
+    public void peersAreHandedOutToABoundedNumberOfDownloaders() {
+        assertEquals(List.of(), peers.get(fileReference, "host1"));
+
+        peers.add(fileReference, "tcp/host1:19090");
+        assertEquals(List.of(), peers.get(fileReference, "host1"));
+        assertEquals(List.of("tcp/host1:19090"), peers.get(fileReference, "host2"));
+        assertEquals(List.of("tcp/host1:19090"), peers.get(fileReference, "host3"));
+        assertEquals("All peers are busy, so download from config servers",
+                     List.of(), peers.get(fileReference, "host4"));
+
+        peers.add(fileReference, "tcp/host2:19090");
+        peers.add(fileReference, "tcp/host3:19090");
+        assertEquals(List.of("tcp/host2:19090", "tcp/host3:19090"), peers.get(fileReference, "host4"));
+        assertEquals(List.of("tcp/host2:19090", "tcp/host3:19090"), peers.get(fileReference, "host5"));
+        assertEquals(List.of(), peers.get(fileReference, "host6"));
+        assertEquals(List.of(), peers.get(new FileReference("bar"), "host6"));
+
+        clock.advance(FilePeers.handoutPeriod.plusSeconds(1));
+        assertEquals(List.of("tcp/host1:19090", "tcp/host2:19090", "tcp/host3:19090"), peers.get(fileReference, "host6"));
+    }
+
+    @Test
+    public void peersMayOnlyServeDownloadersTheyWereHandedOutTo() {
+        peers.add(fileReference, "tcp/host1:19090");
+        assertFalse(peers.isHandedOut(fileReference, "host1", "host2"));
+        assertEquals(List.of("tcp/host1:19090"), peers.get(fileReference, "host2"));
+        assertTrue(peers.isHandedOut(fileReference, "host1", "host2"));
+        assertFalse(peers.isHandedOut(fileReference, "host1", "host3"));
+        assertFalse(peers.isHandedOut(fileReference, "host3", "host2"));
+        assertFalse(peers.isHandedOut(new FileReference("bar"), "host1", "host2"));
+
+        clock.advance(FilePeers.handoutPeriod.plusSeconds(1));
+        assertFalse(peers.isHandedOut(fileReference, "host1", "host2"));
+    }
+
+    @Test
+    public void peersExpireUnlessAddedAgain() {
+        peers.add(fileReference, "tcp/host1:19090");
+        peers.add(fileReference, "tcp/host2:19090");
+        clock.advance(FilePeers.peerTtl.minus(Duration.ofMinutes(1)));
+        peers.add(fileReference, "tcp/host2:19090");
+        clock.advance(Duration.ofMinutes(2));
+        assertEquals(List.of("tcp/host2:19090"), peers.get(fileReference, "host3"));
+    }
+
+}
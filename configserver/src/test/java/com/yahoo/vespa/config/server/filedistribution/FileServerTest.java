@@ -11,6 +11,8 @@ import com.yahoo.vespa.filedistribution.FileDownloader;
 import com.yahoo.vespa.filedistribution.FileReferenceCompressor;
 import com.yahoo.vespa.filedistribution.FileReferenceData;
 import com.yahoo.vespa.filedistribution.FileReferenceDownload;
+import com.yahoo.vespa.filedistribution.FileReferencePeers;
+import com.yahoo.vespa.flags.Flags;
 import com.yahoo.vespa.flags.InMemoryFlagSource;
 import org.junit.Before;
 import org.junit.Rule;
@@ -22,6 +24,7 @@ import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
@@ -44,7 +47,8 @@ public class FileServerTest {
     @Before
     public void setup() throws IOException {
         File rootDir = new File(temporaryFolder.newFolder("fileserver-root").getAbsolutePath());
-        fileServer = new FileServer(new MockFileDownloader(rootDir), List.of(lz4, zstd, none), new FileDirectory(rootDir));
+        fileServer = new FileServer(new MockFileDownloader(rootDir), List.of(lz4, zstd, none), new FileDirectory(rootDir),
+                                    new InMemoryFlagSource());
     }
 
     @Test
@@ -95,7 +99,8 @@ public class FileServerTest {
     @Test
     public void requireThatWeCanReplayDirWithLz4() throws IOException, InterruptedException, ExecutionException {
         File rootDir = new File(temporaryFolder.newFolder("fileserver-root-3").getAbsolutePath());
-        fileServer = new FileServer(new MockFileDownloader(rootDir), List.of(lz4, zstd), new FileDirectory(rootDir)); // prefer lz4
+        fileServer = new FileServer(new MockFileDownloader(rootDir), List.of(lz4, zstd), new FileDirectory(rootDir),
+                                    new InMemoryFlagSource()); // prefer lz4
         File dir = getFileServerRootDir();
         IOUtils.writeFile(dir + "/subdir/12z/f1", "dummy-data-2", true);
         CompletableFuture<byte []> content = new CompletableFuture<>();
@@ -163,6 +168,32 @@ public class FileServerTest {
         assertEquals(new String(content.get(), StandardCharsets.UTF_8), "dummy-data");
     }
 
+    @Test
+    public void requireThatFileHashIsComputedInTheBackground() throws IOException, InterruptedException {
+        writeFile("125");
+        FileReference reference = new FileReference("125");
+        long expected = FileReferencePeers.xxhash(new File(getFileServerRootDir(), "125/f1"));
+        Optional<Long> hash = fileServer.fileHash(reference);
+        for (int i = 0; i < 1000 && hash.isEmpty(); i++) {
+            Thread.sleep(10);
+            hash = fileServer.fileHash(reference);
+        }
+        assertEquals(Optional.of(expected), hash);
+
+        IOUtils.writeFile(getFileServerRootDir() + "/126/subdir/f1", "test", false);
+        assertEquals(Optional.empty(), fileServer.fileHash(new FileReference("126")));
+        assertEquals(Optional.empty(), fileServer.fileHash(new FileReference("127")));
+    }
+
+    @Test
+    public void requireThatPeersAreOnlyHandedOutWhenEnabled() {
+        assertFalse(fileServer.distributesFromPeers());
+        var flagSource = new InMemoryFlagSource().withBooleanFlag(Flags.FILE_DISTRIBUTION_FROM_PEERS.id(), true);
+        File rootDir = getFileServerRootDir();
+        fileServer = new FileServer(new MockFileDownloader(rootDir), List.of(lz4), new FileDirectory(rootDir), flagSource);
+        assertTrue(fileServer.distributesFromPeers());
+    }
+
     private void writeFile(String dir) throws IOException {
         File rootDir = getFileServerRootDir();
         IOUtils.createDirectory(rootDir + "/" + dir);
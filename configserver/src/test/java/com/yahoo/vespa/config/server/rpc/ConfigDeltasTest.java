@@ -0,0 +1,88 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.config.server.rpc;
+
+import com.yahoo.vespa.config.PayloadChecksum;
+import com.yahoo.vespa.config.protocol.Payload;
+import com.yahoo.vespa.config.protocol.PayloadDelta;
+import org.junit.Test;
+
+import java.util.Optional;
+
+import static com.yahoo.vespa.config.PayloadChecksum.Type.XXHASH64;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ConfigDeltasTest {
+
+    @Test
+    public void deltasAreGivenForKnownPayloadsOnly() {
+        ConfigDeltas deltas = new ConfigDeltas(1024 * 1024, 1024 * 1024);
+        Payload first = payload(1000, -1);
+        Payload second = payload(1000, 500);
+        assertEquals(Optional.empty(), deltas.delta(checksum(first), checksum(second), second));
+
+        deltas.add(checksum(first), first);
+        Payload delta = deltas.delta(checksum(first), checksum(second), second).get();
+        assertTrue(delta.getData().getByteLength() < 100);
+        assertEquals(second.toString(), PayloadDelta.apply(first, delta).toString());
+        assertEquals("{}", deltas.delta(checksum(second), checksum(second), second).get().toString());
+    }
+
+    @Test
+    public void deltasAreNotGivenForSmallPayloadsOrLargeChanges() {
+        ConfigDeltas deltas = new ConfigDeltas(1024 * 1024, 1024 * 1024);
+        Payload small = payload(10, -1);
+        deltas.add(checksum(small), small);
+        assertEquals(0, deltas.size());
+        Payload smallChanged = payload(10, 5);
+        assertEquals(Optional.empty(), deltas.delta(checksum(small), checksum(smallChanged), smallChanged));
+
+        Payload first = payload(1000, -1);
+        Payload other = Payload.from(first.toString().replace("value-", "other-"));
+        deltas.add(checksum(first), first);
+        assertEquals(Optional.empty(), deltas.delta(checksum(first), checksum(other), other));
+    }
+
+    @Test
+    public void leastRecentlyUsedPayloadsAreDropped() {
+        Payload first = payload(1000, -1);
+        int size = first.getData().getByteLength();
+        ConfigDeltas deltas = new ConfigDeltas(2 * size + size / 2, 1024 * 1024);
+        deltas.add(checksum(first), first);
+        deltas.add(checksum(payload(1000, 1)), payload(1000, 1));
+        deltas.delta(checksum(first), checksum(payload(1000, 3)), payload(1000, 3)); // Uses the first
+        deltas.add(checksum(payload(1000, 2)), payload(1000, 2));
+        assertEquals(2, deltas.size());
+
+        assertTrue(deltas.delta(checksum(first), checksum(payload(1000, 4)), payload(1000, 4)).isPresent());
+        assertEquals(Optional.empty(), deltas.delta(checksum(payload(1000, 1)), checksum(payload(1000, 4)), payload(1000, 4)));
+    }
+
+    @Test
+    public void leastRecentlyUsedDeltasAreDropped() {
+        Payload first = payload(1000, -1);
+        ConfigDeltas deltas = new ConfigDeltas(1024 * 1024, 1024);
+        deltas.add(checksum(first), first);
+        Payload delta = deltas.delta(checksum(first), checksum(payload(1000, 1)), payload(1000, 1)).get();
+        assertTrue(delta.getData().getByteLength() < 256);
+        assertEquals(1, deltas.deltas());
+
+        for (int i = 2; i < 20; i++)
+            assertTrue(deltas.delta(checksum(first), checksum(payload(1000, i)), payload(1000, i)).isPresent());
+        assertTrue("Deltas are bounded by size: " + deltas.deltas(), deltas.deltas() < 10);
+        assertTrue(deltas.delta(checksum(first), checksum(payload(1000, 1)), payload(1000, 1)).isPresent());
+    }
+
+    private static Payload payload(int values, int changed) {
+        StringBuilder json = new StringBuilder("{\"values\":[");
+        for (int i = 0; i < values; i++)
+            json.append(i == 0 ? "" : ",").append("{\"name\":\"value-").append(i).append("\",\"weight\":")
+                .append(i == changed ? -1 : i).append("}");
+        return Payload.from(json.append("]}").toString());
+    }
+
+    private static PayloadChecksum checksum(Payload payload) {
+        return PayloadChecksum.fromPayload(payload, XXHASH64);
+    }
+
+}
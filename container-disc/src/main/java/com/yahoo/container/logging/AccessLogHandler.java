@@ -2,6 +2,7 @@
 package com.yahoo.container.logging;
 
 import com.yahoo.container.core.AccessLogConfig;
+import com.yahoo.metrics.simple.MetricReceiver;
 
 /**
  * @author Bjorn Borud
@@ -10,10 +11,13 @@ class AccessLogHandler {
 
     private final LogFileHandler<RequestLogEntry> logFileHandler;
 
-    AccessLogHandler(AccessLogConfig.FileHandler config, LogWriter<RequestLogEntry> logWriter) {
+    /** Creates a handler reporting metrics with names starting with access_log.<i>logType</i> */
+    AccessLogHandler(AccessLogConfig.FileHandler config, LogWriter<RequestLogEntry> logWriter,
+                     MetricReceiver metricReceiver, String logType) {
         logFileHandler = new LogFileHandler<>(
                 toCompression(config), config.bufferSize(), config.pattern(), config.rotation(),
-                config.symlink(), queueSize(config), config.rotationSize(), "request-logger", logWriter);
+                config.symlink(), queueSize(config), config.rotationSize(), "request-logger", logWriter,
+                config.dropWhenFull(), LogFileHandler.Metrics.of(metricReceiver, "access_log." + logType));
     }
 
     private static int queueSize(AccessLogConfig.FileHandler config) {
@@ -2,6 +2,7 @@
 
 package com.yahoo.container.logging;
 
+import com.yahoo.metrics.simple.MetricReceiver;
 import com.yahoo.text.Text;
 
 /**
@@ -11,7 +12,8 @@ class ConnectionLogHandler {
     private final LogFileHandler<ConnectionLogEntry> logFileHandler;
 
     public ConnectionLogHandler(String logDirectoryName, int bufferSize, String clusterName,
-                                int queueSize, LogWriter<ConnectionLogEntry> logWriter, boolean useClusterIdInFileName) {
+                                int queueSize, LogWriter<ConnectionLogEntry> logWriter, boolean useClusterIdInFileName,
+                                MetricReceiver metricReceiver) {
         logFileHandler = new LogFileHandler<>(
                 LogFileHandler.Compression.ZSTD,
                 bufferSize,
@@ -21,8 +23,11 @@ class ConnectionLogHandler {
                 useClusterIdInFileName ? Text.format("ConnectionLog.%s", clusterName) :
                                           "ConnectionLog",
                 queueSize,
+                0,
                 "connection-logger",
-                logWriter);
+                logWriter,
+                false,
+                LogFileHandler.Metrics.of(metricReceiver, "connection_log"));
     }
 
     public void log(ConnectionLogEntry entry) {
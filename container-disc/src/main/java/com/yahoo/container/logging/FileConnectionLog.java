@@ -4,6 +4,7 @@ package com.yahoo.container.logging;
 
 import com.yahoo.component.annotation.Inject;
 import com.yahoo.component.AbstractComponent;
+import com.yahoo.metrics.simple.MetricReceiver;
 
 /**
  * @author mortent
@@ -13,9 +14,13 @@ public class FileConnectionLog extends AbstractComponent implements ConnectionLo
     private final ConnectionLogHandler logHandler;
 
     @Inject
-    public FileConnectionLog(ConnectionLogConfig config) {
+    public FileConnectionLog(ConnectionLogConfig config, MetricReceiver metricReceiver) {
         logHandler = new ConnectionLogHandler(config.logDirectoryName(), config.bufferSize(), config.cluster(),
-                queueSize(config), new JsonConnectionLogWriter(), config.useClusterIdInFileName());
+                queueSize(config), new JsonConnectionLogWriter(), config.useClusterIdInFileName(), metricReceiver);
+    }
+
+    public FileConnectionLog(ConnectionLogConfig config) {
+        this(config, MetricReceiver.nullImplementation);
     }
 
     private static int queueSize(ConnectionLogConfig config) {
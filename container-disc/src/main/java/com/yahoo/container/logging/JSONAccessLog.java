@@ -2,7 +2,9 @@
 package com.yahoo.container.logging;
 
 import com.yahoo.component.AbstractComponent;
+import com.yahoo.component.annotation.Inject;
 import com.yahoo.container.core.AccessLogConfig;
+import com.yahoo.metrics.simple.MetricReceiver;
 
 /**
  * Log a message in Vespa JSON access log format.
@@ -14,8 +16,13 @@ public final class JSONAccessLog extends AbstractComponent implements RequestLog
 
     private final AccessLogHandler logHandler;
 
+    @Inject
+    public JSONAccessLog(AccessLogConfig config, MetricReceiver metricReceiver) {
+        logHandler = new AccessLogHandler(config.fileHandler(), new JSONFormatter(), metricReceiver, "json");
+    }
+
     public JSONAccessLog(AccessLogConfig config) {
-        logHandler = new AccessLogHandler(config.fileHandler(), new JSONFormatter());
+        this(config, MetricReceiver.nullImplementation);
     }
 
     @Override
@@ -4,10 +4,14 @@ package com.yahoo.container.logging;
 import com.yahoo.compress.ZstdOutputStream;
 import com.yahoo.io.NativeIO;
 import com.yahoo.log.LogFileDb;
+import com.yahoo.metrics.simple.BoundCounter;
+import com.yahoo.metrics.simple.BoundGauge;
+import com.yahoo.metrics.simple.MetricReceiver;
 import com.yahoo.protect.Process;
 import com.yahoo.yolean.Exceptions;
 
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileDescriptor;
 import java.io.FileInputStream;
@@ -23,13 +27,11 @@ import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
-import java.util.Optional;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.zip.GZIPOutputStream;
@@ -38,6 +40,10 @@ import static java.util.logging.Level.FINE;
 
 /**
  * Implements log file naming/rotating logic for container logs.
+ * <p>
+ * Log entries are formatted by the publishing thread, into a buffer reused by that thread,
+ * and passed to the log thread through a lock-free ring buffer. When the ring buffer is full,
+ * publishing either blocks until there is room, or drops the entry.
  *
  * @author Bob Travis
  * @author bjorncs
@@ -47,18 +53,47 @@ class LogFileHandler <LOGTYPE> {
     enum Compression {NONE, GZIP, ZSTD}
 
     private final static Logger logger = Logger.getLogger(LogFileHandler.class.getName());
-    private final BlockingQueue<Operation<LOGTYPE>> logQueue;
-    final LogThread<LOGTYPE> logThread;
 
-    @FunctionalInterface private interface Pollable<T> { Operation<T> poll() throws InterruptedException; }
+    /** The max time the log thread waits for new operations before checking whether it should flush */
+    private static final long pollTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(100);
+
+    /** The time a publisher waits before retrying when the queue is full */
+    private static final long queueFullBackoffNanos = TimeUnit.MICROSECONDS.toNanos(100);
+
+    /** Thread local format buffers which have grown larger than this are discarded after use */
+    private static final int maxRetainedFormatBufferSize = 64 * 1024;
+
+    private final MpscRingBuffer<Operation> logQueue;
+    private final LogWriter<LOGTYPE> logWriter;
+    private final boolean dropWhenFull;
+    private final Metrics metrics;
+    private final ThreadLocal<FormatBuffer> formatBuffer = ThreadLocal.withInitial(FormatBuffer::new);
+    final LogThread logThread;
+
+    @FunctionalInterface private interface Pollable { Operation poll() throws InterruptedException; }
 
     LogFileHandler(Compression compression, int bufferSize, String filePattern, long[] rotationTimes, String symlinkName,
-                   int queueSize, long rotationSize, String threadName, LogWriter<LOGTYPE> logWriter, Clock clock) {
-        this.logQueue = new LinkedBlockingQueue<>(queueSize);
-        this.logThread = new LogThread<>(logWriter, filePattern, compression, bufferSize, rotationTimes, symlinkName, rotationSize, threadName, this::poll, clock);
+                   int queueSize, long rotationSize, String threadName, LogWriter<LOGTYPE> logWriter, Clock clock,
+                   boolean dropWhenFull, Metrics metrics) {
+        this.logQueue = new MpscRingBuffer<>(queueSize);
+        this.logWriter = logWriter;
+        this.dropWhenFull = dropWhenFull;
+        this.metrics = metrics;
+        this.logThread = new LogThread(filePattern, compression, bufferSize, rotationTimes, symlinkName, rotationSize, threadName, this::poll, clock, metrics);
         this.logThread.start();
     }
 
+    LogFileHandler(Compression compression, int bufferSize, String filePattern, long[] rotationTimes, String symlinkName,
+                   int queueSize, long rotationSize, String threadName, LogWriter<LOGTYPE> logWriter, Clock clock) {
+        this(compression, bufferSize, filePattern, rotationTimes, symlinkName, queueSize, rotationSize, threadName, logWriter, clock, false, Metrics.none());
+    }
+
+    LogFileHandler(Compression compression, int bufferSize, String filePattern, String rotationTimes, String symlinkName,
+                   int queueSize, long rotationSize, String threadName, LogWriter<LOGTYPE> logWriter,
+                   boolean dropWhenFull, Metrics metrics) {
+        this(compression, bufferSize, filePattern, calcTimesMinutes(rotationTimes), symlinkName, queueSize, rotationSize, threadName, logWriter, Clock.systemUTC(), dropWhenFull, metrics);
+    }
+
     LogFileHandler(Compression compression, int bufferSize, String filePattern, String rotationTimes, String symlinkName,
                    int queueSize, long rotationSize, String threadName, LogWriter<LOGTYPE> logWriter) {
         this(compression, bufferSize, filePattern, calcTimesMinutes(rotationTimes), symlinkName, queueSize, rotationSize, threadName, logWriter, Clock.systemUTC());
@@ -75,8 +110,21 @@ class LogFileHandler <LOGTYPE> {
     }
 
 
-    private Operation<LOGTYPE> poll() throws InterruptedException {
-        return logQueue.poll(100, TimeUnit.MILLISECONDS);
+    /** Returns the next operation, waiting a while for one if there is none. Called from the log thread only. */
+    private Operation poll() throws InterruptedException {
+        Operation op = logQueue.poll();
+        if (op != null) return op;
+
+        logThread.waiting = true;
+        try {
+            op = logQueue.poll(); // Again, as publishers which added before we started waiting did not wake us
+            if (op != null) return op;
+            LockSupport.parkNanos(this, pollTimeoutNanos);
+            if (Thread.interrupted()) throw new InterruptedException();
+            return logQueue.poll();
+        } finally {
+            logThread.waiting = false;
+        }
     }
 
     /**
@@ -85,39 +133,70 @@ class LogFileHandler <LOGTYPE> {
      * @param r logrecord to publish
      */
     public void publish(LOGTYPE r) {
-        addOperation(new Operation<>(r));
+        byte[] entry = format(r);
+        if (entry != null)
+            addOperation(new Operation(entry));
     }
 
     void publishAndWait(LOGTYPE r) {
-        addOperationAndWait(new Operation<>(r));
+        byte[] entry = format(r);
+        if (entry != null)
+            addOperationAndWait(new Operation(entry));
     }
 
     public void flush() {
-        addOperationAndWait(new Operation<>(Operation.Type.flush));
+        addOperationAndWait(new Operation(Operation.Type.flush));
     }
 
     /**
      * Force file rotation now, independent of schedule.
      */
     void rotateNow() {
-        addOperationAndWait(new Operation<>(Operation.Type.rotate));
+        addOperationAndWait(new Operation(Operation.Type.rotate));
     }
 
     public void close() {
-        addOperationAndWait(new Operation<>(Operation.Type.close));
+        addOperationAndWait(new Operation(Operation.Type.close));
     }
 
-    private void addOperation(Operation<LOGTYPE> op) {
+    /** Formats the given record as a log line in the calling thread, or returns null if it fails */
+    private byte[] format(LOGTYPE r) {
+        FormatBuffer buffer = formatBuffer.get();
+        buffer.reset();
         try {
-            logQueue.put(op);
-        } catch (InterruptedException e) {
+            logWriter.write(r, buffer);
+            buffer.write('\n');
+            return buffer.toByteArray();
+        } catch (IOException e) {
+            logger.warning("Failed writing log record: " + Exceptions.toMessageString(e));
+            return null;
+        } finally {
+            if (buffer.capacity() > maxRetainedFormatBufferSize)
+                formatBuffer.remove();
+        }
+    }
+
+    /** Adds the given operation, and returns whether it was added rather than dropped */
+    private boolean addOperation(Operation op) {
+        if ( ! logQueue.offer(op)) {
+            metrics.queueFull().add();
+            if (dropWhenFull && op.type == Operation.Type.log) {
+                metrics.dropped().add();
+                return false;
+            }
+            do {
+                LockSupport.parkNanos(queueFullBackoffNanos);
+                if (Thread.currentThread().isInterrupted()) return false;
+            } while ( ! logQueue.offer(op));
         }
+        logThread.wakeUp();
+        return true;
     }
 
-    private void addOperationAndWait(Operation<LOGTYPE> op) {
+    private void addOperationAndWait(Operation op) {
         try {
-            logQueue.put(op);
-            op.countDownLatch.await();
+            if (addOperation(op))
+                op.countDownLatch.await();
         } catch (InterruptedException e) {
         }
     }
@@ -201,8 +280,10 @@ class LogFileHandler <LOGTYPE> {
     /**
      * Handle logging and file operations
      */
-    static class LogThread<LOGTYPE> extends Thread {
-        private final Pollable<LOGTYPE> operationProvider;
+    static class LogThread extends Thread {
+        private final Pollable operationProvider;
+        private final Metrics metrics;
+        volatile boolean waiting = false;
         long lastFlush = 0;
         private PageCacheFriendlyFileOutputStream fileOutput = null;
         private long nextRotationTime = 0;
@@ -212,7 +293,6 @@ class LogFileHandler <LOGTYPE> {
         private Instant lastFileSizeCheck = Instant.now();
         private final String filePattern;  // default to current directory, ms time stamp
         private volatile String fileName;
-        private final LogWriter<LOGTYPE> logWriter;
         private final Compression compression;
         private final int bufferSize;
         private final long[] rotationTimes;
@@ -221,19 +301,18 @@ class LogFileHandler <LOGTYPE> {
         private final NativeIO nativeIO = new NativeIO();
         private final long rotationSize;
 
-        LogThread(LogWriter<LOGTYPE> logWriter,
-                  String filePattern,
+        LogThread(String filePattern,
                   Compression compression,
                   int bufferSize,
                   long[] rotationTimes,
                   String symlinkName,
                   long rotationSize,
                   String threadName,
-                  Pollable<LOGTYPE> operationProvider,
-                  Clock clock) {
+                  Pollable operationProvider,
+                  Clock clock,
+                  Metrics metrics) {
             super(threadName);
             setDaemon(true);
-            this.logWriter = logWriter;
             this.filePattern = filePattern;
             this.compression = compression;
             this.bufferSize = bufferSize;
@@ -242,6 +321,13 @@ class LogFileHandler <LOGTYPE> {
             this.rotationSize = rotationSize;
             this.operationProvider = operationProvider;
             this.clock = clock;
+            this.metrics = metrics;
+        }
+
+        /** Wakes this up if it is waiting for operations */
+        void wakeUp() {
+            if (waiting)
+                LockSupport.unpark(this);
         }
 
         private static ExecutorService createCompressionTaskExecutor() {
@@ -267,7 +353,7 @@ class LogFileHandler <LOGTYPE> {
 
         private void handleLogOperations() throws InterruptedException {
             while (!isInterrupted()) {
-                Operation<LOGTYPE> r = operationProvider.poll();
+                Operation r = operationProvider.poll();
                 if (r != null) {
                     if (r.type == Operation.Type.flush) {
                         internalFlush();
@@ -277,7 +363,8 @@ class LogFileHandler <LOGTYPE> {
                         internalRotateNow();
                         lastFlush = System.nanoTime();
                     } else if (r.type == Operation.Type.log) {
-                        internalPublish(r.log.get());
+                        internalPublish(r.entry);
+                        metrics.writeLatency().sample((System.nanoTime() - r.createdNanos) / 1_000_000.0);
                         flushIfOld(3, TimeUnit.SECONDS);
                     }
                     r.countDownLatch.countDown();
@@ -317,7 +404,7 @@ class LogFileHandler <LOGTYPE> {
             }
         }
 
-        private void internalPublish(LOGTYPE r) {
+        private void internalPublish(byte[] entry) {
             // first check to see if new file needed.
             // if so, use this.internalRotateNow() to do it
 
@@ -336,8 +423,7 @@ class LogFileHandler <LOGTYPE> {
                 internalRotateNow();
             }
             try {
-                logWriter.write(r, fileOutput);
-                fileOutput.write('\n');
+                fileOutput.write(entry);
             } catch (IOException e) {
                 logger.warning("Failed writing log record: " + Exceptions.toMessageString(e));
             }
@@ -530,28 +616,56 @@ class LogFileHandler <LOGTYPE> {
 
     }
 
-    private static class Operation<LOGTYPE> {
+    private static class Operation {
         enum Type {log, flush, close, rotate}
 
         final Type type;
 
-        final Optional<LOGTYPE> log;
+        /** The formatted log entry, including the line terminator, if this is a log operation */
+        final byte[] entry;
+        final long createdNanos = System.nanoTime();
         final CountDownLatch countDownLatch = new CountDownLatch(1);
 
         Operation(Type type) {
-            this(type, Optional.empty());
+            this(type, null);
         }
 
-        Operation(LOGTYPE log) {
-            this(Type.log, Optional.of(log));
+        Operation(byte[] entry) {
+            this(Type.log, entry);
         }
 
-        private Operation(Type type, Optional<LOGTYPE> log) {
+        private Operation(Type type, byte[] entry) {
             this.type = type;
-            this.log = log;
+            this.entry = entry;
         }
     }
 
+    /** A byte buffer log entries are formatted into, which is reused by the thread owning it */
+    private static class FormatBuffer extends ByteArrayOutputStream {
+
+        FormatBuffer() { super(1024); }
+
+        int capacity() { return buf.length; }
+
+    }
+
+    /** The metrics reported by a log file handler */
+    record Metrics(BoundCounter queueFull, BoundCounter dropped, BoundGauge writeLatency) {
+
+        /** Returns metrics reported to the given receiver, with names starting with the given prefix */
+        static Metrics of(MetricReceiver receiver, String prefix) {
+            return new Metrics(receiver.declareCounter(prefix + ".queue_full").bind(),
+                               receiver.declareCounter(prefix + ".dropped").bind(),
+                               receiver.declareGauge(prefix + ".write_latency").bind());
+        }
+
+        /** Returns metrics which are not reported anywhere */
+        static Metrics none() {
+            return of(MetricReceiver.nullImplementation, "");
+        }
+
+    }
+
     /** File output stream that signals to kernel to drop previous pages after write */
     private static class PageCacheFriendlyFileOutputStream extends OutputStream {
 
@@ -0,0 +1,58 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.container.logging;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded, lock-free queue for many producers and a single consumer.
+ * Producers claim a slot by advancing the producer index, and then publish into it.
+ * The consumer takes items in claim order, and treats a claimed but not yet published slot as empty.
+ */
+final class MpscRingBuffer<T> {
+
+    private final AtomicReferenceArray<T> slots;
+    private final int capacity;
+    private final int mask;
+    private final AtomicLong producerIndex = new AtomicLong();
+
+    /** Written by the consumer only */
+    private volatile long consumerIndex = 0;
+
+    /** Creates a ring buffer which holds at least the given number of items */
+    MpscRingBuffer(int minCapacity) {
+        if (minCapacity < 1) throw new IllegalArgumentException("Capacity must be positive, was " + minCapacity);
+        this.capacity = Integer.highestOneBit(minCapacity) == minCapacity ? minCapacity
+                                                                          : Integer.highestOneBit(minCapacity) << 1;
+        this.mask = capacity - 1;
+        this.slots = new AtomicReferenceArray<>(capacity);
+    }
+
+    /** Adds an item to this if it is not full. This may be called from any thread. */
+    boolean offer(T item) {
+        long index;
+        do {
+            index = producerIndex.get();
+            if (index - consumerIndex >= capacity) return false;
+        } while ( ! producerIndex.compareAndSet(index, index + 1));
+        slots.set((int) index & mask, item);
+        return true;
+    }
+
+    /** Removes and returns the next item, or null if there is none. This must only be called from the consumer thread. */
+    T poll() {
+        long index = consumerIndex;
+        int slot = (int) index & mask;
+        T item = slots.get(slot);
+        if (item == null) return null;
+        slots.lazySet(slot, null);
+        consumerIndex = index + 1; // Makes the slot available to producers, after it is cleared
+        return item;
+    }
+
+    /** Returns whether there are no claimed slots in this */
+    boolean isEmpty() { return producerIndex.get() == consumerIndex; }
+
+    int capacity() { return capacity; }
+
+}
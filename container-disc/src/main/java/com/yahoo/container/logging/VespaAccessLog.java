@@ -2,7 +2,9 @@
 package com.yahoo.container.logging;
 
 import com.yahoo.component.AbstractComponent;
+import com.yahoo.component.annotation.Inject;
 import com.yahoo.container.core.AccessLogConfig;
+import com.yahoo.metrics.simple.MetricReceiver;
 
 import java.io.IOException;
 import java.io.OutputStream;
@@ -22,8 +24,13 @@ public final class VespaAccessLog extends AbstractComponent implements RequestLo
 
     private final AccessLogHandler logHandler;
 
+    @Inject
+    public VespaAccessLog(AccessLogConfig config, MetricReceiver metricReceiver) {
+        logHandler = new AccessLogHandler(config.fileHandler(), this, metricReceiver, "vespa");
+    }
+
     public VespaAccessLog(AccessLogConfig config) {
-        logHandler = new AccessLogHandler(config.fileHandler(), this);
+        this(config, MetricReceiver.nullImplementation);
     }
 
     private static SimpleDateFormat createDateFormat() {
@@ -0,0 +1,50 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.metrics.simple;
+
+import com.yahoo.api.annotations.Beta;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A counter bound to a single point in the metric space. Create one by calling
+ * {@link Counter#bind()} or {@link Counter#bind(Point)} once, and keep it
+ * for the life cycle of the component using it.
+ * <p>
+ * Updates are recorded into a striped accumulator, without taking locks or
+ * allocating, and collected when the metric snapshot is updated.
+ */
+@Beta
+public final class BoundCounter {
+
+    private final Identifier identifier;
+    private final LongAdder count = new LongAdder();
+
+    BoundCounter(Identifier identifier) {
+        this.identifier = identifier;
+    }
+
+    /** Increase this counter by 1. */
+    public void add() {
+        count.increment();
+    }
+
+    /**
+     * Add to this counter.
+     *
+     * @param n the amount by which to increase this counter
+     */
+    public void add(long n) {
+        count.add(n);
+    }
+
+    /** Moves the count added since the last call into the given bucket. */
+    void drainTo(Bucket bucket) {
+        long n = count.sumThenReset(); // Atomic for each stripe, so concurrent updates go into the next drain
+        if (n == 0) return;
+
+        UntypedMetric value = new UntypedMetric(null);
+        value.add(n);
+        bucket.merge(identifier, value);
+    }
+
+}
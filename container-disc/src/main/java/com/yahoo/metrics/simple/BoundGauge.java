@@ -0,0 +1,70 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.metrics.simple;
+
+import com.yahoo.api.annotations.Beta;
+import org.HdrHistogram.DoubleRecorder;
+
+import java.util.concurrent.atomic.DoubleAccumulator;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A gauge bound to a single point in the metric space. Create one by calling
+ * {@link Gauge#bind()} or {@link Gauge#bind(Point)} once, and keep it
+ * for the life cycle of the component using it.
+ * <p>
+ * Samples are recorded into striped accumulators and, if the metric is a histogram,
+ * a wait-free histogram recorder, without taking locks or allocating. They are
+ * collected when the metric snapshot is updated.
+ */
+@Beta
+public final class BoundGauge {
+
+    private final Identifier identifier;
+    private final MetricSettings metricSettings;
+
+    private final LongAdder count = new LongAdder();
+    private final DoubleAdder sum = new DoubleAdder();
+    private final DoubleAccumulator min = new DoubleAccumulator(Math::min, Double.POSITIVE_INFINITY);
+    private final DoubleAccumulator max = new DoubleAccumulator(Math::max, Double.NEGATIVE_INFINITY);
+    private final DoubleRecorder histogram;
+    private volatile double last;
+
+    BoundGauge(Identifier identifier, MetricSettings metricSettings) {
+        this.identifier = identifier;
+        this.metricSettings = metricSettings;
+        if (metricSettings == null || ! metricSettings.isHistogram())
+            histogram = null;
+        else
+            histogram = new DoubleRecorder(metricSettings.getSignificantdigits());
+    }
+
+    /**
+     * Record a sample.
+     *
+     * @param x sample value
+     */
+    public void sample(double x) {
+        if (histogram != null)
+            histogram.recordValue(x);
+        min.accumulate(x);
+        max.accumulate(x);
+        sum.add(x);
+        last = x;
+        count.increment(); // Last, so that a drain which sees this sample also sees the values above
+    }
+
+    /** Moves the samples recorded since the last call into the given bucket. */
+    void drainTo(Bucket bucket) {
+        // Each value is reset atomically for each stripe, so samples recorded concurrently
+        // go into either this drain or the next, but their count may be in another than their sum.
+        long n = count.sumThenReset();
+        if (n == 0) return;
+
+        UntypedMetric value = new UntypedMetric(metricSettings);
+        value.putAggregate(n, sum.sumThenReset(), min.getThenReset(), max.getThenReset(), last,
+                           histogram != null ? histogram.getIntervalHistogram() : null);
+        bucket.merge(identifier, value);
+    }
+
+}
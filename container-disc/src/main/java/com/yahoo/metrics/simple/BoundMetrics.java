@@ -0,0 +1,33 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.metrics.simple;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The bound counters and gauges of a receiver. There is a single instance for
+ * each point of each metric, so binding the same metric and point repeatedly
+ * does not grow this.
+ */
+class BoundMetrics {
+
+    private final Map<Identifier, BoundCounter> counters = new ConcurrentHashMap<>();
+    private final Map<Identifier, BoundGauge> gauges = new ConcurrentHashMap<>();
+
+    BoundCounter counter(Identifier identifier) {
+        return counters.computeIfAbsent(identifier, BoundCounter::new);
+    }
+
+    BoundGauge gauge(Identifier identifier, MetricSettings metricSettings) {
+        return gauges.computeIfAbsent(identifier, id -> new BoundGauge(id, metricSettings));
+    }
+
+    /** Moves the values recorded by all bound metrics since the last call into the given bucket. */
+    void drainTo(Bucket bucket) {
+        for (BoundCounter counter : counters.values())
+            counter.drainTo(bucket);
+        for (BoundGauge gauge : gauges.values())
+            gauge.drainTo(bucket);
+    }
+
+}
@@ -86,6 +86,15 @@ public class Bucket {
         }
     }
 
+    /** Merges a value recorded outside the thread local buckets into this. */
+    void merge(Identifier id, UntypedMetric value) {
+        try {
+            get(id, value).merge(value, true);
+        } catch (IllegalArgumentException e) {
+            log.log(Level.WARNING, "Problems merging metric " + id.getName() + ", possibly ignoring data.");
+        }
+    }
+
     void merge(Bucket other) {
         boolean otherIsNewer = resolveTimeStamps(other);
         merge(other, otherIsNewer);
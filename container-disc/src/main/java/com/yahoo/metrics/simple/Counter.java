@@ -60,6 +60,27 @@ public class Counter {
         metricReceiver.update(new Sample(new Measurement(n), new Identifier(name, p), AssumedType.COUNTER));
     }
 
+    /**
+     * Bind this counter to its default position. Updating the returned counter
+     * is cheaper than updating this, as the position is resolved only once.
+     *
+     * @return a thread-safe counter at the default position of this
+     */
+    public BoundCounter bind() {
+        return bind(defaultPosition);
+    }
+
+    /**
+     * Bind this counter to the given point. Updating the returned counter
+     * is cheaper than updating this with the point, as the point is resolved only once.
+     *
+     * @param p the point in the metric space the returned counter updates this metric at
+     * @return a thread-safe counter at the given point
+     */
+    public BoundCounter bind(Point p) {
+        return metricReceiver.boundMetrics().counter(new Identifier(name, p));
+    }
+
     /**
      * Create a PointBuilder with default dimension values as given when this
      * counter was declared.
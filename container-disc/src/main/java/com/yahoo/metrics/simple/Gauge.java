@@ -46,6 +46,27 @@ public class Gauge {
         receiver.update(new Sample(new Measurement(x), new Identifier(name, p), AssumedType.GAUGE));
     }
 
+    /**
+     * Bind this gauge to its default position. Sampling the returned gauge
+     * is cheaper than sampling this, as the position is resolved only once.
+     *
+     * @return a thread-safe gauge at the default position of this
+     */
+    public BoundGauge bind() {
+        return bind(defaultPosition);
+    }
+
+    /**
+     * Bind this gauge to the given position. Sampling the returned gauge
+     * is cheaper than sampling this with the position, as it is resolved only once.
+     *
+     * @param p position/dimension values for the samples of the returned gauge
+     * @return a thread-safe gauge at the given position
+     */
+    public BoundGauge bind(Point p) {
+        return receiver.boundMetrics().gauge(new Identifier(name, p), receiver.getMetricDefinition(name));
+    }
+
     /**
      * Create a PointBuilder with the default dimension values reflecting those
      * given when this gauge was declared.
@@ -22,6 +22,7 @@ public class MetricReceiver {
 
     public static final MetricReceiver nullImplementation = new NullReceiver();
     private final ThreadLocalDirectory<Bucket, Sample> metricsCollection;
+    private final BoundMetrics boundMetrics;
 
     // A reference to the current snapshot. The *reference* is shared with MetricsAggregator and updated from there :-/
     private final AtomicReference<Bucket> currentSnapshot;
@@ -31,8 +32,14 @@ public class MetricReceiver {
     private volatile Map<String, MetricSettings> metricSettings;
 
     public MetricReceiver(ThreadLocalDirectory<Bucket, Sample> metricsCollection, AtomicReference<Bucket> currentSnapshot) {
+        this(metricsCollection, currentSnapshot, new BoundMetrics());
+    }
+
+    MetricReceiver(ThreadLocalDirectory<Bucket, Sample> metricsCollection, AtomicReference<Bucket> currentSnapshot,
+                   BoundMetrics boundMetrics) {
         this.metricsCollection = metricsCollection;
         this.currentSnapshot = currentSnapshot;
+        this.boundMetrics = boundMetrics;
         metricSettings = new ImmutableMap.Builder<String, MetricSettings>().build();
     }
 
@@ -139,6 +146,11 @@ public class MetricReceiver {
         return currentSnapshot.get();
     }
 
+    /** Returns the bound counters and gauges of this, which are collected with the thread local data. */
+    BoundMetrics boundMetrics() {
+        return boundMetrics;
+    }
+
     /**
      * Add how to build a histogram for a given metric.
      *
@@ -188,6 +200,11 @@ public class MetricReceiver {
         public void add(long n, Point p) {
         }
 
+        @Override
+        public BoundCounter bind(Point p) {
+            return new BoundCounter(new Identifier(null, p));
+        }
+
         @Override
         public PointBuilder builder() {
             return super.builder();
@@ -207,6 +224,11 @@ public class MetricReceiver {
         public void sample(double x, Point p) {
         }
 
+        @Override
+        public BoundGauge bind(Point p) {
+            return new BoundGauge(new Identifier(null, p), null);
+        }
+
         @Override
         public PointBuilder builder() {
             return super.builder();
@@ -233,6 +255,7 @@ public class MetricReceiver {
             for (Bucket b : collection.fetch()) {
                 merged.merge(b, true);
             }
+            boundMetrics().drainTo(merged);
             return merged;
         }
 
@@ -61,6 +61,23 @@ public class UntypedMetric {
         ++count;
     }
 
+    /** Sets this gauge to the aggregate of the given samples, which were recorded elsewhere */
+    void putAggregate(long count, double sum, double min, double max, double last, DoubleHistogram samples) {
+        outputFormat = AssumedType.GAUGE;
+        this.count = count;
+        this.sum = sum;
+        this.min = min;
+        this.max = max;
+        this.current = last;
+        if (histogram != null && samples != null) {
+            try {
+                histogram.add(samples);
+            } catch (ArrayIndexOutOfBoundsException e) {
+                log.log(Level.WARNING, "Had trouble merging histograms: " + e.getMessage());
+            }
+        }
+    }
+
     UntypedMetric pruneData() {
         UntypedMetric pruned = new UntypedMetric(null);
         pruned.outputFormat = this.outputFormat;
@@ -13,6 +13,9 @@
  * {@link com.yahoo.metrics.simple.MetricReceiver#declareGauge(String)},
  * {@link com.yahoo.metrics.simple.MetricReceiver#declareGauge(String, Point)}, or
  * {@link com.yahoo.metrics.simple.MetricReceiver#declareGauge(String, java.util.Optional, MetricSettings)}.
+ * Metrics which are always updated at the same point should be bound to it once, using
+ * {@link com.yahoo.metrics.simple.Counter#bind(Point)} or {@link com.yahoo.metrics.simple.Gauge#bind(Point)},
+ * as updating bound metrics neither allocates nor takes locks.
  * </p>
  *
  * <p>
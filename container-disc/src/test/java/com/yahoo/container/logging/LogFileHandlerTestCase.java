@@ -4,6 +4,8 @@ package com.yahoo.container.logging;
 import com.yahoo.compress.ZstdCompressor;
 import com.yahoo.container.logging.LogFileHandler.Compression;
 import com.yahoo.io.IOUtils;
+import com.yahoo.metrics.simple.MetricReceiver;
+import com.yahoo.metrics.simple.Point;
 import com.yahoo.test.ManualClock;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.Timeout;
@@ -20,6 +22,7 @@ import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Locale;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.function.BiFunction;
 import java.util.logging.Formatter;
 import java.util.logging.Level;
@@ -530,6 +533,36 @@ public class LogFileHandlerTestCase {
         handler.shutdown();
     }
 
+    @Test
+    @Timeout(300_000)
+    void entries_from_concurrent_publishers_are_all_written() throws IOException, InterruptedException {
+        File root = newFolder(temporaryFolder, "concurrentpublishers");
+        MetricReceiver.MockReceiver metrics = new MetricReceiver.MockReceiver();
+        LogFileHandler<String> handler = new LogFileHandler<>(
+                Compression.NONE, BUFFER_SIZE, root.getAbsolutePath() + "/logfilehandlertest.%Y%m%d%H%M%S%s", new long[]{0}, null, 16,
+                0, "thread-name", new StringLogWriter(), clock, false, LogFileHandler.Metrics.of(metrics, "test_log"));
+        int publishers = 4, entriesPerPublisher = 5000;
+        Thread[] threads = new Thread[publishers];
+        for (int p = 0; p < publishers; p++) {
+            int publisher = p;
+            threads[p] = new Thread(() -> {
+                for (int i = 0; i < entriesPerPublisher; i++)
+                    handler.publish(publisher + ":" + i);
+            });
+            threads[p].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+        handler.flush();
+
+        List<String> lines = Files.readAllLines(Paths.get(handler.getFileName()));
+        assertEquals(publishers * entriesPerPublisher, lines.size());
+        assertEquals(publishers * entriesPerPublisher, new HashSet<>(lines).size());
+        assertEquals(publishers * entriesPerPublisher,
+                     metrics.getSnapshot().getMapForMetric("test_log.write_latency").get(Point.emptyPoint()).getCount());
+        handler.shutdown();
+    }
+
     static class StringLogWriter implements LogWriter<String> {
 
         @Override
@@ -0,0 +1,63 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.container.logging;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MpscRingBufferTest {
+
+    @Test
+    void items_are_polled_in_order_until_full() {
+        MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(3);
+        assertEquals(4, buffer.capacity());
+        assertTrue(buffer.isEmpty());
+        for (int round = 0; round < 3; round++) { // Wraps around
+            for (int i = 0; i < 4; i++)
+                assertTrue(buffer.offer(i));
+            assertFalse(buffer.offer(4));
+            assertFalse(buffer.isEmpty());
+            for (int i = 0; i < 4; i++)
+                assertEquals(Integer.valueOf(i), buffer.poll());
+            assertNull(buffer.poll());
+            assertTrue(buffer.isEmpty());
+        }
+    }
+
+    @Test
+    void all_items_from_concurrent_producers_are_polled() throws InterruptedException {
+        MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(64);
+        int producers = 4, itemsPerProducer = 100_000;
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            int first = p * itemsPerProducer;
+            threads[p] = new Thread(() -> {
+                for (int i = first; i < first + itemsPerProducer; i++)
+                    while ( ! buffer.offer(i)) Thread.onSpinWait();
+            });
+            threads[p].start();
+        }
+        Set<Integer> polled = new HashSet<>();
+        int[] last = new int[producers];
+        Arrays.fill(last, -1);
+        while (polled.size() < producers * itemsPerProducer) {
+            Integer item = buffer.poll();
+            if (item == null) continue;
+            assertTrue(polled.add(item));
+            int producer = item / itemsPerProducer;
+            assertTrue(item > last[producer], "Items from each producer are polled in order");
+            last[producer] = item;
+        }
+        for (Thread thread : threads)
+            thread.join();
+        assertTrue(buffer.isEmpty());
+    }
+
+}
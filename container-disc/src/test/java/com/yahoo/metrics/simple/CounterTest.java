@@ -9,6 +9,8 @@ import java.util.Map.Entry;
 import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -107,4 +109,32 @@ public class CounterTest {
         assertEquals(twoToThePowerOfFourtyeight, x.get(0).getValue().getCount());
     }
 
+    @Test
+    final void testBoundCounter() throws InterruptedException {
+        final String metricName = "unitTestCounter";
+        Point p = receiver.pointBuilder().set("x", 2L).build();
+        Counter c = receiver.declareCounter(metricName, p);
+        BoundCounter bound = c.bind();
+        assertSame(bound, c.bind(p));
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 1000; j++)
+                    bound.add();
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+        bound.add(5);
+        c.add(2L); // Merged with the values of the bound counter
+
+        Map<Point, UntypedMetric> values = receiver.getSnapshot().getMapForMetric(metricName);
+        assertEquals(1, values.size());
+        assertEquals(4007L, values.get(p).getCount());
+        assertTrue(values.get(p).isCounter());
+
+        assertTrue(receiver.getSnapshot().getMapForMetric(metricName).isEmpty()); // Drained by the previous snapshot
+    }
+
 }
@@ -6,6 +6,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Optional;
 import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -78,4 +79,28 @@ public class GaugeTest {
         assertEquals(Math.E, x.get(0).getValue().getLast(), 1e-15);
     }
 
+    @Test
+    final void testBoundGauge() {
+        final String metricName = "unitTestGauge";
+        Gauge g = receiver.declareGauge(metricName, Optional.empty(), new MetricSettings.Builder().histogram(true).build());
+        BoundGauge bound = g.bind();
+        for (int i = 1; i <= 100; i++)
+            bound.sample(i);
+        g.sample(1000.0d); // Merged with the samples of the bound gauge
+
+        UntypedMetric value = receiver.getSnapshot().getMapForMetric(metricName).get(Point.emptyPoint());
+        assertEquals(101L, value.getCount());
+        assertEquals(6050.0d, value.getSum(), 0.0d);
+        assertEquals(1.0d, value.getMin(), 0.0d);
+        assertEquals(1000.0d, value.getMax(), 0.0d);
+        assertEquals(100.0d, value.getLast(), 0.0d);
+        assertEquals(50.0d, value.getHistogram().getValueAtPercentile(50.0d), 1.0d);
+
+        bound.sample(7.0d);
+        value = receiver.getSnapshot().getMapForMetric(metricName).get(Point.emptyPoint());
+        assertEquals(1L, value.getCount());
+        assertEquals(7.0d, value.getMin(), 0.0d);
+        assertEquals(7.0d, value.getMax(), 0.0d);
+    }
+
 }
@@ -0,0 +1,45 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.metrics.simple;
+
+/**
+ * Compares recording counters and gauges through declared metrics with recording through bound metrics,
+ * from several threads concurrently.
+ */
+public class MetricsMicroBenchmark {
+
+    private static final int threads = 8;
+    private static final int updatesPerThread = 2_000_000;
+
+    public static void main(String[] args) throws InterruptedException {
+        MetricReceiver receiver = new MetricReceiver.MockReceiver();
+        Point point = receiver.pointBuilder().set("chain", "default").set("handler", "search").build();
+        Counter counter = receiver.declareCounter("queries", point);
+        Gauge gauge = receiver.declareGauge("latency", point);
+        BoundCounter boundCounter = counter.bind();
+        BoundGauge boundGauge = gauge.bind();
+
+        for (int i = 0; i < 3; i++) {
+            run("declared", receiver, () -> { counter.add(); gauge.sample(12.5); });
+            run("bound", receiver, () -> { boundCounter.add(); boundGauge.sample(12.5); });
+        }
+    }
+
+    private static void run(String name, MetricReceiver receiver, Runnable update) throws InterruptedException {
+        Thread[] workers = new Thread[threads];
+        long start = System.nanoTime();
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Thread(() -> {
+                for (int j = 0; j < updatesPerThread; j++)
+                    update.run();
+            });
+            workers[i].start();
+        }
+        for (Thread worker : workers)
+            worker.join();
+        long elapsed = System.nanoTime() - start;
+        Bucket snapshot = receiver.getSnapshot();
+        System.out.printf("%-10s %6.1f ns per update pair in each thread, %d queries counted%n", name,
+                          (double) elapsed / updatesPerThread, snapshot.getMapForMetric("queries").values().iterator().next().getCount());
+    }
+
+}
@@ -2,6 +2,7 @@
 package com.yahoo.prelude.querytransform;
 
 import com.yahoo.fsa.FSA;
+import com.yahoo.fsa.FSARegistry;
 import com.yahoo.prelude.query.CompositeItem;
 import com.yahoo.prelude.query.Item;
 import com.yahoo.prelude.query.NotItem;
@@ -57,7 +58,7 @@ public class PhraseMatcher {
      */
     public PhraseMatcher(String phraseAutomatonFile,boolean ignorePluralForm) {
         this.ignorePluralForm=ignorePluralForm;
-        phraseFSA=new FSA(phraseAutomatonFile);
+        phraseFSA=FSARegistry.get(phraseAutomatonFile);
     }
 
     /**
@@ -123,26 +124,21 @@ public class PhraseMatcher {
     private List<Phrase> matchSingleItem(TermItem termItem) {
         String matchWord = toLowerCase(termItem.stringValue());
         String replaceWord = null;
-        FSA.State state = phraseFSA.getState();
-        if (!matches(state,matchWord)) {
+        int state = phraseFSA.delta(phraseFSA.start(), matchWord);
+        if ( ! phraseFSA.isFinal(state)) {
             if (!ignorePluralForm) return null;
             matchWord = switchForm(matchWord);
-            if (!matches(state, matchWord)) return null;
+            state = phraseFSA.delta(phraseFSA.start(), matchWord);
+            if ( ! phraseFSA.isFinal(state)) return null;
             replaceWord = matchWord;
         }
 
         List<Phrase> itemList = new java.util.ArrayList<>(1);
-        itemList.add(new Phrase(termItem, replaceWord, state.dataString()));
+        itemList.add(new Phrase(termItem, replaceWord, phraseFSA.dataString(state)));
         return itemList;
 
     }
 
-    private boolean matches(FSA.State state, String word) {
-        state.start();
-        state.delta(word);
-        return state.isFinal();
-    }
-
     /** Find matches within a composite */
     private void recursivelyMatchPhrases(Item item, MatchedPhrases phrases) {
         if (item == null) return;
@@ -301,6 +301,7 @@ public class RuleBase {
     public void initialize() {
         inlineIncluded();
         makeReferences();
+        analyzer.initialize();
     }
 
     /**
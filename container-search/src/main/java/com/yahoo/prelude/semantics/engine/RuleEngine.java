@@ -8,6 +8,8 @@ import com.yahoo.prelude.semantics.RuleBase;
 import com.yahoo.prelude.semantics.RuleBaseException;
 import com.yahoo.prelude.semantics.rule.ProductionRule;
 
+import java.util.BitSet;
+import java.util.List;
 import java.util.ListIterator;
 
 /**
@@ -20,10 +22,18 @@ public class RuleEngine {
 
     private final RuleBase rules;
 
+    /** The index used to find the rules which may match a query, or null if not initialized */
+    private volatile RuleIndex index = null;
+
     public RuleEngine(RuleBase rules) {
         this.rules=rules;
     }
 
+    /** Indexes the rules of the rule base of this. Call this when all rules are added and references are made. */
+    public void initialize() {
+        index = new RuleIndex(rules.rules());
+    }
+
     /**
      * Evaluates a rule base over a query
      *
@@ -33,19 +43,22 @@ public class RuleEngine {
      *         If there is an error, this query is destroyed (unusable)
      */
     public String evaluate(Query query, int traceLevel) {
-        // TODO: This is O(query size*rule base size). We'll eventually need to create indices
-        //       on rules to look up rule candidates per term to make it O(query size) instead
-        //       Probably create indices on the first term like Prolog implementations use to
-
         boolean matchedAnything = false;
         Evaluation evaluation = new Evaluation(query, rules, traceLevel);
         if (traceLevel >= 2)
             evaluation.trace(2,"Evaluating query '" + evaluation.getQuery().getModel().getQueryTree().getRoot() + "':");
-        for (ListIterator<ProductionRule> i = rules.ruleIterator(); i.hasNext(); ) {
-            evaluation.reset();
-            ProductionRule rule = i.next();
-            boolean matched = matchRuleAtAllStartPoints(evaluation,rule);
-            matchedAnything |= matched;
+        RuleIndex index = this.index;
+        List<ProductionRule> ruleList = rules.rules();
+        if (index == null || index.size() != ruleList.size()) { // Not initialized, or modified since
+            for (ListIterator<ProductionRule> i = rules.ruleIterator(); i.hasNext(); ) {
+                evaluation.reset();
+                ProductionRule rule = i.next();
+                boolean matched = matchRuleAtAllStartPoints(evaluation,rule);
+                matchedAnything |= matched;
+            }
+        }
+        else {
+            matchedAnything = evaluateCandidates(evaluation, index, ruleList);
         }
 
         if ( ! matchedAnything) return null;
@@ -55,6 +68,27 @@ public class RuleEngine {
         return error;
     }
 
+    /**
+     * Evaluates the rules which may match the query, in rule order. Rules which become candidates
+     * by terms added by the productions of earlier rules are evaluated as well.
+     */
+    private boolean evaluateCandidates(Evaluation evaluation, RuleIndex index, List<ProductionRule> ruleList) {
+        boolean matchedAnything = false;
+        BitSet candidates = index.candidates(evaluation.getQuery().getModel().getQueryTree().getRoot());
+        int evaluated = -1;
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            if (i > evaluated + 1) // As skipped rules would have: Sets the previous query size seen by the next rule
+                evaluation.reset();
+            evaluation.reset();
+            boolean matched = matchRuleAtAllStartPoints(evaluation, ruleList.get(i));
+            if (matched)
+                index.addCandidates(evaluation.getQuery().getModel().getQueryTree().getRoot(), candidates);
+            matchedAnything |= matched;
+            evaluated = i;
+        }
+        return matchedAnything;
+    }
+
     /** Match a rule at any starting point in the query */
     private boolean matchRuleAtAllStartPoints(Evaluation evaluation, ProductionRule rule) {
         boolean matchedAtLeastOnce = false;
@@ -0,0 +1,135 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.prelude.semantics.engine;
+
+import com.yahoo.prelude.query.CompositeItem;
+import com.yahoo.prelude.query.Item;
+import com.yahoo.prelude.query.TermItem;
+import com.yahoo.prelude.semantics.rule.ChoiceCondition;
+import com.yahoo.prelude.semantics.rule.Condition;
+import com.yahoo.prelude.semantics.rule.ConditionReference;
+import com.yahoo.prelude.semantics.rule.NamedCondition;
+import com.yahoo.prelude.semantics.rule.ProductionRule;
+import com.yahoo.prelude.semantics.rule.SequenceCondition;
+import com.yahoo.prelude.semantics.rule.TermCondition;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An index of the rules of a rule base by the terms which must be present in a query for each rule to match,
+ * such that the rules which can be skipped for a query are found by looking up the terms of the query
+ * instead of evaluating each rule.
+ * <p>
+ * Rules having conditions which may match without any particular term (such as ellipses, negations,
+ * comparisons and automata references) are candidates for all queries.
+ * This is immutable and thread safe.
+ */
+final class RuleIndex {
+
+    /** The number of rules indexed */
+    private final int size;
+
+    /** The rules which must be evaluated for every query */
+    private final BitSet alwaysCandidates = new BitSet();
+
+    /** The rules requiring some term, by term, per linguistics used to process the terms */
+    private final Map<RuleBaseLinguistics, Map<String, BitSet>> candidatesByTerm = new IdentityHashMap<>();
+
+    RuleIndex(List<ProductionRule> rules) {
+        this.size = rules.size();
+        for (int i = 0; i < rules.size(); i++) {
+            Set<TermCondition> requiredTerms = requiredTerms(rules.get(i).getCondition(), new HashSet<>());
+            if (requiredTerms == null) {
+                alwaysCandidates.set(i);
+                continue;
+            }
+            for (TermCondition term : requiredTerms)
+                candidatesByTerm.computeIfAbsent(term.linguistics(), __ -> new HashMap<>())
+                                .computeIfAbsent(term.term(), __ -> new BitSet())
+                                .set(i);
+        }
+    }
+
+    /** Returns the number of rules in this */
+    int size() { return size; }
+
+    /** Returns the indexes of the rules which may match the query having the given root */
+    BitSet candidates(Item root) {
+        BitSet candidates = (BitSet)alwaysCandidates.clone();
+        addCandidates(root, candidates);
+        return candidates;
+    }
+
+    /** Adds the indexes of the rules which may match the query having the given root to the given set */
+    void addCandidates(Item root, BitSet candidates) {
+        if (candidatesByTerm.isEmpty()) return;
+        addCandidatesRecursively(root, candidates);
+    }
+
+    /** Visits the items which are eligible for matching, as done when an evaluation flattens the query */
+    private void addCandidatesRecursively(Item item, BitSet candidates) {
+        if (item == null) return;
+        if (item.isFilter()) return;
+
+        if (item instanceof TermItem term) {
+            for (Map.Entry<RuleBaseLinguistics, Map<String, BitSet>> entry : candidatesByTerm.entrySet()) {
+                BitSet rules = entry.getValue().get(entry.getKey().process(term.getIndexName(), term.stringValue()));
+                if (rules != null)
+                    candidates.or(rules);
+            }
+        }
+        else if (item instanceof CompositeItem composite) {
+            for (Iterator<Item> i = composite.getItemIterator(); i.hasNext(); )
+                addCandidatesRecursively(i.next(), candidates);
+        }
+    }
+
+    /**
+     * Returns a set of term conditions of which at least one must match for the given condition to match,
+     * or null if the condition may match without any particular term.
+     */
+    private static Set<TermCondition> requiredTerms(Condition condition, Set<NamedCondition> visiting) {
+        if (condition == null) return null;
+        if (condition.getNameSpace() != null) return null;
+
+        if (condition instanceof TermCondition term) {
+            return Set.of(term);
+        }
+        else if (condition instanceof SequenceCondition sequence) { // Each subcondition must match: Pick the most selective
+            Set<TermCondition> mostSelective = null;
+            for (Condition subCondition : sequence.conditions()) {
+                Set<TermCondition> required = requiredTerms(subCondition, visiting);
+                if (required != null && (mostSelective == null || required.size() < mostSelective.size()))
+                    mostSelective = required;
+            }
+            return mostSelective;
+        }
+        else if (condition instanceof ChoiceCondition choice) { // Any subcondition may match: All must require terms
+            Set<TermCondition> anyOf = new HashSet<>();
+            for (Condition subCondition : choice.conditions()) {
+                Set<TermCondition> required = requiredTerms(subCondition, visiting);
+                if (required == null) return null;
+                anyOf.addAll(required);
+            }
+            return anyOf.isEmpty() ? null : anyOf;
+        }
+        else if (condition instanceof ConditionReference reference) {
+            NamedCondition named = reference.getNamedCondition();
+            if (named == null) return null; // An automata reference
+            if ( ! visiting.add(named)) return null; // A recursive reference
+            Set<TermCondition> required = requiredTerms(named.getCondition(), visiting);
+            visiting.remove(named);
+            return required;
+        }
+        else {
+            return null;
+        }
+    }
+
+}
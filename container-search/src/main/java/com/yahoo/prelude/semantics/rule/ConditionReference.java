@@ -48,6 +48,9 @@ public class ConditionReference extends Condition {
 
     public void setConditionName(String name) { this.conditionName = name; }
 
+    /** Returns the condition referenced by this, or null if not initialized or if this is an automata reference */
+    public NamedCondition getNamedCondition() { return namedCondition; }
+
     public boolean doesMatch(RuleEvaluation e) {
         if (automataLookup) return automataMatch(e);
 
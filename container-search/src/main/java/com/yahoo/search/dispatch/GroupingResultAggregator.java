@@ -8,26 +8,48 @@ import com.yahoo.searchlib.aggregation.Grouping;
 import com.yahoo.searchlib.aggregation.Hit;
 import com.yahoo.text.Text;
 
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
- * Incrementally merges underlying {@link Grouping} instances from {@link GroupingListHit} hits.
+ * Merges underlying {@link Grouping} instances from {@link GroupingListHit} hits.
+ * <p>
+ * Groupings having the same id are merged incrementally as hits are added, but only with results of the same
+ * size, like in a binary counter: This keeps at most log2(n) partial results of n hits, and makes each merge
+ * combine results of similar size, instead of walking an ever growing accumulated result once per hit.
+ * The remaining partial results are merged pairwise when the aggregated hit is created, using the given executor.
+ * Earlier results are always merged with later ones, in the order the hits were added.
  *
  * @author bjorncs
  */
 class GroupingResultAggregator {
     private static final Logger log = Logger.getLogger(GroupingResultAggregator.class.getName());
 
-    private final Map<Integer, Grouping> groupings = new LinkedHashMap<>();
+    private final Map<Integer, List<Partial>> groupings = new LinkedHashMap<>();
+    private final Executor executor;
     private DocumentDatabase documentDatabase = null;
     private Query query = null;
     private int groupingHitsMerged = 0;
 
+    /** Creates an aggregator which merges in the calling thread */
+    GroupingResultAggregator() {
+        this(Runnable::run);
+    }
+
+    /** Creates an aggregator which may use the given executor to merge the final partial results in parallel */
+    GroupingResultAggregator(Executor executor) {
+        this.executor = executor;
+    }
+
     void mergeWith(GroupingListHit result) {
         ++groupingHitsMerged;
         if (documentDatabase == null) documentDatabase = result.getDocumentDatBase();
@@ -35,12 +57,8 @@ class GroupingResultAggregator {
         log.log(Level.FINE, () ->
                 Text.format("Merging hit #%d having %d groupings",
                         groupingHitsMerged, result.getGroupingList().size()));
-        for (Grouping grouping : result.getGroupingList()) {
-            groupings.merge(grouping.getId(), grouping, (existingGrouping, newGrouping) -> {
-                existingGrouping.merge(newGrouping);
-                return existingGrouping;
-            });
-        }
+        for (Grouping grouping : result.getGroupingList())
+            add(groupings.computeIfAbsent(grouping.getId(), __ -> new ArrayList<>()), new Partial(grouping, 1));
     }
 
     Optional<GroupingListHit> toAggregatedHit() {
@@ -48,7 +66,7 @@ class GroupingResultAggregator {
         log.log(Level.FINE, () ->
                 Text.format("Creating aggregated hit containing %d groupings from %d hits with docsums '%s' and %s",
                         groupings.size(), groupingHitsMerged, documentDatabase.getDocsumDefinitionSet(), query));
-        GroupingListHit groupingHit = new GroupingListHit(List.copyOf(groupings.values()), documentDatabase, query);
+        GroupingListHit groupingHit = new GroupingListHit(mergeAll(), documentDatabase, query);
         groupingHit.setQuery(query);
         groupingHit.getGroupingList().forEach(g -> {
             g.select(o -> o instanceof Hit, o -> ((Hit)o).setContext(groupingHit));
@@ -57,4 +75,72 @@ class GroupingResultAggregator {
         return Optional.of(groupingHit);
     }
 
+    /** Adds the given partial result last, merging it with the previous ones as long as they are of the same size */
+    private static void add(List<Partial> partials, Partial partial) {
+        while ( ! partials.isEmpty() && partials.get(partials.size() - 1).hits() == partial.hits()) {
+            Partial previous = partials.remove(partials.size() - 1);
+            previous.grouping().merge(partial.grouping());
+            partial = new Partial(previous.grouping(), previous.hits() + partial.hits());
+        }
+        partials.add(partial);
+    }
+
+    /** Merges the partial results of each grouping pairwise, with the merges at each level done in parallel */
+    private List<Grouping> mergeAll() {
+        List<List<Grouping>> remaining = new ArrayList<>();
+        for (List<Partial> partials : groupings.values())
+            remaining.add(partials.stream().map(Partial::grouping).toList());
+
+        for (boolean done = false; ! done; ) {
+            List<FutureTask<Void>> merges = new ArrayList<>();
+            for (List<Grouping> sameId : remaining) {
+                for (int i = 0; i + 1 < sameId.size(); i += 2) {
+                    Grouping earlier = sameId.get(i), later = sameId.get(i + 1);
+                    merges.add(new FutureTask<>(() -> earlier.merge(later), null));
+                }
+            }
+            runAll(merges);
+            done = true;
+            for (int i = 0; i < remaining.size(); i++) { // keep the groupings which were merged into
+                List<Grouping> mergedInto = new ArrayList<>();
+                for (int j = 0; j < remaining.get(i).size(); j += 2)
+                    mergedInto.add(remaining.get(i).get(j));
+                remaining.set(i, mergedInto);
+                done &= mergedInto.size() == 1;
+            }
+        }
+        return remaining.stream().map(sameId -> sameId.get(0)).toList();
+    }
+
+    /**
+     * Runs the given tasks, offering all but the first to the executor, and running any not yet started by it in
+     * this thread, so this completes even when the executor is saturated.
+     */
+    private void runAll(List<FutureTask<Void>> tasks) {
+        try {
+            for (int i = 1; i < tasks.size(); i++)
+                executor.execute(tasks.get(i));
+        }
+        catch (RejectedExecutionException e) {
+            // Run the rest in this thread
+        }
+        for (FutureTask<Void> task : tasks)
+            task.run(); // no-op if already started
+        try {
+            for (FutureTask<Void> task : tasks)
+                task.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while merging groupings", e);
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) throw runtimeException;
+            throw new IllegalStateException("Failed merging groupings", e.getCause());
+        }
+    }
+
+    /** A grouping which is the merge of the given number of hits */
+    private record Partial(Grouping grouping, int hits) { }
+
 }
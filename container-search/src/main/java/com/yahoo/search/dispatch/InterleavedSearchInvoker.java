@@ -24,6 +24,7 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.Executor;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
@@ -67,6 +68,13 @@ public class InterleavedSearchInvoker extends SearchInvoker implements ResponseM
         this.hitEstimator = hitEstimator;
     }
 
+    /** Returns the container executor of the execution of the given query, or one running tasks in the calling thread */
+    private static Executor executorOf(Query query) {
+        Execution execution = query.getModel().getExecution();
+        if (execution == null || execution.context().executor() == null) return Runnable::run;
+        return execution.context().executor();
+    }
+
     private int estimateHitsToFetch(int wantedHits, int numPartitions) {
         return hitEstimator.estimateK(wantedHits, numPartitions);
     }
@@ -121,7 +129,7 @@ public class InterleavedSearchInvoker extends SearchInvoker implements ResponseM
         InvokerResult result = new InvokerResult(query, query.getHits());
         List<LeanHit> merged = List.of();
         long nextTimeout = query.getTimeLeft();
-        var groupingResultAggregator = new GroupingResultAggregator();
+        var groupingResultAggregator = new GroupingResultAggregator(executorOf(query));
         try {
             while (!invokers.isEmpty() && nextTimeout >= 0) {
                 SearchInvoker invoker = availableForProcessing.poll(nextTimeout, TimeUnit.MILLISECONDS);
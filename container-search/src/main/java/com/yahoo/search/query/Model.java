@@ -29,6 +29,7 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.yahoo.text.Lowercase.toLowerCase;
 
@@ -87,6 +88,10 @@ public class Model implements Cloneable {
     private Language language = null;
     private Locale locale = null;
     private QueryTree queryTree = null; // The query tree to execute. This is lazily created from the program
+    // The number of models sharing queryTree with this after cloning, or null if it is not shared
+    private AtomicInteger queryTreeSharers = null;
+    // Whether queryTree is handed out by this, such that its items may be held and modified by others
+    private boolean queryTreeExposed = false;
     private String defaultIndex = null;
     private QueryType type = QueryType.from(Query.Type.WEAKAND);
     private Query parent;
@@ -262,9 +267,33 @@ public class Model implements Cloneable {
             if (parse)
                 traceParsing();
         }
+        else if (queryTreeSharers != null) {
+            unshareQueryTree();
+        }
+        queryTreeExposed = true;
         return queryTree;
     }
 
+    /** Returns the query tree of this, parsed if necessary, for reading without handing it out */
+    private QueryTree readQueryTree() {
+        if (queryTree == null) {
+            queryTree = parse();
+            traceParsing();
+        }
+        return queryTree;
+    }
+
+    /**
+     * Gives this its own copy of a query tree shared with clones, before it is handed out.
+     * The last model sharing a tree keeps it, so a tree is copied no more times than when copying on each clone.
+     */
+    private void unshareQueryTree() {
+        if (queryTreeSharers.get() > 1)
+            queryTree = queryTree.clone();
+        queryTreeSharers.decrementAndGet(); // Only after copying, as the last sharer may modify the tree in place
+        queryTreeSharers = null;
+    }
+
     private QueryTree parse() {
         try {
             Parser parser = ParserFactory.newInstance(type, ParserEnvironment.fromExecutionContext(execution.context()));
@@ -287,6 +316,10 @@ public class Model implements Cloneable {
      * (a query string or 'select where' expression) on the next access.
      */
     public void clearQueryTree() {
+        if (queryTreeSharers != null)
+            queryTreeSharers.decrementAndGet();
+        queryTreeSharers = null;
+        queryTreeExposed = false;
         queryTree = null;
     }
 
@@ -368,21 +401,33 @@ public class Model implements Cloneable {
             return QueryHelper.equals(other.queryString, this.queryString) &&
                    QueryHelper.equals(other.filter, this.filter);
         else // make sure we compare a parsed variant of both
-            return QueryHelper.equals(other.getQueryTree(), this.getQueryTree());
+            return QueryHelper.equals(other.readQueryTree(), this.readQueryTree());
     }
 
     @Override
     public int hashCode() {
         return getClass().hashCode() +
-               QueryHelper.combineHash(encoding,filter,language,getQueryTree(),sources,restrict,defaultIndex,type,searchPath);
+               QueryHelper.combineHash(encoding,filter,language,readQueryTree(),sources,restrict,defaultIndex,type,searchPath);
     }
 
+    /**
+     * Returns a clone of this. A query tree which is not yet handed out by {@link #getQueryTree()} is shared
+     * with the clone until either of them hands it out, which copies it first. Otherwise the query tree is
+     * copied now, as items obtained from this may be modified later.
+     */
     @Override
     public Model clone() {
         try {
-            Model clone = (Model)super.clone();
-            if (queryTree != null)
+            if (queryTree != null && ! queryTreeExposed) {
+                if (queryTreeSharers == null)
+                    queryTreeSharers = new AtomicInteger(1);
+                queryTreeSharers.incrementAndGet();
+            }
+            Model clone = (Model)super.clone(); // shares queryTree and queryTreeSharers
+            if (queryTree != null && queryTreeExposed) {
                 clone.queryTree = this.queryTree.clone();
+                clone.queryTreeExposed = false;
+            }
             if (sources != null)
                 clone.sources = new LinkedHashSet<>(this.sources);
             if (restrict != null)
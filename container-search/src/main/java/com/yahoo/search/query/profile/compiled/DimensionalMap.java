@@ -5,31 +5,92 @@ import com.google.common.collect.ImmutableMap;
 import com.yahoo.processing.request.CompoundName;
 import com.yahoo.search.query.profile.DimensionBinding;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A map which may return different values depending on the values given in a context
  * supplied with the key on all operations.
  * <p>
  * Dimensional maps are immutable and created through a DimensionalMap.Builder
+ * <p>
+ * Lookups of keys having variants are resolved once for each combination of values of the dimensions of this,
+ * and then served from a flat table for that combination.
  *
  * @author bratseth
  */
 public class DimensionalMap<VALUE> {
 
+    /** The max number of dimension value combinations to keep resolved lookups for */
+    private static final int maxResolvedVariants = 1000;
+
+    /** Stored in resolved lookups for keys having no value in a combination */
+    private static final Object noValue = new Object();
+
+    /** Reused to look up resolved variants without allocating */
+    private static final ThreadLocal<VariantProbe> variantProbe = ThreadLocal.withInitial(VariantProbe::new);
+
     private final Map<CompoundName, DimensionalValue<VALUE>> values;
 
+    /** The values of keys which are the same in all contexts */
+    private final Map<CompoundName, VALUE> invariantValues;
+
+    /** The dimensions any key in this has variants for, in a fixed order */
+    private final String[] dimensions;
+
+    /** Lookups of keys having variants, resolved for each combination of dimension values used */
+    private final Map<Variant, Map<CompoundName, Object>> resolvedVariants = new ConcurrentHashMap<>();
+
     private DimensionalMap(Map<CompoundName, DimensionalValue<VALUE>> values) {
         this.values = ImmutableMap.copyOf(values);
+
+        Map<CompoundName, VALUE> invariantValues = new HashMap<>();
+        Set<String> dimensions = new TreeSet<>();
+        for (Map.Entry<CompoundName, DimensionalValue<VALUE>> entry : values.entrySet()) {
+            if (entry.getValue().isInvariant()) {
+                VALUE value = entry.getValue().get(Map.of());
+                if (value != null)
+                    invariantValues.put(entry.getKey(), value);
+            }
+            else {
+                dimensions.addAll(entry.getValue().dimensions());
+            }
+        }
+        this.invariantValues = ImmutableMap.copyOf(invariantValues);
+        this.dimensions = dimensions.toArray(new String[0]);
     }
 
     /** Returns the value for this key matching a context, or null if none */
+    @SuppressWarnings("unchecked")
     public VALUE get(CompoundName key, Map<String, String> context) {
+        VALUE value = invariantValues.get(key);
+        if (value != null) return value;
+
         DimensionalValue<VALUE> variants = values.get(key);
-        if (variants == null) return null;
-        return variants.get(context);
+        if (variants == null || variants.isInvariant()) return null;
+
+        Map<CompoundName, Object> resolved = resolvedFor(context);
+        Object resolvedValue = resolved.get(key);
+        if (resolvedValue == null) {
+            resolvedValue = variants.get(context);
+            resolved.put(key, resolvedValue == null ? noValue : resolvedValue);
+        }
+        return resolvedValue == noValue ? null : (VALUE)resolvedValue;
+    }
+
+    private Map<CompoundName, Object> resolvedFor(Map<String, String> context) {
+        VariantProbe probe = variantProbe.get().set(dimensions, context);
+        Map<CompoundName, Object> resolved = resolvedVariants.get(probe);
+        if (resolved != null) return resolved;
+
+        if (resolvedVariants.size() >= maxResolvedVariants) // Many combinations in use: Start over rather than grow
+            resolvedVariants.clear();
+        return resolvedVariants.computeIfAbsent(probe.toVariant(), __ -> new ConcurrentHashMap<>());
     }
 
     /** Returns the set of dimensional entries across all contexts. */
@@ -42,6 +103,63 @@ public class DimensionalMap<VALUE> {
         return values.isEmpty();
     }
 
+    /** A combination of values of the dimensions of a map, where null means no value */
+    private static final class Variant {
+
+        private final String[] dimensionValues;
+        private final int hashCode;
+
+        Variant(String[] dimensionValues) {
+            this.dimensionValues = dimensionValues;
+            this.hashCode = Arrays.hashCode(dimensionValues);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == this) return true;
+            if ( ! (o instanceof Variant other)) return false;
+            return Arrays.equals(this.dimensionValues, other.dimensionValues);
+        }
+
+        @Override
+        public int hashCode() { return hashCode; }
+
+    }
+
+    /** A mutable key which is equal to the variant having the dimension values it is set to from a context */
+    private static final class VariantProbe {
+
+        private String[] dimensionValues = new String[0];
+        private int size;
+        private int hashCode;
+
+        VariantProbe set(String[] dimensions, Map<String, String> context) {
+            if (dimensionValues.length < dimensions.length)
+                dimensionValues = new String[dimensions.length];
+            size = dimensions.length;
+            hashCode = 1;
+            for (int i = 0; i < size; i++) {
+                dimensionValues[i] = context == null ? null : context.get(dimensions[i]);
+                hashCode = 31 * hashCode + Objects.hashCode(dimensionValues[i]); // as Arrays.hashCode
+            }
+            return this;
+        }
+
+        Variant toVariant() {
+            return new Variant(Arrays.copyOf(dimensionValues, size));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if ( ! (o instanceof Variant other)) return false;
+            return Arrays.equals(dimensionValues, 0, size, other.dimensionValues, 0, other.dimensionValues.length);
+        }
+
+        @Override
+        public int hashCode() { return hashCode; }
+
+    }
+
     public static class Builder<VALUE> {
 
         private final Map<CompoundName, DimensionalValue.Builder<VALUE>> entries = new HashMap<>();
@@ -8,9 +8,11 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * Contains the values a given key in a DimensionalMap may take for different dimensional contexts.
@@ -22,6 +24,9 @@ public class DimensionalValue<VALUE> {
     private final Map<Binding, VALUE> indexedVariants;
     private final List<BindingSpec> bindingSpecs;
 
+    /** The value of this if it is the same in all contexts, or null if not */
+    private final VALUE invariantValue;
+
     private DimensionalValue(List<Value<VALUE>> variants) {
         Collections.sort(variants);
 
@@ -36,10 +41,14 @@ public class DimensionalValue<VALUE> {
             if ( ! bindingSpecs.contains(spec))
                 bindingSpecs.add(spec);
         }
+        this.invariantValue = bindingSpecs.size() == 1 && bindingSpecs.get(0).dimensions().length == 0
+                              ? indexedVariants.get(Binding.nullBinding)
+                              : null;
     }
 
     /** Returns the value matching this context, or null if none */
     public VALUE get(Map<String, String> context) {
+        if (invariantValue != null) return invariantValue;
         if (context == null)
             context = Map.of();
 
@@ -54,6 +63,17 @@ public class DimensionalValue<VALUE> {
 
     public boolean isEmpty() { return indexedVariants.isEmpty(); }
 
+    /** Returns whether this has the same value in all contexts */
+    boolean isInvariant() { return invariantValue != null || indexedVariants.isEmpty(); }
+
+    /** Returns the dimensions this has different values for */
+    Set<String> dimensions() {
+        Set<String> dimensions = new HashSet<>();
+        for (BindingSpec spec : bindingSpecs)
+            dimensions.addAll(Arrays.asList(spec.dimensions()));
+        return dimensions;
+    }
+
     @Override
     public String toString() {
         return indexedVariants.toString();
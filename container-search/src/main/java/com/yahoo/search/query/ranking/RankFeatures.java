@@ -15,6 +15,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.OptionalDouble;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Contains the rank features of a query.
@@ -24,7 +25,11 @@ import java.util.OptionalDouble;
 public class RankFeatures implements Cloneable {
 
     private final Ranking parent;
-    private final Map<String, Object> features;
+    private Map<String, Object> features;
+    // The number of instances sharing features with this after cloning, or null if it is not shared
+    private AtomicInteger sharers = null;
+    // Whether features is handed out by this, such that it may be held and modified by others
+    private boolean exposed = false;
 
     private static final Map<String, CompoundName> compoundNameCache = new CopyOnWriteHashMap<>();
 
@@ -39,16 +44,16 @@ public class RankFeatures implements Cloneable {
 
     /** Sets a double rank feature */
     public void put(String name, double value) {
-        features.put(name, value);
+        ownFeatures().put(name, value);
     }
 
     /** Sets a tensor rank feature */
     public void put(String name, Tensor value) {
         verifyType(name, value);
         if (value.type().rank() == 0)
-            features.put(name, value.asDouble());
+            ownFeatures().put(name, value.asDouble());
         else
-            features.put(name, value);
+            ownFeatures().put(name, value);
     }
 
     private void verifyType(String name, Object value) {
@@ -63,7 +68,7 @@ public class RankFeatures implements Cloneable {
      * with other string, but not for any other purpose.
      */
     public void put(String name, String value) {
-        features.put(name, value);
+        ownFeatures().put(name, value);
     }
 
     /** Returns this value as either a Double, Tensor or String. Returns null if the value is not set. */
@@ -121,7 +126,10 @@ public class RankFeatures implements Cloneable {
      * Returns the map holding the features of this.
      * This map may be modified to change the rank features of the query.
      */
-    public Map<String, Object> asMap() { return features; }
+    public Map<String, Object> asMap() {
+        exposed = true;
+        return ownFeatures();
+    }
 
     public boolean isEmpty() {
         return features.isEmpty();
@@ -150,7 +158,7 @@ public class RankFeatures implements Cloneable {
             }
         }
         for (int i = 0; i < featuresToRemove.size(); ++i) {
-            rankProperties.put(propertiesToInsert.get(i), features.remove(featuresToRemove.get(i)));
+            rankProperties.put(propertiesToInsert.get(i), ownFeatures().remove(featuresToRemove.get(i)));
         }
     }
 
@@ -171,13 +179,36 @@ public class RankFeatures implements Cloneable {
         return features.hashCode();
     }
 
+    /** Returns the features of this for modification, after copying them if they are shared with clones */
+    private Map<String, Object> ownFeatures() {
+        if (sharers != null) {
+            if (sharers.get() > 1)
+                features = new LinkedHashMap<>(features);
+            sharers.decrementAndGet(); // Only after copying, as the last sharer may modify the features in place
+            sharers = null;
+        }
+        return features;
+    }
+
     @Override
     public RankFeatures clone() {
-        return new RankFeatures(parent, new LinkedHashMap<>(features));
+        return cloneFor(parent);
     }
 
+    /**
+     * Returns a clone of this for the given parent. Features which are not yet handed out by {@link #asMap()}
+     * are shared with the clone until either of them is modified or hands them out, which copies them first.
+     */
     public RankFeatures cloneFor(Ranking parent) {
-        return new RankFeatures(parent, new LinkedHashMap<>(features));
+        if (exposed)
+            return new RankFeatures(parent, new LinkedHashMap<>(features));
+
+        if (sharers == null)
+            sharers = new AtomicInteger(1);
+        sharers.incrementAndGet();
+        RankFeatures clone = new RankFeatures(parent, features);
+        clone.sharers = sharers;
+        return clone;
     }
 
     @Override
@@ -15,6 +15,7 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Contains the properties of a query.
@@ -24,7 +25,11 @@ import java.util.Optional;
  */
 public class RankProperties implements Cloneable {
 
-    private final Map<String, List<Object>> properties;
+    private Map<String, List<Object>> properties;
+    // The number of instances sharing properties with this after cloning, or null if it is not shared
+    private AtomicInteger sharers = null;
+    // Whether properties is handed out by this, such that it may be held and modified by others
+    private boolean exposed = false;
 
     public RankProperties() {
         this(new LinkedHashMap<>());
@@ -40,7 +45,7 @@ public class RankProperties implements Cloneable {
 
     /** Adds a property by full name to a value */
     public void put(String name, Object value) {
-        List<Object> list = properties.computeIfAbsent(name, k -> new ArrayList<>());
+        List<Object> list = ownProperties().computeIfAbsent(name, k -> new ArrayList<>());
         list.add(value);
     }
 
@@ -83,7 +88,7 @@ public class RankProperties implements Cloneable {
 
     /** Removes all properties for a given name */
     public void remove(String name) {
-        properties.remove(name);
+        ownProperties().remove(name);
     }
 
     public boolean isEmpty() {
@@ -91,7 +96,7 @@ public class RankProperties implements Cloneable {
     }
 
     /** Returns a modifiable map of the properties of this */
-    public Map<String, List<Object>> asMap() { return properties; }
+    public Map<String, List<Object>> asMap() { return exposedProperties(); }
 
     /** Returns an unmodifiable map of the properties of this for serialization purposes */
     public Map<String, List<Object>> asMap(SerializationContext context) {
@@ -108,7 +113,24 @@ public class RankProperties implements Cloneable {
         if (serializableProperties != null)
             return Collections.unmodifiableMap(serializableProperties);
         else
-            return Collections.unmodifiableMap(properties);
+            return Collections.unmodifiableMap(exposedProperties());
+    }
+
+    /** Returns the properties of this for modification, after copying them if they are shared with clones */
+    private Map<String, List<Object>> ownProperties() {
+        if (sharers != null) {
+            if (sharers.get() > 1)
+                properties = copy(properties);
+            sharers.decrementAndGet(); // Only after copying, as the last sharer may modify the properties in place
+            sharers = null;
+        }
+        return properties;
+    }
+
+    /** Returns the properties of this for handing out, after which they are copied rather than shared on clone */
+    private Map<String, List<Object>> exposedProperties() {
+        exposed = true;
+        return ownProperties();
     }
 
     private Map<String, List<Object>> convertFromTotal(String property, String totalProperty,
@@ -148,12 +170,28 @@ public class RankProperties implements Cloneable {
         return properties.hashCode();
     }
 
+    /**
+     * Returns a clone of this. Properties which are not yet handed out by {@link #asMap()} are shared
+     * with the clone until either of them is modified or hands them out, which copies them first.
+     */
     @Override
     public RankProperties clone() {
-        Map<String, List<Object>> clone = new LinkedHashMap<>();
+        if (exposed)
+            return new RankProperties(copy(properties));
+
+        if (sharers == null)
+            sharers = new AtomicInteger(1);
+        sharers.incrementAndGet();
+        RankProperties clone = new RankProperties(properties);
+        clone.sharers = sharers;
+        return clone;
+    }
+
+    private static Map<String, List<Object>> copy(Map<String, List<Object>> properties) {
+        Map<String, List<Object>> copy = new LinkedHashMap<>();
         for (Map.Entry<String, List<Object>> entry : properties.entrySet())
-            clone.put(entry.getKey(), new ArrayList<>(entry.getValue()));
-        return new RankProperties(clone);
+            copy.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+        return copy;
     }
 
     @Override
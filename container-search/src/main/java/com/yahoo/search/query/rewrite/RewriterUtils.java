@@ -2,6 +2,7 @@
 package com.yahoo.search.query.rewrite;
 
 import com.yahoo.fsa.FSA;
+import com.yahoo.fsa.FSARegistry;
 import java.util.logging.Level;
 import com.yahoo.search.Query;
 import com.yahoo.search.intent.model.IntentModel;
@@ -68,7 +69,7 @@ public class RewriterUtils {
 
         FSA fsa;
         try {
-            fsa = new FSA(filename);
+            fsa = FSARegistry.get(filename);
         } catch (RuntimeException e) {
             error(utilsLogger, query, "Invalid FSA file");
             throw new IOException("Invalid FSA file");
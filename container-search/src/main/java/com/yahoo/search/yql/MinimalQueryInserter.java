@@ -1,8 +1,10 @@
 // Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.search.yql;
 
+import ai.vespa.metrics.ContainerMetrics;
 import com.yahoo.api.annotations.Beta;
 import com.yahoo.component.annotation.Inject;
+import com.yahoo.jdisc.Metric;
 import com.yahoo.language.Linguistics;
 import com.yahoo.language.simple.SimpleLinguistics;
 import com.yahoo.processing.IllegalInputException;
@@ -44,14 +46,23 @@ public class MinimalQueryInserter extends Searcher {
 
     private static final CompoundName MAX_HITS = CompoundName.from("maxHits");
     private static final CompoundName MAX_OFFSET = CompoundName.from("maxOffset");
+    private static final String YQL_PARSE_CACHE_HITS = ContainerMetrics.YQL_PARSE_CACHE_HITS.baseName();
+    private static final String YQL_PARSE_CACHE_MISSES = ContainerMetrics.YQL_PARSE_CACHE_MISSES.baseName();
     private static final Logger log = Logger.getLogger(MinimalQueryInserter.class.getName());
 
+    private final Metric metric;
+
     @Inject
-    public MinimalQueryInserter(Linguistics linguistics) {
+    public MinimalQueryInserter(Linguistics linguistics, Metric metric) {
+        this.metric = metric;
         // Warmup is needed to avoid a large 400ms init cost during first execution of yql code.
         warmup(linguistics);
     }
 
+    public MinimalQueryInserter(Linguistics linguistics) {
+        this(linguistics, null);
+    }
+
     public MinimalQueryInserter() {
         this(new SimpleLinguistics());
     }
@@ -62,7 +73,7 @@ public class MinimalQueryInserter extends Searcher {
 
     private static boolean warmup(Linguistics linguistics) {
         Query query = new Query("search/?yql=select%20*%20from%20sources%20where%20title%20contains%20'xyz'");
-        Result result = insertQuery(query, new ParserEnvironment().setLinguistics(linguistics));
+        Result result = insertQuery(query, new ParserEnvironment().setLinguistics(linguistics), null);
         if (result != null) {
             log.warning("Warmup code trigger an error. Error = " + result);
             return false;
@@ -79,7 +90,7 @@ public class MinimalQueryInserter extends Searcher {
         if (query.properties().get(YQL) == null) return execution.search(query);
         Result errorResult;
         try {
-            errorResult = insertQuery(query, ParserEnvironment.fromExecutionContext(execution.context()));
+            errorResult = insertQuery(query, ParserEnvironment.fromExecutionContext(execution.context()), metric);
         }
         catch (IllegalArgumentException e) {
             throw new IllegalInputException("Illegal YQL query", e);
@@ -87,7 +98,7 @@ public class MinimalQueryInserter extends Searcher {
         return (errorResult == null) ? execution.search(query) : errorResult;
     }
 
-    private static Result insertQuery(Query query, ParserEnvironment env) {
+    private static Result insertQuery(Query query, ParserEnvironment env, Metric metric) {
         YqlParser parser = (YqlParser) ParserFactory.newInstance(Query.Type.YQL, env);
         parser.setQueryParser(false);
         parser.setUserQuery(query);
@@ -100,6 +111,8 @@ public class MinimalQueryInserter extends Searcher {
                                                                               Exceptions.toMessageString(e),
                                                                               e));
         }
+        if (metric != null)
+            metric.add(parser.isProgramCached() ? YQL_PARSE_CACHE_HITS : YQL_PARSE_CACHE_MISSES, 1, null);
         if (parser.getOffset() != null) {
             int maxHits = query.properties().getInteger(MAX_HITS);
             int maxOffset = query.properties().getInteger(MAX_OFFSET);
@@ -0,0 +1,85 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.yql;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A bounded, thread safe least-recently-used cache of parsed YQL programs, keyed on the YQL text.
+ *
+ * Parsed programs are not modified after parsing, so a cached program can be converted to a query tree by
+ * any number of parsers concurrently. Values which vary between requests using the same YQL, like
+ * userInput(@parameter), userQuery() and tensors passed as query inputs, are resolved during that conversion,
+ * so all requests using the same YQL text share a single entry.
+ */
+final class ParsedYqlCache {
+
+    private final int maxYqlLength;
+    private final Map<String, OperatorNode<?>> programs;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Creates a new cache.
+     *
+     * @param maxEntries the max number of programs to keep
+     * @param maxYqlLength the max length of YQL strings to cache. Longer strings are parsed on each request,
+     *                     as these usually contain literal values which are unique to the request
+     */
+    ParsedYqlCache(int maxEntries, int maxYqlLength) {
+        if (maxEntries < 1) throw new IllegalArgumentException("maxEntries must be positive, was " + maxEntries);
+        this.maxYqlLength = maxYqlLength;
+        this.programs = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, OperatorNode<?>> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached program parsed from the given YQL, or parses and caches it if it is not present.
+     * Failures are propagated from the parser and not cached.
+     */
+    Lookup get(String yql, Function<String, OperatorNode<?>> parser) {
+        if (yql.length() > maxYqlLength) {
+            misses.increment();
+            return new Lookup(parser.apply(yql), false);
+        }
+
+        OperatorNode<?> program;
+        synchronized (programs) {
+            program = programs.get(yql);
+        }
+        if (program != null) {
+            hits.increment();
+            return new Lookup(program, true);
+        }
+
+        misses.increment();
+        program = parser.apply(yql); // Parse outside the lock; concurrent misses on the same YQL just parse twice
+        synchronized (programs) {
+            programs.put(yql, program);
+        }
+        return new Lookup(program, false);
+    }
+
+    /** Returns the number of lookups which found a cached program */
+    long hits() { return hits.sum(); }
+
+    /** Returns the number of lookups which had to parse the YQL */
+    long misses() { return misses.sum(); }
+
+    /** Returns the number of programs currently cached */
+    int size() {
+        synchronized (programs) {
+            return programs.size();
+        }
+    }
+
+    /** The result of a lookup: The parsed program, and whether it was found in the cache */
+    record Lookup(OperatorNode<?> program, boolean cached) { }
+
+}
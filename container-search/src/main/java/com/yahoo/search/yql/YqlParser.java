@@ -237,6 +237,9 @@ public class YqlParser implements Parser {
     private static final CompoundName modelTypeProfile = CompoundName.fromComponents(Model.MODEL, Model.TYPE, QueryType.PROFILE);
     private static final CompoundName modelTypeIsYqlDefault = CompoundName.fromComponents(Model.MODEL, Model.TYPE, QueryType.IS_YQL_DEFAULT);
 
+    /** Parsed programs shared by all parser instances, as queries tend to reuse a small set of YQL strings */
+    private static final ParsedYqlCache parsedPrograms = new ParsedYqlCache(1000, 16 * 1024);
+
     private final IndexFacts indexFacts;
     private final List<ConnectedItem> connectedItems = new ArrayList<>();
     private final List<VespaGroupingStep> groupingSteps = new ArrayList<>();
@@ -257,6 +260,7 @@ public class YqlParser implements Parser {
     private Set<String> docTypes;
     private Sorting sorting;
     private boolean queryParser = true;
+    private boolean programCached = false;
     private final Deque<OperatorNode<?>> annotationStack = new ArrayDeque<>();
     private final ParserEnvironment environment;
 
@@ -305,6 +309,7 @@ public class YqlParser implements Parser {
         currentlyParsing = query;
         docTypes = null;
         sorting = null;
+        programCached = false;
         // queryParser set prior to calling this
         return buildTree(parseYqlProgram());
     }
@@ -1168,12 +1173,9 @@ public class YqlParser implements Parser {
     }
 
     private OperatorNode<?> parseYqlProgram() {
-        OperatorNode<?> ast;
-        try {
-            ast = new ProgramParser().parse("query", currentlyParsing.getQuery());
-        } catch (Exception e) {
-            throw new IllegalInputException(e);
-        }
+        ParsedYqlCache.Lookup lookup = parsedPrograms.get(currentlyParsing.getQuery(), YqlParser::parseProgram);
+        programCached = lookup.cached();
+        OperatorNode<?> ast = lookup.program();
         assertHasOperator(ast, StatementOperator.PROGRAM);
         Preconditions.checkArgument(ast.getArguments().length == 1,
                                     "Expected only a single argument to the root node, got %s.",
@@ -1192,6 +1194,14 @@ public class YqlParser implements Parser {
         return ast;
     }
 
+    static OperatorNode<?> parseProgram(String yql) {
+        try {
+            return new ProgramParser().parse("query", yql);
+        } catch (Exception e) {
+            throw new IllegalInputException(e);
+        }
+    }
+
     @SuppressWarnings("unchecked")
     private OperatorNode<?> fetchPipe(OperatorNode<?> toScan) {
         OperatorNode<?> ast = toScan;
@@ -2109,6 +2119,9 @@ public class YqlParser implements Parser {
      */
     public Sorting getSorting() { return sorting; }
 
+    /** Returns whether the YQL+ query last parsed was found in the cache of parsed programs */
+    public boolean isProgramCached() { return programCached; }
+
     Set<String> getDocTypes() { return docTypes; }
 
     Set<String> getYqlSources() { return yqlSources; }
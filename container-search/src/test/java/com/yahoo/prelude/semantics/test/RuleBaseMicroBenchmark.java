@@ -0,0 +1,44 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.prelude.semantics.test;
+
+import com.yahoo.language.simple.SimpleLinguistics;
+import com.yahoo.prelude.semantics.RuleBase;
+import com.yahoo.search.Query;
+
+/**
+ * Measures query analysis time over rule bases with increasing numbers of synonym rules.
+ */
+public class RuleBaseMicroBenchmark {
+
+    public void benchmark() throws Exception {
+        for (int ruleCount : new int[] { 100, 1000, 20000 })
+            benchmark(ruleCount);
+    }
+
+    private void benchmark(int ruleCount) throws Exception {
+        StringBuilder rules = new StringBuilder();
+        for (int i = 0; i < ruleCount; i++)
+            rules.append("term").append(i).append(" second").append(i).append(" -> synonym").append(i).append(";\n");
+        RuleBase ruleBase = RuleBase.createFromString("benchmark", rules.toString(), null, new SimpleLinguistics());
+
+        int runs = 20000;
+        for (int i = 0; i < runs; i++) // warmup
+            analyze(ruleBase, i, ruleCount);
+        long startTime = System.nanoTime();
+        for (int i = 0; i < runs; i++)
+            analyze(ruleBase, i, ruleCount);
+        long totalTime = System.nanoTime() - startTime;
+        System.out.println(ruleCount + " rules: " + (totalTime / runs / 1000) + " microseconds per query");
+    }
+
+    private void analyze(RuleBase ruleBase, int i, int ruleCount) {
+        int rule = i % ruleCount;
+        Query query = new Query("?query=some+term" + rule + "+second" + rule + "+words");
+        ruleBase.analyze(query, 0);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new RuleBaseMicroBenchmark().benchmark();
+    }
+
+}
@@ -0,0 +1,30 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.prelude.semantics.test;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that rules are evaluated in order when candidate rules are looked up by the terms of the query
+ */
+public class RuleIndexTestCase extends RuleBaseAbstractTestCase {
+
+    public RuleIndexTestCase() {
+        super("ruleindex.sr");
+    }
+
+    @Test
+    void testRulesMatchTermsProducedByEarlierRules() {
+        assertSemantics("transport", "vehicle");
+        assertSemantics("motor", "car");
+        assertSemantics("AND red motor color:red", "red car");
+        assertSemantics("wheels:motor", "car wheels");
+    }
+
+    @Test
+    void testRulesNotMatchingTheQueryAreSkipped() {
+        assertSemantics("AND boat sail", "boat sail");
+        assertSemantics("AND blue boat color:blue", "blue boat");
+        assertSemantics("wheels:boat", "boat wheels");
+    }
+
+}
@@ -0,0 +1,68 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.dispatch;
+
+import com.yahoo.prelude.fastsearch.GroupingListHit;
+import com.yahoo.searchlib.aggregation.Grouping;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Measures merging of grouping results from many content nodes, for wide (one level with many groups)
+ * and deep (several levels with fewer groups) groupings.
+ */
+public class GroupingResultAggregatorMicroBenchmark {
+
+    private static final int nodes = 40;
+
+    public void benchmark() {
+        benchmark("wide", 2000, 1);
+        benchmark("deep", 12, 3);
+    }
+
+    private void benchmark(String name, int width, int depth) {
+        int runs = 20;
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (int i = 0; i < runs; i++) { // warmup
+                aggregate(width, depth, Runnable::run);
+                aggregate(width, depth, executor);
+            }
+            System.out.println(name + " grouping, sequential: " + time(runs, width, depth, Runnable::run) + " ms per merge");
+            System.out.println(name + " grouping, parallel:   " + time(runs, width, depth, executor) + " ms per merge");
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    private long time(int runs, int width, int depth, Executor executor) {
+        long totalTime = 0;
+        for (int i = 0; i < runs; i++)
+            totalTime += aggregate(width, depth, executor);
+        return totalTime / runs / 1000_000;
+    }
+
+    /** Returns the nanoseconds spent merging */
+    private long aggregate(int width, int depth, Executor executor) {
+        List<GroupingListHit> hits = new ArrayList<>();
+        for (int node = 0; node < nodes; node++)
+            hits.add(new GroupingListHit(List.of(GroupingResultAggregatorTest.grouping(0, node, width, depth))));
+
+        long startTime = System.nanoTime();
+        GroupingResultAggregator aggregator = new GroupingResultAggregator(executor);
+        hits.forEach(aggregator::mergeWith);
+        Grouping merged = aggregator.toAggregatedHit().get().getGroupingList().get(0);
+        long time = System.nanoTime() - startTime;
+        if (merged.getRoot().getChildren().isEmpty()) throw new IllegalStateException("Nothing merged");
+        return time;
+    }
+
+    public static void main(String[] args) {
+        new GroupingResultAggregatorMicroBenchmark().benchmark();
+    }
+
+}
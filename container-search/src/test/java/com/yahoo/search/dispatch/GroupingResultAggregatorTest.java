@@ -0,0 +1,89 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.dispatch;
+
+import com.yahoo.prelude.fastsearch.GroupingListHit;
+import com.yahoo.searchlib.aggregation.CountAggregationResult;
+import com.yahoo.searchlib.aggregation.Group;
+import com.yahoo.searchlib.aggregation.Grouping;
+import com.yahoo.searchlib.aggregation.SumAggregationResult;
+import com.yahoo.searchlib.expression.IntegerResultNode;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class GroupingResultAggregatorTest {
+
+    @Test
+    void requireThatParallelAndSequentialMergesGiveTheSameResult() {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (int nodes : List.of(1, 2, 7, 8, 40)) {
+                for (Executor mergeExecutor : List.of(executor, (Executor)Runnable::run)) {
+                    GroupingResultAggregator aggregator = new GroupingResultAggregator(mergeExecutor);
+                    for (int node = 0; node < nodes; node++)
+                        aggregator.mergeWith(new GroupingListHit(List.of(grouping(0, node, 5, 3), grouping(1, node, 50, 1))));
+                    List<Grouping> aggregated = aggregator.toAggregatedHit().get().getGroupingList();
+
+                    assertEquals(List.of(sequentiallyMerged(0, nodes, 5, 3), sequentiallyMerged(1, nodes, 50, 1)), aggregated);
+                    CountAggregationResult count = (CountAggregationResult)aggregated.get(1).getRoot().getAggregationResults().get(0);
+                    assertEquals(nodes * 50, count.getCount());
+                }
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void requireThatMergesAreCompletedWhenTheExecutorRejectsTasks() {
+        GroupingResultAggregator aggregator = new GroupingResultAggregator(task -> { throw new RejectedExecutionException(); });
+        for (int node = 0; node < 7; node++)
+            aggregator.mergeWith(new GroupingListHit(List.of(grouping(0, node, 5, 2))));
+        assertEquals(List.of(sequentiallyMerged(0, 7, 5, 2)), aggregator.toAggregatedHit().get().getGroupingList());
+    }
+
+    @Test
+    void requireThatNothingIsAggregatedWithoutGroupingHits() {
+        assertTrue(new GroupingResultAggregator().toAggregatedHit().isEmpty());
+    }
+
+    private static Grouping sequentiallyMerged(int id, int nodes, int width, int depth) {
+        Grouping merged = grouping(id, 0, width, depth);
+        for (int node = 1; node < nodes; node++)
+            merged.merge(grouping(id, node, width, depth));
+        merged.postMerge();
+        return merged;
+    }
+
+    /** Returns a grouping where each node has some groups in common with the other nodes, and some of its own */
+    static Grouping grouping(int id, int node, int width, int depth) {
+        Grouping grouping = new Grouping(id);
+        grouping.setRoot(group(0, node, width, depth));
+        return grouping;
+    }
+
+    private static Group group(long groupId, int node, int width, int depth) {
+        Group group = new Group().setId(new IntegerResultNode(groupId));
+        group.addAggregationResult(new CountAggregationResult(width));
+        group.addAggregationResult(new SumAggregationResult(new IntegerResultNode(node + groupId)));
+        if (depth > 0) {
+            List<Long> childIds = new ArrayList<>();
+            for (long i = 0; i < width; i++)
+                childIds.add(i % 2 == 0 ? i : width * (node + 1L) + i); // every other group is unique to the node
+            childIds.sort(Long::compare);
+            for (long childId : childIds)
+                group.addChild(group(childId, node, width, depth - 1));
+        }
+        return group;
+    }
+
+}
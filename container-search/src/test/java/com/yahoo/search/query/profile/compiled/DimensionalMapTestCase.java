@@ -0,0 +1,78 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.query.profile.compiled;
+
+import com.yahoo.processing.request.CompoundName;
+import com.yahoo.search.query.profile.DimensionBinding;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class DimensionalMapTestCase {
+
+    private final CompoundName a = CompoundName.from("a");
+    private final CompoundName b = CompoundName.from("b");
+
+    @Test
+    void testLookupsAreResolvedPerVariant() {
+        DimensionalMap.Builder<String> builder = new DimensionalMap.Builder<>();
+        builder.put(a, binding(Map.of()), "a-default");
+        builder.put(b, binding(Map.of()), "b-default");
+        builder.put(b, binding(Map.of("x", "x1")), "b-x1");
+        builder.put(b, binding(Map.of("x", "x1", "y", "y1")), "b-x1-y1");
+        builder.put(CompoundName.from("c"), binding(Map.of("y", "y2")), "c-y2");
+        DimensionalMap<String> map = builder.build();
+
+        for (int i = 0; i < 2; i++) { // Second round is served from resolved lookups
+            assertEquals("a-default", map.get(a, Map.of("x", "x1")));
+            assertEquals("b-default", map.get(b, Map.of()));
+            assertEquals("b-default", map.get(b, null));
+            assertEquals("b-default", map.get(b, Map.of("x", "x2", "y", "y1")));
+            assertEquals("b-x1", map.get(b, Map.of("x", "x1")));
+            assertEquals("b-x1", map.get(b, Map.of("x", "x1", "y", "y2", "z", "z1")));
+            assertEquals("b-x1-y1", map.get(b, Map.of("x", "x1", "y", "y1")));
+            assertEquals("c-y2", map.get(CompoundName.from("c"), Map.of("y", "y2")));
+            assertNull(map.get(CompoundName.from("c"), Map.of("y", "y1")));
+            assertNull(map.get(CompoundName.from("d"), Map.of("y", "y2")));
+        }
+    }
+
+    @Test
+    void testLookupsInManyVariants() {
+        DimensionalMap.Builder<String> builder = new DimensionalMap.Builder<>();
+        builder.put(a, binding(Map.of()), "default");
+        for (int i = 0; i < 1500; i += 2)
+            builder.put(a, binding(Map.of("x", "x" + i)), "a" + i);
+        DimensionalMap<String> map = builder.build();
+
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < 1500; i++)
+                assertEquals(i % 2 == 0 ? "a" + i : "default", map.get(a, Map.of("x", "x" + i)));
+        }
+    }
+
+    @Test
+    void testLookupsInMapsHavingDifferentDimensions() {
+        DimensionalMap.Builder<String> xyBuilder = new DimensionalMap.Builder<>();
+        xyBuilder.put(a, binding(Map.of("x", "x1", "y", "y1")), "a-x1-y1");
+        DimensionalMap<String> xyMap = xyBuilder.build();
+        DimensionalMap.Builder<String> xBuilder = new DimensionalMap.Builder<>();
+        xBuilder.put(a, binding(Map.of("x", "x1")), "a-x1");
+        DimensionalMap<String> xMap = xBuilder.build();
+
+        for (int i = 0; i < 2; i++) {
+            assertEquals("a-x1-y1", xyMap.get(a, Map.of("x", "x1", "y", "y1")));
+            assertEquals("a-x1", xMap.get(a, Map.of("x", "x1", "y", "y1")));
+            assertNull(xyMap.get(a, Map.of("x", "x1")));
+            assertEquals("a-x1", xMap.get(a, Map.of("x", "x1")));
+        }
+    }
+
+    private static Binding binding(Map<String, String> context) {
+        return Binding.createFrom(DimensionBinding.createFrom(new HashMap<>(context)));
+    }
+
+}
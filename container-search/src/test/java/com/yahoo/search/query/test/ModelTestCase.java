@@ -2,6 +2,7 @@
 package com.yahoo.search.query.test;
 
 import com.yahoo.prelude.query.Item;
+import com.yahoo.prelude.query.WordItem;
 import com.yahoo.search.Query;
 import com.yahoo.search.query.Model;
 import org.junit.jupiter.api.AfterEach;
@@ -15,6 +16,7 @@ import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 
@@ -97,6 +99,66 @@ public class ModelTestCase {
         assertEquals(sr.getRestrict(), new LinkedHashSet<>(List.of(new String[]{"cheese", "music", "other"})));
     }
 
+    @Test
+    void testQueryTreeAndRankMapsObtainedBeforeCloningModifyOnlyTheOriginal() {
+        Query query = new Query();
+        query.getModel().getQueryTree().setRoot(new WordItem("a"));
+        WordItem root = (WordItem)query.getModel().getQueryTree().getRoot();
+        var properties = query.getRanking().getProperties().asMap();
+        var features = query.getRanking().getFeatures().asMap();
+        Query clone = query.clone();
+
+        root.setWord("b");
+        properties.put("p", List.of("1"));
+        features.put("f", 1.0);
+        assertEquals("b", query.getModel().getQueryTree().getRoot().toString());
+        assertEquals("a", clone.getModel().getQueryTree().getRoot().toString());
+        assertTrue(query.getRanking().getProperties().asMap().containsKey("p"));
+        assertTrue(clone.getRanking().getProperties().asMap().isEmpty());
+        assertTrue(query.getRanking().getFeatures().asMap().containsKey("f"));
+        assertTrue(clone.getRanking().getFeatures().asMap().isEmpty());
+    }
+
+    @Test
+    void testQueryTreeAndRankMapsNotHandedOutAreCopiedWhenAccessedAfterClone() {
+        Query query = new Query();
+        query.getModel().getQueryTree().setRoot(new WordItem("a"));
+        query.getRanking().getProperties().put("p", "1");
+        query.getRanking().getFeatures().put("f", 1.0);
+        Query clone = query.clone(); // The tree of the query is handed out, so this has a copy which is not
+        Query clone1 = clone.clone();
+        Query clone2 = clone.clone();
+        Query cloneOfClone = clone2.clone();
+
+        clone1.getModel().getQueryTree().setRoot(new WordItem("b"));
+        clone.getModel().getQueryTree().setRoot(new WordItem("c"));
+        ((WordItem)cloneOfClone.getModel().getQueryTree().getRoot()).setWord("d");
+        assertEquals("a", query.getModel().getQueryTree().getRoot().toString());
+        assertEquals("b", clone1.getModel().getQueryTree().getRoot().toString());
+        assertEquals("c", clone.getModel().getQueryTree().getRoot().toString());
+        assertEquals("a", clone2.getModel().getQueryTree().getRoot().toString());
+        assertEquals("d", cloneOfClone.getModel().getQueryTree().getRoot().toString());
+
+        clone1.getRanking().getProperties().put("p", "2");
+        clone1.getRanking().getFeatures().put("f", 2.0);
+        clone2.getRanking().getProperties().asMap().remove("p");
+        clone2.getRanking().getFeatures().asMap().remove("f");
+        assertEquals(List.of("1"), clone.getRanking().getProperties().get("p"));
+        assertEquals(List.of("1", "2"), clone1.getRanking().getProperties().get("p"));
+        assertNull(clone2.getRanking().getProperties().get("p"));
+        assertEquals(List.of("1"), cloneOfClone.getRanking().getProperties().get("p"));
+        assertEquals(1.0, clone.getRanking().getFeatures().getDouble("f").getAsDouble());
+        assertEquals(2.0, clone1.getRanking().getFeatures().getDouble("f").getAsDouble());
+        assertTrue(clone2.getRanking().getFeatures().getDouble("f").isEmpty());
+        assertEquals(1.0, cloneOfClone.getRanking().getFeatures().getDouble("f").getAsDouble());
+
+        Query cleared = clone2.clone();
+        cleared.getModel().clearQueryTree();
+        cleared.getModel().getQueryTree().setRoot(new WordItem("e"));
+        assertEquals("a", clone2.getModel().getQueryTree().getRoot().toString());
+        assertEquals("e", cleared.getModel().getQueryTree().getRoot().toString());
+    }
+
     @Test
     void testEquals() {
         Query q = new Query();
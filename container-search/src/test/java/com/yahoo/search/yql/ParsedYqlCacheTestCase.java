@@ -0,0 +1,69 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.yql;
+
+import com.yahoo.processing.IllegalInputException;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ParsedYqlCacheTestCase {
+
+    private final AtomicInteger parses = new AtomicInteger();
+    private final Function<String, OperatorNode<?>> parser = yql -> {
+        parses.incrementAndGet();
+        return YqlParser.parseProgram(yql);
+    };
+
+    @Test
+    void testProgramsAreReusedUntilEvicted() {
+        ParsedYqlCache cache = new ParsedYqlCache(2, 1000);
+        String a = "select * from sources * where a contains 'x'";
+        String b = "select * from sources * where b contains 'x'";
+        String c = "select * from sources * where c contains 'x'";
+
+        ParsedYqlCache.Lookup first = cache.get(a, parser);
+        assertFalse(first.cached());
+        ParsedYqlCache.Lookup second = cache.get(a, parser);
+        assertTrue(second.cached());
+        assertSame(first.program(), second.program());
+
+        cache.get(b, parser);
+        cache.get(a, parser); // a is now most recently used
+        cache.get(c, parser); // evicts b
+        assertEquals(2, cache.size());
+        assertTrue(cache.get(a, parser).cached());
+        assertFalse(cache.get(b, parser).cached());
+
+        assertEquals(4, parses.get());
+        assertEquals(3, cache.hits());
+        assertEquals(4, cache.misses());
+    }
+
+    @Test
+    void testLongQueriesAreNotCached() {
+        ParsedYqlCache cache = new ParsedYqlCache(10, 40);
+        String yql = "select * from sources * where text contains 'a long string literal'";
+        assertFalse(cache.get(yql, parser).cached());
+        assertFalse(cache.get(yql, parser).cached());
+        assertEquals(0, cache.size());
+        assertEquals(2, parses.get());
+    }
+
+    @Test
+    void testFailuresAreNotCached() {
+        ParsedYqlCache cache = new ParsedYqlCache(10, 1000);
+        String yql = "select * from sources * where";
+        assertThrows(IllegalInputException.class, () -> cache.get(yql, parser));
+        assertThrows(IllegalInputException.class, () -> cache.get(yql, parser));
+        assertEquals(0, cache.size());
+        assertEquals(2, parses.get());
+    }
+
+}
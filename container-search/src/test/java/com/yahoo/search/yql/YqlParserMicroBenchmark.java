@@ -0,0 +1,61 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.yql;
+
+import com.yahoo.search.Query;
+import com.yahoo.search.query.parser.Parsable;
+import com.yahoo.search.query.parser.ParserEnvironment;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Compares the time spent converting common YQL query shapes to query trees
+ * when parsed programs are cached and when they are parsed on each request.
+ */
+public class YqlParserMicroBenchmark {
+
+    private static final List<String> queries =
+            List.of("select * from sources * where userQuery()",
+                    "select * from sources * where {targetHits: 100}nearestNeighbor(embedding, query_embedding)",
+                    "select * from sources * where ({targetHits: 100}nearestNeighbor(embedding, query_embedding)) " +
+                    "or userQuery() limit 20 timeout 500",
+                    "select title, url from sources music, books where userInput(@text) and year > 2000 " +
+                    "and genre in ('rock', 'jazz', 'blues') order by year desc");
+
+    private final ParserEnvironment environment = new ParserEnvironment();
+    private final Query query = new Query("?text=foo+bar&query=baz");
+
+    public void benchmark() {
+        int runs = 100000;
+        Function<String, OperatorNode<?>> uncached = YqlParser::parseProgram;
+
+        for (int i = 0; i < runs; i++) { // warmup
+            parse(i);
+            uncached.apply(queries.get(i % queries.size()));
+        }
+
+        long startTime = System.nanoTime();
+        for (int i = 0; i < runs; i++)
+            uncached.apply(queries.get(i % queries.size()));
+        long parseTime = System.nanoTime() - startTime;
+
+        startTime = System.nanoTime();
+        for (int i = 0; i < runs; i++)
+            parse(i);
+        long cachedTime = System.nanoTime() - startTime;
+
+        System.out.println("Time per YQL program parse:                 " + (parseTime / runs) + " nanoseconds");
+        System.out.println("Time per query tree build, cached program: " + (cachedTime / runs) + " nanoseconds");
+    }
+
+    private void parse(int i) {
+        YqlParser parser = new YqlParser(environment);
+        parser.setUserQuery(query);
+        parser.parse(new Parsable().setQuery(queries.get(i % queries.size())));
+    }
+
+    public static void main(String[] args) {
+        new YqlParserMicroBenchmark().benchmark();
+    }
+
+}
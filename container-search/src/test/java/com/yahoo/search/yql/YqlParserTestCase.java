@@ -1450,6 +1450,25 @@ public class YqlParserTestCase {
         // success: parsed without exception
     }
 
+    @Test
+    void testParsedProgramIsReusedWithValuesBoundPerQuery() {
+        parser = new YqlParser(new ParserEnvironment().setIndexFacts(createIndexFactsForInTest()));
+        String yql = "select * from sources * where field in (@foonumeric, 1234567890123)";
+
+        parser.setUserQuery(createUserQuery());
+        assertNumericInItem("field", new long[]{-11, 24, 25, 26, 1234567890123L}, parse(yql));
+        assertFalse(parser.isProgramCached());
+
+        Query other = createUserQuery();
+        other.properties().set("foonumeric", "7, 3");
+        parser.setUserQuery(other);
+        assertNumericInItem("field", new long[]{3, 7, 1234567890123L}, parse(yql));
+        assertTrue(parser.isProgramCached());
+
+        assertThrows(IllegalInputException.class, () -> parse("select * from sources * where field in (1234567890123"));
+        assertFalse(parser.isProgramCached());
+    }
+
     @Test
     void testAndSegmenting() {
         parse("select * from sources * where (default contains ({stem: false}\"m\") AND default contains ({origin: {original: \"m\'s\", offset: 0, length: 3}, andSegmenting: true}phrase(\"m\", \"s\"))) timeout 472");
@@ -142,6 +142,11 @@ public class IndexingProcessor extends DocumentProcessor {
         return Progress.DONE;
     }
 
+    @Override
+    public void deconstruct() {
+        scriptManager.close();
+    }
+
     DocumentTypeManager getDocumentTypeManager() {
         return documentTypeManager;
     }
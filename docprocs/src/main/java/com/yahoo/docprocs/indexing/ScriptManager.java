@@ -1,6 +1,7 @@
 // Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.docprocs.indexing;
 
+import com.yahoo.concurrent.DaemonThreadFactory;
 import com.yahoo.document.DocumentType;
 import com.yahoo.document.DocumentTypeManager;
 import com.yahoo.language.Linguistics;
@@ -24,6 +25,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * @author Simon Thoresen Hult
@@ -33,6 +36,7 @@ class ScriptManager {
     private static final String FULL = "[all]";
     private final Map<String, Map<String, DocumentScript>> documentFieldScripts;
     private final DocumentTypeManager documentTypeManager;
+    private final ExecutorService statementExecutor;
 
     ScriptManager(DocumentTypeManager documentTypeManager, IlscriptsConfig config, Linguistics linguistics,
                          Map<String, Chunker> chunkers,
@@ -41,6 +45,19 @@ class ScriptManager {
                          MetricReceiver metricReceiver) {
         this.documentTypeManager = documentTypeManager;
         documentFieldScripts = createScriptsMap(documentTypeManager, config, linguistics, chunkers, embedders, generators, metricReceiver);
+        statementExecutor = config.statementExecutionThreads() > 1
+                            ? Executors.newFixedThreadPool(config.statementExecutionThreads(),
+                                                           new DaemonThreadFactory("indexing-statement-"))
+                            : null;
+        if (statementExecutor != null) {
+            for (Map<String, DocumentScript> fieldScripts : documentFieldScripts.values())
+                fieldScripts.get(FULL).getExpression().setExecutor(statementExecutor);
+        }
+    }
+
+    void close() {
+        if (statementExecutor != null)
+            statementExecutor.shutdown();
     }
 
     private Map<String, DocumentScript> getScripts(DocumentType inputType) {
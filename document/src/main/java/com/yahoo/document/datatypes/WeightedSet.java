@@ -19,6 +19,7 @@ import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.IntUnaryOperator;
 
 
 /**
@@ -170,6 +171,24 @@ public final class WeightedSet<K extends FieldValue> extends CollectionFieldValu
         return ifv != null ? ifv.getInteger() : null;
     }
 
+    /**
+     * Replaces the weight of the given key by the result of the given operation on it, in place,
+     * without creating new field values or replacing the key entry.
+     *
+     * @param key       the key to update the weight of
+     * @param operation the operation computing the new weight from the current one
+     * @return the new weight of the key, or null (and no change) if it is not in this set
+     */
+    public Integer updateWeight(Object key, IntUnaryOperator operation) {
+        if (map instanceof WeightedSetWrapper wrapper)
+            return wrapper.map.computeIfPresent(wrapper.unwrap(key), (__, weight) -> operation.applyAsInt(weight));
+
+        IntegerFieldValue weight = map.get(key);
+        if (weight == null) return null;
+        weight.assign(operation.applyAsInt(weight.getInteger()));
+        return weight.getInteger();
+    }
+
     /**
      * Add a key with an associated weight to this set. If the key is already present in this set, the previous
      * association is replaced. Checks to validate that all keys are of the same type.
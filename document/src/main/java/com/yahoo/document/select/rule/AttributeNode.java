@@ -30,6 +30,10 @@ public class AttributeNode implements ExpressionNode {
     private ExpressionNode value;
     private final List<Item> items;
 
+    // The field path most recently resolved by this. Selections are typically evaluated against documents
+    // of a single type, so this avoids parsing the field path string for every document evaluated.
+    private volatile ResolvedFieldPath resolvedFieldPath = null;
+
     public AttributeNode(ExpressionNode value, List<Item> items) {
         this.value = value;
         this.items = new ArrayList<>(items);
@@ -55,13 +59,13 @@ public class AttributeNode implements ExpressionNode {
 
     @Override
     public Object evaluate(Context context) {
-        StringBuilder pos = new StringBuilder(value.toString());
         Object obj = value.evaluate(context);
 
         StringBuilder builder = new StringBuilder();
-        for (Item item : items) {
+        for (int i = 0; i < items.size(); i++) {
+            Item item = items.get(i);
             if (obj == null) {
-                throw new IllegalStateException("Can not invoke '" + item + "' on '" + pos + "' because that term " +
+                throw new IllegalStateException("Can not invoke '" + item + "' on '" + position(i) + "' because that term " +
                                                 "evaluated to null.");
             }
             if (item.getType() != Item.FUNCTION) {
@@ -78,8 +82,6 @@ public class AttributeNode implements ExpressionNode {
 
                 obj = evaluateFunction(item.getName(), obj);
             }
-
-            pos.append(".").append(item);
         }
 
         if (builder.length() > 0) {
@@ -88,6 +90,15 @@ public class AttributeNode implements ExpressionNode {
         return obj;
     }
 
+    /** Returns the textual form of this up to, but not including, the item at the given index */
+    private String position(int itemIndex) {
+        StringBuilder pos = new StringBuilder(value.toString());
+        for (int i = 0; i < itemIndex; i++) {
+            pos.append(".").append(items.get(i));
+        }
+        return pos.toString();
+    }
+
     public static class VariableValueList extends ArrayList<ResultList.VariableValue> {
 
     }
@@ -147,10 +158,11 @@ public class AttributeNode implements ExpressionNode {
         return documentType.hasImportedField(path);
     }
 
-    private static Object evaluateFieldPath(String fieldPathStr, Object value) {
+    private Object evaluateFieldPath(String fieldPathStr, Object value) {
         if (value instanceof DocumentPut) {
             Document doc = ((DocumentPut) value).getDocument();
-            if (isSimpleImportedField(fieldPathStr, doc.getDataType())) {
+            ResolvedFieldPath resolved = resolveFieldPath(fieldPathStr, doc.getDataType());
+            if (resolved.imported()) {
                 // Imported fields can only be meaningfully evaluated in the backend, so we
                 // explicitly treat them as if they are valid fields with missing values. This
                 // will be treated the same as if it's a normal field by the selection operators.
@@ -158,9 +170,8 @@ public class AttributeNode implements ExpressionNode {
                 // augment the FieldPath code with knowledge of imported fields.
                 return null;
             }
-            FieldPath fieldPath = doc.getDataType().buildFieldPath(fieldPathStr);
             IteratorHandler handler = new IteratorHandler();
-            doc.iterateNested(fieldPath, 0, handler);
+            doc.iterateNested(resolved.fieldPath(), 0, handler);
             if (handler.values.isEmpty()) {
                 return null;
             }
@@ -175,6 +186,21 @@ public class AttributeNode implements ExpressionNode {
         return Result.FALSE;
     }
 
+    private ResolvedFieldPath resolveFieldPath(String fieldPathStr, DocumentType documentType) {
+        ResolvedFieldPath resolved = resolvedFieldPath;
+        if (resolved != null && resolved.documentType() == documentType && resolved.fieldPathString().equals(fieldPathStr))
+            return resolved;
+
+        resolved = isSimpleImportedField(fieldPathStr, documentType)
+                   ? new ResolvedFieldPath(documentType, fieldPathStr, null, true)
+                   : new ResolvedFieldPath(documentType, fieldPathStr, documentType.buildFieldPath(fieldPathStr), false);
+        resolvedFieldPath = resolved;
+        return resolved;
+    }
+
+    /** A field path string resolved against a given document type */
+    private record ResolvedFieldPath(DocumentType documentType, String fieldPathString, FieldPath fieldPath, boolean imported) { }
+
     private static Object evaluateFunction(String function, Object value) {
         if (value instanceof VariableValueList) {
             VariableValueList retVal = new VariableValueList();
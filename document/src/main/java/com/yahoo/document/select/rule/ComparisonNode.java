@@ -30,6 +30,10 @@ public class ComparisonNode implements ExpressionNode {
     // The operator string for this.
     private String operator;
 
+    // The regular expression most recently compiled by this, typically from a literal right-hand-side,
+    // cached to avoid compiling the same pattern for every document evaluated.
+    private volatile CompiledPattern compiledPattern = null;
+
     /**
      * Constructs a new comparison node.
      *
@@ -69,6 +73,7 @@ public class ComparisonNode implements ExpressionNode {
      */
     public ComparisonNode setOperator(String operator) {
         this.operator = operator;
+        this.compiledPattern = null;
         return this;
     }
 
@@ -336,13 +341,22 @@ public class ComparisonNode implements ExpressionNode {
     private Result evaluateString(Object lhs, Object rhs) {
         String left = "" + lhs; // Allows null objects to evaluate to string.
         String right = "" + rhs;
-        if (operator.equals("=~")) {
-            return Result.toResult(Pattern.compile(right).matcher(left).find());
-        } else {
-            return Result.toResult(Pattern.compile(globToRegex(right)).matcher(left).find());
-        }
+        return Result.toResult(patternOf(right).matcher(left).find());
     }
 
+    /** Returns the compiled pattern of the given right-hand-side string, as interpreted by the operator of this */
+    private Pattern patternOf(String right) {
+        CompiledPattern compiled = compiledPattern;
+        if (compiled != null && compiled.source().equals(right))
+            return compiled.pattern();
+
+        Pattern pattern = Pattern.compile(operator.equals("=~") ? right : globToRegex(right));
+        compiledPattern = new CompiledPattern(right, pattern);
+        return pattern;
+    }
+
+    private record CompiledPattern(String source, Pattern pattern) { }
+
     /**
      * Converts a glob pattern to a corresponding regular expression string.
      *
@@ -56,7 +56,7 @@ public class ArithmeticValueUpdate extends ValueUpdate<DoubleFieldValue> {
     public FieldValue applyTo(FieldValue oldValue) {
         if (oldValue instanceof NumericFieldValue) {
             Number number = (Number) oldValue.getWrappedValue();
-            oldValue.assign(calculate(number));
+            oldValue.assign(calculate(number.doubleValue()));
         } else {
             throw new IllegalStateException("Cannot use arithmetic value update on non-numeric datatype "+oldValue.getClass().getName());
         }
@@ -70,16 +70,21 @@ public class ArithmeticValueUpdate extends ValueUpdate<DoubleFieldValue> {
         }
     }
 
-    private double calculate(Number operand2) {
+    /** Returns the result of applying this to the given int value, as assigning it to an integer field value would */
+    int applyTo(int value) {
+        return (int) calculate(value);
+    }
+
+    private double calculate(double operand2) {
         switch (operator) {
             case ADD:
-                return operand2.doubleValue() + operand.getDouble();
+                return operand2 + operand.getDouble();
             case DIV:
-                return operand2.doubleValue() / operand.getDouble();
+                return operand2 / operand.getDouble();
             case MUL:
-                return operand2.doubleValue() * operand.getDouble();
+                return operand2 * operand.getDouble();
             case SUB:
-                return operand2.doubleValue() - operand.getDouble();
+                return operand2 - operand.getDouble();
         }
         return 0d;
     }
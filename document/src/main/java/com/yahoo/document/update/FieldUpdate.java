@@ -6,11 +6,13 @@ import com.yahoo.document.Document;
 import com.yahoo.document.DocumentType;
 import com.yahoo.document.Field;
 import com.yahoo.document.datatypes.FieldValue;
+import com.yahoo.document.datatypes.TensorFieldValue;
 import com.yahoo.document.datatypes.WeightedSet;
 import com.yahoo.document.serialization.DocumentSerializerFactory;
 import com.yahoo.document.serialization.DocumentUpdateReader;
 import com.yahoo.document.serialization.DocumentUpdateWriter;
 import com.yahoo.io.GrowableByteBuffer;
+import com.yahoo.tensor.Tensor;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -105,7 +107,7 @@ public class FieldUpdate {
      * @return a reference to itself
      */
     public FieldUpdate applyTo(Document doc) {
-        for (ValueUpdate vupd : valueUpdates) {
+        for (ValueUpdate vupd : combineTensorUpdates(valueUpdates)) {
             DataType dataType = field.getDataType();
             FieldValue oldValue = doc.getFieldValue(field);
             boolean existed = (oldValue != null);
@@ -127,6 +129,42 @@ public class FieldUpdate {
         return this;
     }
 
+    /**
+     * Returns the given value updates where runs of consecutive tensor add or tensor remove updates of the same
+     * tensor type are combined into single updates having the same effect, such that the (typically much larger)
+     * tensor field value is only rebuilt once for each run.
+     */
+    private static List<ValueUpdate> combineTensorUpdates(List<ValueUpdate> valueUpdates) {
+        if (valueUpdates.size() < 2) return valueUpdates;
+
+        List<ValueUpdate> combined = new ArrayList<>(valueUpdates.size());
+        for (ValueUpdate update : valueUpdates) {
+            ValueUpdate previous = combined.isEmpty() ? null : combined.get(combined.size() - 1);
+            Tensor merged = null;
+            if (previous instanceof TensorAddUpdate && update instanceof TensorAddUpdate)
+                merged = mergeTensors(((TensorAddUpdate)previous).getValue(), ((TensorAddUpdate)update).getValue());
+            else if (previous instanceof TensorRemoveUpdate && update instanceof TensorRemoveUpdate)
+                merged = mergeTensors(((TensorRemoveUpdate)previous).getValue(), ((TensorRemoveUpdate)update).getValue());
+
+            if (merged == null)
+                combined.add(update);
+            else if (update instanceof TensorAddUpdate)
+                combined.set(combined.size() - 1, new TensorAddUpdate(new TensorFieldValue(merged)));
+            else
+                combined.set(combined.size() - 1, new TensorRemoveUpdate(new TensorFieldValue(merged)));
+        }
+        return combined;
+    }
+
+    /** Returns the cells of both the given tensors, with those of the latter taking precedence, or null if not compatible */
+    private static Tensor mergeTensors(TensorFieldValue first, TensorFieldValue second) {
+        if (first.getTensor().isEmpty() || second.getTensor().isEmpty()) return null;
+        Tensor firstTensor = first.getTensor().get();
+        Tensor secondTensor = second.getTensor().get();
+        if ( ! firstTensor.type().equals(secondTensor.type())) return null;
+        return firstTensor.merge(secondTensor, (left, right) -> right);
+    }
+
     /**
      * Adds a value update to the list of value updates.
      *
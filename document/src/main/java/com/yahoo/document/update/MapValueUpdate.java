@@ -61,6 +61,14 @@ public class MapValueUpdate extends ValueUpdate {
         } else if (fval instanceof WeightedSet) {
             WeightedSet wset = (WeightedSet) fval;
             WeightedSetDataType wtype = wset.getDataType();
+            if (update instanceof ArithmeticValueUpdate arithmetic) { // Update the weight in place
+                if (wtype.createIfNonExistent() && ! wset.containsKey(value))
+                    wset.put(value, 0);
+                Integer weight = wset.updateWeight(value, arithmetic::applyTo);
+                if (weight != null && weight == 0 && wtype.removeIfZero())
+                    wset.remove(value);
+                return fval;
+            }
             Integer weight = wset.get(value);
             if (weight == null) {
                 if (wtype.createIfNonExistent() && update instanceof ArithmeticValueUpdate) {
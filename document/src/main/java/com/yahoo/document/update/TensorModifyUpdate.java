@@ -102,12 +102,11 @@ public class TensorModifyUpdate extends ValueUpdate<TensorFieldValue> {
 
     private static HashSet<TensorAddress> findSubspacesNotInInput(Tensor input, Tensor modifier) {
         var subspaces = new HashSet<TensorAddress>();
-        var inputCells = input.cells();
         var type = input.type();
         for (var itr = modifier.cellIterator(); itr.hasNext(); ) {
             Tensor.Cell cell = itr.next();
             TensorAddress address = cell.getKey();
-            if (!inputCells.containsKey(address)) {
+            if (!input.has(address)) { // Note: Avoid input.cells(), which creates a map of all cells in a mixed tensor
                 subspaces.add(createSparsePartAddress(address, type));
             }
         }
@@ -0,0 +1,87 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.document.select;
+
+import com.yahoo.document.DataType;
+import com.yahoo.document.Document;
+import com.yahoo.document.DocumentId;
+import com.yahoo.document.DocumentOperation;
+import com.yahoo.document.DocumentPut;
+import com.yahoo.document.DocumentRemove;
+import com.yahoo.document.DocumentType;
+import com.yahoo.document.datatypes.IntegerFieldValue;
+import com.yahoo.document.datatypes.StringFieldValue;
+import com.yahoo.document.select.parser.ParseException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures document selection evaluation over a corpus mixing puts of several types and removes.
+ */
+public class DocumentSelectorMicroBenchmark {
+
+    public void benchmark() throws ParseException {
+        List<DocumentOperation> corpus = createCorpus();
+        benchmark("music.year > 1990 and music.artist = \"*ab*\"", corpus);
+        benchmark("music.title =~ \"^[a-m]\" or video.length < 300", corpus);
+        benchmark("(music or video) and id.namespace == \"ns\"", corpus);
+    }
+
+    private void benchmark(String selection, List<DocumentOperation> corpus) throws ParseException {
+        DocumentSelector selector = new DocumentSelector(selection);
+        int runs = 100;
+        for (int i = 0; i < runs; i++) // warmup
+            evaluate(selector, corpus);
+        long startTime = System.nanoTime();
+        int accepted = 0;
+        for (int i = 0; i < runs; i++)
+            accepted += evaluate(selector, corpus);
+        long totalTime = System.nanoTime() - startTime;
+        System.out.println("'" + selection + "': " + (totalTime / ((long)runs * corpus.size())) +
+                           " nanoseconds per document (" + accepted / runs + " accepted)");
+    }
+
+    private int evaluate(DocumentSelector selector, List<DocumentOperation> corpus) {
+        int accepted = 0;
+        for (DocumentOperation operation : corpus)
+            if (selector.accepts(operation) == Result.TRUE)
+                accepted++;
+        return accepted;
+    }
+
+    private List<DocumentOperation> createCorpus() {
+        DocumentType music = new DocumentType("music");
+        music.addField("artist", DataType.STRING);
+        music.addField("title", DataType.STRING);
+        music.addField("year", DataType.INT);
+        DocumentType video = new DocumentType("video");
+        video.addField("title", DataType.STRING);
+        video.addField("length", DataType.INT);
+
+        List<DocumentOperation> corpus = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            switch (i % 3) {
+                case 0 -> {
+                    Document document = new Document(music, new DocumentId("id:ns:music::" + i));
+                    document.setFieldValue("artist", new StringFieldValue("artist" + Integer.toString(i, 16)));
+                    document.setFieldValue("title", new StringFieldValue((char)('a' + i % 26) + "title" + i));
+                    document.setFieldValue("year", new IntegerFieldValue(1960 + i % 60));
+                    corpus.add(new DocumentPut(document));
+                }
+                case 1 -> {
+                    Document document = new Document(video, new DocumentId("id:ns:video::" + i));
+                    document.setFieldValue("title", new StringFieldValue("video" + i));
+                    document.setFieldValue("length", new IntegerFieldValue(i % 600));
+                    corpus.add(new DocumentPut(document));
+                }
+                default -> corpus.add(new DocumentRemove(new DocumentId("id:ns:music::" + i)));
+            }
+        }
+        return corpus;
+    }
+
+    public static void main(String[] args) throws ParseException {
+        new DocumentSelectorMicroBenchmark().benchmark();
+    }
+
+}
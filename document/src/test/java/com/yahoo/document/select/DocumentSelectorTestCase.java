@@ -867,6 +867,24 @@ public class DocumentSelectorTestCase {
         }
     }
 
+    @Test
+    public void testSelectorIsReusableAcrossDocumentsAndTypes() throws ParseException {
+        DocumentSelector selector = new DocumentSelector("parent.parentField = \"parent*\" and test.hstring =~ \"^[a-c]\"");
+        assertEquals(Result.TRUE, selector.accepts(createDocument("id:ns:test::1", 1, 1f, "abc", "x")));
+        assertEquals(Result.FALSE, selector.accepts(createDocument("id:ns:test::2", 1, 1f, "xyz", "x")));
+        assertEquals(Result.TRUE, selector.accepts(createDocument("id:ns:test::3", 1, 1f, "cde", "x")));
+
+        Document parentDocument = new Document(manager.getDocumentType("parent"), new DocumentId("id:ns:parent::1"));
+        parentDocument.setFieldValue("parentField", new StringFieldValue("parentValue"));
+        assertEquals(Result.FALSE, selector.accepts(new DocumentPut(parentDocument)));
+
+        DocumentSelector parentSelector = new DocumentSelector("parent.parentField = \"parent*\"");
+        assertEquals(Result.TRUE, parentSelector.accepts(new DocumentPut(parentDocument)));
+        assertEquals(Result.TRUE, parentSelector.accepts(createDocument("id:ns:test::4", 1, 1f, "abc", "x")));
+        parentDocument.setFieldValue("parentField", new StringFieldValue("other"));
+        assertEquals(Result.FALSE, parentSelector.accepts(new DocumentPut(parentDocument)));
+    }
+
     @Test
     public void testTicket1769674() {
         assertParseError("music.uri=\"junk",
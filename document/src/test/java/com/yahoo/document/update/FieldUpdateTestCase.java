@@ -7,15 +7,19 @@ import com.yahoo.document.DocumentId;
 import com.yahoo.document.DocumentType;
 import com.yahoo.document.DocumentTypeManager;
 import com.yahoo.document.Field;
+import com.yahoo.document.TensorDataType;
 import com.yahoo.document.datatypes.Array;
 import com.yahoo.document.datatypes.IntegerFieldValue;
 import com.yahoo.document.datatypes.Raw;
 import com.yahoo.document.datatypes.StringFieldValue;
+import com.yahoo.document.datatypes.TensorFieldValue;
 import com.yahoo.document.datatypes.WeightedSet;
 import com.yahoo.document.serialization.DocumentDeserializerFactory;
 import com.yahoo.document.serialization.DocumentSerializer;
 import com.yahoo.document.serialization.DocumentSerializerFactory;
 import com.yahoo.io.GrowableByteBuffer;
+import com.yahoo.tensor.Tensor;
+import com.yahoo.tensor.TensorType;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -386,4 +390,58 @@ public class FieldUpdateTestCase {
         assertEquals(1, (int)((WeightedSet) testDoc.getFieldValue("strws2")).get(key));
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testArithmeticUpdatesOfWSetWeights() {
+        Document testDoc = new Document(docman.getDocumentType("foobar"), new DocumentId("id:ns:foobar::wset"));
+        WeightedSet<StringFieldValue> wset = new WeightedSet<>(strws.getDataType());
+        wset.put(new StringFieldValue("apple"), 5);
+        testDoc.setFieldValue(strws, wset);
+        FieldUpdate update = FieldUpdate.create(strws);
+        update.addValueUpdate(ValueUpdate.createIncrement(new StringFieldValue("apple"), 2));
+        update.addValueUpdate(ValueUpdate.createMultiply(new StringFieldValue("apple"), 1.5));
+        update.addValueUpdate(ValueUpdate.createDivide(new StringFieldValue("apple"), 4));
+        update.addValueUpdate(ValueUpdate.createIncrement(new StringFieldValue("banana"), 1));
+        update.applyTo(testDoc);
+        wset = (WeightedSet<StringFieldValue>)testDoc.getFieldValue(strws);
+        assertEquals(1, wset.size());
+        assertEquals(2, (int)wset.get(new StringFieldValue("apple"))); // ((5 + 2) * 1.5 = 10) / 4
+
+        // A weighted set backed by a map of Java values
+        WeightedSet<StringFieldValue> wrapped = new WeightedSet<>(strws2.getDataType());
+        wrapped.assign(new java.util.HashMap<>(java.util.Map.of("apple", 1, "banana", 3)));
+        testDoc.setFieldValue(strws2, wrapped);
+        update = FieldUpdate.create(strws2);
+        update.addValueUpdate(ValueUpdate.createDecrement(new StringFieldValue("apple"), 1));
+        update.addValueUpdate(ValueUpdate.createIncrement(new StringFieldValue("banana"), 4));
+        update.addValueUpdate(ValueUpdate.createIncrement(new StringFieldValue("cherry"), 2));
+        update.applyTo(testDoc);
+        WeightedSet<?> updated = (WeightedSet<?>)testDoc.getFieldValue(strws2);
+        assertEquals(2, updated.size());
+        assertNull(updated.get(new StringFieldValue("apple")));
+        assertEquals(7, (int)updated.get(new StringFieldValue("banana")));
+        assertEquals(2, (int)updated.get(new StringFieldValue("cherry")));
+    }
+
+    @Test
+    public void testConsecutiveTensorUpdatesAreAppliedInOrder() {
+        TensorType type = TensorType.fromSpec("tensor(key{},x[2])");
+        DocumentType docType = new DocumentType("tensors");
+        Field field = new Field("tensor", new TensorDataType(type));
+        docType.addField(field);
+        Document doc = new Document(docType, new DocumentId("id:ns:tensors::1"));
+        doc.setFieldValue(field, new TensorFieldValue(Tensor.from(type, "{{key:a,x:0}:1, {key:a,x:1}:2, {key:b,x:0}:3, {key:b,x:1}:4}")));
+
+        FieldUpdate update = FieldUpdate.create(field);
+        update.addValueUpdate(new TensorAddUpdate(new TensorFieldValue(Tensor.from(type, "{{key:c,x:0}:5, {key:c,x:1}:6}"))));
+        update.addValueUpdate(new TensorAddUpdate(new TensorFieldValue(Tensor.from(type, "{{key:c,x:0}:7, {key:c,x:1}:8, {key:d,x:0}:9, {key:d,x:1}:10}"))));
+        update.addValueUpdate(new TensorRemoveUpdate(new TensorFieldValue(Tensor.from("tensor(key{}):{{key:a}:1}"))));
+        update.addValueUpdate(new TensorRemoveUpdate(new TensorFieldValue(Tensor.from("tensor(key{}):{{key:d}:1}"))));
+        update.addValueUpdate(new TensorAddUpdate(new TensorFieldValue(Tensor.from(type, "{{key:a,x:0}:11, {key:a,x:1}:12}"))));
+        update.applyTo(doc);
+
+        assertEquals(Tensor.from(type, "{{key:a,x:0}:11, {key:a,x:1}:12, {key:b,x:0}:3, {key:b,x:1}:4, {key:c,x:0}:7, {key:c,x:1}:8}"),
+                     ((TensorFieldValue)doc.getFieldValue(field)).getTensor().get());
+    }
+
 }
@@ -0,0 +1,113 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.document.update;
+
+import com.yahoo.document.DataType;
+import com.yahoo.document.Document;
+import com.yahoo.document.DocumentId;
+import com.yahoo.document.DocumentType;
+import com.yahoo.document.Field;
+import com.yahoo.document.TensorDataType;
+import com.yahoo.document.datatypes.StringFieldValue;
+import com.yahoo.document.datatypes.TensorFieldValue;
+import com.yahoo.document.datatypes.WeightedSet;
+import com.yahoo.tensor.Tensor;
+import com.yahoo.tensor.TensorType;
+
+/**
+ * Measures applying partial updates to a large mixed tensor and a large weighted set,
+ * as in documents holding per-user feature tensors.
+ */
+public class PartialUpdateMicroBenchmark {
+
+    private static final int subspaces = 1000;
+    private static final int denseSize = 64;
+    private static final int updatedSubspaces = 10;
+
+    private final TensorType type = TensorType.fromSpec("tensor(key{},x[" + denseSize + "])");
+    private final DocumentType documentType = new DocumentType("features");
+    private final Field tensorField = new Field("tensor", new TensorDataType(type));
+    private final Field wsetField = new Field("wset", DataType.getWeightedSet(DataType.STRING, true, true));
+
+    public PartialUpdateMicroBenchmark() {
+        documentType.addField(tensorField);
+        documentType.addField(wsetField);
+    }
+
+    public void benchmark() {
+        Document document = createDocument();
+        benchmark("modify replace", document, update(new TensorModifyUpdate(TensorModifyUpdate.Operation.REPLACE,
+                                                                            new TensorFieldValue(cells(TensorModifyUpdate.convertDimensionsToMapped(type), 0)))));
+        benchmark("modify add", document, update(new TensorModifyUpdate(TensorModifyUpdate.Operation.ADD,
+                                                                        new TensorFieldValue(cells(TensorModifyUpdate.convertDimensionsToMapped(type), 0)))));
+        benchmark("add", document, update(new TensorAddUpdate(new TensorFieldValue(cells(type, subspaces)))));
+        benchmark("remove", document, update(new TensorRemoveUpdate(new TensorFieldValue(keys(0)))));
+        FieldUpdate consecutiveAdds = FieldUpdate.create(tensorField);
+        for (int i = 0; i < updatedSubspaces; i++)
+            consecutiveAdds.addValueUpdate(new TensorAddUpdate(new TensorFieldValue(cells(type, subspaces + i * updatedSubspaces))));
+        benchmark("consecutive adds", document, consecutiveAdds);
+        FieldUpdate increments = FieldUpdate.create(wsetField);
+        for (int i = 0; i < 100; i++)
+            increments.addValueUpdate(ValueUpdate.createIncrement(new StringFieldValue("key" + i * 7), 1));
+        benchmark("weighted set increments", document, increments);
+    }
+
+    private void benchmark(String name, Document original, FieldUpdate update) {
+        int runs = 10000;
+        for (int i = 0; i < runs; i++) // warmup
+            apply(original, update);
+        long startTime = System.nanoTime();
+        for (int i = 0; i < runs; i++)
+            apply(original, update);
+        long totalTime = System.nanoTime() - startTime;
+        System.out.println(name + ": " + (totalTime / runs) + " nanoseconds per update");
+    }
+
+    private void apply(Document original, FieldUpdate update) {
+        Document document = new Document(documentType, original.getId());
+        document.setFieldValue(tensorField, original.getFieldValue(tensorField)); // Tensors are immutable
+        document.setFieldValue(wsetField, original.getFieldValue(wsetField)); // Increments accumulate, at the same cost
+        update.applyTo(document);
+    }
+
+    private FieldUpdate update(ValueUpdate<?> valueUpdate) {
+        FieldUpdate update = FieldUpdate.create(tensorField);
+        update.addValueUpdate(valueUpdate);
+        return update;
+    }
+
+    private Document createDocument() {
+        Document document = new Document(documentType, new DocumentId("id:ns:features::user1"));
+        Tensor.Builder builder = Tensor.Builder.of(type);
+        for (int i = 0; i < subspaces; i++)
+            for (int x = 0; x < denseSize; x++)
+                builder.cell().label("key", "key" + i).label("x", x).value(i + x);
+        document.setFieldValue(tensorField, new TensorFieldValue(builder.build()));
+        WeightedSet<StringFieldValue> wset = new WeightedSet<>(wsetField.getDataType());
+        for (int i = 0; i < subspaces; i++)
+            wset.put(new StringFieldValue("key" + i), i);
+        document.setFieldValue(wsetField, wset);
+        return document;
+    }
+
+    /** Returns a tensor of the given type with all cells in updatedSubspaces subspaces starting at the given one */
+    private static Tensor cells(TensorType type, int firstSubspace) {
+        Tensor.Builder builder = Tensor.Builder.of(type);
+        for (int i = firstSubspace; i < firstSubspace + updatedSubspaces; i++)
+            for (int x = 0; x < denseSize; x++)
+                builder.cell().label("key", "key" + i).label("x", x).value(1.0);
+        return builder.build();
+    }
+
+    /** Returns a sparse tensor addressing updatedSubspaces subspaces starting at the given one */
+    private static Tensor keys(int firstSubspace) {
+        Tensor.Builder builder = Tensor.Builder.of(TensorType.fromSpec("tensor(key{})"));
+        for (int i = firstSubspace; i < firstSubspace + updatedSubspaces; i++)
+            builder.cell().label("key", "key" + i).value(1.0);
+        return builder.build();
+    }
+
+    public static void main(String[] args) {
+        new PartialUpdateMicroBenchmark().benchmark();
+    }
+
+}
@@ -0,0 +1,282 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.filedistribution;
+
+import com.yahoo.config.FileReference;
+import com.yahoo.jrt.DataArray;
+import com.yahoo.jrt.Request;
+import com.yahoo.jrt.StringArray;
+import com.yahoo.jrt.StringValue;
+import com.yahoo.vespa.config.Connection;
+import com.yahoo.vespa.filedistribution.FileReferenceChunks.Chunk;
+import com.yahoo.vespa.filedistribution.FileReferenceChunks.ChunkedFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Downloads file references as chunks (see {@link FileReferenceChunks}), where chunks found in files
+ * downloaded already are copied, and only the others are fetched from the source.
+ * This is used only when enough of the content can be reused; otherwise the compressed content is downloaded in full.
+ */
+class ChunkDownloader {
+
+    private static final Logger log = Logger.getLogger(ChunkDownloader.class.getName());
+
+    /** The min fraction of the content which must be found locally for a chunked download to be worthwhile */
+    static final double minReusedFraction = 0.25;
+
+    /** The max number of other file references to look for earlier versions of the files being downloaded in */
+    static final int maxEarlierVersions = 3;
+
+    /** The max number of files being assembled to keep open at a time */
+    static final int maxOpenFiles = 64;
+
+    private final File downloadDirectory;
+    private final Downloads downloads;
+    private final ChunkIndex index = new ChunkIndex();
+
+    ChunkDownloader(File downloadDirectory, Downloads downloads) {
+        this.downloadDirectory = downloadDirectory;
+        this.downloads = downloads;
+    }
+
+    /**
+     * Downloads the given file reference in chunks from the given source, if enough of its content is found locally.
+     *
+     * @return the downloaded file, or empty if the file reference should be downloaded in full instead
+     * @throws IOException if downloading fails after it was decided to download in chunks
+     */
+    Optional<File> download(FileReference fileReference, Connection connection, Duration timeout) throws IOException {
+        // Config servers only create chunk lists for files which have earlier versions here
+        List<String> localNames = localNames(fileReference);
+        if (localNames.isEmpty()) return Optional.empty();
+
+        Optional<FileReferenceChunks> chunks = getChunkList(fileReference, localNames, connection, timeout);
+        if (chunks.isEmpty()) return Optional.empty();
+
+        indexEarlierVersions(fileReference, chunks.get());
+        long reusable = chunks.get().files().stream()
+                              .flatMap(file -> file.chunks().stream())
+                              .filter(chunk -> index.contains(chunk.hash()))
+                              .mapToLong(Chunk::length)
+                              .sum();
+        if (reusable < minReusedFraction * chunks.get().size()) {
+            log.log(Level.FINE, () -> "Only " + reusable + " of " + chunks.get().size() + " bytes of " + fileReference +
+                                      " found locally, downloading all of it");
+            return Optional.empty();
+        }
+        log.log(Level.FINE, () -> "Downloading " + fileReference + " in chunks, reusing " + reusable + " of " +
+                                  chunks.get().size() + " bytes found locally");
+
+        File inProgressDir = Files.createTempDirectory(downloadDirectory.toPath(), "chunked").toFile();
+        try {
+            try (Writer writer = new Writer()) {
+                assemble(fileReference, chunks.get(), new File(inProgressDir, chunks.get().name()), writer, connection, timeout);
+            }
+            File fileReferenceDir = new File(downloadDirectory, fileReference.value());
+            FileReceiver.moveFileToDestination(inProgressDir, fileReferenceDir);
+            File file = new File(fileReferenceDir, chunks.get().name());
+            for (ChunkedFile chunkedFile : chunks.get().files())
+                if ( ! chunkedFile.isDirectory())
+                    index.add(resolve(file, chunkedFile), chunkedFile.chunks());
+            return Optional.of(file);
+        }
+        finally {
+            FileReceiver.deletePath(inProgressDir);
+        }
+    }
+
+    /** Returns the names of the files of the other file references downloaded, which may be earlier versions */
+    private List<String> localNames(FileReference fileReference) {
+        File[] fileReferenceDirs = downloadDirectory.listFiles(dir -> dir.isDirectory() && ! dir.getName().equals(fileReference.value()));
+        if (fileReferenceDirs == null) return List.of();
+
+        Set<String> names = new TreeSet<>();
+        for (File fileReferenceDir : fileReferenceDirs) {
+            String[] files = fileReferenceDir.list();
+            if (files != null) names.addAll(Arrays.asList(files));
+        }
+        return List.copyOf(names);
+    }
+
+    private Optional<FileReferenceChunks> getChunkList(FileReference fileReference, List<String> localNames,
+                                                       Connection connection, Duration timeout) {
+        Request request = new Request(FileReferenceChunks.GET_CHUNK_LIST_METHOD);
+        request.parameters().add(new StringValue(fileReference.value()));
+        request.parameters().add(new StringArray(localNames.toArray(new String[0])));
+        connection.invokeSync(request, timeout);
+        if (request.isError() || ! request.checkReturnTypes("ix") || request.returnValues().get(0).asInt32() != 0) {
+            log.log(Level.FINE, () -> "No chunk list for " + fileReference + " from " + connection.getAddress() + ": " +
+                                      (request.isError() ? request.errorMessage() : "error code " + request.returnValues().get(0)));
+            return Optional.empty();
+        }
+        return Optional.of(FileReferenceChunks.fromBytes(request.returnValues().get(1).asData()));
+    }
+
+    /** Indexes the files at the same paths in the most recent other file references with the same name */
+    private void indexEarlierVersions(FileReference fileReference, FileReferenceChunks chunks) throws IOException {
+        File[] fileReferenceDirs = downloadDirectory.listFiles(dir -> ! dir.getName().equals(fileReference.value()) &&
+                                                                     new File(dir, chunks.name()).exists());
+        if (fileReferenceDirs == null) return;
+
+        List<File> earlierVersions = Arrays.stream(fileReferenceDirs)
+                                           .sorted(Comparator.comparingLong(File::lastModified).reversed())
+                                           .limit(maxEarlierVersions)
+                                           .map(dir -> new File(dir, chunks.name()))
+                                           .toList();
+        for (File earlierVersion : earlierVersions) {
+            for (ChunkedFile chunkedFile : chunks.files()) {
+                Path path = resolve(earlierVersion, chunkedFile);
+                if ( ! chunkedFile.isDirectory() && Files.isRegularFile(path))
+                    index.index(path);
+            }
+        }
+    }
+
+    /** Writes the given chunks to the given file or directory, using local chunks when possible */
+    private void assemble(FileReference fileReference, FileReferenceChunks chunks, File target, Writer writer,
+                          Connection connection, Duration timeout) throws IOException {
+        Map<ByteBuffer, List<Location>> missing = new LinkedHashMap<>();
+        long written = 0;
+        for (ChunkedFile chunkedFile : chunks.files()) {
+            Path path = resolve(target, chunkedFile);
+            if ( ! path.normalize().startsWith(target.toPath()))
+                throw new IOException("Illegal path '" + chunkedFile.path() + "' in chunks of " + fileReference);
+            if (chunkedFile.isDirectory()) {
+                Files.createDirectories(path);
+                continue;
+            }
+            Files.createDirectories(path.getParent());
+            try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+                file.setLength(chunkedFile.size());
+            }
+            for (Chunk chunk : chunkedFile.chunks()) {
+                Optional<byte[]> content = index.read(chunk.hash());
+                if (content.isPresent()) {
+                    writer.write(path, chunk.offset(), content.get());
+                    written += chunk.length();
+                }
+                else {
+                    missing.computeIfAbsent(ByteBuffer.wrap(chunk.hash()), __ -> new ArrayList<>())
+                           .add(new Location(path, chunk));
+                }
+            }
+        }
+        downloads.setDownloadStatus(fileReference, (double) written / Math.max(1, chunks.size()));
+
+        List<byte[]> batch = new ArrayList<>();
+        long batchSize = 0;
+        for (var entry : missing.entrySet()) {
+            int length = entry.getValue().get(0).chunk.length();
+            if ( ! batch.isEmpty() && batchSize + length > FileReferenceChunks.maxBytesPerRequest) {
+                written += fetch(fileReference, batch, missing, writer, connection, timeout);
+                downloads.setDownloadStatus(fileReference, (double) written / Math.max(1, chunks.size()));
+                batch.clear();
+                batchSize = 0;
+            }
+            batch.add(entry.getKey().array());
+            batchSize += length;
+        }
+        if ( ! batch.isEmpty())
+            fetch(fileReference, batch, missing, writer, connection, timeout);
+    }
+
+    /** Fetches the chunks with the given hashes, and writes them at all their locations, returning the bytes written */
+    private long fetch(FileReference fileReference, List<byte[]> hashes, Map<ByteBuffer, List<Location>> locations,
+                       Writer writer, Connection connection, Duration timeout) throws IOException {
+        Request request = new Request(FileReferenceChunks.GET_CHUNKS_METHOD);
+        request.parameters().add(new StringValue(fileReference.value()));
+        request.parameters().add(new DataArray(hashes.toArray(new byte[0][])));
+        connection.invokeSync(request, timeout);
+        if (request.isError())
+            throw new IOException("Failed getting chunks of " + fileReference + " from " + connection.getAddress() +
+                                  ": " + request.errorMessage());
+        if ( ! request.checkReturnTypes("iX") || request.returnValues().get(0).asInt32() != 0)
+            throw new IOException("Failed getting chunks of " + fileReference + " from " + connection.getAddress());
+
+        byte[][] contents = request.returnValues().get(1).asDataArray();
+        if (contents.length != hashes.size())
+            throw new IOException("Expected " + hashes.size() + " chunks of " + fileReference + ", got " + contents.length);
+        long written = 0;
+        for (int i = 0; i < contents.length; i++) {
+            if ( ! Arrays.equals(hashes.get(i), FileReferenceChunks.hash(contents[i])))
+                throw new IOException("Chunk of " + fileReference + " from " + connection.getAddress() + " has wrong hash");
+            for (Location location : locations.get(ByteBuffer.wrap(hashes.get(i)))) {
+                writer.write(location.path, location.chunk.offset(), contents[i]);
+                written += contents[i].length;
+            }
+        }
+        return written;
+    }
+
+    private static Path resolve(File root, ChunkedFile chunkedFile) {
+        return chunkedFile.path().isEmpty() ? root.toPath() : root.toPath().resolve(chunkedFile.path());
+    }
+
+    private record Location(Path path, Chunk chunk) {}
+
+    /** Writes chunks to the files being assembled, keeping the most recently written files open */
+    private static class Writer implements AutoCloseable {
+
+        private final Map<Path, FileChannel> channels = new LinkedHashMap<>(16, 0.75f, true);
+
+        void write(Path path, long offset, byte[] content) throws IOException {
+            FileChannel channel = channel(path);
+            ByteBuffer buffer = ByteBuffer.wrap(content);
+            while (buffer.hasRemaining())
+                channel.write(buffer, offset + buffer.position());
+        }
+
+        private FileChannel channel(Path path) throws IOException {
+            FileChannel channel = channels.get(path);
+            if (channel != null) return channel;
+
+            if (channels.size() >= maxOpenFiles) {
+                Iterator<FileChannel> leastRecentlyWritten = channels.values().iterator();
+                FileChannel evicted = leastRecentlyWritten.next();
+                leastRecentlyWritten.remove();
+                evicted.close();
+            }
+            channel = FileChannel.open(path, WRITE);
+            channels.put(path, channel);
+            return channel;
+        }
+
+        @Override
+        public void close() throws IOException {
+            IOException failure = null;
+            for (FileChannel channel : channels.values()) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    if (failure == null) failure = e;
+                    else failure.addSuppressed(e);
+                }
+            }
+            channels.clear();
+            if (failure != null) throw failure;
+        }
+
+    }
+
+}
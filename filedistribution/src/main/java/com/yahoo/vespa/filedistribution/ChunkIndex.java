@@ -0,0 +1,87 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.filedistribution;
+
+import com.yahoo.vespa.filedistribution.FileReferenceChunks.Chunk;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The locations of chunks (see {@link FileReferenceChunks}) of files which are downloaded already,
+ * for reuse when downloading other file references containing the same chunks.
+ * Files are indexed when downloaded in chunks, or when they are found to be earlier versions of files being downloaded.
+ * Chunks are verified against their hash when read, so files changing or disappearing just makes their chunks missing.
+ */
+class ChunkIndex {
+
+    private static final Logger log = Logger.getLogger(ChunkIndex.class.getName());
+
+    /** The approximate heap used by the location of each chunk */
+    private static final int bytesPerChunk = 100;
+
+    /** The max number of chunks to keep locations of, using at most 1/32 of the heap, which is small in config proxies */
+    static final int maxChunks = (int) Math.min(2_000_000, Runtime.getRuntime().maxMemory() / 32 / bytesPerChunk);
+
+    private final Map<ByteBuffer, Location> locations = new HashMap<>();
+    private final Map<Path, Long> indexedFiles = new HashMap<>(); // last modified time of each file indexed
+
+    /** Adds the given chunks of the given file */
+    synchronized void add(Path file, List<Chunk> chunks) {
+        if (locations.size() + chunks.size() > maxChunks) { // Start over rather than grow
+            locations.clear();
+            indexedFiles.clear();
+        }
+        for (Chunk chunk : chunks)
+            locations.put(ByteBuffer.wrap(chunk.hash()), new Location(file, chunk));
+        indexedFiles.put(file, file.toFile().lastModified());
+    }
+
+    /** Adds the chunks of the given file, unless it is indexed already and has not been modified since */
+    void index(Path file) throws IOException {
+        synchronized (this) {
+            Long lastModified = indexedFiles.get(file);
+            if (lastModified != null && lastModified == file.toFile().lastModified()) return;
+        }
+        try (InputStream in = Files.newInputStream(file)) {
+            add(file, FileReferenceChunks.chunk(in));
+        }
+    }
+
+    synchronized boolean contains(byte[] hash) {
+        return locations.containsKey(ByteBuffer.wrap(hash));
+    }
+
+    /** Returns the content of the chunk with the given hash, if it exists locally */
+    Optional<byte[]> read(byte[] hash) {
+        Location location;
+        synchronized (this) {
+            location = locations.get(ByteBuffer.wrap(hash));
+        }
+        if (location == null) return Optional.empty();
+
+        try {
+            byte[] content = FileReferenceChunks.readChunk(location.file, location.chunk);
+            if (Arrays.equals(hash, FileReferenceChunks.hash(content)))
+                return Optional.of(content);
+        } catch (IOException e) {
+            log.log(Level.FINE, () -> "Failed reading chunk from " + location.file + ": " + e.getMessage());
+        }
+        synchronized (this) {
+            locations.remove(ByteBuffer.wrap(hash));
+        }
+        return Optional.empty();
+    }
+
+    private record Location(Path file, Chunk chunk) {}
+
+}
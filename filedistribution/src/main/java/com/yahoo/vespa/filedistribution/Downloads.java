@@ -33,6 +33,10 @@ public class Downloads {
         downloadStatuses.put(fileReference, completeness);
     }
 
+    void setDownloadStatus(FileReference fileReference, double completeness, double throughput) {
+        downloadStatuses.put(fileReference, completeness, throughput);
+    }
+
     void completedDownloading(FileReference fileReference, File file) {
         Optional<FileReferenceDownload> download = get(fileReference);
         setDownloadStatus(fileReference, 1.0);
@@ -79,11 +83,16 @@ public class Downloads {
         private final Map<FileReference, DownloadStatus> downloadStatus = Collections.synchronizedMap(new HashMap<>());
 
         void put(FileReference fileReference) {
-            put(fileReference, 0.0);
+            put(fileReference, 0.0, 0.0);
         }
 
+        /** Sets the progress of a download, keeping the throughput measured last */
         void put(FileReference fileReference, double progress) {
-            downloadStatus.put(fileReference, new DownloadStatus(fileReference, progress));
+            put(fileReference, progress, get(fileReference).map(DownloadStatus::throughput).orElse(0.0));
+        }
+
+        void put(FileReference fileReference, double progress, double throughput) {
+            downloadStatus.put(fileReference, new DownloadStatus(fileReference, progress, throughput));
             if (downloadStatus.size() > maxEntries) {
                 Map.Entry<FileReference, DownloadStatus> oldest =
                         Collections.min(downloadStatus.entrySet(), Comparator.comparing(e -> e.getValue().created));
@@ -109,11 +118,17 @@ public class Downloads {
     static class DownloadStatus {
         private final FileReference fileReference;
         private final double progress; // between 0 and 1
+        private final double throughput; // bytes per second
         private final Instant created;
 
         DownloadStatus(FileReference fileReference, double progress) {
+            this(fileReference, progress, 0.0);
+        }
+
+        DownloadStatus(FileReference fileReference, double progress, double throughput) {
             this.fileReference = fileReference;
             this.progress = progress;
+            this.throughput = throughput;
             this.created = Instant.now();
         }
 
@@ -125,6 +140,11 @@ public class Downloads {
             return progress;
         }
 
+        /** Returns the bytes received per second in the last transfer of this, or 0 if unknown */
+        public double throughput() {
+            return throughput;
+        }
+
         public Instant created() {
             return created;
         }
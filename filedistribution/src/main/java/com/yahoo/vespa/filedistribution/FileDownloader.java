@@ -39,6 +39,7 @@ public class FileDownloader implements AutoCloseable {
     private final File downloadDirectory;
     private final Duration timeout;
     private final FileReferenceDownloader fileReferenceDownloader;
+    private final Optional<FileReferencePeers> peers;
     private final Downloads downloads = new Downloads();
 
     static {
@@ -51,18 +52,37 @@ public class FileDownloader implements AutoCloseable {
         this(connectionPool, supervisor, defaultDownloadDirectory, timeout, backoffInitialTime);
     }
 
+    /**
+     * Creates a downloader which downloads from peers when possible, and reports downloaded files to config servers
+     * for other nodes to download from this, where they are served on the given port.
+     */
+    public FileDownloader(ConnectionPool connectionPool, Supervisor supervisor, Duration timeout, int peerPort) {
+        this(connectionPool, supervisor, defaultDownloadDirectory, timeout, backoffInitialTime,
+             Optional.of(new FileReferencePeers(supervisor, connectionPool, peerPort)));
+    }
+
     public FileDownloader(ConnectionPool connectionPool,
                           Supervisor supervisor,
                           File downloadDirectory,
                           Duration timeout,
                           Duration backoffInitialTime) {
+        this(connectionPool, supervisor, downloadDirectory, timeout, backoffInitialTime, Optional.empty());
+    }
+
+    FileDownloader(ConnectionPool connectionPool,
+                   Supervisor supervisor,
+                   File downloadDirectory,
+                   Duration timeout,
+                   Duration backoffInitialTime,
+                   Optional<FileReferencePeers> peers) {
         this.connectionPool = connectionPool;
         this.supervisor = supervisor;
         this.downloadDirectory = downloadDirectory;
         this.timeout = timeout;
+        this.peers = peers;
         // Needed to receive RPC receiveFile* calls from server after starting download of file reference
-        new FileReceiver(supervisor, downloads, downloadDirectory);
-        this.fileReferenceDownloader = new FileReferenceDownloader(connectionPool, downloads, timeout,
+        FileReceiver fileReceiver = new FileReceiver(supervisor, downloads, downloadDirectory);
+        this.fileReferenceDownloader = new FileReferenceDownloader(connectionPool, downloads, fileReceiver, peers, timeout,
                                                                     backoffInitialTime, downloadDirectory);
         if (forceDownload)
             log.log(Level.INFO, "Force download of file references (download even if file reference exists on disk)");
@@ -78,10 +98,11 @@ public class FileDownloader implements AutoCloseable {
         this.supervisor = supervisor;
         this.downloadDirectory = downloadDirectory;
         this.timeout = timeout;
+        this.peers = Optional.empty();
         // Needed to receive RPC receiveFile* calls from server after starting download of file reference
-        new FileReceiver(supervisor, downloads, downloadDirectory);
-        this.fileReferenceDownloader = new FileReferenceDownloader(connectionPool, downloads, timeout,
-                                                                    backoffInitialTime, downloadDirectory,
+        FileReceiver fileReceiver = new FileReceiver(supervisor, downloads, downloadDirectory);
+        this.fileReferenceDownloader = new FileReferenceDownloader(connectionPool, downloads, fileReceiver, Optional.empty(),
+                                                                    timeout, backoffInitialTime, downloadDirectory,
                                                                     maxTimeoutsBeforeClose);
         if (forceDownload)
             log.log(Level.INFO, "Force download of file references (download even if file reference exists on disk)");
@@ -122,6 +143,19 @@ public class FileDownloader implements AutoCloseable {
 
     public ConnectionPool connectionPool() { return connectionPool; }
 
+    /** Returns the given file reference if it has been downloaded, without downloading it */
+    public Optional<File> downloadedFile(FileReference fileReference) {
+        return getFileFromFileSystem(fileReference);
+    }
+
+    /** Returns whether this downloads from, and serves file references to, peers */
+    public boolean usesPeers() { return peers.isPresent(); }
+
+    /** Returns whether this may serve the given file reference to the given downloader host, as a peer */
+    public boolean mayServeToPeer(FileReference fileReference, String downloaderHost) {
+        return peers.map(fileReferencePeers -> fileReferencePeers.mayServe(fileReference, downloaderHost)).orElse(false);
+    }
+
     public Downloads downloads() { return downloads; }
 
     File downloadDirectory() {
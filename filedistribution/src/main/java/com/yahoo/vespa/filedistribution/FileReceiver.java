@@ -1,6 +1,7 @@
 // Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.vespa.filedistribution;
 
+import com.yahoo.concurrent.DaemonThreadFactory;
 import com.yahoo.config.FileReference;
 import com.yahoo.io.IOUtils;
 import com.yahoo.jrt.Int32Value;
@@ -13,26 +14,40 @@ import net.jpountz.xxhash.StreamingXXHash64;
 import net.jpountz.xxhash.XXHashFactory;
 import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import static com.yahoo.vespa.filedistribution.FileReferenceData.Type;
 import static com.yahoo.vespa.filedistribution.FileReferenceData.CompressionType;
-import static java.nio.file.StandardOpenOption.APPEND;
-import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
 import static java.nio.file.StandardOpenOption.WRITE;
 
 /**
  * When asking for a file reference, this handles RPC callbacks from config server with file data and metadata.
  * Uses the same Supervisor as the original caller that requests files, so communication uses the same
  * connection in both directions.
+ * <p>
+ * Parts are written positionally into a file preallocated to the full size, so parts sent with their offset
+ * ({@link #RECEIVE_PART_AT_METHOD}) may arrive in any order, and from several servers sharing a session.
+ * Such sessions are kept when a transfer is interrupted, so that a new transfer can resume with the parts
+ * still missing, see {@link FileReferenceParts}.
  *
  * @author baldersheim
  */
@@ -41,6 +56,7 @@ public class FileReceiver {
     private final static Logger log = Logger.getLogger(FileReceiver.class.getName());
     public final static String RECEIVE_META_METHOD = "filedistribution.receiveFileMeta";
     public final static String RECEIVE_PART_METHOD = "filedistribution.receiveFilePart";
+    public final static String RECEIVE_PART_AT_METHOD = "filedistribution.receiveFilePartAt";
     public final static String RECEIVE_EOF_METHOD = "filedistribution.receiveFileEof";
 
     private final Supervisor supervisor;
@@ -48,6 +64,14 @@ public class FileReceiver {
     private final File downloadDirectory;
     private final AtomicInteger nextSessionId = new AtomicInteger(1);
     private final Map<Integer, Session> sessions = new HashMap<>();
+    /** Hashes from config servers, which content of these file references from any sender must match */
+    private final Map<FileReference, Long> trustedHashes = new ConcurrentHashMap<>();
+
+    /** Sessions without parts received for this long are assumed to be abandoned by their senders */
+    private static final Duration sessionIdleTimeout = Duration.ofMinutes(15);
+
+    private final ScheduledExecutorService idleSessionRemover =
+            Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("file receiver idle session remover"));
 
     final static class Session {
         private final StreamingXXHash64 hasher;
@@ -57,13 +81,24 @@ public class FileReceiver {
         private final CompressionType compressionType;
         private final String fileName;
         private final long fileSize;
-        private long currentFileSize;
-        private long currentPartId;
-        private final long currentHash;
+        private final boolean positional;
         private final File fileReferenceDir;
         private final File tmpDir;
         private final File inProgressDir;
         private final File file;
+        private final FileChannel channel;
+        private final long startNanos = System.nanoTime();
+
+        /** The byte ranges written, as merged [start, end) entries */
+        private final TreeMap<Long, Long> received = new TreeMap<>();
+        private long receivedBytes = 0;
+        private long hashedBytes = 0;
+        private int nextPartId = 0;
+        private long nextPartOffset = 0;
+        private int sources = 1;
+        private long expectedHash;
+        private boolean eofReceived = false;
+        private volatile long lastPartNanos = startNanos;
 
         Session(File downloadDirectory,
                 int sessionId,
@@ -72,6 +107,17 @@ public class FileReceiver {
                 FileReferenceData.CompressionType compressionType,
                 String fileName,
                 long fileSize) {
+            this(downloadDirectory, sessionId, reference, fileType, compressionType, fileName, fileSize, false);
+        }
+
+        Session(File downloadDirectory,
+                int sessionId,
+                FileReference reference,
+                Type fileType,
+                FileReferenceData.CompressionType compressionType,
+                String fileName,
+                long fileSize,
+                boolean positional) {
             this.hasher = XXHashFactory.fastestInstance().newStreamingHash64(0);
             this.sessionId = sessionId;
             this.reference = reference;
@@ -79,9 +125,7 @@ public class FileReceiver {
             this.compressionType = compressionType;
             this.fileName = fileName;
             this.fileSize = fileSize;
-            currentFileSize = 0;
-            currentPartId = 0;
-            currentHash = 0;
+            this.positional = positional;
             fileReferenceDir = new File(downloadDirectory, reference.value());
             this.tmpDir = downloadDirectory;
 
@@ -93,32 +137,151 @@ public class FileReceiver {
                 log.log(Level.SEVERE, msg + e.getMessage(), e);
                 throw new RuntimeException(msg, e);
             }
+            try {
+                // Preallocate, so that parts can be written at their offsets as they arrive
+                try (RandomAccessFile preallocated = new RandomAccessFile(file, "rw")) {
+                    preallocated.setLength(fileSize);
+                }
+                channel = FileChannel.open(file.toPath(), READ, WRITE);
+            } catch (IOException e) {
+                String msg = "Failed creating inprogress file " + file + " of size " + fileSize + ": ";
+                log.log(Level.SEVERE, msg + e.getMessage(), e);
+                deletePath(inProgressDir);
+                throw new RuntimeException(msg, e);
+            }
         }
 
+        /** Adds the next part of content sent in order, starting with part 0 */
         void addPart(int partId, byte [] part) {
-            if (partId != currentPartId) {
-                throw new IllegalStateException("Received partid " + partId + " while expecting " + currentPartId);
+            synchronized (this) {
+                if (partId == 0) { // A new sender starts from the beginning
+                    nextPartId = 0;
+                    nextPartOffset = 0;
+                }
+                if (partId != nextPartId) {
+                    throw new IllegalStateException("Received partid " + partId + " while expecting " + nextPartId);
+                }
+                nextPartId++;
+                nextPartOffset += part.length;
+            }
+            addPartAt(nextPartOffset - part.length, part);
+        }
+
+        /** Adds a part of content at the given offset. Parts which are received already are ignored. */
+        void addPartAt(long offset, byte [] part) {
+            if (offset < 0 || fileSize < offset + part.length) {
+                throw new IllegalStateException("Received part would extend the file from " + offset + " to " +
+                                                (offset + part.length) + ", but " + fileSize + " is max.");
             }
-            if (fileSize < currentFileSize + part.length) {
-                throw new IllegalStateException("Received part would extend the file from " + currentFileSize + " to " +
-                                                (currentFileSize + part.length) + ", but " + fileSize + " is max.");
+            lastPartNanos = System.nanoTime();
+            if (part.length == 0) return;
+            synchronized (this) {
+                if (isReceived(offset, offset + part.length)) return;
             }
             try {
-                Files.write(file.toPath(), part, WRITE, file.exists() ? APPEND : CREATE);
+                ByteBuffer buffer = ByteBuffer.wrap(part);
+                while (buffer.hasRemaining())
+                    channel.write(buffer, offset + buffer.position());
             } catch (IOException e) {
                 String message = "Failed writing to file (" + inProgressDir.toPath() + "): ";
                 log.log(Level.SEVERE, message + e.getMessage(), e);
-                boolean successfulDelete = inProgressDir.delete();
-                if ( ! successfulDelete)
-                    log.log(Level.INFO, "Unable to delete " + inProgressDir.toPath());
+                abort();
                 throw new RuntimeException(message, e);
             }
-            currentFileSize += part.length;
-            currentPartId++;
-            hasher.update(part, 0, part.length);
+            synchronized (this) {
+                markReceived(offset, offset + part.length);
+                hashReceived(offset, part);
+            }
+        }
+
+        private boolean isReceived(long start, long end) {
+            Map.Entry<Long, Long> range = received.floorEntry(start);
+            return range != null && end <= range.getValue();
+        }
+
+        private void markReceived(long start, long end) {
+            long newBytes = end - start;
+            Map.Entry<Long, Long> previous = received.floorEntry(start);
+            if (previous != null && previous.getValue() >= start) { // Merge with the range before
+                newBytes -= Math.min(end, previous.getValue()) - start;
+                start = previous.getKey();
+                end = Math.max(end, previous.getValue());
+            }
+            for (Map.Entry<Long, Long> next = received.higherEntry(start); next != null && next.getKey() <= end;
+                 next = received.higherEntry(start)) { // Merge with ranges starting inside this
+                newBytes -= Math.min(end, next.getValue()) - next.getKey();
+                end = Math.max(end, next.getValue());
+                received.remove(next.getKey());
+            }
+            received.put(start, end);
+            receivedBytes += Math.max(0, newBytes);
+        }
+
+        /** Hashes the content which is now received contiguously from the start, reading parts received earlier back from the file */
+        private void hashReceived(long offset, byte[] part) {
+            if (offset == hashedBytes) {
+                hasher.update(part, 0, part.length);
+                hashedBytes += part.length;
+            }
+            Map.Entry<Long, Long> range = received.floorEntry(hashedBytes);
+            if (range == null || range.getValue() <= hashedBytes) return;
+
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(FileReferenceParts.partSize, range.getValue() - hashedBytes));
+            try {
+                while (hashedBytes < range.getValue()) {
+                    buffer.clear().limit((int) Math.min(buffer.capacity(), range.getValue() - hashedBytes));
+                    int read = channel.read(buffer, hashedBytes);
+                    if (read <= 0) throw new IOException("Unexpected end of file at " + hashedBytes);
+                    hasher.update(buffer.array(), 0, read);
+                    hashedBytes += read;
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("Failed reading back received parts of " + file, e);
+            }
+        }
+
+        /** Records the hash sent at end of a transfer, and returns whether all content is received */
+        synchronized boolean eof(long hash) {
+            expectedHash = hash;
+            eofReceived = true;
+            return isComplete();
+        }
+
+        synchronized boolean isComplete() { return receivedBytes == fileSize; }
+
+        /** Returns whether all content and the hash of it are received */
+        synchronized boolean canClose() { return eofReceived && isComplete(); }
+
+        /** Returns the byte ranges received, as [start, end) pairs */
+        synchronized long[] receivedRanges() {
+            long[] ranges = new long[received.size() * 2];
+            int i = 0;
+            for (Map.Entry<Long, Long> range : received.entrySet()) {
+                ranges[i++] = range.getKey();
+                ranges[i++] = range.getValue();
+            }
+            return ranges;
+        }
+
+        /** Returns whether a transfer from another sender may add parts to this */
+        boolean canBeJoinedBy(FileReference reference, Type fileType, String fileName, long fileSize) {
+            // Compressed content is compressed by each sender and may differ between them
+            return positional && this.fileType == Type.file && fileType == Type.file &&
+                   this.reference.equals(reference) && this.fileName.equals(fileName) && this.fileSize == fileSize;
+        }
+
+        synchronized void join() { sources++; }
+
+        boolean isIdle(Duration timeout) {
+            return System.nanoTime() - lastPartNanos > timeout.toNanos();
+        }
+
+        File close() {
+            return close(expectedHash);
         }
 
         File close(long hash) {
+            closeChannel();
             verifyHash(hash);
 
             File decompressedDir = null;
@@ -140,16 +303,56 @@ public class FileReceiver {
                 deletePath(inProgressDir);
                 deletePath(decompressedDir);
             }
+            logThroughput();
             return new File(fileReferenceDir, fileName);
         }
 
+        /** Discards this session and the content received */
+        void abort() {
+            closeChannel();
+            deletePath(inProgressDir);
+        }
+
+        private void closeChannel() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.log(Level.WARNING, "Failed closing " + file + ": " + e.getMessage());
+            }
+        }
+
         double percentageReceived() {
-            return (double)currentFileSize/(double)fileSize;
+            return fileSize == 0 ? 1.0 : (double) receivedBytes() / (double) fileSize;
+        }
+
+        synchronized long receivedBytes() { return receivedBytes; }
+
+        /** Returns the bytes received per second in this session so far */
+        double throughput() {
+            double seconds = Math.max(1e-3, (System.nanoTime() - startNanos) / 1e9);
+            return receivedBytes() / seconds;
+        }
+
+        private void logThroughput() {
+            Duration duration = Duration.ofNanos(System.nanoTime() - startNanos);
+            double throughput = throughput();
+            int sources;
+            synchronized (this) { sources = this.sources; }
+            log.log(duration.compareTo(Duration.ofSeconds(10)) > 0 ? Level.INFO : Level.FINE,
+                    () -> Text.format("Received %s (%d bytes) from %d source(s) in %s, %.1f MB/s",
+                                      reference.value(), fileSize, sources, duration, throughput / (1 << 20)));
         }
 
         void verifyHash(long hash) {
-            if (hasher.getValue() != hash)
-                throw new RuntimeException("xxhash from content (" + currentHash + ") is not equal to xxhash in request (" + hash + ")");
+            long value;
+            synchronized (this) {
+                value = hasher.getValue();
+                if (hashedBytes != fileSize)
+                    throw new IllegalStateException("Received " + hashedBytes + " contiguous bytes of " + reference.value() +
+                                                    ", but size is " + fileSize);
+            }
+            if (value != hash)
+                throw new RuntimeException("xxhash from content (" + value + ") is not equal to xxhash in request (" + hash + ")");
         }
 
     }
@@ -159,6 +362,16 @@ public class FileReceiver {
         this.downloads = downloads;
         this.downloadDirectory = downloadDirectory;
         registerMethods();
+        idleSessionRemover.scheduleWithFixedDelay(this::removeIdleSessions, 1, 1, TimeUnit.MINUTES);
+    }
+
+    /** Stops removing idle sessions, and removes all remaining sessions */
+    void close() {
+        idleSessionRemover.shutdownNow();
+        synchronized (sessions) {
+            sessions.values().forEach(Session::abort);
+            sessions.clear();
+        }
     }
 
     private void registerMethods() {
@@ -169,13 +382,14 @@ public class FileReceiver {
     // receiveFile after getting a serveFile method call). handler needs to implement receiveFile* methods
     private List<Method> receiveFileMethod() {
         List<Method> methods = new ArrayList<>();
+        // An optional int32 after compression type is 1 if parts are sent with RECEIVE_PART_AT_METHOD, in any order
         methods.add(new Method(RECEIVE_META_METHOD, "sssl*", "ii", this::receiveFileMeta)
                 .requireCapabilities(Capability.CLIENT__FILERECEIVER_API)
                 .paramDesc(0, "filereference", "file reference to download")
                 .paramDesc(1, "filename", "filename")
                 .paramDesc(2, "type", "'file' or 'compressed'")
                 .paramDesc(3, "filelength", "length in bytes of file")
-                .paramDesc(3, "compressionType", "compression type: gzip, lz4, zstd")
+                .paramDesc(4, "compressionType", "compression type: gzip, lz4, zstd")
                 .returnDesc(0, "ret", "0 if success, 1 otherwise")
                 .returnDesc(1, "session-id", "Session id to be used for this transfer"));
         methods.add(new Method(RECEIVE_PART_METHOD, "siix", "i", this::receiveFilePart)
@@ -185,6 +399,13 @@ public class FileReceiver {
                 .paramDesc(2, "partid", "relative part number starting at zero")
                 .paramDesc(3, "data", "bytes in this part")
                 .returnDesc(0, "ret", "0 if success, 1 otherwise"));
+        methods.add(new Method(RECEIVE_PART_AT_METHOD, "silx", "i", this::receiveFilePartAt)
+                .requireCapabilities(Capability.CLIENT__FILERECEIVER_API)
+                .paramDesc(0, "filereference", "file reference to download")
+                .paramDesc(1, "session-id", "Session id to be used for this transfer")
+                .paramDesc(2, "offset", "offset in the file of the first byte in this part")
+                .paramDesc(3, "data", "bytes in this part")
+                .returnDesc(0, "ret", "0 if success, 1 otherwise"));
         methods.add(new Method(RECEIVE_EOF_METHOD, "silis", "i", this::receiveFileEof)
                 .requireCapabilities(Capability.CLIENT__FILERECEIVER_API)
                 .paramDesc(0, "filereference", "file reference to download")
@@ -196,7 +417,7 @@ public class FileReceiver {
         return methods;
     }
 
-    private static void moveFileToDestination(File tempFile, File destination) {
+    static void moveFileToDestination(File tempFile, File destination) {
         try {
             Files.move(tempFile.toPath(), destination.toPath());
             log.log(Level.FINEST, () -> "File moved from " + tempFile.getAbsolutePath()+ " to " + destination.getAbsolutePath());
@@ -214,7 +435,7 @@ public class FileReceiver {
         }
     }
 
-    private static void deletePath(File path) {
+    static void deletePath(File path) {
         if (path == null || ! path.exists()) return;
 
         try {
@@ -236,18 +457,28 @@ public class FileReceiver {
         CompressionType compressionType = (req.parameters().size() > 4)
                 ? CompressionType.valueOf(req.parameters().get(4).asString())
                 : CompressionType.gzip; // fallback/legacy compression type
-        int sessionId = nextSessionId.getAndIncrement();
+        boolean positional = req.parameters().size() > 5 && req.parameters().get(5).asInt32() != 0;
         int retval = 0;
+        int sessionId;
         synchronized (sessions) {
-            if (sessions.containsKey(sessionId)) {
-                retval = 1;
-                log.severe("Session id " + sessionId + " already exist, impossible. Request from " + req.target());
+            Optional<Session> joinable = positional ? joinableSession(reference, type, fileName, fileSize) : Optional.empty();
+            if (joinable.isPresent()) {
+                joinable.get().join();
+                sessionId = joinable.get().sessionId;
+                log.log(Level.FINE, () -> "Resuming " + reference.value() + " in session " + sessionId + ", " +
+                                          joinable.get().receivedBytes() + " of " + fileSize + " bytes received");
             } else {
-                try {
-                    sessions.put(sessionId, new Session(downloadDirectory, sessionId, reference,
-                                                        type, compressionType, fileName, fileSize));
-                } catch (Exception e) {
+                sessionId = nextSessionId.getAndIncrement();
+                if (sessions.containsKey(sessionId)) {
                     retval = 1;
+                    log.severe("Session id " + sessionId + " already exist, impossible. Request from " + req.target());
+                } else {
+                    try {
+                        sessions.put(sessionId, new Session(downloadDirectory, sessionId, reference,
+                                                            type, compressionType, fileName, fileSize, positional));
+                    } catch (Exception e) {
+                        retval = 1;
+                    }
                 }
             }
         }
@@ -271,9 +502,30 @@ public class FileReceiver {
                 log.severe("Got exception " + e);
                 retval = 1;
             }
-            double completeness = (double) session.currentFileSize / (double) session.fileSize;
-            log.log(Level.FINEST, () -> Text.format("%.1f percent of '%s' downloaded", completeness * 100, reference.value()));
-            downloads.setDownloadStatus(reference, completeness);
+            updateDownloadStatus(session);
+        }
+        req.returnValues().add(new Int32Value(retval));
+    }
+
+    private void receiveFilePartAt(Request req) {
+        log.log(Level.FINEST, () -> "Received method call '" + req.methodName() + "' for " + req.parameters().get(0).asString());
+
+        FileReference reference = new FileReference(req.parameters().get(0).asString());
+        int sessionId = req.parameters().get(1).asInt32();
+        long offset = req.parameters().get(2).asInt64();
+        byte [] part = req.parameters().get(3).asData();
+        Session session = getSession(sessionId);
+        int retval = verifySession(session, sessionId, reference);
+        if (retval == 0) {
+            try {
+                session.addPartAt(offset, part);
+                updateDownloadStatus(session);
+                if (session.canClose()) // The last missing part arrived after end of file was sent by another sender
+                    retval = complete(session);
+            } catch (Exception e) {
+                log.severe("Got exception " + e);
+                retval = 1;
+            }
         }
         req.returnValues().add(new Int32Value(retval));
     }
@@ -285,14 +537,89 @@ public class FileReceiver {
         long xxhash = req.parameters().get(2).asInt64();
         Session session = getSession(sessionId);
         int retval = verifySession(session, sessionId, reference);
-        File file = session.close(xxhash);
-        downloads.completedDownloading(reference, file);
-        synchronized (sessions) {
-            sessions.remove(sessionId);
+        if (retval == 0) {
+            // Positional sessions may be waiting for parts from other senders, or from a resumed transfer
+            if (session.eof(xxhash) || ! session.positional)
+                retval = complete(session);
+            else
+                log.log(Level.FINE, () -> "End of file for " + reference.value() + " in session " + sessionId + ", " +
+                                          session.receivedBytes() + " of " + session.fileSize + " bytes received");
         }
         req.returnValues().add(new Int32Value(retval));
     }
 
+    /** Closes the given session, unless this is done already, and returns the status to return to the sender */
+    private int complete(Session session) {
+        synchronized (sessions) {
+            if (sessions.remove(session.sessionId) == null) return 0;
+        }
+        try {
+            // Senders other than config servers may send wrong content, with a hash matching it
+            boolean uncompressedFile = session.fileType == Type.file && session.compressionType == CompressionType.none;
+            long hash = uncompressedFile ? trustedHashes.getOrDefault(session.reference, session.expectedHash)
+                                         : session.expectedHash;
+            File file = session.close(hash);
+            downloads.completedDownloading(session.reference, file);
+            return 0;
+        } catch (Exception e) {
+            log.log(Level.WARNING, "Failed receiving " + session.reference.value() + ": " + e.getMessage());
+            session.abort();
+            return 1;
+        }
+    }
+
+    /** Requires content received for the given file reference from now on to have the given hash */
+    void trustHash(FileReference reference, long hash) {
+        trustedHashes.put(reference, hash);
+    }
+
+    void forgetHash(FileReference reference) {
+        trustedHashes.remove(reference);
+    }
+
+    private void updateDownloadStatus(Session session) {
+        double completeness = session.percentageReceived();
+        log.log(Level.FINEST, () -> Text.format("%.1f percent of '%s' downloaded", completeness * 100, session.reference.value()));
+        downloads.setDownloadStatus(session.reference, completeness, session.throughput());
+    }
+
+    /**
+     * Returns the byte ranges received of the given file reference in a session which may be resumed,
+     * or empty if there is no such session
+     */
+    Optional<long[]> receivedRanges(FileReference reference) {
+        synchronized (sessions) {
+            return sessions.values().stream()
+                           .filter(session -> session.positional && session.fileType == Type.file)
+                           .filter(session -> session.reference.equals(reference))
+                           .findFirst()
+                           .map(Session::receivedRanges);
+        }
+    }
+
+    private Optional<Session> joinableSession(FileReference reference, Type type, String fileName, long fileSize) {
+        return sessions.values().stream()
+                       .filter(session -> session.canBeJoinedBy(reference, type, fileName, fileSize))
+                       .findFirst();
+    }
+
+    private void removeIdleSessions() {
+        try {
+            synchronized (sessions) {
+                for (var iterator = sessions.values().iterator(); iterator.hasNext(); ) {
+                    Session session = iterator.next();
+                    if (session.isIdle(sessionIdleTimeout)) {
+                        log.log(Level.FINE, () -> "Removing idle session " + session.sessionId + " for " + session.reference.value());
+                        iterator.remove();
+                        session.abort();
+                    }
+                }
+            }
+        } catch (Throwable e) { // Keep removing idle sessions
+            log.log(Level.WARNING, "Failed removing idle sessions", e);
+        }
+    }
+
     private Session getSession(Integer sessionId) {
         synchronized (sessions) {
             return sessions.get(sessionId);
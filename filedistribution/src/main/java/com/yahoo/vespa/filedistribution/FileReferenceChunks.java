@@ -0,0 +1,267 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.filedistribution;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * The content of a file reference as a list of files, where each file is split into chunks at boundaries
+ * decided by the content itself, and each chunk is identified by the hash of its content.
+ * As boundaries move with the content, a change to a file changes only the chunks around the change,
+ * so a receiver having an earlier version of the content needs to fetch only the chunks it does not have.
+ * <p>
+ * Chunks are found with a gear rolling hash, and are between {@link #minChunkSize} and {@link #maxChunkSize} bytes,
+ * with an average size of about {@link #minChunkSize} + 2^{@link #averageChunkBits} bytes.
+ */
+public final class FileReferenceChunks {
+
+    public static final String GET_CHUNK_LIST_METHOD = "filedistribution.getChunkList";
+    public static final String GET_CHUNKS_METHOD = "filedistribution.getChunks";
+
+    /** The max total size of the chunks requested at once */
+    public static final int maxBytesPerRequest = 16 * 1024 * 1024;
+
+    static final int minChunkSize = 64 * 1024;
+    static final int maxChunkSize = 1024 * 1024;
+    static final int averageChunkBits = 18;
+
+    private static final int version = 1;
+    private static final long boundaryMask = ((1L << averageChunkBits) - 1) << (64 - averageChunkBits);
+    private static final long[] gear = createGearTable();
+
+    /** A chunk of a file, at the given offset */
+    public record Chunk(long offset, int length, byte[] hash) {}
+
+    /** A file or directory, at a path relative to the file reference root, which is empty for a single file */
+    public record ChunkedFile(String path, boolean isDirectory, long size, List<Chunk> chunks) {}
+
+    private final String name;
+    private final boolean isDirectory;
+    private final List<ChunkedFile> files;
+    private volatile Map<ByteBuffer, Location> locations = null;
+
+    private FileReferenceChunks(String name, boolean isDirectory, List<ChunkedFile> files) {
+        this.name = name;
+        this.isDirectory = isDirectory;
+        this.files = List.copyOf(files);
+    }
+
+    /** Returns the name of the file or directory of the file reference */
+    public String name() { return name; }
+
+    /** Returns whether the file reference is a directory */
+    public boolean isDirectory() { return isDirectory; }
+
+    /** Returns the files of this, and the directories which are needed as they are empty, with parents before children */
+    public List<ChunkedFile> files() { return files; }
+
+    /** Returns the total size of the files of this */
+    public long size() {
+        return files.stream().mapToLong(file -> file.isDirectory() ? 0 : file.size()).sum();
+    }
+
+    /** Returns the chunks of the given file or directory */
+    public static FileReferenceChunks of(File file) throws IOException {
+        if ( ! file.isDirectory())
+            return new FileReferenceChunks(file.getName(), false, List.of(chunkFile("", file.toPath())));
+
+        Path root = file.toPath();
+        List<Path> paths;
+        try (Stream<Path> walk = Files.walk(root)) {
+            paths = walk.filter(path -> ! path.equals(root))
+                        .sorted(Comparator.comparing(path -> root.relativize(path).toString()))
+                        .toList();
+        }
+        List<ChunkedFile> files = new ArrayList<>();
+        for (Path path : paths) {
+            String relativePath = root.relativize(path).toString();
+            if (Files.isRegularFile(path))
+                files.add(chunkFile(relativePath, path));
+            else if (Files.isDirectory(path) && isEmpty(path))
+                files.add(new ChunkedFile(relativePath, true, 0, List.of()));
+        }
+        return new FileReferenceChunks(file.getName(), true, files);
+    }
+
+    private static boolean isEmpty(Path directory) throws IOException {
+        try (Stream<Path> entries = Files.list(directory)) {
+            return entries.findAny().isEmpty();
+        }
+    }
+
+    private static ChunkedFile chunkFile(String relativePath, Path path) throws IOException {
+        try (InputStream in = Files.newInputStream(path)) {
+            List<Chunk> chunks = chunk(in);
+            long size = chunks.isEmpty() ? 0 : chunks.get(chunks.size() - 1).offset() + chunks.get(chunks.size() - 1).length();
+            return new ChunkedFile(relativePath, false, size, chunks);
+        }
+    }
+
+    /** Returns the chunks of the given content, which is read to its end */
+    static List<Chunk> chunk(InputStream in) throws IOException {
+        List<Chunk> chunks = new ArrayList<>();
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[maxChunkSize];
+        long offset = 0;
+        int length = 0;
+        long hash = 0;
+        for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+            int start = 0;
+            for (int i = 0; i < read; i++) {
+                hash = (hash << 1) + gear[buffer[i] & 0xff];
+                length++;
+                if (length >= maxChunkSize || (length >= minChunkSize && (hash & boundaryMask) == 0)) {
+                    digest.update(buffer, start, i + 1 - start);
+                    chunks.add(new Chunk(offset, length, digest.digest()));
+                    offset += length;
+                    length = 0;
+                    hash = 0;
+                    start = i + 1;
+                }
+            }
+            digest.update(buffer, start, read - start);
+        }
+        if (length > 0)
+            chunks.add(new Chunk(offset, length, digest.digest()));
+        return chunks;
+    }
+
+    /** Returns the hash identifying a chunk with the given content */
+    static byte[] hash(byte[] content) {
+        return newDigest().digest(content);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Returns the content of the chunk with the given hash, read from the given file or directory, if this has it */
+    public Optional<byte[]> read(File file, byte[] hash) throws IOException {
+        Location location = locations().get(ByteBuffer.wrap(hash));
+        if (location == null) return Optional.empty();
+
+        Path path = location.path.isEmpty() ? file.toPath() : file.toPath().resolve(location.path);
+        byte[] content = readChunk(path, location.chunk);
+        if ( ! Arrays.equals(hash, hash(content)))
+            throw new IllegalStateException("Content of " + path + " at offset " + location.chunk.offset() + " has changed");
+        return Optional.of(content);
+    }
+
+    static byte[] readChunk(Path path, Chunk chunk) throws IOException {
+        ByteBuffer content = ByteBuffer.allocate(chunk.length());
+        try (FileChannel channel = FileChannel.open(path, READ)) {
+            while (content.hasRemaining())
+                if (channel.read(content, chunk.offset() + content.position()) < 0)
+                    throw new IOException("Unexpected end of " + path + " reading chunk at offset " + chunk.offset());
+        }
+        return content.array();
+    }
+
+    private Map<ByteBuffer, Location> locations() {
+        if (locations == null) {
+            Map<ByteBuffer, Location> locations = new HashMap<>();
+            for (ChunkedFile file : files)
+                for (Chunk chunk : file.chunks())
+                    locations.putIfAbsent(ByteBuffer.wrap(chunk.hash()), new Location(file.path(), chunk));
+            this.locations = locations;
+        }
+        return locations;
+    }
+
+    public byte[] toBytes() {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(version);
+            out.writeUTF(name);
+            out.writeBoolean(isDirectory);
+            out.writeInt(files.size());
+            for (ChunkedFile file : files) {
+                out.writeUTF(file.path());
+                out.writeBoolean(file.isDirectory());
+                out.writeInt(file.chunks().size());
+                for (Chunk chunk : file.chunks()) {
+                    out.writeInt(chunk.length());
+                    out.write(chunk.hash());
+                }
+            }
+            return bytes.toByteArray();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static FileReferenceChunks fromBytes(byte[] bytes) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+            int version = in.readInt();
+            if (version != FileReferenceChunks.version)
+                throw new IllegalArgumentException("Unknown version " + version + " of file reference chunks");
+            String name = in.readUTF();
+            if (name.isEmpty() || name.contains("/") || name.equals(".") || name.equals(".."))
+                throw new IllegalArgumentException("Illegal name '" + name + "' in file reference chunks");
+            boolean isDirectory = in.readBoolean();
+            List<ChunkedFile> files = new ArrayList<>();
+            for (int fileCount = in.readInt(); files.size() < fileCount; ) {
+                String path = in.readUTF();
+                boolean isDirectoryEntry = in.readBoolean();
+                List<Chunk> chunks = new ArrayList<>();
+                long offset = 0;
+                for (int chunkCount = in.readInt(); chunks.size() < chunkCount; ) {
+                    int length = in.readInt();
+                    byte[] hash = new byte[32];
+                    in.readFully(hash);
+                    chunks.add(new Chunk(offset, length, hash));
+                    offset += length;
+                }
+                files.add(new ChunkedFile(path, isDirectoryEntry, offset, chunks));
+            }
+            return new FileReferenceChunks(name, isDirectory, files);
+        }
+        catch (IOException e) {
+            throw new IllegalArgumentException("Invalid file reference chunks", e);
+        }
+    }
+
+    private static long[] createGearTable() {
+        long[] table = new long[256];
+        long state = 0x5ca1ab1e; // Fixed, as senders and receivers must find the same boundaries
+        for (int i = 0; i < table.length; i++) {
+            long z = (state += 0x9e3779b97f4a7c15L);
+            z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+            z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+            table[i] = z ^ (z >>> 31);
+        }
+        return table;
+    }
+
+    private record Location(String path, Chunk chunk) {}
+
+}
@@ -9,15 +9,21 @@ import com.yahoo.jrt.Request;
 import com.yahoo.jrt.Spec;
 import com.yahoo.jrt.StringArray;
 import com.yahoo.jrt.StringValue;
+import com.yahoo.jrt.Target;
 import com.yahoo.vespa.config.Connection;
 import com.yahoo.vespa.config.ConnectionPool;
 
 import java.io.File;
+import java.io.IOException;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -31,7 +37,13 @@ import static com.yahoo.vespa.filedistribution.FileReferenceData.CompressionType
 import static com.yahoo.vespa.filedistribution.FileReferenceData.CompressionType.zstd;
 
 /**
- * Downloads file reference from config server and keeps track of files being downloaded
+ * Downloads file reference from config server and keeps track of files being downloaded.
+ * Large files are downloaded in stripes from several config servers in parallel, and downloads which are
+ * interrupted are resumed with the parts still missing (see {@link FileReferenceParts}).
+ * If peers are given, files are downloaded from other nodes having them when possible, with config
+ * servers as the fallback (see {@link FileReferencePeers}).
+ * New versions of file references downloaded already are downloaded as chunks, fetching only the chunks
+ * not found locally (see {@link FileReferenceChunks}).
  *
  * @author hmusum
  */
@@ -40,6 +52,9 @@ public class FileReferenceDownloader {
     private static final Logger log = Logger.getLogger(FileReferenceDownloader.class.getName());
     private static final Set<CompressionType> defaultAcceptedCompressionTypes = Set.of(lz4, none, zstd);
 
+    /** The longest time spent downloading from a single peer, before trying another one or config servers */
+    private static final Duration peerTimeout = Duration.ofSeconds(20);
+
     private enum DownloadResult { SUCCESS, TIMEOUT, FAILURE }
 
     private final ExecutorService downloadExecutor =
@@ -47,19 +62,25 @@ public class FileReferenceDownloader {
                                          new DaemonThreadFactory("filereference downloader"));
     private final ConnectionPool connectionPool;
     private final Downloads downloads;
+    private final FileReceiver fileReceiver;
+    private final ChunkDownloader chunkDownloader;
+    private final Optional<FileReferencePeers> peers;
     private final Duration downloadTimeout;
     private final Duration backoffInitialTime;
     private final Optional<Duration> rpcTimeout; // Only used when overridden with env variable
     private final File downloadDirectory;
     private final AtomicBoolean shutDown = new AtomicBoolean(false);
     private final int maxTimeoutsBeforeClose;
+    private final int maxParallelSources;
 
     FileReferenceDownloader(ConnectionPool connectionPool,
                             Downloads downloads,
+                            FileReceiver fileReceiver,
+                            Optional<FileReferencePeers> peers,
                             Duration timeout,
                             Duration backoffInitialTime,
                             File downloadDirectory) {
-        this(connectionPool, downloads, timeout, backoffInitialTime, downloadDirectory,
+        this(connectionPool, downloads, fileReceiver, peers, timeout, backoffInitialTime, downloadDirectory,
              Optional.ofNullable(System.getenv("VESPA_FILE_DOWNLOAD_MAX_TIMEOUTS_BEFORE_CLOSE"))
                      .map(Integer::parseInt)
                      .orElse(0));
@@ -67,12 +88,17 @@ public class FileReferenceDownloader {
 
     FileReferenceDownloader(ConnectionPool connectionPool,
                             Downloads downloads,
+                            FileReceiver fileReceiver,
+                            Optional<FileReferencePeers> peers,
                             Duration timeout,
                             Duration backoffInitialTime,
                             File downloadDirectory,
                             int maxTimeoutsBeforeClose) {
         this.connectionPool = connectionPool;
         this.downloads = downloads;
+        this.fileReceiver = fileReceiver;
+        this.chunkDownloader = new ChunkDownloader(downloadDirectory, downloads);
+        this.peers = peers;
         this.downloadTimeout = timeout;
         this.backoffInitialTime = backoffInitialTime;
         this.downloadDirectory = downloadDirectory;
@@ -80,6 +106,10 @@ public class FileReferenceDownloader {
         // Undocumented on purpose, might change or be removed at any time
         var timeoutString = Optional.ofNullable(System.getenv("VESPA_FILE_DOWNLOAD_RPC_TIMEOUT"));
         this.rpcTimeout = timeoutString.map(t -> Duration.ofSeconds(Integer.parseInt(t)));
+        // Undocumented on purpose, might change or be removed at any time
+        this.maxParallelSources = Optional.ofNullable(System.getenv("VESPA_FILE_DOWNLOAD_MAX_PARALLEL_SOURCES"))
+                                          .map(Integer::parseInt)
+                                          .orElse(3);
     }
 
     private void waitUntilDownloadStarted(FileReferenceDownload fileReferenceDownload) {
@@ -88,6 +118,12 @@ public class FileReferenceDownloader {
         int retryCount = 0;
         int timeoutCount = 0;
         Connection connection = connectionPool.getCurrent();
+        if (downloadInChunks(fileReferenceDownload, connection, end))
+            return;
+        if (downloadFromPeers(fileReferenceDownload, end))
+            return;
+        if (downloadInParallel(fileReferenceDownload, end))
+            return;
         do {
             if (retryCount > 0)
                 backoff(retryCount, end);
@@ -100,8 +136,9 @@ public class FileReferenceDownloader {
             log.log(Level.FINE, "Wait until download of " + fileReference + " has started, retryCount " + retryCount +
                     ", timeout " + timeout + " (request from " + fileReferenceDownload.client() + ")");
             if ( ! timeout.isNegative()) {
-                var result = startDownloadRpc(fileReferenceDownload, retryCount, connection, timeout);
-                if (result == DownloadResult.SUCCESS) return;
+                var result = startDownloadRpc(fileReferenceDownload, missingParts(fileReference), retryCount, connection, timeout);
+                // Resume if parts are still missing, e.g. if a source sending some stripe failed
+                if (result == DownloadResult.SUCCESS && fileReceiver.receivedRanges(fileReference).isEmpty()) return;
                 if (result == DownloadResult.TIMEOUT && maxTimeoutsBeforeClose > 0) {
                     timeoutCount++;
                     if (timeoutCount >= maxTimeoutsBeforeClose) {
@@ -146,6 +183,11 @@ public class FileReferenceDownloader {
         if (inProgress.isPresent()) return inProgress.get().future();
 
         downloads.add(fileReferenceDownload);
+        // Only plain files are served to peers, as compressed content differs between sources
+        peers.ifPresent(fileReferencePeers -> fileReferenceDownload.future().thenAccept(file -> {
+            if (file.isPresent() && file.get().isFile())
+                fileReferencePeers.reportDownloaded(fileReference);
+        }));
         downloadExecutor.submit(() -> waitUntilDownloadStarted(fileReferenceDownload));
         return fileReferenceDownload.future();
     }
@@ -160,7 +202,7 @@ public class FileReferenceDownloader {
 
                     log.log(Level.FINE, () -> "Will download " + fileReference + " with timeout " + downloadTimeout + " from " + spec.host());
                     downloads.add(fileReferenceDownload);
-                    var result = startDownloadRpc(fileReferenceDownload, 1, connection, downloadTimeout);
+                    var result = startDownloadRpc(fileReferenceDownload, missingParts(fileReference), 1, connection, downloadTimeout);
                     if (result == DownloadResult.TIMEOUT && maxTimeoutsBeforeClose > 0) {
                         connection.closeConnection();
                     }
@@ -176,8 +218,120 @@ public class FileReferenceDownloader {
         downloads.remove(fileReference);
     }
 
-    private DownloadResult startDownloadRpc(FileReferenceDownload fileReferenceDownload, int retryCount, Connection connection, Duration timeout) {
-        Request request = createRequest(fileReferenceDownload);
+    /**
+     * Downloads stripes of the file reference from several sources in parallel, if there are several.
+     * Small files and compressed content are sent in full by the source asked for the first stripe,
+     * so this only adds a cheap request to each of the other sources for those.
+     *
+     * @return whether the download is completed
+     */
+    private boolean downloadInParallel(FileReferenceDownload fileReferenceDownload, Instant end) {
+        List<Connection> sources = new ArrayList<>(connectionPool.connections());
+        int stripes = Math.min(maxParallelSources, sources.size());
+        if (stripes < 2) return false;
+        if (isDownloaded(fileReferenceDownload)) return true;
+
+        FileReference fileReference = fileReferenceDownload.fileReference();
+        Duration timeout = rpcTimeout.orElse(Duration.between(Instant.now(), end));
+        if (timeout.isNegative() || shutDown.get()) return false;
+
+        // Spread the first stripe, which has all content of small files, over sources
+        Collections.shuffle(sources);
+
+        log.log(Level.FINE, () -> "Downloading " + fileReference + " in " + stripes + " stripes from " + sources.size() + " sources");
+        CountDownLatch responses = new CountDownLatch(stripes);
+        List<Request> requests = new ArrayList<>();
+        for (int stripe = 0; stripe < stripes; stripe++) {
+            Request request = createRequest(fileReferenceDownload, FileReferenceParts.stripe(stripe, stripes));
+            requests.add(request);
+            sources.get(stripe).invokeAsync(request, timeout, __ -> responses.countDown());
+        }
+        try {
+            responses.await(timeout.toMillis() + 1000, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            return false;
+        }
+        for (int stripe = 0; stripe < stripes; stripe++) {
+            if ( ! validateResponse(requests.get(stripe)) || requests.get(stripe).returnValues().get(0).asInt32() != 0)
+                log.log(Level.FINE, "Downloading stripe " + stripe + " of " + fileReference + " from " +
+                                    sources.get(stripe).getAddress() + " failed, will resume from another source");
+        }
+        return isDownloaded(fileReferenceDownload);
+    }
+
+    /**
+     * Downloads only the chunks not found locally, if enough of the content is found locally.
+     *
+     * @return whether the download is completed
+     */
+    private boolean downloadInChunks(FileReferenceDownload fileReferenceDownload, Connection connection, Instant end) {
+        FileReference fileReference = fileReferenceDownload.fileReference();
+        Duration timeout = rpcTimeout.orElse(Duration.between(Instant.now(), end));
+        if (connection == null || timeout.isNegative() || shutDown.get()) return false;
+
+        try {
+            Optional<File> file = chunkDownloader.download(fileReference, connection, timeout);
+            file.ifPresent(downloaded -> downloads.completedDownloading(fileReference, downloaded));
+            return file.isPresent();
+        } catch (IOException | RuntimeException e) {
+            log.log(Level.INFO, "Downloading " + fileReference + " in chunks from " + connection.getAddress() +
+                                " failed, downloading all of it: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Downloads from the peers suggested by a config server, one at a time, each resuming with
+     * the parts still missing if the previous one failed. Content received is verified against the hash
+     * from the config server, and at least half the download timeout is left for downloading from config servers.
+     *
+     * @return whether the download is completed
+     */
+    private boolean downloadFromPeers(FileReferenceDownload fileReferenceDownload, Instant end) {
+        if (peers.isEmpty()) return false;
+
+        FileReference fileReference = fileReferenceDownload.fileReference();
+        Optional<FileReferencePeers.Peers> suggested = peers.get().get(fileReference);
+        if (suggested.isEmpty()) return false;
+
+        fileReceiver.trustHash(fileReference, suggested.get().xxhash());
+        fileReferenceDownload.future().whenComplete((__, ___) -> fileReceiver.forgetHash(fileReference));
+        Instant peersEnd = end.minus(downloadTimeout.dividedBy(2));
+        for (Spec peer : suggested.get().specs()) {
+            if (isDownloaded(fileReferenceDownload)) return true;
+            Duration remaining = Duration.between(Instant.now(), peersEnd);
+            Duration timeout = rpcTimeout.orElse(remaining.compareTo(peerTimeout) < 0 ? remaining : peerTimeout);
+            if (timeout.isNegative() || timeout.isZero() || shutDown.get()) return false;
+
+            log.log(Level.FINE, () -> "Downloading " + fileReference + " from peer " + peer);
+            Target target = peers.get().connect(peer);
+            try {
+                // Peers serve only what they have, and never download from other sources
+                Request request = createRequest(fileReference, false, missingParts(fileReference));
+                target.invokeSync(request, timeout);
+                if ( ! validateResponse(request) || request.returnValues().get(0).asInt32() != 0)
+                    log.log(Level.FINE, () -> "Downloading " + fileReference + " from peer " + peer + " failed: " +
+                                              (request.isError() ? request.errorMessage() : request.returnValues().get(1).asString()));
+            } finally {
+                target.close();
+            }
+        }
+        return isDownloaded(fileReferenceDownload);
+    }
+
+    /** Returns the parts of the given file reference which are not received already */
+    private FileReferenceParts missingParts(FileReference fileReference) {
+        return FileReferenceParts.missing(fileReceiver.receivedRanges(fileReference).orElse(new long[0]));
+    }
+
+    private boolean isDownloaded(FileReferenceDownload fileReferenceDownload) {
+        return fileReferenceDownload.future().isDone() ||
+               FileDownloader.fileReferenceExists(fileReferenceDownload.fileReference(), downloadDirectory);
+    }
+
+    private DownloadResult startDownloadRpc(FileReferenceDownload fileReferenceDownload, FileReferenceParts parts,
+                                            int retryCount, Connection connection, Duration timeout) {
+        Request request = createRequest(fileReferenceDownload, parts);
         connection.invokeSync(request, timeout);
 
         Level logLevel = (retryCount > 3 ? Level.INFO : Level.FINE);
@@ -204,13 +358,18 @@ public class FileReferenceDownloader {
         }
     }
 
-    private Request createRequest(FileReferenceDownload fileReferenceDownload) {
+    private Request createRequest(FileReferenceDownload fileReferenceDownload, FileReferenceParts parts) {
+        return createRequest(fileReferenceDownload.fileReference(), fileReferenceDownload.downloadFromOtherSourceIfNotFound(), parts);
+    }
+
+    private Request createRequest(FileReference fileReference, boolean downloadFromOtherSourceIfNotFound, FileReferenceParts parts) {
         Request request = new Request("filedistribution.serveFile");
-        request.parameters().add(new StringValue(fileReferenceDownload.fileReference().value()));
-        request.parameters().add(new Int32Value(fileReferenceDownload.downloadFromOtherSourceIfNotFound() ? 0 : 1));
+        request.parameters().add(new StringValue(fileReference.value()));
+        request.parameters().add(new Int32Value(downloadFromOtherSourceIfNotFound ? 0 : 1));
         String[] temp = new String[defaultAcceptedCompressionTypes.size()];
         defaultAcceptedCompressionTypes.stream().map(Enum::name).toList().toArray(temp);
         request.parameters().add(new StringArray(temp));
+        parts.addTo(request);
         return request;
     }
 
@@ -235,6 +394,7 @@ public class FileReferenceDownloader {
         } catch (InterruptedException e) {
             Thread.interrupted(); // Ignore and continue shutdown.
         }
+        fileReceiver.close();
     }
 
 }
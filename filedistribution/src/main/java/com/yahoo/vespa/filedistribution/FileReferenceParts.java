@@ -0,0 +1,118 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.filedistribution;
+
+import com.yahoo.jrt.Int32Value;
+import com.yahoo.jrt.Int64Array;
+import com.yahoo.jrt.Request;
+import com.yahoo.jrt.Values;
+
+import java.util.Arrays;
+
+import static com.yahoo.vespa.filedistribution.FileReferenceData.Type;
+
+/**
+ * The parts of a file reference a client asks a server to send: The parts in one of a number of stripes,
+ * except the byte ranges the client has received already.
+ * Content is sent in parts of {@link #partSize} bytes (the last part may be shorter), where part n starts at
+ * offset n * partSize and belongs to stripe n % stripes. Compressed content and files smaller than
+ * {@link #minStripedSize} are not split: All their parts belong to stripe 0.
+ * <p>
+ * Parts selected by a client are sent positionally (see {@link FileReceiver#RECEIVE_PART_AT_METHOD}), so that
+ * they may arrive out of order and from several sources. {@link #all()} is the selection of a client which
+ * does not select parts, which gets all content sent in order.
+ */
+public final class FileReferenceParts {
+
+    public static final int partSize = 0x100000;
+    public static final long minStripedSize = 16L * partSize;
+
+    private static final FileReferenceParts all = new FileReferenceParts(0, 1, new long[0], false);
+
+    private final int stripe;
+    private final int stripes;
+    private final long[] received; // [start, end) pairs, sorted and non-overlapping
+    private final boolean positional;
+
+    private FileReferenceParts(int stripe, int stripes, long[] received, boolean positional) {
+        if (stripes < 1 || stripe < 0 || stripe >= stripes)
+            throw new IllegalArgumentException("Illegal stripe " + stripe + " of " + stripes);
+        if (received.length % 2 != 0)
+            throw new IllegalArgumentException("Received ranges must be [start, end) pairs, got " + received.length + " values");
+        this.stripe = stripe;
+        this.stripes = stripes;
+        this.received = received;
+        this.positional = positional;
+    }
+
+    /** Returns all parts of a file reference, sent in order as requested by clients which do not select parts */
+    public static FileReferenceParts all() { return all; }
+
+    /** Returns the parts in the given stripe of the given number of stripes */
+    public static FileReferenceParts stripe(int stripe, int stripes) {
+        return new FileReferenceParts(stripe, stripes, new long[0], true);
+    }
+
+    /** Returns all parts not covered by the given received [start, end) ranges */
+    public static FileReferenceParts missing(long[] received) {
+        return new FileReferenceParts(0, 1, received.clone(), true);
+    }
+
+    public int stripe() { return stripe; }
+
+    public int stripes() { return stripes; }
+
+    /** Returns whether parts are sent with their offset, rather than in order */
+    public boolean positional() { return positional; }
+
+    /** Returns whether any part of content of the given size and type is selected */
+    public boolean includesAny(long size, Type type) {
+        if (stripe > 0 && ! isStriped(size, type)) return false;
+        return size == 0 || ! isReceived(0, size);
+    }
+
+    /** Returns whether the part at the given offset, in content of the given size and type, is selected */
+    public boolean includes(long offset, int length, long size, Type type) {
+        if (isStriped(size, type)) {
+            if ((offset / partSize) % stripes != stripe) return false;
+        }
+        else if (stripe > 0) {
+            return false;
+        }
+        return ! isReceived(offset, offset + length);
+    }
+
+    private static boolean isStriped(long size, Type type) {
+        return type == Type.file && size >= minStripedSize;
+    }
+
+    private boolean isReceived(long start, long end) {
+        for (int i = 0; i < received.length; i += 2) {
+            if (received[i] <= start && end <= received[i + 1]) return true;
+        }
+        return false;
+    }
+
+    /** Adds this as the optional trailing parameters of a serveFile request */
+    void addTo(Request request) {
+        request.parameters().add(new Int32Value(stripe));
+        request.parameters().add(new Int32Value(stripes));
+        request.parameters().add(new Int64Array(received));
+    }
+
+    /** Returns the parts selected by the optional parameters starting at the given index, or all() if they are absent */
+    public static FileReferenceParts from(Values parameters, int firstIndex) {
+        if (parameters.size() < firstIndex + 3) return all();
+        return new FileReferenceParts(parameters.get(firstIndex).asInt32(),
+                                      parameters.get(firstIndex + 1).asInt32(),
+                                      parameters.get(firstIndex + 2).asInt64Array(),
+                                      true);
+    }
+
+    @Override
+    public String toString() {
+        if ( ! positional) return "all parts";
+        return "stripe " + stripe + " of " + stripes +
+               (received.length == 0 ? "" : ", except received " + Arrays.toString(received));
+    }
+
+}
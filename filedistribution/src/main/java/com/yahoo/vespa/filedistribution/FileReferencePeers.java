@@ -0,0 +1,132 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.filedistribution;
+
+import com.yahoo.config.FileReference;
+import com.yahoo.jrt.Int32Value;
+import com.yahoo.jrt.Request;
+import com.yahoo.jrt.Spec;
+import com.yahoo.jrt.StringValue;
+import com.yahoo.jrt.Supervisor;
+import com.yahoo.jrt.Target;
+import com.yahoo.vespa.config.Connection;
+import com.yahoo.vespa.config.ConnectionPool;
+import net.jpountz.xxhash.StreamingXXHash64;
+import net.jpountz.xxhash.XXHashFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Other nodes which have downloaded file references, and serve them on the same port as this node.
+ * Config servers keep track of which nodes have a file reference, and hand out a few of them to each downloader,
+ * each of them to a limited number of downloaders at a time. As downloaders report completed downloads and become
+ * sources themselves, file references spread through the nodes as a tree rooted at the config servers.
+ * <p>
+ * Peers are not trusted: Content from them is verified against the hash config servers hand out with the peers,
+ * and peers only serve downloaders a config server has handed them out to.
+ */
+public class FileReferencePeers {
+
+    private static final Logger log = Logger.getLogger(FileReferencePeers.class.getName());
+
+    public static final String GET_PEERS_METHOD = "filedistribution.getPeers";
+    public static final String ADD_PEER_METHOD = "filedistribution.addPeer";
+    public static final String VERIFY_DOWNLOADER_METHOD = "filedistribution.verifyDownloader";
+
+    private static final Duration rpcTimeout = Duration.ofSeconds(10);
+
+    private final Supervisor supervisor;
+    private final ConnectionPool connectionPool;
+    private final int port;
+
+    /**
+     * @param supervisor the supervisor to connect to peers with
+     * @param connectionPool the config servers to get peers from and report downloads to
+     * @param port the port this node serves file references to peers on
+     */
+    public FileReferencePeers(Supervisor supervisor, ConnectionPool connectionPool, int port) {
+        this.supervisor = supervisor;
+        this.connectionPool = connectionPool;
+        this.port = port;
+    }
+
+    /**
+     * Returns the peers a config server suggests downloading the given file reference from, with the hash
+     * of the content to verify what they send against, or empty if there are none
+     */
+    Optional<Peers> get(FileReference fileReference) {
+        Connection connection = connectionPool.getCurrent();
+        if (connection == null) return Optional.empty();
+
+        Request request = new Request(GET_PEERS_METHOD);
+        request.parameters().add(new StringValue(fileReference.value()));
+        connection.invokeSync(request, rpcTimeout);
+        if (request.isError() || ! request.checkReturnTypes("Sl")) {
+            log.log(Level.FINE, () -> "Getting peers for " + fileReference + " from " + connection.getAddress() +
+                                      " failed: " + request.errorMessage());
+            return Optional.empty();
+        }
+        List<Spec> specs = Arrays.stream(request.returnValues().get(0).asStringArray()).map(Spec::new).toList();
+        if (specs.isEmpty()) return Optional.empty();
+        return Optional.of(new Peers(specs, request.returnValues().get(1).asInt64()));
+    }
+
+    /**
+     * Returns whether a config server has handed out this node as a peer to the given downloader host
+     * for the given file reference, such that this may serve it
+     */
+    boolean mayServe(FileReference fileReference, String downloaderHost) {
+        // The downloader may have been handed out this by any of the config servers
+        for (Connection connection : connectionPool.connections()) {
+            Request request = new Request(VERIFY_DOWNLOADER_METHOD);
+            request.parameters().add(new StringValue(fileReference.value()));
+            request.parameters().add(new StringValue(downloaderHost));
+            connection.invokeSync(request, rpcTimeout);
+            if (request.isError() || ! request.checkReturnTypes("i")) {
+                log.log(Level.FINE, () -> "Verifying " + downloaderHost + " for " + fileReference + " with " +
+                                          connection.getAddress() + " failed: " + request.errorMessage());
+                continue;
+            }
+            if (request.returnValues().get(0).asInt32() == 1) return true;
+        }
+        return false;
+    }
+
+    /** Connects to the given peer. The connection must be closed by the caller */
+    Target connect(Spec peer) {
+        return supervisor.connect(peer);
+    }
+
+    /** Tells all config servers that this node has downloaded the given file reference and will serve it to peers */
+    void reportDownloaded(FileReference fileReference) {
+        for (Connection connection : connectionPool.connections()) {
+            Request request = new Request(ADD_PEER_METHOD);
+            request.parameters().add(new StringValue(fileReference.value()));
+            request.parameters().add(new Int32Value(port));
+            connection.invokeAsync(request, rpcTimeout, __ -> { });
+        }
+    }
+
+    /** Returns the xxhash64 of the content of the given file, as computed by receivers of it */
+    public static long xxhash(File file) throws IOException {
+        StreamingXXHash64 hasher = XXHashFactory.fastestInstance().newStreamingHash64(0);
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] buffer = new byte[1 << 16];
+            for (int read; (read = in.read(buffer)) > 0; )
+                hasher.update(buffer, 0, read);
+            return hasher.getValue();
+        }
+    }
+
+    /** Peers to download a file reference from, and the hash of its content */
+    record Peers(List<Spec> specs, long xxhash) {}
+
+}
@@ -0,0 +1,189 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.filedistribution;
+
+import com.yahoo.config.FileReference;
+import com.yahoo.jrt.DataValue;
+import com.yahoo.jrt.Int32Value;
+import com.yahoo.jrt.Int64Value;
+import com.yahoo.jrt.Request;
+import com.yahoo.jrt.StringValue;
+import com.yahoo.jrt.Target;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Logger;
+
+import static java.util.logging.Level.WARNING;
+
+/**
+ * Sends the selected parts of file reference data to a {@link FileReceiver}, using the target the receiver
+ * requested the file reference on. Used both by config servers and by nodes serving file references to peers.
+ */
+public class FileReferenceSender {
+
+    private static final Logger log = Logger.getLogger(FileReferenceSender.class.getName());
+
+    /** The max number of parts sent positionally which may be waiting for the receiver to acknowledge them */
+    private static final int maxPartsInFlight = 4;
+
+    private final Target target;
+    private final FileReferenceParts parts;
+
+    public FileReferenceSender(Target target, FileReferenceParts parts) {
+        this.target = target;
+        this.parts = parts;
+    }
+
+    /** Sends the selected parts of the given data, followed by end of file with the given status */
+    public void send(FileReferenceData fileData, int statusCode, String statusDescription) {
+        int session = sendMeta(fileData);
+        if (parts.positional())
+            sendPartsAt(session, fileData);
+        else
+            sendParts(session, fileData);
+        sendEof(session, fileData, statusCode, statusDescription);
+    }
+
+    @Override
+    public String toString() {
+        return target.toString();
+    }
+
+    private void sendParts(int session, FileReferenceData fileData) {
+        ByteBuffer bb = ByteBuffer.allocate(FileReferenceParts.partSize);
+        for (int partId = 0, read = fileData.nextContent(bb); read >= 0; partId++, read = fileData.nextContent(bb)) {
+            byte [] buf = bb.array();
+            if (buf.length != bb.position()) {
+                buf = new byte [bb.position()];
+                bb.flip();
+                bb.get(buf);
+            }
+            sendPart(session, fileData.fileReference(), partId, buf);
+            bb.clear();
+        }
+    }
+
+    /**
+     * Sends the selected parts with their offsets, with several parts in flight. All content is read,
+     * as the hash sent at end of file is of all of it.
+     */
+    private void sendPartsAt(int session, FileReferenceData fileData) {
+        long size = fileData.size();
+        Semaphore inFlight = new Semaphore(maxPartsInFlight);
+        AtomicReference<String> failure = new AtomicReference<>();
+        for (long offset = 0; offset < size; ) {
+            ByteBuffer bb = ByteBuffer.allocate((int) Math.min(FileReferenceParts.partSize, size - offset));
+            while (bb.hasRemaining() && fileData.nextContent(bb) >= 0) { } // parts must start at multiples of part size
+            if (bb.position() == 0) break;
+
+            if (parts.includes(offset, bb.position(), size, fileData.type())) {
+                inFlight.acquireUninterruptibly();
+                if (failure.get() != null) {
+                    inFlight.release();
+                    break;
+                }
+                Request request = createPartAtRequest(session, fileData.fileReference(), offset,
+                                                      Arrays.copyOf(bb.array(), bb.position()));
+                if ( ! target.isValid())
+                    throw new RuntimeException("Connection to " + target + " is invalid", target.getConnectionLostReason());
+                target.invokeAsync(request, Duration.ofMinutes(10), done -> {
+                    if (done.isError())
+                        failure.compareAndSet(null, "error: '" + done.errorMessage() + "'");
+                    else if (done.returnValues().get(0).asInt32() != 0)
+                        failure.compareAndSet(null, "unknown error from target during rpc call " + done.methodName());
+                    inFlight.release();
+                });
+            }
+            offset += bb.position();
+        }
+        inFlight.acquireUninterruptibly(maxPartsInFlight);
+        if (failure.get() != null)
+            throw new IllegalArgumentException("Failed delivering part of reference '" + fileData.fileReference().value() +
+                                               "' to " + target + ", " + failure.get());
+    }
+
+    private int sendMeta(FileReferenceData fileData) {
+        Request request = createMetaRequest(fileData, parts.positional());
+        invokeRpcIfValidConnection(request);
+        if (request.isError()) {
+            log.log(WARNING, () -> "Failed delivering meta for reference '" + fileData.fileReference().value() +
+                    "' with file '" + fileData.filename() + "' to " +
+                    target.toString() + " with error: '" + request.errorMessage() + "'.");
+            return 1;
+        } else {
+            if (request.returnValues().get(0).asInt32() != 0) {
+                throw new IllegalArgumentException("Unknown error from target '" + target.toString() + "' during rpc call " + request.methodName());
+            }
+            return request.returnValues().get(1).asInt32();
+        }
+    }
+
+    public static Request createMetaRequest(FileReferenceData fileData, boolean positional) {
+        Request request = new Request(FileReceiver.RECEIVE_META_METHOD);
+        request.parameters().add(new StringValue(fileData.fileReference().value()));
+        request.parameters().add(new StringValue(fileData.filename()));
+        request.parameters().add(new StringValue(fileData.type().name()));
+        request.parameters().add(new Int64Value(fileData.size()));
+        request.parameters().add(new StringValue(fileData.compressionType().name()));
+        if (positional) // Receivers not knowing positional parts are not sent this
+            request.parameters().add(new Int32Value(1));
+        return request;
+    }
+
+    private static Request createPartAtRequest(int session, FileReference ref, long offset, byte [] buf) {
+        Request request = new Request(FileReceiver.RECEIVE_PART_AT_METHOD);
+        request.parameters().add(new StringValue(ref.value()));
+        request.parameters().add(new Int32Value(session));
+        request.parameters().add(new Int64Value(offset));
+        request.parameters().add(new DataValue(buf));
+        return request;
+    }
+
+    private void sendPart(int session, FileReference ref, int partId, byte [] buf) {
+        Request request = new Request(FileReceiver.RECEIVE_PART_METHOD);
+        request.parameters().add(new StringValue(ref.value()));
+        request.parameters().add(new Int32Value(session));
+        request.parameters().add(new Int32Value(partId));
+        request.parameters().add(new DataValue(buf));
+        invokeRpcIfValidConnection(request);
+        if (request.isError()) {
+            throw new IllegalArgumentException("Failed delivering part of reference '" + ref.value() + "' to " +
+                                                       target.toString() + " with error: '" + request.errorMessage() + "'.");
+        } else {
+            if (request.returnValues().get(0).asInt32() != 0) {
+                throw new IllegalArgumentException("Unknown error from target '" + target.toString() + "' during rpc call " + request.methodName());
+            }
+        }
+    }
+
+    private void sendEof(int session, FileReferenceData fileData, int statusCode, String statusDescription) {
+        Request request = new Request(FileReceiver.RECEIVE_EOF_METHOD);
+        request.parameters().add(new StringValue(fileData.fileReference().value()));
+        request.parameters().add(new Int32Value(session));
+        request.parameters().add(new Int64Value(fileData.xxhash()));
+        request.parameters().add(new Int32Value(statusCode));
+        request.parameters().add(new StringValue(statusDescription));
+        invokeRpcIfValidConnection(request);
+        if (request.isError()) {
+            throw new IllegalArgumentException("Failed delivering eof for reference '" + fileData.fileReference().value() +
+                                                       "' with file '" + fileData.filename() + "' to " +
+                                                       target.toString() + " with error: '" + request.errorMessage() + "'.");
+        } else {
+            if (request.returnValues().get(0).asInt32() != 0) {
+                throw new IllegalArgumentException("Unknown error from target '" + target.toString() + "' during rpc call " + request.methodName());
+            }
+        }
+    }
+
+    private void invokeRpcIfValidConnection(Request request) {
+        if (target.isValid()) {
+            target.invokeSync(request, Duration.ofMinutes(10));
+        } else {
+            throw new RuntimeException("Connection to " + target + " is invalid", target.getConnectionLostReason());
+        }
+    }
+
+}
@@ -3,13 +3,27 @@ package com.yahoo.vespa.filedistribution;
 
 import com.yahoo.config.FileReference;
 import com.yahoo.io.IOUtils;
+import com.yahoo.jrt.Acceptor;
+import com.yahoo.jrt.CryptoEngine;
+import com.yahoo.jrt.CryptoSocket;
+import com.yahoo.jrt.DataArray;
+import com.yahoo.jrt.DataValue;
 import com.yahoo.jrt.Int32Value;
+import com.yahoo.jrt.Int64Value;
+import com.yahoo.jrt.Method;
+import com.yahoo.jrt.NullCryptoEngine;
+import com.yahoo.jrt.NullCryptoSocket;
 import com.yahoo.jrt.Request;
 import com.yahoo.jrt.RequestWaiter;
 import com.yahoo.jrt.Spec;
+import com.yahoo.jrt.StringArray;
 import com.yahoo.jrt.StringValue;
 import com.yahoo.jrt.Supervisor;
 import com.yahoo.jrt.Transport;
+import com.yahoo.security.tls.Capability;
+import com.yahoo.security.tls.CapabilityMode;
+import com.yahoo.security.tls.CapabilitySet;
+import com.yahoo.security.tls.ConnectionAuthContext;
 import com.yahoo.text.Utf8;
 import com.yahoo.vespa.config.Connection;
 import com.yahoo.vespa.config.ConnectionPool;
@@ -20,22 +34,31 @@ import org.junit.Before;
 import org.junit.Test;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Duration;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static com.yahoo.jrt.ErrorCode.CONNECTION;
 import static com.yahoo.jrt.ErrorCode.TIMEOUT;
+import static com.yahoo.vespa.filedistribution.FileReferenceData.CompressionType.none;
 import static com.yahoo.vespa.filedistribution.FileReferenceData.CompressionType.zstd;
 import static com.yahoo.vespa.filedistribution.FileReferenceData.Type;
 import static com.yahoo.vespa.filedistribution.FileReferenceData.Type.compressed;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
@@ -325,6 +348,174 @@ public class FileDownloaderTest {
         downloader.close();
     }
 
+    @Test
+    public void getFileFromPeer() throws Exception {
+        Optional<File> file = getFileFromPeer("content from peer", Duration.ofSeconds(10), new NullCryptoEngine());
+        assertTrue(file.isPresent());
+        assertEquals("content from peer", IOUtils.readFile(file.get()));
+    }
+
+    @Test
+    public void getFileFromPeerWithCapabilitiesEnforced() throws Exception {
+        Optional<File> file = getFileFromPeer("content from peer", Duration.ofSeconds(10),
+                                              new AppNodeCryptoEngine(CapabilitySet.CONTAINER_NODE));
+        assertTrue(file.isPresent());
+        assertEquals("content from peer", IOUtils.readFile(file.get()));
+    }
+
+    @Test
+    public void contentFromPeerNotMatchingTheHashFromConfigServersIsRejected() throws Exception {
+        assertTrue(getFileFromPeer("other content", Duration.ofSeconds(2), new NullCryptoEngine()).isEmpty());
+    }
+
+    /**
+     * Downloads a file from a peer, where config servers hold the hash of "content from peer",
+     * and the peer and the downloading node connect to each other using the given crypto engine
+     */
+    private Optional<File> getFileFromPeer(String peerContent, Duration timeout, CryptoEngine cryptoEngine) throws IOException {
+        FileReference fileReference = new FileReference("frompeer");
+        File peerFile = new File(Files.createTempDirectory("peer").toFile(), "peer.jar");
+        IOUtils.writeFile(peerFile, peerContent, false);
+        long hash = XXHashFactory.fastestInstance().hash64().hash(ByteBuffer.wrap(Utf8.toBytes("content from peer")), 0);
+
+        // A peer serving the file, which sends it back on the connection the request came on, like config servers
+        Supervisor peerSupervisor = new Supervisor(new Transport("peer", cryptoEngine, 1)).setDropEmptyBuffers(true);
+        peerSupervisor.addMethod(new Method("filedistribution.serveFile", "si*", "is", request -> {
+            request.detach();
+            new Thread(() -> {
+                try (var fileData = new LazyFileReferenceData(fileReference, peerFile.getName(), Type.file, peerFile, none)) {
+                    new FileReferenceSender(request.target(), FileReferenceParts.from(request.parameters(), 3)).send(fileData, 0, "OK");
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                request.returnValues().add(new Int32Value(0));
+                request.returnValues().add(new StringValue("OK"));
+                request.returnRequest();
+            }).start();
+        }).requireCapabilities(Capability.CONFIGPROXY__FILEDISTRIBUTION_API));
+        Acceptor acceptor = peerSupervisor.listen(new Spec(0));
+
+        // The config server knows the peer and the hash of the file, and does not have the file itself
+        MockConnection mockConnection = new MockConnection(request -> {
+            if (request.methodName().equals(FileReferencePeers.GET_PEERS_METHOD))
+                request.returnValues().add(new StringArray(new String[] { new Spec("localhost", acceptor.port()).toString() }))
+                                      .add(new Int64Value(hash));
+            else if (request.methodName().equals("filedistribution.serveFile"))
+                request.returnValues().add(new Int32Value(1)).add(new StringValue("File reference not found"));
+        });
+        Supervisor downloaderSupervisor = new Supervisor(new Transport("downloader", cryptoEngine, 1)).setDropEmptyBuffers(true);
+        FileDownloader downloader = new FileDownloader(mockConnection, downloaderSupervisor, downloadDir, timeout,
+                                                       sleepBetweenRetries,
+                                                       Optional.of(new FileReferencePeers(downloaderSupervisor, mockConnection, 12345)));
+        try {
+            return downloader.getFile(new FileReferenceDownload(fileReference, "test"));
+        } finally {
+            downloader.close();
+            acceptor.shutdown().join();
+            peerSupervisor.transport().shutdown().join();
+            downloaderSupervisor.transport().shutdown().join();
+        }
+    }
+
+    /** Creates unencrypted connections which are authorized with the capabilities of an app node, and enforce them */
+    private static class AppNodeCryptoEngine implements CryptoEngine {
+
+        private final ConnectionAuthContext authContext;
+
+        AppNodeCryptoEngine(CapabilitySet capabilities) {
+            authContext = new ConnectionAuthContext(List.of(), capabilities, Set.of(), CapabilityMode.ENFORCE);
+        }
+
+        @Override
+        public CryptoSocket createClientCryptoSocket(SocketChannel channel, Spec spec) {
+            return new NullCryptoSocket(channel, false) {
+                @Override public ConnectionAuthContext connectionAuthContext() { return authContext; }
+            };
+        }
+
+        @Override
+        public CryptoSocket createServerCryptoSocket(SocketChannel channel) {
+            return new NullCryptoSocket(channel, true) {
+                @Override public ConnectionAuthContext connectionAuthContext() { return authContext; }
+            };
+        }
+
+    }
+
+    @Test
+    public void getFileReusingChunksOfEarlierVersion() throws IOException {
+        byte[] model = new byte[4 * 1024 * 1024];
+        new Random(1).nextBytes(model);
+        File earlier = new File(downloadDir, "earlier/app");
+        assertTrue(earlier.mkdirs());
+        Files.write(earlier.toPath().resolve("model"), model);
+        IOUtils.writeFile(new File(earlier, "schema"), "old", false);
+
+        // The new version has a change in the middle of the model
+        File source = Files.createTempDirectory("source").resolve("app").toFile();
+        assertTrue(source.mkdirs());
+        byte[] changedModel = model.clone();
+        Arrays.fill(changedModel, 2_000_000, 2_000_010, (byte) 0);
+        Files.write(source.toPath().resolve("model"), changedModel);
+        IOUtils.writeFile(new File(source, "schema"), "new", false);
+        FileReferenceChunks sourceChunks = FileReferenceChunks.of(source);
+
+        AtomicLong fetchedBytes = new AtomicLong();
+        AtomicInteger chunkListRequests = new AtomicInteger();
+        MockConnection mockConnection = new MockConnection(request -> {
+            switch (request.methodName()) {
+                case FileReferenceChunks.GET_CHUNK_LIST_METHOD -> {
+                    chunkListRequests.incrementAndGet();
+                    // Chunk lists are only requested by nodes having an earlier version
+                    boolean hasEarlierVersion = List.of(request.parameters().get(1).asStringArray()).contains("app");
+                    request.returnValues().add(new Int32Value(hasEarlierVersion ? 0 : 1))
+                                          .add(new DataValue(hasEarlierVersion ? sourceChunks.toBytes() : new byte[0]));
+                }
+                case FileReferenceChunks.GET_CHUNKS_METHOD -> {
+                    byte[][] hashes = request.parameters().get(1).asDataArray();
+                    byte[][] contents = new byte[hashes.length][];
+                    for (int i = 0; i < hashes.length; i++) {
+                        contents[i] = readChunk(sourceChunks, source, hashes[i]);
+                        fetchedBytes.addAndGet(contents[i].length);
+                    }
+                    request.returnValues().add(new Int32Value(0)).add(new DataArray(contents));
+                }
+                default -> request.returnValues().add(new Int32Value(1)).add(new StringValue("File reference not found"));
+            }
+        });
+        FileDownloader downloader = new FileDownloader(mockConnection, supervisor, downloadDir, Duration.ofSeconds(10), sleepBetweenRetries);
+        Optional<File> file = downloader.getFile(new FileReferenceDownload(new FileReference("later"), "test"));
+        assertTrue(file.isPresent());
+        assertEquals(new File(downloadDir, "later/app"), file.get());
+        assertArrayEquals(changedModel, Files.readAllBytes(file.get().toPath().resolve("model")));
+        assertEquals("new", IOUtils.readFile(new File(file.get(), "schema")));
+        assertTrue("Fetched " + fetchedBytes.get() + " bytes", fetchedBytes.get() <= 2 * FileReferenceChunks.maxChunkSize + 3);
+        assertEquals(1, chunkListRequests.get());
+        downloader.close();
+    }
+
+    @Test
+    public void noChunkListIsRequestedWithoutEarlierVersions() {
+        AtomicInteger chunkListRequests = new AtomicInteger();
+        MockConnection mockConnection = new MockConnection(request -> {
+            if (request.methodName().equals(FileReferenceChunks.GET_CHUNK_LIST_METHOD))
+                chunkListRequests.incrementAndGet();
+            request.returnValues().add(new Int32Value(1)).add(new StringValue("File reference not found"));
+        });
+        FileDownloader downloader = new FileDownloader(mockConnection, supervisor, downloadDir, Duration.ofMillis(200), sleepBetweenRetries);
+        assertTrue(downloader.getFile(new FileReferenceDownload(new FileReference("first"), "test")).isEmpty());
+        assertEquals(0, chunkListRequests.get());
+        downloader.close();
+    }
+
+    private static byte[] readChunk(FileReferenceChunks chunks, File file, byte[] hash) {
+        try {
+            return chunks.read(file, hash).orElseThrow();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     private void writeFileReference(File dir, String fileReferenceString, String fileName) throws IOException {
         File fileReferenceDir = new File(dir, fileReferenceString);
         fileReferenceDir.mkdir();
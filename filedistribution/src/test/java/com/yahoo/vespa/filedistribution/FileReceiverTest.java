@@ -16,6 +16,8 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
 
 import static com.yahoo.vespa.filedistribution.FileReferenceData.CompressionType;
 import static com.yahoo.vespa.filedistribution.FileReferenceData.CompressionType.lz4;
@@ -23,7 +25,10 @@ import static com.yahoo.vespa.filedistribution.FileReferenceData.CompressionType
 import static com.yahoo.vespa.filedistribution.FileReferenceData.CompressionType.zstd;
 import static com.yahoo.vespa.filedistribution.FileReferenceData.Type.compressed;
 import static com.yahoo.vespa.filedistribution.FileReferenceData.Type.file;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 public class FileReceiverTest {
     private File root;
@@ -68,6 +73,60 @@ public class FileReceiverTest {
         testWithCompression(dirWithFiles, none);
     }
 
+    @Test
+    public void receivePartsOutOfOrder() throws IOException {
+        byte[] content = new byte[10_000];
+        for (int i = 0; i < content.length; i++)
+            content[i] = (byte) (i * 31);
+        FileReceiver.Session session = new FileReceiver.Session(root, 1, new FileReference("ref-d"), file, none, "myfile-4",
+                                                                content.length, true);
+        int partSize = 1000;
+        for (int offset : List.of(3000, 9000, 0, 4000, 3000, 1000, 8000, 5000, 2000, 7000, 6000)) { // 3000 is duplicated
+            assertFalse(session.canClose());
+            session.addPartAt(offset, Arrays.copyOfRange(content, offset, offset + partSize));
+            if (offset == 8000)
+                assertFalse(session.eof(hasher.hash(ByteBuffer.wrap(content), 0)));
+        }
+        assertEquals(1.0, session.percentageReceived(), 1e-9);
+        assertTrue(session.canClose());
+
+        File received = session.close();
+        assertArrayEquals(content, Files.readAllBytes(received.toPath()));
+    }
+
+    @Test
+    public void receivedRangesAreMerged() {
+        FileReceiver.Session session = new FileReceiver.Session(root, 1, new FileReference("ref-e"), file, none, "myfile-5",
+                                                                100, true);
+        session.addPartAt(10, new byte[10]);
+        session.addPartAt(40, new byte[10]);
+        session.addPartAt(20, new byte[10]);
+        session.addPartAt(15, new byte[10]);
+        assertArrayEquals(new long[] { 10, 30, 40, 50 }, session.receivedRanges());
+        assertEquals(0.3, session.percentageReceived(), 1e-9);
+
+        session.addPartAt(0, new byte[60]);
+        assertArrayEquals(new long[] { 0, 60 }, session.receivedRanges());
+        assertEquals(0.6, session.percentageReceived(), 1e-9);
+        assertFalse(session.isComplete());
+        session.abort();
+    }
+
+    @Test
+    public void sessionsForFilesCanBeJoined() {
+        FileReference reference = new FileReference("ref-f");
+        FileReceiver.Session positional = new FileReceiver.Session(root, 1, reference, file, none, "myfile-6", 100, true);
+        assertTrue(positional.canBeJoinedBy(reference, file, "myfile-6", 100));
+        assertFalse(positional.canBeJoinedBy(reference, file, "myfile-6", 101));
+        assertFalse(positional.canBeJoinedBy(new FileReference("ref-g"), file, "myfile-6", 100));
+        assertFalse(positional.canBeJoinedBy(reference, compressed, "myfile-6", 100));
+        positional.abort();
+
+        FileReceiver.Session inOrder = new FileReceiver.Session(root, 2, reference, file, none, "myfile-6", 100);
+        assertFalse(inOrder.canBeJoinedBy(reference, file, "myfile-6", 100));
+        inOrder.abort();
+    }
+
     private void testWithCompression(File dirWithFiles, CompressionType compressionType) throws IOException {
         File tempFile = temporaryFolder.newFile();
         File file = new FileReferenceCompressor(compressed, compressionType).compress(dirWithFiles, tempFile);
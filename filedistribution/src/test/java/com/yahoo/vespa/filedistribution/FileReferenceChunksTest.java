@@ -0,0 +1,82 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.filedistribution;
+
+import com.yahoo.vespa.filedistribution.FileReferenceChunks.Chunk;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FileReferenceChunksTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void chunksAreUnchangedExceptAroundChanges() throws IOException {
+        byte[] content = randomBytes(8 * 1024 * 1024, 1);
+        List<Chunk> chunks = FileReferenceChunks.chunk(new ByteArrayInputStream(content));
+        assertEquals(content.length, chunks.stream().mapToLong(Chunk::length).sum());
+        for (Chunk chunk : chunks) {
+            assertTrue(chunk.length() <= FileReferenceChunks.maxChunkSize);
+            assertArrayEquals(chunk.hash(), FileReferenceChunks.hash(Arrays.copyOfRange(content, (int) chunk.offset(),
+                                                                                         (int) chunk.offset() + chunk.length())));
+        }
+
+        byte[] changed = new byte[content.length + 100];
+        System.arraycopy(content, 0, changed, 0, 3_000_000);
+        System.arraycopy(randomBytes(100, 2), 0, changed, 3_000_000, 100);
+        System.arraycopy(content, 3_000_000, changed, 3_000_100, content.length - 3_000_000);
+        List<Chunk> changedChunks = FileReferenceChunks.chunk(new ByteArrayInputStream(changed));
+
+        Set<ByteBuffer> hashes = chunks.stream().map(chunk -> ByteBuffer.wrap(chunk.hash())).collect(Collectors.toSet());
+        long newBytes = changedChunks.stream().filter(chunk -> ! hashes.contains(ByteBuffer.wrap(chunk.hash())))
+                                     .mapToLong(Chunk::length).sum();
+        assertTrue("Changed " + newBytes + " bytes", newBytes <= 2 * FileReferenceChunks.maxChunkSize);
+    }
+
+    @Test
+    public void chunksOfDirectoryCanBeSerializedAndRead() throws IOException {
+        File dir = temporaryFolder.newFolder("app");
+        Files.write(dir.toPath().resolve("a"), randomBytes(300_000, 3));
+        Files.createDirectories(dir.toPath().resolve("b/c"));
+        Files.write(dir.toPath().resolve("b/d"), new byte[0]);
+        Files.createDirectories(dir.toPath().resolve("e"));
+        Files.write(dir.toPath().resolve("e/f"), "f".getBytes());
+
+        FileReferenceChunks chunks = FileReferenceChunks.fromBytes(FileReferenceChunks.of(dir).toBytes());
+        assertEquals("app", chunks.name());
+        assertTrue(chunks.isDirectory());
+        assertEquals(List.of("a", "b/c", "b/d", "e/f"), chunks.files().stream().map(file -> file.path()).toList());
+        assertEquals(List.of(false, true, false, false), chunks.files().stream().map(file -> file.isDirectory()).toList());
+        assertEquals(300_001, chunks.size());
+
+        Chunk last = chunks.files().get(0).chunks().get(chunks.files().get(0).chunks().size() - 1);
+        byte[] expected = Arrays.copyOfRange(Files.readAllBytes(dir.toPath().resolve("a")), (int) last.offset(), 300_000);
+        assertArrayEquals(expected, chunks.read(dir, last.hash()).get());
+        assertArrayEquals("f".getBytes(), chunks.read(dir, FileReferenceChunks.hash("f".getBytes())).get());
+        assertFalse(chunks.read(dir, FileReferenceChunks.hash("g".getBytes())).isPresent());
+    }
+
+    private static byte[] randomBytes(int length, long seed) {
+        byte[] bytes = new byte[length];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+
+}
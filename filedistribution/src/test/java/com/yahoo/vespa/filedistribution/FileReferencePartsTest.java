@@ -0,0 +1,69 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.filedistribution;
+
+import com.yahoo.jrt.Request;
+import org.junit.Test;
+
+import static com.yahoo.vespa.filedistribution.FileReferenceData.Type.compressed;
+import static com.yahoo.vespa.filedistribution.FileReferenceData.Type.file;
+import static com.yahoo.vespa.filedistribution.FileReferenceParts.minStripedSize;
+import static com.yahoo.vespa.filedistribution.FileReferenceParts.partSize;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FileReferencePartsTest {
+
+    @Test
+    public void large_files_are_striped() {
+        long size = minStripedSize + 10;
+        FileReferenceParts first = FileReferenceParts.stripe(0, 3);
+        FileReferenceParts second = FileReferenceParts.stripe(1, 3);
+        assertTrue(first.includes(0, partSize, size, file));
+        assertFalse(second.includes(0, partSize, size, file));
+        assertTrue(second.includes(partSize, partSize, size, file));
+        assertTrue(second.includes(4L * partSize, partSize, size, file));
+        assertTrue(second.includes(16L * partSize, 10, size, file));
+        assertTrue(second.includesAny(size, file));
+    }
+
+    @Test
+    public void small_files_and_compressed_content_are_sent_in_stripe_zero() {
+        FileReferenceParts first = FileReferenceParts.stripe(0, 3);
+        FileReferenceParts second = FileReferenceParts.stripe(1, 3);
+        assertTrue(first.includes(partSize, partSize, minStripedSize - 1, file));
+        assertFalse(second.includes(partSize, partSize, minStripedSize - 1, file));
+        assertFalse(second.includesAny(minStripedSize - 1, file));
+        assertTrue(first.includes(partSize, partSize, minStripedSize, compressed));
+        assertFalse(second.includes(partSize, partSize, minStripedSize, compressed));
+        assertFalse(second.includesAny(minStripedSize, compressed));
+    }
+
+    @Test
+    public void received_parts_are_not_included() {
+        FileReferenceParts missing = FileReferenceParts.missing(new long[] { 0, 2L * partSize, 3L * partSize, 4L * partSize });
+        long size = 4L * partSize + 10;
+        assertFalse(missing.includes(0, partSize, size, file));
+        assertFalse(missing.includes(partSize, partSize, size, file));
+        assertTrue(missing.includes(2L * partSize, partSize, size, file));
+        assertFalse(missing.includes(3L * partSize, partSize, size, file));
+        assertTrue(missing.includes(4L * partSize, 10, size, file));
+        assertTrue(missing.includesAny(size, file));
+        assertFalse(FileReferenceParts.missing(new long[] { 0, size }).includesAny(size, file));
+    }
+
+    @Test
+    public void parts_are_serialized_as_optional_request_parameters() {
+        Request request = new Request("filedistribution.serveFile");
+        assertFalse(FileReferenceParts.from(request.parameters(), 0).positional());
+
+        FileReferenceParts.missing(new long[] { 0, 100 }).addTo(request);
+        FileReferenceParts parts = FileReferenceParts.from(request.parameters(), 0);
+        assertTrue(parts.positional());
+        assertEquals(0, parts.stripe());
+        assertEquals(1, parts.stripes());
+        assertFalse(parts.includes(0, 100, 200, file));
+        assertTrue(parts.includes(100, 100, 200, file));
+    }
+
+}
@@ -403,6 +403,32 @@ public class Flags {
             INSTANCE_ID
     );
 
+    public static final UnboundBooleanFlag INCREMENTAL_MODEL_BUILD = defineFeatureFlag(
+            "incremental-model-build", false,
+            List.of("bratseth"), "2026-10-19", "2027-04-19",
+            "Whether to reuse the rank profiles derived for schemas whose inputs are unchanged since the previous model",
+            "Takes effect at redeployment",
+            INSTANCE_ID
+    );
+
+    public static final UnboundBooleanFlag WRITE_LARGE_SESSION_DATA_COMPRESSED = defineFeatureFlag(
+            "write-large-session-data-compressed", false,
+            List.of("hmusum"), "2026-10-19", "2027-04-19",
+            "Whether to compress the large application package files and file registries of a session written to " +
+            "ZooKeeper, and split them into chunks written in parallel. Must not be enabled before all config servers " +
+            "can read such data",
+            "Takes effect on next deployment"
+    );
+
+    public static final UnboundBooleanFlag FILE_DISTRIBUTION_FROM_PEERS = defineFeatureFlag(
+            "file-distribution-from-peers", false,
+            List.of("hmusum"), "2026-10-19", "2027-04-19",
+            "Whether config servers should hand out nodes which have downloaded a file reference as peers for " +
+            "other nodes to download it from, and keep track of such nodes. Only has an effect for nodes with " +
+            "VESPA_FILE_DISTRIBUTION_FROM_PEERS set in the environment of the config proxy",
+            "Takes effect immediately"
+    );
+
     /** WARNING: public for testing: All flags should be defined in {@link Flags}. */
     public static UnboundBooleanFlag defineFeatureFlag(String flagId, boolean defaultValue, List<String> owners,
                                                        String createdAt, String expiresAt, String description,
@@ -14,12 +14,18 @@ import java.nio.CharBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel.MapMode;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.NoSuchElementException;
 import java.util.concurrent.atomic.AtomicReference;
 
 
 /**
  * Finite-State Automaton.
+ * <p>
+ * Besides the stateful {@link State} objects, an FSA can be traversed by passing a state index to
+ * {@link #delta(int, CharSequence)} and the other methods taking a state. These methods are thread safe,
+ * and do not allocate when the FSA uses the UTF-8 charset, such that a single FSA can be shared by all threads.
+ * Use {@link FSARegistry} to share a single mapping of a file between all users in a process.
  *
  * @author Peter Boros
  */
@@ -451,6 +457,8 @@ public class FSA implements Closeable {
     }
     private final boolean _ok;
     private final Charset _charset;
+    private final boolean utf8;
+    private final boolean shared;
     private final AtomicReference<Maps> maps = new AtomicReference<>();
 
 
@@ -500,7 +508,7 @@ public class FSA implements Closeable {
      * @throws IllegalArgumentException if the file is not found
      */
     public FSA(String filename, String charsetname) {
-        this(createInputStream(filename), charsetname, true);
+        this(createInputStream(filename), charsetname, true, false);
     }
 
     /** Loads an FSA from a file input stream using utf-8 encoding */
@@ -509,12 +517,14 @@ public class FSA implements Closeable {
     }
 
     public FSA(FileInputStream file, String charsetname) {
-        this(file, charsetname, false);
+        this(file, charsetname, false, false);
     }
     /** Loads an FSA from a file input stream using the specified character encoding */
-    private FSA(FileInputStream file, String charsetname, boolean closeInput) {
+    private FSA(FileInputStream file, String charsetname, boolean closeInput, boolean shared) {
         try {
             _charset = Charset.forName(charsetname);
+            utf8 = _charset.equals(StandardCharsets.UTF_8);
+            this.shared = shared;
             maps.set(new Maps(file));
             _ok=true;
         }
@@ -531,8 +541,18 @@ public class FSA implements Closeable {
         }
     }
 
+    /** Loads an FSA which is shared by all users of it, such that it is only unmapped when closed by the last of them */
+    static FSA createShared(String filename, String charsetname) {
+        return new FSA(createInputStream(filename), charsetname, true, true);
+    }
+
+    /**
+     * Unmaps the file of this. If this is shared through {@link FSARegistry},
+     * this only unmaps the file when called by the last user of it.
+     */
     @Override
     public void close() throws IOException {
+        if (shared && ! FSARegistry.release(this)) return;
         Maps m = map();
         maps.set(null);
         m.close();
@@ -574,7 +594,8 @@ public class FSA implements Closeable {
         return 0;
     }
 
-    protected int start(){
+    /** Returns the start state of this, or 0 if this is not ok */
+    public int start(){
         if(_ok){
             return map().h_start();
         }
@@ -582,15 +603,102 @@ public class FSA implements Closeable {
         return 0;
     }
 
-    protected int delta(int state, byte symbol){
+    /** Returns the state reached by the given symbol from the given state, or 0 if there is no such state */
+    public int delta(int state, byte symbol){
+        if (state <= 0) return 0;
         return map().delta(state, symbol);
     }
 
+    /**
+     * Returns the state reached by the encoding of the given characters from the given state,
+     * or 0 if there is no such state. This is thread safe and does not allocate when the charset is UTF-8.
+     */
+    public int delta(int state, CharSequence chars) {
+        Maps m = map();
+        if ( ! utf8) {
+            ByteBuffer buf = encode(CharBuffer.wrap(chars));
+            while (state > 0 && buf.position() < buf.limit())
+                state = m.delta(state, buf.get());
+            return state;
+        }
+        for (int i = 0; state > 0 && i < chars.length(); i++) {
+            int codePoint = codePointAt(chars, i);
+            if (Character.isSupplementaryCodePoint(codePoint)) i++;
+            int length = utf8Length(codePoint);
+            for (int b = 0; state > 0 && b < length; b++)
+                state = m.delta(state, utf8Byte(codePoint, length, b));
+        }
+        return state;
+    }
+
+    /**
+     * Returns the state reached by the given word from the given state, where words following
+     * other words are preceded by a space, or 0 if there is no such state.
+     */
+    public int deltaWord(int state, CharSequence word) {
+        if (state > 0 && state != start())
+            state = delta(state, (byte)' ');
+        return delta(state, word);
+    }
+
+    /**
+     * Returns the perfect hash value of the given string, or -1 if it is not accepted by this.
+     * This is thread safe and does not allocate when the charset is UTF-8.
+     */
+    public int perfectHash(CharSequence string) {
+        Maps m = map();
+        int state = start();
+        int hash = 0;
+        if ( ! utf8) {
+            ByteBuffer buf = encode(CharBuffer.wrap(string));
+            while (state > 0 && buf.position() < buf.limit()) {
+                byte symbol = buf.get();
+                hash += m.hashDelta(state, symbol);
+                state = m.delta(state, symbol);
+            }
+        }
+        else {
+            for (int i = 0; state > 0 && i < string.length(); i++) {
+                int codePoint = codePointAt(string, i);
+                if (Character.isSupplementaryCodePoint(codePoint)) i++;
+                int length = utf8Length(codePoint);
+                for (int b = 0; state > 0 && b < length; b++) {
+                    byte symbol = utf8Byte(codePoint, length, b);
+                    hash += m.hashDelta(state, symbol);
+                    state = m.delta(state, symbol);
+                }
+            }
+        }
+        return isFinal(state) ? hash : -1;
+    }
+
+    /** Returns the code point at the given index, where unpaired surrogates are replaced like the charset encoder does */
+    private static int codePointAt(CharSequence chars, int index) {
+        int codePoint = Character.codePointAt(chars, index);
+        return Character.isSurrogate((char)codePoint) && ! Character.isSupplementaryCodePoint(codePoint) ? '?' : codePoint;
+    }
+
+    private static int utf8Length(int codePoint) {
+        if (codePoint < 0x80) return 1;
+        if (codePoint < 0x800) return 2;
+        if (codePoint < 0x10000) return 3;
+        return 4;
+    }
+
+    /** Returns the byte at the given index of the UTF-8 encoding of the given code point */
+    private static byte utf8Byte(int codePoint, int length, int index) {
+        if (length == 1) return (byte)codePoint;
+        int bits = codePoint >> (6 * (length - 1 - index));
+        if (index == 0) return (byte)(((0xFF00 >> length) & 0xFF) | bits);
+        return (byte)(0x80 | (bits & 0x3F));
+    }
+
     protected int hashDelta(int state, byte symbol){
         return map().hashDelta(state, symbol);
     }
 
-    protected boolean isFinal(int state){
+    /** Returns whether the given state is a final state, i.e. whether the string leading to it is accepted */
+    public boolean isFinal(int state){
         return (_ok && map().isFinal(state));
     }
 
@@ -622,12 +730,28 @@ public class FSA implements Closeable {
         return null;
     }
 
+    /**
+     * Returns the int stored in the first four bytes of the data of the given state,
+     * without copying the data.
+     *
+     * @throws IllegalArgumentException if the given state is not a final state
+     */
+    public int dataInt(int state) {
+        Maps m = map();
+        if ( ! _ok || ! m.isFinal(state))
+            throw new IllegalArgumentException("State " + state + " is not a final state");
+        int offset = m._state_tab.getInt(4*(state+255));
+        if (m.h_data_type() != 1)
+            offset += 4; // skip the length
+        return m._data.getInt(offset);
+    }
+
     /**
      * Retrieves data for the given state using the underlying fsa data buffer.
      * @param state The fsa state to retrieve data from.
      * @return A string representation of the data for the given state.
      **/
-    protected String dataString(int state) {
+    public String dataString(int state) {
         ByteBuffer meta = data(state);
         if(meta!=null){
             // Remove trailing '\0' if it exists. This is usually the
@@ -648,9 +772,7 @@ public class FSA implements Closeable {
      * @param str The string to look up.
      * @return Metadata string from the fsa.  */
     public String lookup(String str){
-        State s = getState();
-        s.lookup(str);
-        return s.dataString();
+        return dataString(delta(start(), str));
     }
 
 
@@ -0,0 +1,84 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.fsa;
+
+import java.io.File;
+import java.lang.ref.WeakReference;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * A process-wide registry of FSAs, such that all users of an automaton file share a single mapping of it.
+ * <p>
+ * Each FSA returned from this should be closed once by the user it was returned to, when no longer used.
+ * A shared FSA is unmapped when closed by its last user. FSAs which are no longer referenced are dropped
+ * from this, and unmapped by the garbage collector, as when not shared.
+ * If a file is changed, the next request for it returns a new FSA mapping the new content, while users of
+ * the previous one can keep using it.
+ */
+public final class FSARegistry {
+
+    /** The current FSA of each file, guarded by FSARegistry.class */
+    private static final Map<Key, Entry> fsas = new HashMap<>();
+
+    /** The number of users of each shared FSA which have not closed it, guarded by FSARegistry.class */
+    private static final Map<FSA, Integer> references = new WeakHashMap<>();
+
+    private FSARegistry() {}
+
+    /**
+     * Returns the shared FSA of the given file using utf-8 encoding
+     *
+     * @throws IllegalArgumentException if the file is not found
+     */
+    public static FSA get(String filename) {
+        return get(filename, "utf-8");
+    }
+
+    /**
+     * Returns the shared FSA of the given file using the given character encoding
+     *
+     * @throws IllegalArgumentException if the file is not found
+     */
+    public static synchronized FSA get(String filename, String charsetname) {
+        File file = new File(filename).toPath().toAbsolutePath().normalize().toFile();
+        Key key = new Key(file.getPath(), Charset.forName(charsetname));
+        long lastModified = file.lastModified();
+        long length = file.length();
+        fsas.values().removeIf(entry -> entry.fsa.get() == null);
+
+        Entry entry = fsas.get(key);
+        FSA fsa = entry != null && entry.isCurrent(lastModified, length) ? entry.fsa.get() : null;
+        if (fsa == null) {
+            fsa = FSA.createShared(file.getPath(), charsetname);
+            fsas.put(key, new Entry(new WeakReference<>(fsa), lastModified, length));
+        }
+        references.merge(fsa, 1, Integer::sum);
+        return fsa;
+    }
+
+    /** Releases one reference to the given shared FSA, and returns whether this was the last, such that it should be unmapped */
+    static synchronized boolean release(FSA fsa) {
+        Integer count = references.get(fsa);
+        if (count == null) return false; // Already released by all its users
+        if (count > 1) {
+            references.put(fsa, count - 1);
+            return false;
+        }
+        references.remove(fsa);
+        fsas.values().removeIf(entry -> entry.fsa.get() == fsa);
+        return true;
+    }
+
+    private record Key(String path, Charset charset) {}
+
+    private record Entry(WeakReference<FSA> fsa, long lastModified, long length) {
+
+        boolean isCurrent(long lastModified, long length) {
+            return this.lastModified == lastModified && this.length == length;
+        }
+
+    }
+
+}
@@ -13,6 +13,7 @@ import java.nio.channels.FileChannel.MapMode;
 import java.nio.charset.Charset;
 
 import com.yahoo.fsa.FSA;
+import com.yahoo.fsa.FSARegistry;
 
 
 /**
@@ -48,7 +49,7 @@ public class ConceptNet {
 
     _charset = Charset.forName(charsetname);
 
-    _fsa = new FSA(domain + ".fsa",charsetname);
+    _fsa = FSARegistry.get(domain + ".fsa",charsetname);
 
     if(!_fsa.isOk()){
       return;
@@ -145,13 +146,7 @@ public class ConceptNet {
 
   public int lookup(String unit)
   {
-    FSA.State state = _fsa.getState();
-    // state.start(); // getState does this for us
-    state.delta(unit);
-    if(state.isFinal()){
-      return state.hash();
-    }
-    return -1;
+    return _fsa.perfectHash(unit);
   }
 
   public String lookup(int idx)
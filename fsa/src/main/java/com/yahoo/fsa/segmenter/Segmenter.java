@@ -1,10 +1,8 @@
 // Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.fsa.segmenter;
 
-import java.util.LinkedList;
-import java.util.ListIterator;
-
 import com.yahoo.fsa.FSA;
+import com.yahoo.fsa.FSARegistry;
 
 /**
  * API for accessing the Segmenter automata.
@@ -20,11 +18,11 @@ public class Segmenter {
   }
 
   public Segmenter(String filename) {
-    fsa = new FSA(filename, "utf-8");
+    fsa = FSARegistry.get(filename, "utf-8");
   }
 
   public Segmenter(String filename, String charsetname) {
-    fsa = new FSA(filename, charsetname);
+    fsa = FSARegistry.get(filename, charsetname);
   }
 
   public boolean isOk() {
@@ -36,55 +34,26 @@ public class Segmenter {
     return segment(tokens);
   }
 
-  private class Detector {
-
-    final FSA.State state;
-    final int index;
-
-    public Detector(FSA.State s, int i) {
-      state = s;
-      index = i;
-    }
-
-    public FSA.State state()
-    {
-      return state;
-    }
-
-    public int index()
-    {
-      return index;
-    }
-
-  }
-
   public Segments segment(String[] tokens) {
     Segments segments = new Segments(tokens);
-    LinkedList<Detector> detectors = new LinkedList<>();
-
-    int i=0;
-
-
-    while(i<tokens.length){
-      detectors.add(new Detector(fsa.getState(), i));
-
-      ListIterator<Detector> det_it = detectors.listIterator();
-      while(det_it.hasNext()){
-        Detector d = det_it.next();
-        d.state().deltaWord(tokens[i]);
-        if(d.state().isFinal()){
-          segments.add(new Segment(d.index(),i+1,d.state().data().getInt(0)));
-        }
-
-        if(!d.state().isValid()){
-          det_it.remove();
+    // The fsa states of the segment candidates starting at each token, or 0 if the candidate is discarded
+    int[] states = new int[tokens.length];
+    int first = 0;
+
+    for (int i = 0; i < tokens.length; i++) {
+      states[i] = fsa.start();
+      for (int start = first; start <= i; start++) {
+        if (states[start] == 0) continue;
+
+        states[start] = fsa.deltaWord(states[start], tokens[i]);
+        if (fsa.isFinal(states[start])) {
+          segments.add(new Segment(start, i + 1, fsa.dataInt(states[start])));
         }
       }
-      i++;
+      while (first <= i && states[first] == 0) first++;
     }
 
     return segments;
   }
 
 }
-
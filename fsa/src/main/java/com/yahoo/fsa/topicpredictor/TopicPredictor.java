@@ -7,6 +7,7 @@ import java.util.LinkedList;
 import java.nio.ByteBuffer;
 
 import com.yahoo.fsa.FSA;
+import com.yahoo.fsa.FSARegistry;
 import com.yahoo.fsa.MetaData;
 
 
@@ -36,7 +37,7 @@ public final class TopicPredictor extends MetaData {
         }
 
         // Init the segment->'topic index' FSA
-        fsa = new FSA(fsafile);
+        fsa = FSARegistry.get(fsafile);
         if (!fsa.isOk()) {
             Logger.getLogger(packageName).
                 warning("Error initializing FSA with file " + fsafile);
@@ -82,12 +83,7 @@ public final class TopicPredictor extends MetaData {
      * @param segment   The segment string to find index for.
      * @return Index for this segment in the FSA. */
     private int getSegmentIndex(String segment) {
-        FSA.State s = fsa.getState();
-        s.delta(segment);
-        if (s.isFinal()) {
-            return s.hash();
-        }
-        return -1;
+        return fsa.perfectHash(segment);
     }
 
     /**
@@ -2,13 +2,19 @@
 package com.yahoo.fsa.test;
 
 import com.yahoo.fsa.FSA;
+import com.yahoo.fsa.FSARegistry;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.io.FileInputStream;
 import java.io.IOException;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -106,4 +112,48 @@ public class FSATestCase {
         assertTrue(state.isFinal());
     }
 
+    @Test
+    public void testStatelessDelta() {
+        int start = fsa.start();
+        assertTrue(fsa.isFinal(fsa.delta(start, "aword")));
+        assertFalse(fsa.isFinal(fsa.delta(start, "awo")));
+        assertNotEquals(0, fsa.delta(start, "awo"));
+        assertEquals(0, fsa.delta(start, "awox"));
+        assertEquals(0, fsa.delta(0, "aword"));
+        assertTrue(fsa.isFinal(fsa.delta(fsa.delta(start, "this is"), " a test")));
+
+        int state = start;
+        for (String word : new String[] { "this", "is", "a", "test" }) {
+            assertFalse(fsa.isFinal(state));
+            state = fsa.deltaWord(state, word);
+        }
+        assertTrue(fsa.isFinal(state));
+        assertEquals(0, fsa.deltaWord(fsa.deltaWord(start, "th"), "is"));
+    }
+
+    @Test
+    public void testStatelessPerfectHash() {
+        state.delta("this is a test");
+        assertEquals(state.hash(), fsa.perfectHash("this is a test"));
+        assertEquals(-1, fsa.perfectHash("this is a"));
+        assertEquals(-1, fsa.perfectHash("no such string"));
+    }
+
+    @Test
+    public void testRegistrySharesFsas() throws IOException {
+        FSA shared = FSARegistry.get("src/test/fsa/test-fsa.fsa");
+        assertSame(shared, FSARegistry.get("src/test/fsa/test-fsa.fsa"));
+        assertSame(shared, FSARegistry.get("src/test/fsa/../fsa/test-fsa.fsa", "utf-8"));
+        shared.close();
+        shared.close(); // still used by one user
+        assertTrue(shared.isFinal(shared.delta(shared.start(), "aword")));
+        assertNull(shared.lookup("awo"));
+
+        shared.close(); // closed by the last user, and unmapped
+        FSA reloaded = FSARegistry.get("src/test/fsa/test-fsa.fsa");
+        assertNotSame(shared, reloaded);
+        assertTrue(reloaded.isFinal(reloaded.delta(reloaded.start(), "aword")));
+        reloaded.close();
+    }
+
 }
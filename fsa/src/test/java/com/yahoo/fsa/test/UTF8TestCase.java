@@ -53,6 +53,16 @@ public class UTF8TestCase {
         assertTrue(state.isFinal());
     }
 
+    @Test
+    public void testStatelessDelta() {
+        int state = fsa.delta(fsa.start(), prefix);
+        assertTrue(state != 0);
+        assertFalse(fsa.isFinal(state));
+        assertTrue(fsa.isFinal(fsa.delta(state, suffix)));
+        assertTrue(fsa.isFinal(fsa.delta(fsa.start(), word)));
+        assertEquals(0, fsa.delta(fsa.start(), word.substring(0, 1) + "\uD800"));
+    }
+
     @Test
     public void testCharDelta() {
         assertEquals(6, word.length());
@@ -0,0 +1,59 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.indexinglanguage.expressions;
+
+import com.yahoo.document.DataType;
+import com.yahoo.document.FieldPath;
+import com.yahoo.document.datatypes.FieldValue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Field values which reads its input from another instance, and buffers all output values set
+ * until they are applied to an execution context.
+ */
+final class BufferedFieldValues implements FieldValues {
+
+    private final FieldValues input;
+    private final List<Output> outputs = new ArrayList<>();
+
+    BufferedFieldValues(FieldValues input) {
+        this.input = input;
+    }
+
+    /** Returns the field values this reads its input from */
+    FieldValues input() { return input; }
+
+    @Override
+    public DataType getFieldType(String fieldName, Expression expression) {
+        return input.getFieldType(fieldName, expression);
+    }
+
+    @Override
+    public FieldValue getInputValue(String fieldName) {
+        return input.getInputValue(fieldName);
+    }
+
+    @Override
+    public FieldValue getInputValue(FieldPath fieldPath) {
+        return input.getInputValue(fieldPath);
+    }
+
+    @Override
+    public BufferedFieldValues setOutputValue(String fieldName, FieldValue fieldValue, Expression expression) {
+        outputs.add(new Output(fieldName, fieldValue, expression));
+        return this;
+    }
+
+    @Override
+    public boolean isComplete() { return input.isComplete(); }
+
+    /** Sets all the buffered output values in the given context, in the order they were set in this. */
+    void applyTo(ExecutionContext context) {
+        for (Output output : outputs)
+            context.setFieldValue(output.fieldName(), output.value(), output.expression());
+    }
+
+    private record Output(String fieldName, FieldValue value, Expression expression) {}
+
+}
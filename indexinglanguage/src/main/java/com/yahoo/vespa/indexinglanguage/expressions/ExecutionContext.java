@@ -7,13 +7,17 @@ import com.yahoo.document.FieldPath;
 import com.yahoo.document.datatypes.FieldValue;
 import com.yahoo.language.Language;
 import com.yahoo.language.Linguistics;
-
+import com.yahoo.vespa.indexinglanguage.UpdateFieldValues;
 
 import java.time.Instant;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
 /**
  * @author Simon Thoresen Hult
@@ -25,7 +29,7 @@ public class ExecutionContext {
     private FieldValue currentValue;
     private Language assignedLanguage = Language.UNKNOWN;
     private Language detectedLanguage = Language.UNKNOWN;
-    private final Map<Object, Object> cache = LazyMap.newHashMap();
+    private Map<Object, Object> cache = LazyMap.newHashMap();
     // Document id is practical for logging and informative error messages
     private DocumentId documentId;
     private boolean isReindexingOperation = false;
@@ -39,6 +43,40 @@ public class ExecutionContext {
         this.fieldValues = fieldValue;
     }
 
+    /**
+     * Returns a new context which reads the same field values as this, but buffers its own output values
+     * until they are applied by {@link #join}. The forked context starts with a copy of the state of this,
+     * shares the cache of this, and may be used to execute a statement concurrently with statements executing
+     * in other forks.
+     */
+    ExecutionContext fork() {
+        if ( ! (cache instanceof ConcurrentCache))
+            cache = new ConcurrentCache(cache);
+        var fork = new ExecutionContext(new BufferedFieldValues(fieldValues));
+        fork.variables.putAll(variables);
+        fork.currentValue = currentValue;
+        fork.assignedLanguage = assignedLanguage;
+        fork.detectedLanguage = detectedLanguage;
+        fork.cache = cache;
+        fork.documentId = documentId;
+        fork.isReindexingOperation = isReindexingOperation;
+        fork.deadline = deadline;
+        return fork;
+    }
+
+    /**
+     * Applies the buffered output values of the given context, forked from this, and takes over its
+     * statement state. Forks must be joined in the order their statements would otherwise have been
+     * executed to produce the same result as a sequential execution.
+     */
+    void join(ExecutionContext fork) {
+        ((BufferedFieldValues)fork.fieldValues).applyTo(this);
+        variables.clear();
+        variables.putAll(fork.variables);
+        detectedLanguage = fork.detectedLanguage;
+        currentValue = fork.currentValue;
+    }
+
     public ExecutionContext execute(Expression expression) {
         if (expression != null)
             expression.execute(this);
@@ -68,6 +106,12 @@ public class ExecutionContext {
 
     public FieldValues getFieldValues() { return fieldValues; }
 
+    /** Returns whether this executes a partial update rather than a complete document, also when forked. */
+    boolean isUpdate() {
+        FieldValues values = fieldValues instanceof BufferedFieldValues buffered ? buffered.input() : fieldValues;
+        return values instanceof UpdateFieldValues;
+    }
+
     public FieldValue getVariable(String name) {
         return variables.get(name);
     }
@@ -157,4 +201,63 @@ public class ExecutionContext {
         return this;
     }
 
+    /**
+     * The cache shared by forked contexts, which may be accessed concurrently. A value which is absent
+     * is computed once also when requested concurrently, and without holding any lock, such that computing
+     * a value may compute other values. Computing a value must not depend on the same value:
+     * This is detected and fails when it happens in a single thread, but deadlocks across threads.
+     */
+    private static final class ConcurrentCache extends ConcurrentHashMap<Object, Object> {
+
+        private record Computation(Thread thread, CompletableFuture<Object> result) {}
+
+        private final Map<Object, Computation> computing = new ConcurrentHashMap<>();
+
+        ConcurrentCache(Map<Object, Object> values) {
+            values.forEach(this::put);
+        }
+
+        @Override
+        public Object put(Object key, Object value) {
+            return value == null ? remove(key) : super.put(key, value);
+        }
+
+        @Override
+        public Object computeIfAbsent(Object key, Function<? super Object, ?> mappingFunction) {
+            Object value = get(key);
+            if (value != null) return value;
+
+            Computation computation = new Computation(Thread.currentThread(), new CompletableFuture<>());
+            Computation existing = computing.putIfAbsent(key, computation);
+            if (existing != null) {
+                if (existing.thread() == computation.thread())
+                    throw new IllegalStateException("Recursive computation of the cached value for " + key);
+                try {
+                    return existing.result().join();
+                }
+                catch (CompletionException e) {
+                    throw e.getCause() instanceof RuntimeException cause ? cause : e;
+                }
+            }
+            try {
+                value = get(key); // Computed since we checked
+                if (value == null) {
+                    value = mappingFunction.apply(key);
+                    if (value != null)
+                        super.put(key, value);
+                }
+                computation.result().complete(value);
+                return value;
+            }
+            catch (RuntimeException | Error e) {
+                computation.result().completeExceptionally(e);
+                throw e;
+            }
+            finally {
+                computing.remove(key);
+            }
+        }
+
+    }
+
 }
@@ -6,7 +6,6 @@ import com.yahoo.document.DocumentType;
 import com.yahoo.document.Field;
 import com.yahoo.vespa.indexinglanguage.ExpressionConverter;
 import com.yahoo.vespa.indexinglanguage.ExpressionVisitor;
-import com.yahoo.vespa.indexinglanguage.UpdateFieldValues;
 import com.yahoo.vespa.objects.ObjectOperation;
 import com.yahoo.vespa.objects.ObjectPredicate;
 
@@ -55,7 +54,7 @@ public final class GuardExpression extends CompositeExpression {
 
     @Override
     protected void doExecute(ExecutionContext context) {
-        if (!shouldExecute && context.getFieldValues() instanceof UpdateFieldValues) {
+        if (!shouldExecute && context.isUpdate()) {
             context.setCurrentValue(null);
         } else {
             innerExpression.execute(context);
@@ -9,22 +9,35 @@ import com.yahoo.language.process.Embedder;
 import com.yahoo.language.process.FieldGenerator;
 import com.yahoo.language.simple.SimpleLinguistics;
 import com.yahoo.vespa.indexinglanguage.ExpressionConverter;
+import com.yahoo.vespa.indexinglanguage.ExpressionSearcher;
 import com.yahoo.vespa.indexinglanguage.ScriptParser;
 import com.yahoo.vespa.indexinglanguage.ScriptParserContext;
 import com.yahoo.vespa.indexinglanguage.parser.IndexingInput;
 import com.yahoo.vespa.indexinglanguage.parser.ParseException;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
 /**
  * @author Simon Thoresen Hult
  */
 public final class ScriptExpression extends ExpressionList<StatementExpression> {
 
+    /** The executor used to run independent statements concurrently, or null to run all statements in sequence. */
+    private Executor executor = null;
+
+    /** The statements of this grouped into stages of statements which are independent of each other. */
+    private List<List<StatementExpression>> stages = null;
+
     public ScriptExpression() {
         this(List.of());
     }
@@ -82,19 +95,80 @@ public final class ScriptExpression extends ExpressionList<StatementExpression>
             context.resolve(exp);
     }
 
+    /**
+     * Sets an executor which will be used to execute independent statements of this concurrently.
+     * Statements are independent if each starts by clearing the execution state, does not set the language,
+     * and does not consume fields consumed or produced by the others. Output values are applied in statement order,
+     * so the result is the same as that of executing all statements in sequence.
+     *
+     * @param executor the executor to use, or null to execute all statements in sequence
+     * @return this for chaining
+     */
+    public ScriptExpression setExecutor(Executor executor) {
+        this.stages = executor != null ? independentStages(asList()) : null;
+        this.executor = executor;
+        return this;
+    }
+
     @Override
     protected void doExecute(ExecutionContext context) {
         FieldValue input = context.getCurrentValue();
-        for (StatementExpression statement : this) {
-            if (context.isComplete() ||
-                (statement.getInputFields().isEmpty() || containsAtLeastOneInputFrom(statement.getInputFields(), context))) {
-                context.setCurrentValue(input);
-                context.execute(statement);
+        if (executor != null && input == null) {
+            for (List<StatementExpression> stage : stages)
+                executeConcurrently(stage, context);
+        }
+        else {
+            for (StatementExpression statement : this) {
+                if (shouldExecute(statement, context)) {
+                    context.setCurrentValue(input);
+                    context.execute(statement);
+                }
             }
         }
         context.setCurrentValue(input);
     }
 
+    private void executeConcurrently(List<StatementExpression> stage, ExecutionContext context) {
+        List<StatementExpression> statements = stage.stream().filter(statement -> shouldExecute(statement, context)).toList();
+        if (statements.isEmpty()) return;
+        if (statements.size() == 1) {
+            context.setCurrentValue(null);
+            context.execute(statements.get(0));
+            return;
+        }
+
+        List<ExecutionContext> forks = new ArrayList<>(statements.size());
+        List<CompletableFuture<?>> executions = new ArrayList<>(statements.size());
+        for (StatementExpression statement : statements) {
+            ExecutionContext fork = context.fork();
+            forks.add(fork);
+            executions.add(forks.size() == 1 ? null // the first statement is executed in this thread below
+                                             : CompletableFuture.runAsync(() -> fork.execute(statement), executor));
+        }
+        executions.set(0, CompletableFuture.runAsync(() -> forks.get(0).execute(statements.get(0)), Runnable::run));
+
+        // Apply the results in statement order, up to the first failure, as in sequential execution
+        RuntimeException failure = null;
+        for (int i = 0; i < forks.size(); i++) {
+            try {
+                executions.get(i).join();
+                if (failure == null)
+                    context.join(forks.get(i));
+            }
+            catch (CompletionException e) {
+                if (failure == null)
+                    failure = e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+        if (failure != null) throw failure;
+    }
+
+    private boolean shouldExecute(StatementExpression statement, ExecutionContext context) {
+        return context.isComplete() ||
+               statement.getInputFields().isEmpty() ||
+               containsAtLeastOneInputFrom(statement.getInputFields(), context);
+    }
+
     private boolean containsAtLeastOneInputFrom(List<String> inputFields, ExecutionContext context) {
         for (String inputField : inputFields)
             if (context.getFieldValue(inputField) != null)
@@ -102,6 +176,45 @@ public final class ScriptExpression extends ExpressionList<StatementExpression>
         return false;
     }
 
+    /** Groups the given statements into consecutive stages of statements which may execute concurrently. */
+    private static List<List<StatementExpression>> independentStages(List<StatementExpression> statements) {
+        List<List<StatementExpression>> stages = new ArrayList<>();
+        List<StatementExpression> stage = new ArrayList<>();
+        Set<String> stageFields = new HashSet<>(); // Fields consumed or produced by statements in the current stage
+        for (StatementExpression statement : statements) {
+            List<String> inputFields = statement.getInputFields();
+            boolean isolated = isIsolated(statement);
+            if ( ! stage.isEmpty() && ( ! isolated || inputFields.stream().anyMatch(stageFields::contains))) {
+                stages.add(stage);
+                stage = new ArrayList<>();
+                stageFields.clear();
+            }
+            stage.add(statement);
+            stageFields.addAll(inputFields);
+            stageFields.addAll(outputFieldsOf(statement));
+            if ( ! isolated) {
+                stages.add(stage);
+                stage = new ArrayList<>();
+                stageFields.clear();
+            }
+        }
+        if ( ! stage.isEmpty())
+            stages.add(stage);
+        return List.copyOf(stages);
+    }
+
+    /** Returns whether the given statement does not depend on, nor affect, the state left by other statements. */
+    private static boolean isIsolated(StatementExpression statement) {
+        if (statement.isEmpty() || ! (statement.get(0) instanceof ClearStateExpression)) return false;
+        return ! new ExpressionSearcher<>(SetLanguageExpression.class).containedIn(statement);
+    }
+
+    private static List<String> outputFieldsOf(StatementExpression statement) {
+        var extractor = new OutputExpression.OutputFieldNameExtractor();
+        statement.select(extractor, extractor);
+        return extractor.getOutputFieldNames();
+    }
+
     @Override
     public String toString() {
         StringBuilder ret = new StringBuilder();
@@ -153,4 +153,21 @@ public class ExecutionContextTestCase {
         ctx.setCurrentValue(new StringFieldValue("\ud55c\uae00\uacfc"));
         assertEquals(Language.ARABIC, ctx.resolveLanguage(new SimpleLinguistics()));
     }
+
+    @Test
+    public void requireThatRecursiveComputationOfACachedValueInForkedContextsFails() {
+        ExecutionContext ctx = new ExecutionContext();
+        var cache = ctx.fork().getCache();
+        assertEquals("bar", cache.computeIfAbsent("foo", __ -> cache.computeIfAbsent("baz", ___ -> "bar")));
+        try {
+            cache.computeIfAbsent("qux", key -> cache.computeIfAbsent(key, ___ -> "bar"));
+            fail("Expected exception");
+        }
+        catch (IllegalStateException e) {
+            assertEquals("Recursive computation of the cached value for qux", e.getMessage());
+        }
+        assertNull(cache.get("qux"));
+        assertEquals("bar", cache.computeIfAbsent("qux", __ -> "bar"));
+    }
+
 }
@@ -3,22 +3,33 @@ package com.yahoo.vespa.indexinglanguage.expressions;
 
 import com.yahoo.document.ArrayDataType;
 import com.yahoo.document.DataType;
+import com.yahoo.document.DocumentType;
+import com.yahoo.document.DocumentUpdate;
 import com.yahoo.document.Field;
 import com.yahoo.document.PositionDataType;
 import com.yahoo.document.StructDataType;
 import com.yahoo.document.datatypes.Array;
 import com.yahoo.document.datatypes.IntegerFieldValue;
+import com.yahoo.document.datatypes.LongFieldValue;
 import com.yahoo.document.datatypes.StringFieldValue;
 import com.yahoo.document.datatypes.Struct;
+import com.yahoo.document.update.FieldUpdate;
 import com.yahoo.language.simple.SimpleLinguistics;
 import com.yahoo.vespa.indexinglanguage.SimpleTestAdapter;
+import com.yahoo.vespa.indexinglanguage.parser.ParseException;
 import org.junit.Test;
 
 import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
@@ -237,6 +248,100 @@ public class ScriptTestCase {
         assertEquals("595", adapter.values.get("location_zcurve").toString());
     }
 
+    @Test
+    public void requireThatIndependentStatementsAreExecutedConcurrently() {
+        SimpleTestAdapter adapter = new SimpleTestAdapter(new Field("a", DataType.STRING),
+                                                          new Field("b", DataType.STRING),
+                                                          new Field("a_out", DataType.STRING),
+                                                          new Field("b_out", DataType.STRING),
+                                                          new Field("c_out", DataType.STRING));
+        adapter.setValue("a", new StringFieldValue("A"));
+        adapter.setValue("b", new StringFieldValue("B"));
+        CyclicBarrier barrier = new CyclicBarrier(2); // Only passed if the two first statements run concurrently
+        var script = newScript(newStatement(new ClearStateExpression(), new InputExpression("a"),
+                                            new AwaitExpression(barrier), new LowerCaseExpression(),
+                                            new AttributeExpression("a_out")),
+                               newStatement(new ClearStateExpression(), new InputExpression("b"),
+                                            new AwaitExpression(barrier), new LowerCaseExpression(),
+                                            new AttributeExpression("b_out")),
+                               newStatement(new ClearStateExpression(), new InputExpression("a_out"),
+                                            new AttributeExpression("c_out")));
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            script.setExecutor(executor).execute(adapter);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+        assertEquals(new StringFieldValue("a"), adapter.getInputValue("a_out"));
+        assertEquals(new StringFieldValue("b"), adapter.getInputValue("b_out"));
+        assertEquals(new StringFieldValue("a"), adapter.getInputValue("c_out"));
+    }
+
+    @Test
+    public void requireThatDependentStatementsAreExecutedInSequenceWithExecutor() {
+        SimpleTestAdapter adapter = new SimpleTestAdapter(new Field("out", DataType.INT));
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            newScript(newStatement(new ConstantExpression(new IntegerFieldValue(69)),
+                                   new SetVarExpression("tmp")),
+                      newStatement(new GetVarExpression("tmp"),
+                                   new AttributeExpression("out"))).setExecutor(executor).execute(adapter);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+        assertEquals(new IntegerFieldValue(69), adapter.getInputValue("out"));
+    }
+
+    @Test
+    public void requireThatGuardedStatementsAreSkippedByUpdateWithExecutor() throws ParseException {
+        DocumentType docType = new DocumentType("my_input");
+        docType.addField(new Field("my_str", DataType.STRING));
+        docType.addField(new Field("my_lng", DataType.LONG));
+        docType.addField(new Field("my_int", DataType.INT));
+        DocumentUpdate update = new DocumentUpdate(docType, "id:scheme:my_input::");
+        update.addFieldUpdate(FieldUpdate.createAssign(docType.getField("my_str"), new StringFieldValue("69")));
+
+        var script = (ScriptExpression)Expression.fromString("{ clear_state | guard { input my_str | to_long | attribute my_lng }; " +
+                                                              "clear_state | guard { now | attribute my_int }; }");
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            assertNotNull(update = Expression.execute(script.setExecutor(executor), update));
+        }
+        finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, update.fieldUpdates().size());
+        FieldUpdate fieldUpdate = update.fieldUpdates().iterator().next();
+        assertEquals(docType.getField("my_lng"), fieldUpdate.getField());
+        assertEquals(new LongFieldValue(69), fieldUpdate.getValueUpdate(0).getValue());
+    }
+
+    @Test
+    public void requireThatConcurrentStatementsShareTheCache() {
+        SimpleTestAdapter adapter = new SimpleTestAdapter(new Field("a", DataType.STRING),
+                                                          new Field("b", DataType.STRING));
+        adapter.setValue("a", new StringFieldValue("A"));
+        adapter.setValue("b", new StringFieldValue("B"));
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        AtomicInteger computations = new AtomicInteger();
+        var script = newScript(newStatement(new ClearStateExpression(), new InputExpression("a"),
+                                            new AwaitExpression(barrier), new ComputeCacheExpression(computations)),
+                               newStatement(new ClearStateExpression(), new InputExpression("b"),
+                                            new AwaitExpression(barrier), new ComputeCacheExpression(computations)));
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        ExecutionContext context = new ExecutionContext(adapter);
+        try {
+            script.setExecutor(executor).execute(context);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, computations.get());
+        assertEquals(1, context.getCachedValue("computed"));
+    }
+
     private static ScriptExpression newScript(StatementExpression... args) {
         return new ScriptExpression(args);
     }
@@ -254,6 +359,49 @@ public class ScriptTestCase {
 
     }
 
+    private static class AwaitExpression extends Expression {
+
+        private final CyclicBarrier barrier;
+
+        AwaitExpression(CyclicBarrier barrier) {
+            this.barrier = barrier;
+        }
+
+        @Override
+        protected void doExecute(ExecutionContext context) {
+            try {
+                barrier.await(60, TimeUnit.SECONDS);
+            }
+            catch (Exception e) {
+                throw new IllegalStateException("Statements were not executed concurrently", e);
+            }
+        }
+
+    }
+
+    private static class ComputeCacheExpression extends Expression {
+
+        private final AtomicInteger computations;
+
+        ComputeCacheExpression(AtomicInteger computations) {
+            this.computations = computations;
+        }
+
+        @Override
+        protected void doExecute(ExecutionContext context) {
+            context.getCache().computeIfAbsent("computed", __ -> {
+                try {
+                    Thread.sleep(100); // Give the other statement time to request the same value
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return computations.incrementAndGet();
+            });
+        }
+
+    }
+
     private static class PutCacheExpression extends Expression {
 
         private final String keyToSet;
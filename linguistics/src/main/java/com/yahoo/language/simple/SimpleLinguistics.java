@@ -33,6 +33,7 @@ public class SimpleLinguistics implements Linguistics {
     private final CharacterClasses characterClasses;
     private final GramSplitter gramSplitter;
     private final SpecialTokenRegistry specialTokenRegistry = new SpecialTokenRegistry(List.of());
+    private final TokenCache tokenCache = new TokenCache();
 
     @Inject
     public SimpleLinguistics() {
@@ -47,7 +48,7 @@ public class SimpleLinguistics implements Linguistics {
     public Stemmer getStemmer() { return new StemmerImpl(getTokenizer()); }
 
     @Override
-    public Tokenizer getTokenizer() { return new SimpleTokenizer(normalizer, transformer, specialTokenRegistry); }
+    public Tokenizer getTokenizer() { return new SimpleTokenizer(normalizer, transformer, specialTokenRegistry, tokenCache); }
 
     @Override
     public Normalizer getNormalizer() { return normalizer; }
@@ -10,7 +10,16 @@ public class SimpleNormalizer implements Normalizer {
 
     @Override
     public String normalize(String input) {
+        if (isAscii(input)) return input; // ASCII is always in NFKC
         return java.text.Normalizer.normalize(input, java.text.Normalizer.Form.NFKC);
     }
 
+    /** Returns whether the given string contains only ASCII characters */
+    static boolean isAscii(String input) {
+        for (int i = 0; i < input.length(); i++) {
+            if (input.charAt(i) >= 0x80) return false;
+        }
+        return true;
+    }
+
 }
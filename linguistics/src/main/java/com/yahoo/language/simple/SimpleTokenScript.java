@@ -8,7 +8,20 @@ import com.yahoo.language.process.TokenScript;
 
 class SimpleTokenScript {
 
+    /** The scripts of the ASCII code points, which make up most of the input in many cases */
+    private static final TokenScript[] asciiScripts = new TokenScript[128];
+
+    static {
+        for (int codePoint = 0; codePoint < asciiScripts.length; codePoint++)
+            asciiScripts[codePoint] = resolve(codePoint);
+    }
+
     static TokenScript valueOf(int codePoint) {
+        if (codePoint >= 0 && codePoint < asciiScripts.length) return asciiScripts[codePoint];
+        return resolve(codePoint);
+    }
+
+    private static TokenScript resolve(int codePoint) {
         return switch(Character.UnicodeScript.of(codePoint))
         {
             case COMMON -> TokenScript.COMMON;
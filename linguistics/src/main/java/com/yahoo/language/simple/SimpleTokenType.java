@@ -8,7 +8,20 @@ import com.yahoo.language.process.TokenType;
  */
 public class SimpleTokenType {
 
+    /** The types of the ASCII code points, which make up most of the input in many cases */
+    private static final TokenType[] asciiTypes = new TokenType[128];
+
+    static {
+        for (int codePoint = 0; codePoint < asciiTypes.length; codePoint++)
+            asciiTypes[codePoint] = resolve(codePoint);
+    }
+
     public static TokenType valueOf(int codePoint) {
+        if (codePoint >= 0 && codePoint < asciiTypes.length) return asciiTypes[codePoint];
+        return resolve(codePoint);
+    }
+
+    private static TokenType resolve(int codePoint) {
         switch (Character.getType(codePoint)) {
             case Character.NON_SPACING_MARK:
                 // "combining grave accent"
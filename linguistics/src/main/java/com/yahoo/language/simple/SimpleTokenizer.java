@@ -24,6 +24,9 @@ import java.util.logging.Level;
  * <p>A tokenizer which splits on whitespace, normalizes and transforms using the given implementations
  * and stems using the kstem algorithm.</p>
  *
+ * <p>Processed token strings are cached per thread, so the normalizer and transformer given to this
+ * must be deterministic.</p>
+ *
  * <p>This is not multithread safe.</p>
  *
  * @author Mathias Mølster Lidal
@@ -38,6 +41,7 @@ public class SimpleTokenizer implements Tokenizer {
     private final Transformer transformer;
     private final KStemmer stemmer = new KStemmer();
     private final SpecialTokenRegistry specialTokenRegistry;
+    private final TokenCache tokenCache; // null if processed tokens are not cached
 
     public SimpleTokenizer() {
         this(new SimpleNormalizer(), new SimpleTransformer());
@@ -51,16 +55,28 @@ public class SimpleTokenizer implements Tokenizer {
         this(normalizer, transformer, new SpecialTokenRegistry(List.of()));
     }
 
+    /** Creates a tokenizer which does not cache processed tokens. */
     public SimpleTokenizer(Normalizer normalizer, Transformer transformer, SpecialTokenRegistry specialTokenRegistry) {
+        this(normalizer, transformer, specialTokenRegistry, null);
+    }
+
+    /**
+     * Creates a tokenizer sharing a token cache with other tokenizers using the same normalizer and transformer,
+     * or not caching processed tokens if the given cache is null.
+     */
+    SimpleTokenizer(Normalizer normalizer, Transformer transformer, SpecialTokenRegistry specialTokenRegistry,
+                    TokenCache tokenCache) {
         this.normalizer = normalizer;
         this.transformer = transformer;
         this.specialTokenRegistry = specialTokenRegistry;
+        this.tokenCache = tokenCache;
     }
 
     /** Tokenize the input, applying the transform of this to each token string. */
     @Override
     public Iterable<Token> tokenize(String input, LinguisticsParameters parameters) {
-        return tokenize(input, token -> processToken(token, parameters));
+        if (tokenCache == null) return tokenize(input, token -> processToken(token, parameters));
+        return tokenize(input, token -> tokenCache.get(token, parameters, t -> processToken(t, parameters)));
     }
 
     /** Tokenize the input, and apply the given transform to each token string. */
@@ -19,6 +19,7 @@ public class SimpleTransformer implements Transformer {
 
     @Override
     public String accentDrop(String input, Language language) {
+        if (SimpleNormalizer.isAscii(input)) return input; // No accents to drop
         return pattern.matcher(Normalizer.normalize(input, Normalizer.Form.NFD)).replaceAll("");
     }
 
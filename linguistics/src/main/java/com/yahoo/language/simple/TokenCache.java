@@ -0,0 +1,58 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.language.simple;
+
+import com.yahoo.language.process.LinguisticsParameters;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * A bounded per-thread cache from the surface form of tokens to their processed (normalized, transformed
+ * and stemmed) form. Word frequencies in natural language are heavily skewed, so most tokens are
+ * served from this once it is warm.
+ * <p>
+ * This is thread safe, as each thread uses a separate cache.
+ */
+final class TokenCache {
+
+    /** The default max number of tokens to cache per thread */
+    static final int defaultMaxSize = 2048;
+
+    /** Tokens longer than this are always processed, as they are unlikely to recur */
+    static final int maxTokenLength = 64;
+
+    private final ThreadLocal<Map<Key, String>> tokens;
+
+    TokenCache() {
+        this(defaultMaxSize);
+    }
+
+    TokenCache(int maxSize) {
+        this.tokens = ThreadLocal.withInitial(() -> new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, String> eldest) { return size() > maxSize; }
+        });
+    }
+
+    /** Returns the processed form of the given token, using the given processor if it is not cached */
+    String get(String token, LinguisticsParameters parameters, Function<String, String> processor) {
+        if (token.length() > maxTokenLength) return processor.apply(token);
+
+        Map<Key, String> tokens = this.tokens.get();
+        Key key = new Key(token, parameters);
+        String processed = tokens.get(key);
+        if (processed == null) {
+            processed = processor.apply(token);
+            if (processed != null)
+                tokens.put(key, processed);
+        }
+        return processed;
+    }
+
+    /** Returns the number of tokens cached for the calling thread */
+    int size() { return tokens.get().size(); }
+
+    private record Key(String token, LinguisticsParameters parameters) {}
+
+}
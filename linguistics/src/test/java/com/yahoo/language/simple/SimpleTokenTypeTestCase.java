@@ -32,6 +32,18 @@ public class SimpleTokenTypeTestCase {
         assertEquals(TokenType.ALPHABETIC, tokenType('\uD800', '\uDFC8'));
     }
 
+    @Test
+    public void testAsciiTypes() {
+        assertEquals(TokenType.ALPHABETIC, tokenType('Z'));
+        assertEquals(TokenType.NUMERIC, tokenType('7'));
+        assertEquals(TokenType.SPACE, tokenType(' '));
+        assertEquals(TokenType.UNKNOWN, tokenType('\t'));
+        assertEquals(TokenType.UNKNOWN, tokenType('\u007f'));
+        assertEquals(TokenType.PUNCTUATION, tokenType('_'));
+        assertEquals(TokenType.SYMBOL, tokenType('^'));
+        assertEquals(TokenType.SYMBOL, tokenType('+'));
+    }
+
     private static TokenType tokenType(char c) {
         return SimpleTokenType.valueOf(c);
     }
@@ -0,0 +1,60 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.language.simple;
+
+import com.yahoo.language.Language;
+import com.yahoo.language.process.LinguisticsParameters;
+import com.yahoo.language.process.SpecialTokenRegistry;
+import com.yahoo.language.process.StemMode;
+import com.yahoo.language.process.Token;
+
+import java.util.List;
+
+/**
+ * Measures tokenization of multilingual text with and without the token cache.
+ */
+public class SimpleTokenizerMicroBenchmark {
+
+    private static final List<String> texts = List.of(
+            "The quick brown fox jumps over the lazy dog while the running dogs were barking loudly at the foxes.",
+            "Search engines index documents, process queries and rank the matching documents by relevance.",
+            "Blåbærsyltetøy på brødskiva er godt, og søknadsfristen for studentboligene går ut på fredag.",
+            "Die Straßenbahn fährt über die Brücke, während Müller und Schäfer im Café Kuchen essen.",
+            "L'été dernier, nous sommes allés à la plage près de la forêt où les élèves étudiaient.",
+            "Быстрая коричневая лиса прыгает через ленивую собаку, пока собаки лают на лис.",
+            "Η γρήγορη καφέ αλεπού πηδάει πάνω από τον τεμπέλη σκύλο.",
+            "Vespa 8.0 supports 128-dimensional vectors, e.g. [0.1, 0.2] -> 3x faster queries!");
+
+    private static int tokenize(SimpleTokenizer tokenizer, LinguisticsParameters parameters, int rounds) {
+        int tokens = 0;
+        for (int i = 0; i < rounds; i++) {
+            for (String text : texts) {
+                for (Token token : tokenizer.tokenize(text, parameters))
+                    tokens += token.getTokenString().length();
+            }
+        }
+        return tokens;
+    }
+
+    private static void run(String name, SimpleTokenizer tokenizer, LinguisticsParameters parameters) {
+        tokenize(tokenizer, parameters, 20000); // warmup
+        long start = System.nanoTime();
+        int rounds = 50000;
+        int tokens = tokenize(tokenizer, parameters, rounds);
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("%-10s %8.2f us per text (checksum %d)%n",
+                          name, elapsed / 1000.0 / rounds / texts.size(), tokens);
+    }
+
+    public static void main(String[] args) {
+        var parameters = new LinguisticsParameters(Language.ENGLISH, StemMode.ALL, true, true);
+        for (int i = 0; i < 3; i++) {
+            run("uncached", tokenizer(new TokenCache(0)), parameters);
+            run("cached", tokenizer(new TokenCache()), parameters);
+        }
+    }
+
+    private static SimpleTokenizer tokenizer(TokenCache cache) {
+        return new SimpleTokenizer(new SimpleNormalizer(), new SimpleTransformer(), new SpecialTokenRegistry(List.of()), cache);
+    }
+
+}
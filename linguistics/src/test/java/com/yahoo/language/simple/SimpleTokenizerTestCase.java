@@ -3,6 +3,7 @@ package com.yahoo.language.simple;
 
 import com.yahoo.language.Language;
 import com.yahoo.language.process.AbstractTokenizerTestCase;
+import com.yahoo.language.process.LinguisticsParameters;
 import com.yahoo.language.process.StemMode;
 import com.yahoo.language.process.Token;
 import com.yahoo.language.process.TokenScript;
@@ -60,6 +61,33 @@ public class SimpleTokenizerTestCase extends AbstractTokenizerTestCase {
         tester.assertTokens(emoji1 + emoji2, emoji1, emoji2);
     }
 
+    @Test
+    public void testCachedTokensDependOnParameters() {
+        TokenizerTester tester = new TokenizerTester();
+        for (int i = 0; i < 2; i++) { // Second round is served from the token cache
+            tester.setStemMode(StemMode.ALL).setLowercase(true).setAccentDrop(false);
+            tester.assertTokens("Offended Caf\u00E9", "offend", " ", "caf\u00E9");
+            tester.setStemMode(StemMode.NONE);
+            tester.assertTokens("Offended Caf\u00E9", "offended", " ", "caf\u00E9");
+            tester.setLowercase(false).setAccentDrop(true);
+            tester.assertTokens("Offended Caf\u00E9", "Offended", " ", "Cafe");
+        }
+    }
+
+    @Test
+    public void testTokenCacheIsBounded() {
+        TokenCache cache = new TokenCache(10);
+        var parameters = new LinguisticsParameters(Language.ENGLISH, StemMode.NONE, false, true);
+        for (int i = 0; i < 100; i++)
+            assertEquals("t" + i, cache.get("T" + i, parameters, String::toLowerCase));
+        assertEquals(10, cache.size());
+        assertEquals("t99", cache.get("T99", parameters, token -> "not cached"));
+        assertEquals("not cached", cache.get("T0", parameters, token -> "not cached"));
+        String longToken = "x".repeat(TokenCache.maxTokenLength + 1);
+        assertEquals("processed", cache.get(longToken, parameters, token -> "processed"));
+        assertEquals("processed again", cache.get(longToken, parameters, token -> "processed again"));
+    }
+
     @Test public void testTokenizeScripts() {
         TokenizerTester tester = new TokenizerTester().setStemMode(StemMode.NONE);
 
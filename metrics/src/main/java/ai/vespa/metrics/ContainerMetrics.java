@@ -111,6 +111,9 @@ public enum ContainerMetrics implements VespaMetrics {
     HTTPAPI_QUEUED_BYTES("httpapi_queued_bytes", Unit.BYTE, "Total operation bytes queued for execution in /document/v1 API handler"),
     HTTPAPI_QUEUED_AGE("httpapi_queued_age", Unit.SECOND, "Age in seconds of the oldest operation in the queue for /document/v1 API handler"),
     HTTPAPI_MBUS_WINDOW_SIZE("httpapi_mbus_window_size", Unit.OPERATION, "The window size of Messagebus's dynamic throttle policy for /document/v1 API handler"),
+    HTTPAPI_VISIT_DOCUMENTS("httpapi_visit_documents", Unit.DOCUMENT, "Documents written to streamed visit responses from /document/v1 API handler"),
+    HTTPAPI_VISIT_BYTES("httpapi_visit_bytes", Unit.BYTE, "Bytes written to streamed visit responses from /document/v1 API handler"),
+    HTTPAPI_VISIT_PENDING_BYTES("httpapi_visit_pending_bytes", Unit.BYTE, "Bytes of streamed visit responses from /document/v1 API handler not yet accepted by the network layer"),
 
     MEM_HEAP_TOTAL("mem.heap.total", Unit.BYTE, "Total available heap memory"),
     MEM_HEAP_FREE("mem.heap.free", Unit.BYTE, "Free heap memory"),
@@ -146,6 +149,8 @@ public enum ContainerMetrics implements VespaMetrics {
     DOCUMENTS_TARGET_TOTAL("documents_target_total", Unit.DOCUMENT, "The target number of total documents to be evaluated when all data is in sync"),
     JDISC_RENDER_LATENCY("jdisc.render.latency", Unit.NANOSECOND, "The time used by the container to render responses"),
     QUERY_ITEM_COUNT("query_item_count", Unit.ITEM, "The number of query items (terms, phrases, etc.)"),
+    YQL_PARSE_CACHE_HITS("yql.parse_cache.hits", Unit.OPERATION, "Number of YQL queries for which a previously parsed program was reused"),
+    YQL_PARSE_CACHE_MISSES("yql.parse_cache.misses", Unit.OPERATION, "Number of YQL queries which had to be parsed"),
     DOCPROC_PROC_TIME("docproc.proctime", Unit.MILLISECOND, "Time spent processing document"),
     DOCPROC_DOCUMENTS("docproc.documents", Unit.DOCUMENT, "Number of processed documents"),
     
@@ -175,6 +175,9 @@ public class VespaMetricSet {
         addMetric(metrics, ContainerMetrics.HTTPAPI_QUEUED_BYTES.last());
         addMetric(metrics, ContainerMetrics.HTTPAPI_QUEUED_AGE.last());
         addMetric(metrics, ContainerMetrics.HTTPAPI_MBUS_WINDOW_SIZE.last());
+        addMetric(metrics, ContainerMetrics.HTTPAPI_VISIT_DOCUMENTS.rate());
+        addMetric(metrics, ContainerMetrics.HTTPAPI_VISIT_BYTES.rate());
+        addMetric(metrics, ContainerMetrics.HTTPAPI_VISIT_PENDING_BYTES.last());
 
         addMetric(metrics, ContainerMetrics.MEM_HEAP_TOTAL.average());
         addMetric(metrics, ContainerMetrics.MEM_HEAP_FREE.average());
@@ -324,6 +327,8 @@ public class VespaMetricSet {
         addMetric(metrics, ContainerMetrics.DOCUMENTS_TARGET_TOTAL.count());
         addMetric(metrics, ContainerMetrics.JDISC_RENDER_LATENCY, EnumSet.of(min, max, count, sum, last, average)); // TODO: Vespa 9: Remove last, average
         addMetric(metrics, ContainerMetrics.QUERY_ITEM_COUNT, EnumSet.of(max, sum, count));
+        addMetric(metrics, ContainerMetrics.YQL_PARSE_CACHE_HITS.rate());
+        addMetric(metrics, ContainerMetrics.YQL_PARSE_CACHE_MISSES.rate());
         addMetric(metrics, ContainerMetrics.TOTAL_HITS_PER_QUERY, EnumSet.of(sum, count, max, ninety_five_percentile, ninety_nine_percentile));
         addMetric(metrics, ContainerMetrics.EMPTY_RESULTS.rate());
         addMetric(metrics, ContainerMetrics.REQUESTS_OVER_QUOTA, EnumSet.of(rate, count));
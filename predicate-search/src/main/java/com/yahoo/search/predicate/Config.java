@@ -6,6 +6,7 @@ import com.yahoo.api.annotations.Beta;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 /**
  * Configuration for a {@link PredicateIndexBuilder}/{@link PredicateIndex} instance.
@@ -42,6 +43,14 @@ public class Config {
         return new Config(arity, lowerBound, upperBound, useConjunctionAlgorithm);
     }
 
+    static Config fromByteBuffer(ByteBuffer buffer) {
+        int arity = buffer.getInt();
+        long lowerBound = buffer.getLong();
+        long upperBound = buffer.getLong();
+        boolean useConjunctionAlgorithm = buffer.get() != 0;
+        return new Config(arity, lowerBound, upperBound, useConjunctionAlgorithm);
+    }
+
     public static class Builder {
         private int arity = 8;
         private long lowerBound = Long.MIN_VALUE;
@@ -18,12 +18,19 @@ import com.yahoo.search.predicate.index.conjunction.ConjunctionHit;
 import com.yahoo.search.predicate.index.conjunction.ConjunctionIndex;
 import com.yahoo.search.predicate.serialization.SerializationHelper;
 
+import java.io.BufferedOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Stream;
 
@@ -53,6 +60,10 @@ import java.util.stream.Stream;
 public class PredicateIndex {
 
     private static final int SERIALIZATION_FORMAT_VERSION = 3;
+    // Distinct from the stream format version, so neither format is read as the other
+    private static final int MAPPABLE_SERIALIZATION_FORMAT_VERSION = 1003;
+    // Partitions smaller than this are not worth the overhead of searching them in parallel
+    private static final int MIN_PARTITION_SIZE = 10000;
 
     private final PredicateRangeTermExpander expander;
     private final int[] internalToExternalIdMapping;
@@ -157,6 +168,77 @@ public class PredicateIndex {
         );
     }
 
+    /**
+     * Writes this index to a file which can be memory mapped by {@link #fromMappedFile(Path)}.
+     * The file must be smaller than 2Gb.
+     */
+    public void writeToMappableFile(Path file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(MAPPABLE_SERIALIZATION_FORMAT_VERSION);
+            config.writeToOutputStream(out);
+            SerializationHelper.writeIntArray(internalToExternalIdMapping, out);
+            SerializationHelper.writeByteArray(minFeatureIndex, out);
+            SerializationHelper.writeShortArray(intervalEnds, out);
+            out.writeInt(highestIntervalEnd);
+            SerializationHelper.writeIntArray(zeroConstraintDocuments, out);
+            intervalIndex.writeToOutputStream(out);
+            boundsIndex.writeToOutputStream(out);
+            conjunctionIntervalIndex.writeToOutputStream(out);
+            conjunctionIndex.writeToOutputStream(out);
+            while (out.size() % Integer.BYTES != 0) {
+                out.writeByte(0); // Align the interval store, which is read in place
+            }
+            intervalStore.writeToMappableOutputStream(out);
+        }
+    }
+
+    /**
+     * Creates an index from a file written by {@link #writeToMappableFile(Path)}.
+     * The file is memory mapped, and the interval store, which is usually the largest part of the index,
+     * is read in place rather than copied to the heap, so its pages can be shared between processes.
+     * The rest of the index is bulk copied from the mapped file to the heap.
+     * The file must not be modified while the returned index is in use.
+     */
+    public static PredicateIndex fromMappedFile(Path file) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Cannot map " + file + " of " + channel.size() + " bytes, max is 2Gb");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()); // Stays valid after close
+        }
+        int version = buffer.getInt();
+        if (version != MAPPABLE_SERIALIZATION_FORMAT_VERSION) {
+            throw new IllegalArgumentException(String.format(Locale.ROOT,
+                    "Invalid serialization format version. Expected %d, was %d.", MAPPABLE_SERIALIZATION_FORMAT_VERSION, version));
+        }
+        Config config = Config.fromByteBuffer(buffer);
+        int[] internalToExternalIdMapping = SerializationHelper.readIntArray(buffer);
+        byte[] minFeatureIndex = SerializationHelper.readByteArray(buffer);
+        short[] intervalEnds = SerializationHelper.readShortArray(buffer);
+        int highestIntervalEnd = buffer.getInt();
+        int[] zeroConstraintDocuments = SerializationHelper.readIntArray(buffer);
+        SimpleIndex intervalIndex = SimpleIndex.fromByteBuffer(buffer);
+        SimpleIndex boundsIndex = SimpleIndex.fromByteBuffer(buffer);
+        SimpleIndex conjunctionIntervalIndex = SimpleIndex.fromByteBuffer(buffer);
+        ConjunctionIndex conjunctionIndex = ConjunctionIndex.fromByteBuffer(buffer);
+        buffer.position((buffer.position() + Integer.BYTES - 1) / Integer.BYTES * Integer.BYTES);
+        PredicateIntervalStore intervalStore = PredicateIntervalStore.fromMappedBuffer(buffer);
+        return new PredicateIndex(
+                config,
+                internalToExternalIdMapping,
+                minFeatureIndex,
+                intervalEnds,
+                highestIntervalEnd,
+                intervalIndex,
+                boundsIndex,
+                conjunctionIntervalIndex,
+                intervalStore,
+                conjunctionIndex,
+                zeroConstraintDocuments
+        );
+    }
+
     @Beta
     public class Searcher {
         private final byte[] nPostingListsForDocument;
@@ -174,6 +256,54 @@ public class PredicateIndex {
          * @return A stream of hits.
          */
         public Stream<Hit> search(PredicateQuery query) {
+            List<ConjunctionHit> conjunctionHits = conjunctionIndexSearcher.search(query);
+            List<PostingList> postingLists = createPostingLists(query, conjunctionHits);
+            countPostingListsPerDocument(postingLists);
+            return new PredicateSearch(
+                    postingLists, nPostingListsForDocument, minFeatureIndex, intervalEnds, highestIntervalEnd).stream()
+                    // Map to external id. Note that internal id for first document is 1.
+                    .map(hit -> new Hit(internalToExternalIdMapping[hit.getDocId()], hit.getSubquery()));
+        }
+
+        /**
+         * Retrieves the hits for the given query by searching partitions of the document id space in parallel.
+         * All hits are collected before this returns, and are ordered as by {@link #search(PredicateQuery)}.
+         *
+         * @param query Specifies the boolean variables that are true.
+         * @param pool The pool searching the partitions.
+         * @param partitions The number of partitions to split the document id space into.
+         * @return A stream of hits.
+         */
+        public Stream<Hit> search(PredicateQuery query, ForkJoinPool pool, int partitions) {
+            if (partitions < 1) throw new IllegalArgumentException("partitions must be positive, was " + partitions);
+            int nDocuments = internalToExternalIdMapping.length;
+            int partitionSize = Math.max((nDocuments + partitions - 1) / partitions, MIN_PARTITION_SIZE);
+            if (partitionSize >= nDocuments) return search(query);
+
+            List<ConjunctionHit> conjunctionHits = conjunctionIndexSearcher.search(query);
+            List<PostingList> postingLists = createPostingLists(query, conjunctionHits);
+            countPostingListsPerDocument(postingLists);
+            List<ForkJoinTask<List<Hit>>> tasks = new ArrayList<>();
+            for (int begin = 0; begin < nDocuments; begin += partitionSize) {
+                // Posting lists are stateful, so each partition needs its own
+                List<PostingList> partitionPostingLists = begin == 0 ? postingLists : createPostingLists(query, conjunctionHits);
+                int beginDocId = begin;
+                int endDocId = Math.min(begin + partitionSize, nDocuments);
+                tasks.add(pool.submit(() -> new PredicateSearch(partitionPostingLists, nPostingListsForDocument,
+                                                                minFeatureIndex, intervalEnds, highestIntervalEnd,
+                                                                beginDocId, endDocId).stream()
+                        .map(hit -> new Hit(internalToExternalIdMapping[hit.getDocId()], hit.getSubquery()))
+                        .toList()));
+            }
+            // Wait for all partitions, as the next search will overwrite the posting list counts
+            List<Hit> hits = new ArrayList<>();
+            for (ForkJoinTask<List<Hit>> task : tasks) {
+                hits.addAll(task.join());
+            }
+            return hits.stream();
+        }
+
+        private List<PostingList> createPostingLists(PredicateQuery query, List<ConjunctionHit> conjunctionHits) {
             ArrayList<PostingList> postingLists = new ArrayList<>();
             for (PredicateQuery.Feature feature : query.getFeatures()) {
                 addIntervalPostingList(feature.featureHash, feature.subqueryBitmap, postingLists);
@@ -186,16 +316,15 @@ public class PredicateIndex {
                         (featureHash, value) -> addBoundsPostingList(featureHash, value, feature.subqueryBitmap, postingLists));
             }
             addCompressedZStarPostingList(postingLists);
-            addConjunctionPostingLists(query, postingLists);
+            addConjunctionPostingLists(conjunctionHits, postingLists);
             addZeroConstraintPostingList(postingLists);
+            return postingLists;
+        }
 
+        private void countPostingListsPerDocument(List<PostingList> postingLists) {
             CachedPostingListCounter counter = postingListCounter.get();
             counter.registerUsage(postingLists);
             counter.countPostingListsPerDocument(postingLists, nPostingListsForDocument);
-            return new PredicateSearch(
-                    postingLists, nPostingListsForDocument, minFeatureIndex, intervalEnds, highestIntervalEnd).stream()
-                    // Map to external id. Note that internal id for first document is 1.
-                    .map(hit -> new Hit(internalToExternalIdMapping[hit.getDocId()], hit.getSubquery()));
         }
 
         private void addCompressedZStarPostingList(List<PostingList> postingLists) {
@@ -220,8 +349,7 @@ public class PredicateIndex {
             }
         }
 
-        private void addConjunctionPostingLists(PredicateQuery query, List<PostingList> postingLists) {
-            List<ConjunctionHit> hits = conjunctionIndexSearcher.search(query);
+        private void addConjunctionPostingLists(List<ConjunctionHit> hits, List<PostingList> postingLists) {
             for (ConjunctionHit hit : hits) {
                 SimpleIndex.Entry e = conjunctionIntervalIndex.getPostingList(hit.conjunctionId);
                 if (e != null) {
@@ -230,7 +358,7 @@ public class PredicateIndex {
             }
         }
 
-        private void addZeroConstraintPostingList(ArrayList<PostingList> postingLists) {
+        private void addZeroConstraintPostingList(List<PostingList> postingLists) {
             if (zeroConstraintDocuments.length > 0) {
                 postingLists.add(new ZeroConstraintPostingList(zeroConstraintDocuments));
             }
@@ -0,0 +1,277 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.predicate;
+
+import com.yahoo.api.annotations.Beta;
+import com.yahoo.document.predicate.Predicate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+/**
+ * A {@link PredicateIndex} which can be updated after it is created.
+ * <p>
+ * Documents indexed or removed using {@link #indexDocument(int, Predicate)} and {@link #removeDocument(int)}
+ * become visible to searchers on the next {@link #commit()}. A commit indexes the documents added since the
+ * previous commit as a new segment, and marks documents which are replaced or removed as deleted in the segments
+ * holding their previous version, so the cost of a commit is proportional to the size of the change and the
+ * number of deleted documents in the segments it touches, not the size of the index. When there are more than
+ * a configured number of segments, the newest segments are merged in the background, which also drops deleted documents.
+ * </p><p>
+ * Searchers use an immutable snapshot of the segments and the documents deleted from each, which is replaced
+ * on each commit and merge, so searches are never blocked by updates, and each search sees each document at most once.
+ * As with {@link PredicateIndex}, this is thread-safe, but a {@link Searcher} is not.
+ * Each thread <strong>must</strong> use its own searcher.
+ * </p><p>
+ * The predicates of all documents are kept in memory, as they are needed to rebuild merged segments.
+ * </p>
+ *
+ * @deprecated See <a href="https://docs.vespa.ai/en/reference/release-notes/vespa9.html">Vespa 9 Release Notes</a>
+ */
+@Beta
+@Deprecated(forRemoval = true, since = "8")
+public class UpdatablePredicateIndex {
+
+    private final Config config;
+    private final int maxSegments;
+    private final Executor mergeExecutor;
+    private final AtomicReference<List<LiveSegment>> segments = new AtomicReference<>(List.of());
+
+    private final Object monitor = new Object();
+    private final Map<Integer, Predicate> pendingDocuments = new LinkedHashMap<>();
+    private final Set<Integer> pendingRemovals = new HashSet<>();
+    private boolean merging = false;
+
+    /**
+     * Creates an empty index which merges segments in the thread committing changes.
+     *
+     * @param config configuration for the segments of this index
+     */
+    public UpdatablePredicateIndex(Config config) {
+        this(config, 8, Runnable::run);
+    }
+
+    /**
+     * Creates an empty index.
+     *
+     * @param config        configuration for the segments of this index
+     * @param maxSegments   the number of segments above which the newest segments are merged
+     * @param mergeExecutor the executor running segment merges
+     */
+    public UpdatablePredicateIndex(Config config, int maxSegments, Executor mergeExecutor) {
+        if (maxSegments < 1) throw new IllegalArgumentException("maxSegments must be positive, was " + maxSegments);
+        this.config = config;
+        this.maxSegments = maxSegments;
+        this.mergeExecutor = mergeExecutor;
+    }
+
+    /**
+     * Indexes a predicate with the given id, replacing any predicate previously indexed with that id.
+     * The change becomes visible to searchers on the next {@link #commit()}.
+     *
+     * @param docId     a 32-bit document id, returned in the Hit objects when the predicate matches
+     * @param predicate the predicate to index
+     */
+    public void indexDocument(int docId, Predicate predicate) {
+        synchronized (monitor) {
+            pendingRemovals.remove(docId);
+            pendingDocuments.put(docId, predicate);
+        }
+    }
+
+    /**
+     * Removes the predicate with the given id, if any.
+     * The change becomes visible to searchers on the next {@link #commit()}.
+     */
+    public void removeDocument(int docId) {
+        synchronized (monitor) {
+            pendingDocuments.remove(docId);
+            pendingRemovals.add(docId);
+        }
+    }
+
+    /** Makes all changes made since the last commit visible to new searches */
+    public void commit() {
+        synchronized (monitor) {
+            List<LiveSegment> current = segments.get();
+            Map<Integer, Set<Integer>> deletions = new HashMap<>(); // By index in current
+            for (int docId : pendingDocuments.keySet())
+                addDeletion(docId, current, deletions);
+            for (int docId : pendingRemovals)
+                addDeletion(docId, current, deletions);
+
+            List<LiveSegment> updated = new ArrayList<>(current);
+            deletions.forEach((index, deleted) -> updated.set(index, updated.get(index).withDeleted(deleted)));
+            if ( ! pendingDocuments.isEmpty())
+                updated.add(new LiveSegment(new Segment(config, pendingDocuments), Set.of()));
+            segments.set(List.copyOf(updated)); // New versions and deletions of old versions are visible at once
+            pendingDocuments.clear();
+            pendingRemovals.clear();
+            mergeIfNeeded();
+        }
+    }
+
+    /** Rebuilds the posting list cache of all current segments. See {@link PredicateIndex#rebuildPostingListCache()}. */
+    public void rebuildPostingListCache() {
+        for (LiveSegment segment : segments.get())
+            segment.segment().index.rebuildPostingListCache();
+    }
+
+    /** Returns the number of segments currently searched */
+    public int getSegmentCount() {
+        return segments.get().size();
+    }
+
+    /** Returns the number of documents currently visible to searches */
+    public int getDocumentCount() {
+        return segments.get().stream().mapToInt(LiveSegment::liveCount).sum();
+    }
+
+    /** Create a new searcher. */
+    public Searcher searcher() {
+        return new Searcher();
+    }
+
+    private static void addDeletion(int docId, List<LiveSegment> segments, Map<Integer, Set<Integer>> deletions) {
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            if (segments.get(i).isLive(docId)) {
+                deletions.computeIfAbsent(i, __ -> new HashSet<>()).add(docId);
+                return; // A document is live in at most one segment
+            }
+        }
+    }
+
+    private void mergeIfNeeded() {
+        List<LiveSegment> current = segments.get();
+        if (merging || current.size() <= maxSegments) return;
+
+        // Merge enough of the newest segments to get down to the max count, and include older segments
+        // as long as they are not much larger than the merged result, so large segments are rarely rebuilt
+        int from = maxSegments - 1;
+        int mergedSize = current.subList(from, current.size()).stream().mapToInt(LiveSegment::liveCount).sum();
+        while (from > 0 && mergedSize * 2 >= current.get(from - 1).liveCount()) {
+            mergedSize += current.get(--from).liveCount();
+        }
+        List<LiveSegment> toMerge = current.subList(from, current.size());
+        merging = true;
+        try {
+            mergeExecutor.execute(() -> merge(toMerge));
+        }
+        catch (RuntimeException e) {
+            merging = false;
+            throw e;
+        }
+    }
+
+    private void merge(List<LiveSegment> toMerge) {
+        try {
+            Map<Integer, Predicate> documents = new LinkedHashMap<>();
+            for (LiveSegment segment : toMerge) {
+                for (Map.Entry<Integer, Predicate> document : segment.segment().documents.entrySet()) {
+                    if (segment.isLive(document.getKey()))
+                        documents.put(document.getKey(), document.getValue());
+                }
+            }
+            Segment merged = new Segment(config, documents);
+
+            synchronized (monitor) {
+                // Segments are only replaced by merges, which do not overlap, but may have had documents deleted while merging
+                List<LiveSegment> current = segments.get();
+                int from = 0;
+                while (current.get(from).segment() != toMerge.get(0).segment()) from++;
+                List<LiveSegment> replaced = current.subList(from, from + toMerge.size());
+                Set<Integer> deleted = new HashSet<>();
+                for (int docId : merged.documents.keySet()) {
+                    if (replaced.stream().noneMatch(segment -> segment.isLive(docId)))
+                        deleted.add(docId);
+                }
+                LiveSegment live = new LiveSegment(merged, Set.copyOf(deleted));
+
+                List<LiveSegment> updated = new ArrayList<>(current.subList(0, from));
+                if (live.liveCount() > 0)
+                    updated.add(live);
+                updated.addAll(current.subList(from + toMerge.size(), current.size()));
+                segments.set(List.copyOf(updated));
+                merging = false;
+                mergeIfNeeded();
+            }
+        }
+        catch (RuntimeException | Error e) {
+            synchronized (monitor) {
+                merging = false;
+            }
+            throw e;
+        }
+    }
+
+    /** An immutable predicate index over a set of documents */
+    private static class Segment {
+
+        private final PredicateIndex index;
+        private final Map<Integer, Predicate> documents;
+
+        Segment(Config config, Map<Integer, Predicate> documents) {
+            PredicateIndexBuilder builder = new PredicateIndexBuilder(config);
+            documents.forEach(builder::indexDocument);
+            this.index = builder.build();
+            this.documents = Map.copyOf(documents);
+        }
+
+    }
+
+    /** A segment and the immutable set of its documents which are deleted, in a snapshot of this index */
+    private record LiveSegment(Segment segment, Set<Integer> deleted) {
+
+        boolean isLive(int docId) {
+            return segment.documents.containsKey(docId) && ! deleted.contains(docId);
+        }
+
+        int liveCount() {
+            return segment.documents.size() - deleted.size();
+        }
+
+        LiveSegment withDeleted(Set<Integer> moreDeleted) {
+            Set<Integer> allDeleted = new HashSet<>(deleted);
+            allDeleted.addAll(moreDeleted);
+            return new LiveSegment(segment, Set.copyOf(allDeleted));
+        }
+
+    }
+
+    @Beta
+    public class Searcher {
+
+        private final Map<Segment, PredicateIndex.Searcher> searchers = new IdentityHashMap<>();
+
+        private Searcher() { }
+
+        /**
+         * Retrieves a stream of hits for the given query.
+         *
+         * @param query Specifies the boolean variables that are true.
+         * @return A stream of hits.
+         */
+        public Stream<Hit> search(PredicateQuery query) {
+            List<LiveSegment> snapshot = segments.get();
+            searchers.keySet().removeIf(segment -> snapshot.stream().noneMatch(live -> live.segment() == segment));
+            Stream<Hit> hits = Stream.empty();
+            for (LiveSegment live : snapshot) {
+                Stream<Hit> segmentHits = searchers.computeIfAbsent(live.segment(), s -> s.index.searcher()).search(query);
+                if ( ! live.deleted().isEmpty())
+                    segmentHits = segmentHits.filter(hit -> ! live.deleted().contains(hit.getDocId()));
+                hits = Stream.concat(hits, segmentHits);
+            }
+            return hits;
+        }
+
+    }
+
+}
@@ -4,10 +4,12 @@ package com.yahoo.search.predicate.benchmarks;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.google.common.collect.Iterators;
+import com.yahoo.document.predicate.Predicate;
 import com.yahoo.search.predicate.Config;
 import com.yahoo.search.predicate.PredicateIndex;
 import com.yahoo.search.predicate.PredicateIndexBuilder;
 import com.yahoo.search.predicate.PredicateQuery;
+import com.yahoo.search.predicate.UpdatablePredicateIndex;
 import com.yahoo.search.predicate.serialization.PredicateQuerySerializer;
 import com.yahoo.search.predicate.utils.VespaFeedParser;
 import com.yahoo.search.predicate.utils.VespaQueryParser;
@@ -37,6 +39,7 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -52,6 +55,8 @@ import static com.yahoo.search.predicate.benchmarks.PredicateIndexBenchmark.Benc
 public class PredicateIndexBenchmark {
 
     private static final Map<String, Object> output = new TreeMap<>();
+    private static ForkJoinPool searchPool;
+    private static int searchPartitions;
 
     public static void main(String[] rawArgs) throws IOException {
         Optional<BenchmarkArguments> optionalArgs = getBenchmarkArguments(rawArgs);
@@ -72,6 +77,9 @@ public class PredicateIndexBenchmark {
         if (args.queryFile != null) {
             runQueries(args, index);
         }
+        if (args.updateBatchSize > 0 && args.feedFile != null) {
+            runUpdates(args, config);
+        }
         output.put("Total time", System.currentTimeMillis() - start);
         output.put("Timestamp", new Date().toString());
         writeOutputToStandardOut();
@@ -122,6 +130,52 @@ public class PredicateIndexBenchmark {
         }
     }
 
+    private static void runUpdates(BenchmarkArguments args, Config config) throws IOException {
+        List<Predicate> predicates = new ArrayList<>();
+        VespaFeedParser.parseDocuments(args.feedFile, args.maxDocuments, predicates::add);
+        if (predicates.isEmpty()) return;
+
+        UpdatablePredicateIndex index = new UpdatablePredicateIndex(config);
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < predicates.size(); i++) {
+            index.indexDocument(i + 1, predicates.get(i));
+        }
+        index.commit();
+        output.put("Time prepare updatable index", System.currentTimeMillis() - start);
+
+        // Re-index random batches of documents with the predicate of another document
+        Random random = new Random(42);
+        long totalCommitTime = 0;
+        long maxCommitTime = 0;
+        for (int batch = 0; batch < args.updateBatches; batch++) {
+            for (int i = 0; i < args.updateBatchSize; i++) {
+                index.indexDocument(random.nextInt(predicates.size()) + 1, predicates.get(random.nextInt(predicates.size())));
+            }
+            long commitStart = System.nanoTime();
+            index.commit();
+            long commitTime = System.nanoTime() - commitStart;
+            totalCommitTime += commitTime;
+            maxCommitTime = Math.max(maxCommitTime, commitTime);
+        }
+        output.put("Update batches", args.updateBatches);
+        output.put("Update batch size", args.updateBatchSize);
+        output.put("Time per update batch commit (avg)", totalCommitTime / args.updateBatches / 1_000_000d);
+        output.put("Time per update batch commit (max)", maxCommitTime / 1_000_000d);
+        output.put("Updatable index segments", index.getSegmentCount());
+
+        if (args.queryFile != null) {
+            List<PredicateQuery> queries = parseQueries(args.queryFile, args.maxQueries, args.format);
+            UpdatablePredicateIndex.Searcher searcher = index.searcher();
+            start = System.nanoTime();
+            long hits = 0;
+            for (PredicateQuery query : queries) {
+                hits += searcher.search(query).count();
+            }
+            output.put("Updatable index hits", hits);
+            output.put("Updatable index time per query (avg)", (System.nanoTime() - start) / queries.size() / 1_000_000d);
+        }
+    }
+
     private static void putBenchmarkArgumentsToOutput(BenchmarkArguments args) {
         output.put("Arity", args.arity);
         output.put("Max documents", args.maxDocuments);
@@ -135,16 +189,20 @@ public class PredicateIndexBenchmark {
         output.put("Index file", args.indexFile);
         output.put("Query format", args.format);
         output.put("Warmup", args.warmup);
+        output.put("Search partitions", args.searchPartitions);
     }
 
     private static void runQueries(BenchmarkArguments args, PredicateIndex index) throws IOException {
         List<PredicateQuery> queries = parseQueries(args.queryFile, args.maxQueries, args.format);
+        searchPartitions = args.searchPartitions;
+        searchPool = searchPartitions > 1 ? new ForkJoinPool(searchPartitions) : null;
         long warmup1 = warmup(queries, index, args.nThreads, args.warmup / 2);
         output.put("Time warmup before building posting cache", warmup1);
         rebuildPostingListCache(index);
         long warmup2 = warmup(queries, index, args.nThreads, args.warmup / 2);
         output.put("Time warmup after building posting cache", warmup2);
         searchIndex(queries, index, args.nThreads, args.runtime);
+        if (searchPool != null) searchPool.shutdown();
     }
 
     private static void rebuildPostingListCache(PredicateIndex index) {
@@ -169,7 +227,7 @@ public class PredicateIndexBenchmark {
         for (int i = 0; i < nThreads; i++) {
             List<PredicateQuery> shuffledQueries = new ArrayList<>(queries);
             Collections.shuffle(shuffledQueries, random);
-            executor.submit(new QueryRunner(shuffledQueries, index.searcher()));
+            executor.submit(new QueryRunner(shuffledQueries, index.searcher(), searchPool, searchPartitions));
         }
         long start = System.currentTimeMillis();
         waitAndShutdown(warmup, executor);
@@ -183,7 +241,7 @@ public class PredicateIndexBenchmark {
         for (int i = 0; i < nThreads; i++) {
             List<PredicateQuery> shuffledQueries = new ArrayList<>(queries);
             Collections.shuffle(shuffledQueries, random);
-            runners.add(new QueryRunner(shuffledQueries, index.searcher()));
+            runners.add(new QueryRunner(shuffledQueries, index.searcher(), searchPool, searchPartitions));
         }
         long start = System.currentTimeMillis();
         List<Future<ResultMetrics>> futureResults = runners.stream().map(executor::submit).toList();
@@ -217,10 +275,15 @@ public class PredicateIndexBenchmark {
     private static class QueryRunner implements Callable<ResultMetrics> {
         private final List<PredicateQuery> queries;
         private final PredicateIndex.Searcher searcher;
+        private final ForkJoinPool searchPool;
+        private final int searchPartitions;
 
-        public QueryRunner(List<PredicateQuery> queries, PredicateIndex.Searcher seacher) {
+        public QueryRunner(List<PredicateQuery> queries, PredicateIndex.Searcher seacher,
+                           ForkJoinPool searchPool, int searchPartitions) {
             this.queries = queries;
             this.searcher = seacher;
+            this.searchPool = searchPool;
+            this.searchPartitions = searchPartitions;
         }
 
         @Override
@@ -229,7 +292,9 @@ public class PredicateIndexBenchmark {
             ResultMetrics result = new ResultMetrics();
             while (!Thread.interrupted()) {
                 long start = System.nanoTime();
-                long hits = searcher.search(iterator.next()).count();
+                long hits = searchPartitions > 1
+                        ? searcher.search(iterator.next(), searchPool, searchPartitions).count()
+                        : searcher.search(iterator.next()).count();
                 double latencyMilliseconds = (System.nanoTime() - start) / 1_000_000d;
                 result.registerResult(hits, latencyMilliseconds);
             }
@@ -290,6 +355,17 @@ public class PredicateIndexBenchmark {
         @Option(name = {"-quf", "--query-file"}, description = "File path to a query file")
         public String queryFile;
 
+        @Option(name = {"-sp", "--search-partitions"},
+                description = "Number of document id partitions each query searches in parallel")
+        public int searchPartitions = 1;
+
+        @Option(name = {"-ub", "--update-batch-size"},
+                description = "Also measure committing batches of this many updates to an updatable index built from the feed file")
+        public int updateBatchSize = 0;
+
+        @Option(name = {"-un", "--update-batches"}, description = "Number of update batches to commit")
+        public int updateBatches = 100;
+
         @Inject
         public HelpOption helpOption;
     }
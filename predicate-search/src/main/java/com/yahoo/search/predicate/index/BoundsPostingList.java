@@ -10,8 +10,10 @@ package com.yahoo.search.predicate.index;
  */
 public final class BoundsPostingList extends MultiIntervalPostingList {
     private final int valueDiff;
-    private final IntervalWithBounds intervalWithBounds = new IntervalWithBounds();
     private final PredicateIntervalStore store;
+    private int currentIntervalRef;
+    private int currentIntervalCount;
+    private int currentIntervalIndex;
     private int currentInterval;
 
     /**
@@ -25,19 +27,23 @@ public final class BoundsPostingList extends MultiIntervalPostingList {
 
     @Override
     protected boolean prepareIntervals(int dataRef) {
-        intervalWithBounds.setIntervalArray(store.get(dataRef), 0);
+        currentIntervalRef = dataRef;
+        currentIntervalCount = store.getIntervalCount(dataRef);
+        currentIntervalIndex = 0;
         return nextInterval();
     }
 
     @Override
     public boolean nextInterval() {
-        while (intervalWithBounds.hasValue()) {
-            if (intervalWithBounds.contains(valueDiff)) {
-                this.currentInterval = intervalWithBounds.getInterval();
-                intervalWithBounds.nextValue();
+        // Intervals are stored as pairs of interval and bounds, see IntervalWithBounds
+        while (currentIntervalIndex < currentIntervalCount - 1) {
+            int interval = store.getInterval(currentIntervalRef, currentIntervalIndex);
+            int bounds = store.getInterval(currentIntervalRef, currentIntervalIndex + 1);
+            currentIntervalIndex += 2;
+            if (IntervalWithBounds.contains(bounds, valueDiff)) {
+                this.currentInterval = interval;
                 return true;
             }
-            intervalWithBounds.nextValue();
         }
         return false;
     }
@@ -51,7 +51,11 @@ public final class IntervalWithBounds {
      * @return true if value is contained within the specified bounds
      */
     public boolean contains(int value) {
-        int bounds = getBounds();
+        return contains(getBounds(), value);
+    }
+
+    /** Checks if a value is contained within the given bounds, encoded as returned by {@link #getBounds()}. */
+    public static boolean contains(int bounds, int value) {
         if ((bounds & 0x80000000) != 0) {
             return value >= (bounds & 0x3fffffff);
         } else if ((bounds & 0x40000000) != 0) {
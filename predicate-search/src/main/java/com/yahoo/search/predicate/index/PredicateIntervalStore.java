@@ -7,6 +7,8 @@ import com.yahoo.search.predicate.serialization.SerializationHelper;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -14,25 +16,62 @@ import java.util.List;
 import java.util.Map;
 
 /**
+ * Stores the interval lists of an index. The interval lists are either held in on-heap arrays,
+ * or read in place from a buffer, typically a memory mapped file, see {@link #fromMappedBuffer(ByteBuffer)}.
+ *
  * @author bjorncs
  */
 public class PredicateIntervalStore {
 
     private final int[][] intervalsList;
+    // Used instead of intervalsList when reading in place: The start of each list in intervals, followed by the end of the last
+    private final IntBuffer offsets;
+    private final IntBuffer intervals;
 
     public PredicateIntervalStore(int[][] intervalsList) {
         this.intervalsList = intervalsList;
+        this.offsets = null;
+        this.intervals = null;
     }
 
+    private PredicateIntervalStore(IntBuffer offsets, IntBuffer intervals) {
+        this.intervalsList = null;
+        this.offsets = offsets;
+        this.intervals = intervals;
+    }
+
+    /** Returns the intervals of the given reference. This allocates a new array when reading in place. */
     public int[] get(int intervalRef) {
-        assert intervalRef < intervalsList.length;
-        return intervalsList[intervalRef];
+        if (intervalsList != null) {
+            assert intervalRef < intervalsList.length;
+            return intervalsList[intervalRef];
+        }
+        int[] array = new int[getIntervalCount(intervalRef)];
+        intervals.get(offsets.get(intervalRef), array);
+        return array;
+    }
+
+    /** Returns the number of intervals of the given reference, without copying them */
+    public int getIntervalCount(int intervalRef) {
+        if (intervalsList != null) return intervalsList[intervalRef].length;
+        return offsets.get(intervalRef + 1) - offsets.get(intervalRef);
+    }
+
+    /** Returns a single interval of the given reference, without copying the others */
+    public int getInterval(int intervalRef, int index) {
+        if (intervalsList != null) return intervalsList[intervalRef][index];
+        return intervals.get(offsets.get(intervalRef) + index);
+    }
+
+    private int size() {
+        return intervalsList != null ? intervalsList.length : offsets.limit() - 1;
     }
 
     public void writeToOutputStream(DataOutputStream out) throws IOException {
-        out.writeInt(intervalsList.length);
-        for (int[] intervals : intervalsList) {
-            SerializationHelper.writeIntArray(intervals, out);
+        int size = size();
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            SerializationHelper.writeIntArray(get(i), out);
         }
     }
 
@@ -45,6 +84,42 @@ public class PredicateIntervalStore {
         return new PredicateIntervalStore(intervalsList);
     }
 
+    /**
+     * Writes this in the format read by {@link #fromMappedBuffer(ByteBuffer)}: The number of interval lists,
+     * the offset of each list and the end offset of the last, and then all the intervals.
+     */
+    public void writeToMappableOutputStream(DataOutputStream out) throws IOException {
+        int size = size();
+        out.writeInt(size);
+        int offset = 0;
+        for (int i = 0; i < size; i++) {
+            out.writeInt(offset);
+            offset += getIntervalCount(i);
+        }
+        out.writeInt(offset);
+        for (int i = 0; i < size; i++) {
+            int count = getIntervalCount(i);
+            for (int j = 0; j < count; j++) {
+                out.writeInt(getInterval(i, j));
+            }
+        }
+    }
+
+    /**
+     * Returns a store which reads the intervals written by {@link #writeToMappableOutputStream(DataOutputStream)}
+     * in place from the given buffer, and advances the position of the buffer past them.
+     * The buffer must not be modified while the returned store is in use.
+     */
+    public static PredicateIntervalStore fromMappedBuffer(ByteBuffer buffer) {
+        int size = buffer.getInt();
+        IntBuffer offsets = buffer.slice().order(buffer.order()).asIntBuffer().limit(size + 1);
+        int nIntervals = offsets.get(size);
+        buffer.position(buffer.position() + (size + 1) * Integer.BYTES);
+        IntBuffer intervals = buffer.slice().order(buffer.order()).asIntBuffer().limit(nIntervals);
+        buffer.position(buffer.position() + nIntervals * Integer.BYTES);
+        return new PredicateIntervalStore(offsets.slice(), intervals.slice());
+    }
+
     public static class Builder {
         private final List<int[]> intervalsListBuilder = new ArrayList<>();
         private final Map<Entry, Integer> intervalsListIndexes = new HashMap<>();
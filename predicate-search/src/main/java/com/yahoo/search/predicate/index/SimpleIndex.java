@@ -9,6 +9,7 @@ import org.eclipse.collections.impl.map.mutable.primitive.LongObjectHashMap;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -62,6 +63,19 @@ public class SimpleIndex {
         return new SimpleIndex(dictionary);
     }
 
+    public static SimpleIndex fromByteBuffer(ByteBuffer buffer) {
+        int nEntries = buffer.getInt();
+        LongObjectHashMap<Entry> dictionary = new LongObjectHashMap<>(nEntries);
+        for (int i = 0; i < nEntries; i++) {
+            long key = buffer.getLong();
+            int[] docIds = SerializationHelper.readIntArray(buffer);
+            int[] dataRefs = SerializationHelper.readIntArray(buffer);
+            dictionary.put(key, new Entry(docIds, dataRefs));
+        }
+        dictionary.compact();
+        return new SimpleIndex(dictionary);
+    }
+
     public static class Entry {
         public final int[] docIds;
         public final int[] dataRefs;
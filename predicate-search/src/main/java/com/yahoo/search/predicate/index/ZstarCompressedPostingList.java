@@ -15,7 +15,8 @@ import com.yahoo.search.predicate.SubqueryBitmap;
 public class ZstarCompressedPostingList extends MultiIntervalPostingList {
 
     private final PredicateIntervalStore store;
-    private int[] currentIntervals;
+    private int currentIntervalRef;
+    private int currentIntervalCount;
     private int currentIntervalIndex;
     private int prevInterval;
     private int currentInterval;
@@ -31,7 +32,8 @@ public class ZstarCompressedPostingList extends MultiIntervalPostingList {
 
     @Override
     protected boolean prepareIntervals(int dataRef) {
-        currentIntervals = store.get(dataRef);
+        currentIntervalRef = dataRef;
+        currentIntervalCount = store.getIntervalCount(dataRef);
         currentIntervalIndex = 0;
         return nextInterval();
     }
@@ -39,8 +41,8 @@ public class ZstarCompressedPostingList extends MultiIntervalPostingList {
     @Override
     public boolean nextInterval() {
         int nextInterval = -1;
-        if (currentIntervalIndex < currentIntervals.length) {
-            nextInterval = currentIntervals[currentIntervalIndex];
+        if (currentIntervalIndex < currentIntervalCount) {
+            nextInterval = store.getInterval(currentIntervalRef, currentIntervalIndex);
         }
         if (prevInterval != 0) {
             if (Interval.isZStar2Interval(nextInterval)) {
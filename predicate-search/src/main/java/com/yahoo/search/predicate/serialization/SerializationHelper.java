@@ -6,9 +6,12 @@ import com.yahoo.search.predicate.PredicateIndex;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 /**
  * Misc utility functions to help serialization of {@link PredicateIndex}.
+ * The methods reading from a {@link ByteBuffer} read the format written by the stream methods,
+ * in bulk, and advance the position of the buffer past the array read.
  *
  * @author bjorncs
  */
@@ -78,4 +81,31 @@ public class SerializationHelper {
         return array;
     }
 
+    public static int[] readIntArray(ByteBuffer buffer) {
+        int[] array = new int[buffer.getInt()];
+        buffer.asIntBuffer().get(array);
+        buffer.position(buffer.position() + array.length * Integer.BYTES);
+        return array;
+    }
+
+    public static byte[] readByteArray(ByteBuffer buffer) {
+        byte[] array = new byte[buffer.getInt()];
+        buffer.get(array);
+        return array;
+    }
+
+    public static long[] readLongArray(ByteBuffer buffer) {
+        long[] array = new long[buffer.getInt()];
+        buffer.asLongBuffer().get(array);
+        buffer.position(buffer.position() + array.length * Long.BYTES);
+        return array;
+    }
+
+    public static short[] readShortArray(ByteBuffer buffer) {
+        short[] array = new short[buffer.getInt()];
+        buffer.asShortBuffer().get(array);
+        buffer.position(buffer.position() + array.length * Short.BYTES);
+        return array;
+    }
+
 }
@@ -3,8 +3,12 @@ package com.yahoo.search.predicate;
 
 import com.yahoo.document.predicate.Predicate;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import static com.yahoo.search.predicate.serialization.SerializationTestHelper.assertSerializationDeserializationMatches;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -17,6 +21,9 @@ public class PredicateIndexTest {
 
     private static final int DOC_ID = 42;
 
+    @TempDir
+    public Path tempDir;
+
     @Test
     void requireThatPredicateIndexCanSearch() {
         PredicateIndexBuilder builder = new PredicateIndexBuilder(10);
@@ -128,6 +135,35 @@ public class PredicateIndexTest {
         assertEquals("[42]", searcher.search(query).toList().toString());
     }
 
+    @Test
+    void requireThatParallelSearchGivesSameHitsAsSequentialSearch() {
+        PredicateIndexBuilder builder = new PredicateIndexBuilder(10);
+        for (int i = 0; i < 25000; i++) {
+            String predicate = switch (i % 4) {
+                case 0 -> "gender in ['male'] and age in [20..40]";
+                case 1 -> "gender in ['female']";
+                case 2 -> "gender not in ['male']";
+                default -> "true";
+            };
+            builder.indexDocument(i, Predicate.fromString(predicate));
+        }
+        PredicateIndex index = builder.build();
+        PredicateIndex.Searcher searcher = index.searcher();
+        PredicateQuery query = new PredicateQuery();
+        query.addFeature("gender", "male");
+        query.addRangeFeature("age", 36);
+
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            List<Hit> expected = searcher.search(query).toList();
+            assertEquals(12500, expected.size());
+            assertEquals(expected, searcher.search(query, pool, 3).toList());
+            assertEquals(expected, searcher.search(query, pool, 1).toList());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
     @Test
     void require_that_serialization_and_deserialization_retain_data() throws IOException {
         PredicateIndexBuilder builder = new PredicateIndexBuilder(10);
@@ -137,4 +173,30 @@ public class PredicateIndexTest {
         assertSerializationDeserializationMatches(
                 index, PredicateIndex::writeToOutputStream, PredicateIndex::fromInputStream);
     }
+
+    @Test
+    void require_that_memory_mapped_index_retains_data() throws IOException {
+        PredicateIndexBuilder builder = new PredicateIndexBuilder(10);
+        builder.indexDocument(1, Predicate.fromString("country in ['no', 'se'] and gender in ['male']"));
+        builder.indexDocument(2, Predicate.fromString("country not in ['no'] and age in [23..38]"));
+        builder.indexDocument(3, Predicate.fromString("age in [30..]"));
+        builder.indexDocument(0x3fffffe, Predicate.fromString("country in ['no'] and gender in ['female']"));
+        PredicateIndex index = builder.build();
+        Path file = tempDir.resolve("predicate-index");
+        index.writeToMappableFile(file);
+        PredicateIndex mapped = PredicateIndex.fromMappedFile(file);
+
+        for (String country : List.of("no", "se", "dk")) {
+            for (String gender : List.of("male", "female")) {
+                for (int age : List.of(22, 23, 30, 38, 39)) {
+                    PredicateQuery query = new PredicateQuery();
+                    query.addFeature("country", country);
+                    query.addFeature("gender", gender);
+                    query.addRangeFeature("age", age);
+                    assertEquals(index.searcher().search(query).toList(), mapped.searcher().search(query).toList());
+                }
+            }
+        }
+    }
+
 }
@@ -0,0 +1,121 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.predicate;
+
+import com.yahoo.document.predicate.Predicate;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class UpdatablePredicateIndexTest {
+
+    @Test
+    void requireThatChangesAreVisibleAfterCommit() {
+        UpdatablePredicateIndex index = new UpdatablePredicateIndex(new Config.Builder().setArity(10).build());
+        UpdatablePredicateIndex.Searcher searcher = index.searcher();
+        index.indexDocument(1, Predicate.fromString("country in ['no', 'se'] and gender in ['male']"));
+        index.indexDocument(2, Predicate.fromString("country in ['no'] and gender in ['female']"));
+        assertEquals("[]", search(searcher, "male"));
+
+        index.commit();
+        assertEquals("[1]", search(searcher, "male"));
+        assertEquals("[2]", search(searcher, "female"));
+
+        index.indexDocument(1, Predicate.fromString("country in ['no'] and gender in ['female']"));
+        index.indexDocument(3, Predicate.fromString("country in ['no'] and gender in ['male']"));
+        index.removeDocument(2);
+        assertEquals("[1]", search(searcher, "male"));
+
+        index.commit();
+        assertEquals("[3]", search(searcher, "male"));
+        assertEquals("[1]", search(searcher, "female"));
+        assertEquals(2, index.getDocumentCount());
+    }
+
+    @Test
+    void requireThatRemovingAndReindexingBeforeCommitKeepsLastChange() {
+        UpdatablePredicateIndex index = new UpdatablePredicateIndex(new Config.Builder().setArity(10).build());
+        UpdatablePredicateIndex.Searcher searcher = index.searcher();
+        index.indexDocument(1, Predicate.fromString("gender in ['male']"));
+        index.removeDocument(1);
+        index.indexDocument(2, Predicate.fromString("gender in ['male']"));
+        index.commit();
+        assertEquals("[2]", search(searcher, "male"));
+
+        index.removeDocument(2);
+        index.indexDocument(2, Predicate.fromString("gender in ['female']"));
+        index.commit();
+        assertEquals("[]", search(searcher, "male"));
+        assertEquals("[2]", search(searcher, "female"));
+    }
+
+    @Test
+    void requireThatSegmentsAreMergedAndDeletedDocumentsDropped() {
+        UpdatablePredicateIndex index = new UpdatablePredicateIndex(new Config.Builder().setArity(10).build(), 2, Runnable::run);
+        UpdatablePredicateIndex.Searcher searcher = index.searcher();
+        for (int i = 1; i <= 10; i++) {
+            index.indexDocument(i, Predicate.fromString("gender in ['male']"));
+            if (i % 2 == 0)
+                index.removeDocument(i - 1);
+            index.commit();
+            assertEquals(i - i / 2, index.getDocumentCount());
+        }
+        assertEquals(2, index.getSegmentCount());
+        assertEquals("[2, 4, 6, 8, 10]", search(searcher, "male"));
+    }
+
+    @Test
+    void requireThatDocumentsDeletedDuringMergeStayDeleted() {
+        List<Runnable> merges = new ArrayList<>();
+        UpdatablePredicateIndex index = new UpdatablePredicateIndex(new Config.Builder().setArity(10).build(), 1, merges::add);
+        UpdatablePredicateIndex.Searcher searcher = index.searcher();
+        index.indexDocument(1, Predicate.fromString("gender in ['male']"));
+        index.commit();
+        index.indexDocument(2, Predicate.fromString("gender in ['male']"));
+        index.commit();
+        assertEquals(1, merges.size());
+
+        index.removeDocument(1);
+        index.indexDocument(2, Predicate.fromString("gender in ['female']"));
+        index.commit();
+        assertEquals("[]", search(searcher, "male"));
+
+        merges.remove(0).run();
+        assertEquals("[]", search(searcher, "male"));
+        assertEquals("[2]", search(searcher, "female"));
+        assertEquals(1, index.getDocumentCount());
+    }
+
+    @Test
+    void requireThatSearchesSeeTheSnapshotTheyStartedWith() {
+        UpdatablePredicateIndex index = new UpdatablePredicateIndex(new Config.Builder().setArity(10).build());
+        UpdatablePredicateIndex.Searcher searcher = index.searcher();
+        index.indexDocument(1, Predicate.fromString("gender in ['male']"));
+        index.indexDocument(2, Predicate.fromString("gender in ['male']"));
+        index.commit();
+
+        Stream<Hit> before = searcher.search(query("male"));
+        index.indexDocument(1, Predicate.fromString("gender in ['male']"));
+        index.removeDocument(2);
+        index.commit();
+        Stream<Hit> after = searcher.search(query("male"));
+
+        assertEquals("[1, 2]", before.map(Hit::getDocId).sorted().toList().toString());
+        assertEquals("[1]", after.map(Hit::getDocId).sorted().toList().toString());
+    }
+
+    private static String search(UpdatablePredicateIndex.Searcher searcher, String gender) {
+        return searcher.search(query(gender)).map(Hit::getDocId).sorted().toList().toString();
+    }
+
+    private static PredicateQuery query(String gender) {
+        PredicateQuery query = new PredicateQuery();
+        query.addFeature("country", "no");
+        query.addFeature("gender", gender);
+        return query;
+    }
+
+}
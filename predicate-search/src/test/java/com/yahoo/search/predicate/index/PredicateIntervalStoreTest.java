@@ -4,7 +4,10 @@ package com.yahoo.search.predicate.index;
 import com.google.common.primitives.Ints;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -58,6 +61,28 @@ public class PredicateIntervalStoreTest {
                 store, PredicateIntervalStore::writeToOutputStream, PredicateIntervalStore::fromInputStream);
     }
 
+    @Test
+    void requireThatIntervalsCanBeReadInPlace() throws IOException {
+        PredicateIntervalStore.Builder builder = new PredicateIntervalStore.Builder();
+        int ref1 = builder.insert(List.of(0x00010001, 0x00020002));
+        int ref2 = builder.insert(List.of(0x0fffffff));
+        int ref3 = builder.insert(List.of(0x00010001, 0x00020002, 0x00030003));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(42);
+        builder.build().writeToMappableOutputStream(out);
+        out.writeInt(43);
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.size()).put(bytes.toByteArray()).flip();
+        assertEquals(42, buffer.getInt());
+        PredicateIntervalStore store = PredicateIntervalStore.fromMappedBuffer(buffer);
+        assertEquals(43, buffer.getInt());
+        assertArrayEquals(new int[]{0x00010001, 0x00020002}, store.get(ref1));
+        assertArrayEquals(new int[]{0x0fffffff}, store.get(ref2));
+        assertEquals(3, store.getIntervalCount(ref3));
+        assertEquals(0x00030003, store.getInterval(ref3, 2));
+    }
+
     @Test
     void requireThatEqualIntervalListsReturnsSameReference() {
         PredicateIntervalStore.Builder builder = new PredicateIntervalStore.Builder();
@@ -34,10 +34,12 @@ public class CapabilitySet implements ToCapabilitySet {
             Capability.CONTAINER__STATE_API, Capability.METRICSPROXY__METRICS_API,
             Capability.SENTINEL__CONNECTIVITY_CHECK);
 
+    // Nodes serving file references to each other send file parts to the file receiver of the downloading node
     private static final CapabilitySet SHARED_CAPABILITIES_APP_NODE = CapabilitySet.unionOf(List.of(
             Capability.LOGSERVER_API, Capability.CONFIGSERVER__CONFIG_API,
             Capability.CONFIGSERVER__FILEDISTRIBUTION_API, Capability.CONFIGPROXY__CONFIG_API,
-            Capability.CONFIGPROXY__FILEDISTRIBUTION_API, Capability.SLOBROK__API, TELEMETRY));
+            Capability.CONFIGPROXY__FILEDISTRIBUTION_API, Capability.CLIENT__FILERECEIVER_API,
+            Capability.SLOBROK__API, TELEMETRY));
 
     public static final CapabilitySet CONTENT_NODE = predefined(
             "vespa.content_node",
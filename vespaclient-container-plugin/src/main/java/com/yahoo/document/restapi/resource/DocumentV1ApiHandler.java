@@ -63,6 +63,7 @@ import com.yahoo.jdisc.http.HttpRequest.Method;
 import com.yahoo.messagebus.DynamicThrottlePolicy;
 import com.yahoo.messagebus.Message;
 import com.yahoo.messagebus.StaticThrottlePolicy;
+import com.yahoo.messagebus.Trace;
 import com.yahoo.metrics.simple.MetricReceiver;
 import com.yahoo.restapi.Path;
 import com.yahoo.search.query.ParameterParser;
@@ -80,6 +81,7 @@ import java.nio.ByteBuffer;
 import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Deque;
@@ -94,6 +96,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.Phaser;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Lock;
@@ -103,6 +106,7 @@ import java.util.function.BooleanSupplier;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 import java.util.logging.Logger;
+import java.util.regex.Pattern;
 import java.util.stream.Stream;
 
 import static com.yahoo.documentapi.DocumentOperationParameters.parameters;
@@ -177,10 +181,14 @@ public final class DocumentV1ApiHandler extends AbstractRequestHandler {
     private static final String STREAM = "stream";
     private static final String SLICES = "slices";
     private static final String SLICE_ID = "sliceId";
+    private static final String PARALLELISM = "parallelism";
     private static final String DRY_RUN = "dryRun";
     private static final String FROM_TIMESTAMP = "fromTimestamp";
     private static final String TO_TIMESTAMP = "toTimestamp";
     private static final String INCLUDE_REMOVES = "includeRemoves";
+    private static final String PARALLEL_CONTINUATION_SEPARATOR = ".";
+    private static final String PARALLEL_CONTINUATION_SLICE_SEPARATOR = "~";
+    private static final int MAX_PARALLELISM = 64;
 
     private final Clock clock;
     private final Duration visitTimeout;
@@ -199,6 +207,7 @@ public final class DocumentV1ApiHandler extends AbstractRequestHandler {
     private final AtomicLong enqueued = new AtomicLong();
     private final AtomicLong outstanding = new AtomicLong();
     private final AtomicLong operationBytesQueued = new AtomicLong();
+    private final AtomicLong visitBytesPending = new AtomicLong();
     private final Map<VisitorControlHandler, VisitorSession> visits = new ConcurrentHashMap<>();
     private final ScheduledExecutorService dispatcher = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("document-api-handler-"));
     private final ScheduledExecutorService visitDispatcher = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("document-api-handler-visit-"));
@@ -407,9 +416,11 @@ public final class DocumentV1ApiHandler extends AbstractRequestHandler {
         disallow(request, DRY_RUN);
         enqueueAndDispatch(request, handler, 0, () -> {
             boolean streamed = getProperty(request, STREAM, booleanParser).orElse(false);
-            VisitorParameters parameters = parseGetParameters(request, path, streamed);
+            Optional<Integer> parallelism = getProperty(request, PARALLELISM, integerParser);
+            List<VisitorParameters> parameters = parallelism.isPresent() ? parseParallelGetParameters(request, path, streamed, parallelism.get())
+                                                                         : List.of(parseGetParameters(request, path, streamed));
             return () -> {
-                visitAndWrite(request, parameters, handler, streamed);
+                visitAndWrite(request, parameters, parallelism.orElse(0), handler, streamed);
                 return true; // VisitorSession has its own throttle handling.
             };
         });
@@ -628,6 +639,7 @@ public final class DocumentV1ApiHandler extends AbstractRequestHandler {
             while (dispatchFirstVisit()) {
                 // Intentionally empty
             }
+            sampleVisitBytesPending(visitBytesPending.get());
         } catch (Exception e) {
             log.log(WARNING, "Uncaught exception in /document/v1 dispatch thread", e);
         }
@@ -1042,6 +1054,7 @@ public final class DocumentV1ApiHandler extends AbstractRequestHandler {
     private void sampleQueuedBytes(long v) { setMetric(MetricNames.QUEUE_BYTES, v); }
     private void sampleQueuedAge(long v) { setMetric(MetricNames.QUEUE_AGE, v); }
     private void sampleLatency(double latency) { setMetric(MetricNames.LATENCY, latency); }
+    private void sampleVisitBytesPending(long v) { setMetric(MetricNames.VISIT_PENDING_BYTES, v); }
     private void incrementMetricNumOperations() { incrementMetric(MetricNames.NUM_OPERATIONS); }
     private void incrementMetricNumPuts() { incrementMetric(MetricNames.NUM_PUTS); }
     private void incrementMetricNumRemoves() { incrementMetric(MetricNames.NUM_REMOVES); }
@@ -1054,6 +1067,8 @@ public final class DocumentV1ApiHandler extends AbstractRequestHandler {
     private void incrementMetricFailedUnknown() { incrementMetric(MetricNames.FAILED_UNKNOWN); }
     private void incrementMetricFailedTimeout() { incrementMetric(MetricNames.FAILED_TIMEOUT); }
     private void incrementMetricFailedInsufficientStorage() { incrementMetric(MetricNames.FAILED_INSUFFICIENT_STORAGE); }
+    private void incrementMetricVisitDocuments() { incrementMetric(MetricNames.VISIT_DOCUMENTS); }
+    private void addMetricVisitBytes(long v) { metric.add(MetricNames.VISIT_BYTES, v, null); }
     private void incrementMetric(String n) { metric.add(n, 1, null); }
     private void setMetric(String n, Number v) { metric.set(n, v, null); }
 
@@ -1094,8 +1109,63 @@ public final class DocumentV1ApiHandler extends AbstractRequestHandler {
         return parameters;
     }
 
+    /**
+     * Returns parameters for each session of a visit fanned out over the given number of sessions, each of which visits
+     * a disjoint slice of the buckets of the requested slice, if any. When continuing a parallel visit, the continuation
+     * holds the slice id and token of each of its unfinished sessions, and only these are visited.
+     */
+    private List<VisitorParameters> parseParallelGetParameters(HttpRequest request, DocumentPath path, boolean streamed, int parallelism) {
+        if (parallelism <= 0 || parallelism > MAX_PARALLELISM) {
+            throw new IllegalArgumentException("'" + PARALLELISM + "' must be in [1, " + MAX_PARALLELISM + "]");
+        }
+        if ( ! streamed) {
+            throw new IllegalArgumentException("May only specify '" + PARALLELISM + "' when '" + STREAM + "' is true");
+        }
+        Map<Integer, ProgressToken> progressBySliceId = new LinkedHashMap<>();
+        VisitorParameters common = parseGetParameters(request, path, streamed);
+        int slices;
+        try {
+            slices = Math.multiplyExact(common.getSlices(), parallelism);
+        }
+        catch (ArithmeticException e) {
+            throw new IllegalArgumentException("'" + SLICES + "' times '" + PARALLELISM + "' is too large");
+        }
+        Optional<String> continuation = getProperty(request, CONTINUATION);
+        if (continuation.isPresent()) {
+            for (String sessionContinuation : continuation.get().split(Pattern.quote(PARALLEL_CONTINUATION_SEPARATOR))) {
+                String[] sliceAndToken = sessionContinuation.split(PARALLEL_CONTINUATION_SLICE_SEPARATOR, 2);
+                int sliceId = sliceAndToken.length == 2 && sliceAndToken[0].matches("\\d{1,9}") ? Integer.parseInt(sliceAndToken[0]) : -1;
+                if (   sliceId < 0 || sliceId >= slices || sliceId % common.getSlices() != common.getSliceId()
+                    || progressBySliceId.containsKey(sliceId))
+                    throw new IllegalArgumentException("Continuation is not from a visit with the same '" + PARALLELISM + "', '" +
+                                                       SLICES + "' and '" + SLICE_ID + "'");
+                // An empty token is that of a slice which was not yet started.
+                progressBySliceId.put(sliceId, sliceAndToken[1].isEmpty() ? null : ProgressToken.fromSerializedString(sliceAndToken[1]));
+            }
+        }
+        else {
+            for (int i = 0; i < parallelism; i++)
+                progressBySliceId.put(common.getSliceId() + i * common.getSlices(), null);
+        }
+
+        List<VisitorParameters> parameters = new ArrayList<>();
+        progressBySliceId.forEach((sliceId, progress) -> {
+            VisitorParameters session = parameters.isEmpty() ? common : parseGetParameters(request, path, streamed);
+            session.slice(slices, sliceId);
+            session.setResumeToken(progress);
+            parameters.add(session);
+        });
+        return parameters;
+    }
+
+    private static ProgressToken parseContinuation(String continuation) {
+        if (continuation.contains(PARALLEL_CONTINUATION_SEPARATOR) || continuation.contains(PARALLEL_CONTINUATION_SLICE_SEPARATOR))
+            throw new IllegalArgumentException("May only continue a parallel visit with the same '" + PARALLELISM + "'");
+        return ProgressToken.fromSerializedString(continuation);
+    }
+
     private VisitorParameters parseParameters(HttpRequest request, DocumentPath path) {
-        disallow(request, CONCURRENCY, FIELD_SET, ROUTE, WANTED_DOCUMENT_COUNT);
+        disallow(request, CONCURRENCY, FIELD_SET, ROUTE, WANTED_DOCUMENT_COUNT, PARALLELISM);
         requireProperty(request, SELECTION);
         VisitorParameters parameters = parseCommonParameters(request, path, Optional.of(requireProperty(request, CLUSTER)));
         parameters.setThrottlePolicy(new DynamicThrottlePolicy().setMinWindowSize(1).setWindowSizeIncrement(1));
@@ -1123,7 +1193,8 @@ public final class DocumentV1ApiHandler extends AbstractRequestHandler {
 
         getProperty(request, TRACELEVEL, integerParser).ifPresent(parameters::setTraceLevel);
 
-        getProperty(request, CONTINUATION, ProgressToken::fromSerializedString).ifPresent(parameters::setResumeToken);
+        if ( ! request.parameters().containsKey(PARALLELISM)) // Parallel visits have one continuation per session.
+            getProperty(request, CONTINUATION, DocumentV1ApiHandler::parseContinuation).ifPresent(parameters::setResumeToken);
         parameters.setPriority(DocumentProtocol.Priority.NORMAL_4);
 
         getProperty(request, FROM_TIMESTAMP, unsignedLongParser).ifPresent(parameters::setFromTimestamp);
@@ -1240,8 +1311,11 @@ public final class DocumentV1ApiHandler extends AbstractRequestHandler {
         });
     }
 
-    private void visitAndWrite(HttpRequest request, VisitorParameters parameters, ResponseHandler handler, boolean streamed) {
-        visit(request, parameters, streamed, true, handler, new VisitCallback() {
+    private void visitAndWrite(HttpRequest request, List<VisitorParameters> parameters, int parallelism, ResponseHandler handler, boolean streamed) {
+        // When streaming, each visited document is acked only once the network layer has accepted its serialized
+        // bytes, so a slow client holds back the visitor's pending window rather than filling up the heap.
+        ResponseHandler writeHandler = streamed ? new MeasuringVisitResponseHandler(handler) : handler;
+        visit(request, parameters, parallelism, streamed, true, writeHandler, new VisitCallback() {
             @Override public void onStart(StreamableJsonResponse response, boolean fullyApplied) throws IOException {
                 if (streamed) {
                     response.commit(Response.Status.OK, fullyApplied);
@@ -1253,7 +1327,10 @@ public final class DocumentV1ApiHandler extends AbstractRequestHandler {
                 try {
                     if (streamed) {
                         CompletionHandler completion = new CompletionHandler() {
-                            @Override public void completed() { ack.run(); }
+                            @Override public void completed() {
+                                incrementMetricVisitDocuments();
+                                ack.run();
+                            }
                             @Override public void failed(Throwable t) {
                                 ack.run();
                                 onError.accept(t.getMessage());
@@ -1320,151 +1397,189 @@ public final class DocumentV1ApiHandler extends AbstractRequestHandler {
         return new VisitorContinuation(token.serializeToString(), token.percentFinished());
     }
 
+    /**
+     * Returns the continuation of a visit fanned out over the given sessions, which lists the slice id and token of
+     * each unfinished session. Sessions with no known progress are listed with the token they started from.
+     */
+    private static VisitorContinuation continuationFromSessions(List<SessionController> sessions, int parallelism) {
+        StringJoiner token = new StringJoiner(PARALLEL_CONTINUATION_SEPARATOR);
+        double percentFinished = 100.0 * (parallelism - sessions.size());
+        for (SessionController session : sessions) {
+            VisitorContinuation continuation = session.continuation();
+            if (continuation == null) continuation = session.initialContinuation();
+            if (session.isFinished()) {
+                percentFinished += 100.0;
+            } else {
+                percentFinished += continuation.percentFinished();
+                token.add(session.sliceId() + PARALLEL_CONTINUATION_SLICE_SEPARATOR + continuation.token());
+            }
+        }
+        if (token.length() == 0) return VisitorContinuation.FINISHED;
+        return new VisitorContinuation(token.toString(), percentFinished / parallelism);
+    }
+
     private static ProgressToken cloneProgressToken(ProgressToken sourceToken) {
         // FIXME this roundtrip feels pretty dirty, but no existing token API for deep-cloning...
         return new ProgressToken(sourceToken.serialize());
     }
 
-    @SuppressWarnings("fallthrough")
     private void visit(HttpRequest request, VisitorParameters parameters, boolean streaming, boolean fullyApplied,
                        ResponseHandler handler, VisitCallback callback) {
+        visit(request, List.of(parameters), 0, streaming, fullyApplied, handler, callback);
+    }
+
+    /**
+     * Visits with one visitor session per given parameters, writing the output of all of them to the same response,
+     * which is completed when the last session is done. If parallelism is positive, the sessions are slices of a visit
+     * fanned out over that many sessions, and the continuation of the visit is that of all unfinished sessions.
+     */
+    @SuppressWarnings("fallthrough")
+    private void visit(HttpRequest request, List<VisitorParameters> sessionParameters, int parallelism, boolean streaming,
+                       boolean fullyApplied, ResponseHandler handler, VisitCallback callback) {
         try {
             StreamableJsonResponse response = createStreamableJsonResponse(request, handler, streaming);
-            Phaser phaser = new Phaser(2); // Synchronize this thread (dispatch) with the visitor callback thread.
             AtomicReference<String> error = new AtomicReference<>(); // Set if error occurs during processing of visited documents.
             callback.onStart(response, fullyApplied);
             final AtomicLong locallyReceivedDocCount = new AtomicLong(0);
-            VisitorControlHandler controller = new VisitorControlHandler() {
-                final ScheduledFuture<?> abort = streaming ? visitDispatcher.schedule(this::abort, visitTimeout(request), MILLISECONDS) : null;
-                final AtomicReference<VisitorSession> session = new AtomicReference<>();
-                ProgressToken initialProgress = parameters.getResumeToken(); // may be null
-                @Override public void setSession(VisitorControlSession session) { // Workaround for broken session API ಠ_ಠ
-                    super.setSession(session);
-                    if (session instanceof VisitorSession visitorSession) {
-                        // If no initial progress was provided (i.e. this is the first visit of potentially many)
-                        // we must remember the progress token implicitly created by the visitor session during
-                        // its bootstrap, as this token will represent the completely unfinished visit state.
-                        // This is because a session failure prior to receiving even a single bucket will not provide
-                        // us with an onProgress control handler callback, nor will the VisitorParameters have a
-                        // token. If we then don't remember the session's bootstrap token, we won't have a token
-                        // to communicate to the client, and the client may erroneously believe that visiting has
-                        // fully completed.
-                        if (initialProgress == null) {
-                            // The session has not yet been started when setSession() is invoked, so this is thread safe.
-                            initialProgress = cloneProgressToken(visitorSession.getProgress());
+            List<SessionController> sessions = new ArrayList<>();
+            AtomicInteger remaining = new AtomicInteger(sessionParameters.size());
+            Supplier<VisitorContinuation> continuation = () -> parallelism > 0
+                    ? continuationFromSessions(sessions, parallelism)
+                    : sessions.get(0).continuation();
+            Runnable onDone = () -> {
+                if (remaining.decrementAndGet() > 0) return;
+
+                loggingException(() -> {
+                    try (response) {
+                        callback.onEnd(response);
+
+                        // Locally tracked document count is only correct if we have a local data handler.
+                        // Otherwise, we have to report the statistics received transitively from the content nodes.
+                        long statsDocCount = 0;
+                        boolean hasVisitedAnyBuckets = false;
+                        Trace trace = sessions.size() == 1 ? null : new Trace();
+                        VisitorControlHandler.Result result = null;
+                        for (SessionController session : sessions) {
+                            if (session.getVisitorStatistics() != null)
+                                statsDocCount += session.getVisitorStatistics().getDocumentsVisited();
+                            hasVisitedAnyBuckets |= session.hasVisitedAnyBuckets();
+                            if (session.session.get() != null) {
+                                if (trace == null) trace = session.session.get().getTrace();
+                                else trace.getRoot().addChild(session.session.get().getTrace().getRoot());
+                            }
+                            // Report the most severe outcome of all sessions: FAILURE, then TIMEOUT or ABORTED.
+                            VisitorControlHandler.Result sessionResult = session.getResult();
+                            if (   result == null
+                                || result.getCode() == VisitorControlHandler.CompletionCode.SUCCESS
+                                || sessionResult.getCode() == VisitorControlHandler.CompletionCode.FAILURE && result.getCode() != VisitorControlHandler.CompletionCode.FAILURE)
+                                result = sessionResult;
                         }
-                        this.session.set(visitorSession);
-                    }
-                }
-                void writeCurrentProgressTokenToResponse() throws IOException {
-                    ProgressToken progress = getProgress() != null ? getProgress() : initialProgress;
-                    if (progress != null) {
-                        if (progress.isFinished()) {
-                            response.writeEpilogueContinuation(VisitorContinuation.FINISHED);
-                        } else {
-                            response.writeEpilogueContinuation(continuationFromToken(progress));
+                        VisitorControlHandler.CompletionCode code = result.getCode();
+                        String message = result.getMessage();
+                        response.writeDocumentCount(sessionParameters.get(0).getLocalDataHandler() != null ? locallyReceivedDocCount.get() : statsDocCount);
+
+                        if (trace != null) {
+                            response.writeTrace(trace);
                         }
-                    }
-                }
-                @Override public void onDone(CompletionCode code, String message) {
-                    super.onDone(code, message);
-                    loggingException(() -> {
-                        try (response) {
-                            callback.onEnd(response);
-
-                            // Locally tracked document count is only correct if we have a local data handler.
-                            // Otherwise, we have to report the statistics received transitively from the content nodes.
-                            long statsDocCount = (getVisitorStatistics() != null ? getVisitorStatistics().getDocumentsVisited() : 0);
-                            response.writeDocumentCount(parameters.getLocalDataHandler() != null ? locallyReceivedDocCount.get() : statsDocCount);
-
-                            if (session.get() != null) {
-                                response.writeTrace(session.get().getTrace());
-                            }
-                            int status = Status.INTERNAL_SERVER_ERROR;
-                            switch (code) {
-                                case TIMEOUT: // Intentional fallthrough.
-                                case ABORTED:
-                                    if (error.get() == null && ! hasVisitedAnyBuckets() && parameters.getVisitInconsistentBuckets()) {
-                                        response.writeMessage("No buckets visited within timeout of " +
-                                                              parameters.getSessionTimeoutMs() + "ms (request timeout -5s)",
-                                                              StreamableJsonResponse.MessageSeverity.INFO); // Timeout here is not an error
-                                        status = Response.Status.GATEWAY_TIMEOUT;
-                                        if (streaming) {
-                                            // When we're streaming output, we can't communicate timeouts via HTTP
-                                            // response codes since we've already sent all headers. We have no real
-                                            // choice but to emit the current progress token and letting the client
-                                            // try again. We can't _not_ do this, as the absence of a continuation
-                                            // token would make it appear as if visiting has completed successfully.
-                                            writeCurrentProgressTokenToResponse();
-                                        }
-                                        break;
-                                    }
-                                case SUCCESS:
-                                    if (error.get() == null) {
-                                        writeCurrentProgressTokenToResponse();
-                                        status = Response.Status.OK;
-                                        break;
-                                    }
-                                default:
-                                    response.writeMessage(error.get() != null ? error.get() : message != null ? message : "Visiting failed",
-                                                          StreamableJsonResponse.MessageSeverity.ERROR);
+                        int status = Status.INTERNAL_SERVER_ERROR;
+                        switch (code) {
+                            case TIMEOUT: // Intentional fallthrough.
+                            case ABORTED:
+                                if (error.get() == null && ! hasVisitedAnyBuckets && sessionParameters.get(0).getVisitInconsistentBuckets()) {
+                                    response.writeMessage("No buckets visited within timeout of " +
+                                                          sessionParameters.get(0).getSessionTimeoutMs() + "ms (request timeout -5s)",
+                                                          StreamableJsonResponse.MessageSeverity.INFO); // Timeout here is not an error
+                                    status = Response.Status.GATEWAY_TIMEOUT;
                                     if (streaming) {
-                                        // Always attempt to write a continuation token regardless of error state when
-                                        // streaming. See timeout/aborted rationale above as to why we must do this.
-                                        writeCurrentProgressTokenToResponse();
+                                        // When we're streaming output, we can't communicate timeouts via HTTP
+                                        // response codes since we've already sent all headers. We have no real
+                                        // choice but to emit the current progress token and letting the client
+                                        // try again. We can't _not_ do this, as the absence of a continuation
+                                        // token would make it appear as if visiting has completed successfully.
+                                        writeContinuation(response, continuation.get());
                                     }
-                            }
-                            if ( ! streaming) {
-                                response.commit(status, fullyApplied);
-                            }
+                                    break;
+                                }
+                            case SUCCESS:
+                                if (error.get() == null) {
+                                    writeContinuation(response, continuation.get());
+                                    status = Response.Status.OK;
+                                    break;
+                                }
+                            default:
+                                response.writeMessage(error.get() != null ? error.get() : message != null ? message : "Visiting failed",
+                                                      StreamableJsonResponse.MessageSeverity.ERROR);
+                                if (streaming) {
+                                    // Always attempt to write a continuation token regardless of error state when
+                                    // streaming. See timeout/aborted rationale above as to why we must do this.
+                                    writeContinuation(response, continuation.get());
+                                }
+                        }
+                        if ( ! streaming) {
+                            response.commit(status, fullyApplied);
                         }
-                    });
-                    if (abort != null) {
-                        abort.cancel(false); // Avoid keeping scheduled future alive if this completes in any other fashion.
-                    }
-                    visitDispatcher.execute(() -> {
-                        phaser.arriveAndAwaitAdvance(); // We may get here while dispatching thread is still putting us in the map.
-                        visits.remove(this).destroy();
-                    });
-                }
-                @Override public void onProgress(ProgressToken token) {
-                    super.onProgress(token);
-                    if (streaming) {
-                        loggingException(() -> response.reportUpdatedContinuation(() -> continuationFromToken(token)));
                     }
+                });
+            };
+            Runnable onProgress = () -> {
+                if (streaming) {
+                    loggingException(() -> response.reportUpdatedContinuation(continuation));
                 }
             };
-            if (parameters.getRemoteDataHandler() == null) {
-                parameters.setLocalDataHandler(new VisitorDataHandler() {
-                    @Override public void onMessage(Message m, AckToken token) {
-                        Document document = null;
-                        DocumentId removeId = null;
-                        long persistedTimestamp = 0;
-                        if (m instanceof PutDocumentMessage put) {
-                            document = put.getDocumentPut().getDocument();
-                            persistedTimestamp = put.getPersistedTimestamp();
-                        } else if (parameters.visitRemoves() && m instanceof RemoveDocumentMessage remove) {
-                            removeId = remove.getDocumentId();
-                            persistedTimestamp = remove.getPersistedTimestamp();
-                        } else {
-                            throw new UnsupportedOperationException("Got unsupported message type: " + m.getClass().getName());
+            for (VisitorParameters parameters : sessionParameters) {
+                sessions.add(new SessionController(request, streaming, parameters, onDone, onProgress));
+            }
+            for (int i = 0; i < sessions.size(); i++) {
+                SessionController controller = sessions.get(i);
+                VisitorParameters parameters = sessionParameters.get(i);
+                if (parameters.getRemoteDataHandler() == null) {
+                    parameters.setLocalDataHandler(new VisitorDataHandler() {
+                        @Override public void onMessage(Message m, AckToken token) {
+                            Document document = null;
+                            DocumentId removeId = null;
+                            long persistedTimestamp = 0;
+                            if (m instanceof PutDocumentMessage put) {
+                                document = put.getDocumentPut().getDocument();
+                                persistedTimestamp = put.getPersistedTimestamp();
+                            } else if (parameters.visitRemoves() && m instanceof RemoveDocumentMessage remove) {
+                                removeId = remove.getDocumentId();
+                                persistedTimestamp = remove.getPersistedTimestamp();
+                            } else {
+                                throw new UnsupportedOperationException("Got unsupported message type: " + m.getClass().getName());
+                            }
+                            locallyReceivedDocCount.getAndAdd(1);
+                            callback.onDocument(response,
+                                                document,
+                                                removeId,
+                                                persistedTimestamp,
+                                                () -> ack(token),
+                                                errorMessage -> {
+                                                    error.set(errorMessage);
+                                                    sessions.forEach(SessionController::abortIfStarted);
+                                                });
                         }
-                        locallyReceivedDocCount.getAndAdd(1);
-                        callback.onDocument(response,
-                                            document,
-                                            removeId,
-                                            persistedTimestamp,
-                                            () -> ack(token),
-                                            errorMessage -> {
-                                                error.set(errorMessage);
-                                                controller.abort();
-                                            });
-                    }
-                });
+                    });
+                }
+                parameters.setControlHandler(controller);
+                try {
+                    visits.put(controller, access.createVisitorSession(parameters));
+                }
+                catch (ParseException | RuntimeException e) {
+                    if (i == 0) throw e; // Nothing is started yet, so fail the request as a whole.
+
+                    // Abort the sessions already started, and complete the others, so the response is completed.
+                    log.log(WARNING, "Failed creating visitor session", e);
+                    error.set("Failed creating visitor session: " + Exceptions.toMessageString(e));
+                    sessions.forEach(SessionController::abortIfStarted);
+                    for (int j = i; j < sessions.size(); j++)
+                        sessions.get(j).fail(error.get());
+                    return;
+                }
+                controller.phaser.arriveAndDeregister();
+                if (error.get() != null) {
+                    controller.abortIfStarted(); // Another session failed while this was being created.
+                }
             }
-            parameters.setControlHandler(controller);
-            visits.put(controller, access.createVisitorSession(parameters));
-            phaser.arriveAndDeregister();
         } catch (ParseException e) {
             badRequest(request, new IllegalArgumentException(e), handler);
         } catch (IOException e) {
@@ -1472,6 +1587,125 @@ public final class DocumentV1ApiHandler extends AbstractRequestHandler {
         }
     }
 
+    private static void writeContinuation(StreamableJsonResponse response, VisitorContinuation continuation) throws IOException {
+        if (continuation != null) {
+            response.writeEpilogueContinuation(continuation);
+        }
+    }
+
+    /** Controls one visitor session of a visit, and tracks its progress. */
+    private class SessionController extends VisitorControlHandler {
+
+        private final ScheduledFuture<?> abort;
+        private final AtomicReference<VisitorSession> session = new AtomicReference<>();
+        private final Phaser phaser = new Phaser(2); // Synchronize the dispatch thread with the visitor callback thread.
+        private final boolean streaming;
+        private final int sliceId;
+        private final Runnable onDone;
+        private final Runnable onProgress;
+        private ProgressToken initialProgress; // may be null
+        private volatile VisitorContinuation lastContinuation; // of the last progress reported while streaming
+        private volatile boolean lastFinished;
+
+        SessionController(HttpRequest request, boolean streaming, VisitorParameters parameters, Runnable onDone, Runnable onProgress) {
+            this.abort = streaming ? visitDispatcher.schedule(this::abortIfStarted, visitTimeout(request), MILLISECONDS) : null;
+            this.streaming = streaming;
+            this.sliceId = parameters.getSliceId();
+            this.initialProgress = parameters.getResumeToken();
+            this.onDone = onDone;
+            this.onProgress = onProgress;
+        }
+
+        @Override public void setSession(VisitorControlSession session) { // Workaround for broken session API ಠ_ಠ
+            super.setSession(session);
+            if (session instanceof VisitorSession visitorSession) {
+                // If no initial progress was provided (i.e. this is the first visit of potentially many)
+                // we must remember the progress token implicitly created by the visitor session during
+                // its bootstrap, as this token will represent the completely unfinished visit state.
+                // This is because a session failure prior to receiving even a single bucket will not provide
+                // us with an onProgress control handler callback, nor will the VisitorParameters have a
+                // token. If we then don't remember the session's bootstrap token, we won't have a token
+                // to communicate to the client, and the client may erroneously believe that visiting has
+                // fully completed.
+                if (initialProgress == null) {
+                    // The session has not yet been started when setSession() is invoked, so this is thread safe.
+                    initialProgress = cloneProgressToken(visitorSession.getProgress());
+                }
+                if (streaming) {
+                    track(initialProgress);
+                }
+                this.session.set(visitorSession);
+            }
+        }
+
+        @Override public void onDone(CompletionCode code, String message) {
+            super.onDone(code, message);
+            onDone.run();
+            if (abort != null) {
+                abort.cancel(false); // Avoid keeping scheduled future alive if this completes in any other fashion.
+            }
+            visitDispatcher.execute(() -> {
+                phaser.arriveAndAwaitAdvance(); // We may get here while dispatching thread is still putting us in the map.
+                VisitorSession session = visits.remove(this);
+                if (session != null) session.destroy(); // Absent if the session could not be created.
+            });
+        }
+
+        @Override public void onProgress(ProgressToken token) {
+            super.onProgress(token);
+            if (streaming) {
+                track(token);
+                onProgress.run();
+            }
+        }
+
+        private void track(ProgressToken progress) {
+            lastContinuation = continuationFromToken(progress);
+            lastFinished = progress.isFinished();
+        }
+
+        void abortIfStarted() {
+            if (session.get() != null) abort();
+        }
+
+        /** Completes this, whose session could not be created, with failure. */
+        void fail(String message) {
+            phaser.arriveAndDeregister();
+            onDone(CompletionCode.FAILURE, message);
+        }
+
+        int sliceId() { return sliceId; }
+
+        /** Returns the continuation this started from, which is an empty token if it started from scratch. */
+        VisitorContinuation initialContinuation() {
+            return initialProgress != null ? continuationFromToken(initialProgress) : new VisitorContinuation("", 0);
+        }
+
+        /** Returns the current progress of this, which must be done, or null if none. */
+        private ProgressToken progress() {
+            return getProgress() != null ? getProgress() : initialProgress;
+        }
+
+        /**
+         * Returns the continuation of this: when done, that of its final progress, and otherwise, if streaming,
+         * that of the last reported progress. Returns null if this is not known.
+         */
+        VisitorContinuation continuation() {
+            if ( ! isDone()) return lastContinuation;
+            ProgressToken progress = progress();
+            if (progress == null) return null;
+            return progress.isFinished() ? VisitorContinuation.FINISHED : continuationFromToken(progress);
+        }
+
+        /** Returns whether this has visited all its buckets, as far as is known. */
+        boolean isFinished() {
+            if ( ! isDone()) return lastFinished;
+            ProgressToken progress = progress();
+            return progress != null && progress.isFinished();
+        }
+
+    }
+
     // ------------------------------------------------ Helpers ------------------------------------------------
 
     private static long doomMillis(HttpRequest request) {
@@ -1553,6 +1787,49 @@ public final class DocumentV1ApiHandler extends AbstractRequestHandler {
 
     }
 
+    /** Tracks the bytes of a streamed visit response which are written, and not yet accepted by the network layer. */
+    private class MeasuringVisitResponseHandler implements ResponseHandler {
+
+        private final ResponseHandler delegate;
+
+        private MeasuringVisitResponseHandler(ResponseHandler delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public ContentChannel handleResponse(Response response) {
+            ContentChannel channel = delegate.handleResponse(response);
+            return new ContentChannel() {
+                @Override public void write(ByteBuffer buf, CompletionHandler handler) {
+                    int bytes = buf.remaining();
+                    if (bytes == 0) {
+                        channel.write(buf, handler);
+                        return;
+                    }
+                    visitBytesPending.addAndGet(bytes);
+                    channel.write(buf, new CompletionHandler() {
+                        @Override public void completed() {
+                            written(bytes);
+                            if (handler != null) handler.completed();
+                        }
+                        @Override public void failed(Throwable t) {
+                            visitBytesPending.addAndGet(-bytes);
+                            if (handler != null) handler.failed(t);
+                        }
+                    });
+                }
+                @Override public void close(CompletionHandler handler) { channel.close(handler); }
+                @Override public void onError(Throwable error) { channel.onError(error); }
+            };
+        }
+
+        private void written(int bytes) {
+            visitBytesPending.addAndGet(-bytes);
+            addMetricVisitBytes(bytes);
+        }
+
+    }
+
     static class StorageCluster {
 
         private final String name;
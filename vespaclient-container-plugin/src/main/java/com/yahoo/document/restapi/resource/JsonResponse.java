@@ -61,7 +61,7 @@ class JsonResponse implements StreamableJsonResponse {
     private final JsonGenerator json;
     private final ResponseHandler handler;
     private final Queue<CompletionHandler> acks = new ConcurrentLinkedQueue<>();
-    private final Queue<ByteArrayOutputStream> docs = new ConcurrentLinkedQueue<>();
+    private final Queue<NoCopyByteArrayOutputStream> docs = new ConcurrentLinkedQueue<>();
     private final AtomicLong documentsWritten = new AtomicLong();
     private final AtomicLong documentsFlushed = new AtomicLong();
     private final AtomicLong documentsAcked = new AtomicLong();
@@ -245,7 +245,7 @@ class JsonResponse implements StreamableJsonResponse {
     void writeDocument(DocumentWriter documentWriter, CompletionHandler completionHandler) throws IOException {
         // Serialise document and add to queue, not necessarily in the order dictated by "written" above,
         // i.e., the first 128 documents in the queue are not necessarily the ones ack'ed early.
-        ByteArrayOutputStream myOut = new ByteArrayOutputStream(1);
+        NoCopyByteArrayOutputStream myOut = new NoCopyByteArrayOutputStream(1);
         myOut.write(','); // Prepend rather than append, to avoid double memory copying.
         documentWriter.write(myOut);
         docs.add(myOut);
@@ -281,7 +281,7 @@ class JsonResponse implements StreamableJsonResponse {
 
     synchronized void flushDocuments() throws IOException {
         for (int i = 0; i < FLUSH_SIZE; i++) {
-            ByteArrayOutputStream doc = docs.poll();
+            NoCopyByteArrayOutputStream doc = docs.poll();
             if (doc == null) {
                 break;
             }
@@ -289,10 +289,10 @@ class JsonResponse implements StreamableJsonResponse {
             if (!documentsDone) {
                 if (first) { // First chunk, remove leading comma from first document, and flush "json" to "buffer".
                     json.flush();
-                    buffer.write(ByteBuffer.wrap(doc.toByteArray(), 1, doc.size() - 1), null);
+                    buffer.write(doc.toByteBuffer(1), null);
                     first = false;
                 } else {
-                    buffer.write(ByteBuffer.wrap(doc.toByteArray()), null);
+                    buffer.write(doc.toByteBuffer(0), null);
                 }
             }
         }
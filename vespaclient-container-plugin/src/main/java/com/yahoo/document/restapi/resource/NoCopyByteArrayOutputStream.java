@@ -0,0 +1,23 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.document.restapi.resource;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link ByteArrayOutputStream} which exposes its written content as a buffer without copying it,
+ * so serialized documents can be handed directly to the response content channel.
+ * The stream must not be written to after {@link #toByteBuffer(int)} is called.
+ */
+class NoCopyByteArrayOutputStream extends ByteArrayOutputStream {
+
+    NoCopyByteArrayOutputStream(int initialSize) {
+        super(initialSize);
+    }
+
+    /** Returns a buffer wrapping the content written to this, starting at the given offset */
+    ByteBuffer toByteBuffer(int offset) {
+        return ByteBuffer.wrap(buf, offset, count - offset);
+    }
+
+}
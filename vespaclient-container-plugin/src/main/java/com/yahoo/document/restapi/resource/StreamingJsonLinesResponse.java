@@ -12,9 +12,7 @@ import com.yahoo.jdisc.handler.CompletionHandler;
 import com.yahoo.messagebus.Trace;
 import com.yahoo.tensor.serialization.JsonFormat;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.nio.ByteBuffer;
 import java.util.function.Supplier;
 
 /**
@@ -78,12 +76,12 @@ class StreamingJsonLinesResponse implements StreamableJsonResponse {
     }
 
     private void writeJsonLine(MyJsonWriter jsonWriter, CompletionHandler completionHandler) throws IOException {
-        ByteArrayOutputStream myOut = new ByteArrayOutputStream(DEFAULT_STREAM_ALLOC_SIZE);
+        NoCopyByteArrayOutputStream myOut = new NoCopyByteArrayOutputStream(DEFAULT_STREAM_ALLOC_SIZE);
         try (JsonGenerator json = JSON_FACTORY.createGenerator(myOut)) {
             jsonWriter.writeInto(json);
             json.writeRaw('\n');
         }
-        responseWriter.write(ByteBuffer.wrap(myOut.toByteArray()), completionHandler);
+        responseWriter.write(myOut.toByteBuffer(0), completionHandler);
     }
 
     // Write JSONL line with no associated explicit completion handler
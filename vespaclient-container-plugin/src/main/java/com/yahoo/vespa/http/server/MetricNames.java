@@ -30,6 +30,9 @@ public final class MetricNames {
     public static final String QUEUE_BYTES = ContainerMetrics.HTTPAPI_QUEUED_BYTES.baseName();
     public static final String QUEUE_AGE = ContainerMetrics.HTTPAPI_QUEUED_AGE.baseName();
     public static final String MBUS_WINDOW_SIZE = ContainerMetrics.HTTPAPI_MBUS_WINDOW_SIZE.baseName();
+    public static final String VISIT_DOCUMENTS = ContainerMetrics.HTTPAPI_VISIT_DOCUMENTS.baseName();
+    public static final String VISIT_BYTES = ContainerMetrics.HTTPAPI_VISIT_BYTES.baseName();
+    public static final String VISIT_PENDING_BYTES = ContainerMetrics.HTTPAPI_VISIT_PENDING_BYTES.baseName();
 
     private MetricNames() { }
 
@@ -76,6 +76,7 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
@@ -1175,6 +1176,101 @@ public class DocumentV1ApiTest {
         List<String> contentType = response.getResponse().headers().get("Content-Type");
         assertEquals(1, contentType.size());
         assertEquals("application/jsonl; charset=UTF-8", contentType.get(0));
+        assertEquals(4, metric.metrics().get("httpapi_visit_documents").get(Map.of()), 0);
+        assertTrue(metric.metrics().get("httpapi_visit_bytes").get(Map.of()) > 0);
+        driver.close();
+    }
+
+    @Test
+    void parallel_visit_fans_out_over_slices_and_combines_continuations() {
+        var driver = new RequestHandlerTestDriver(handler);
+        var tokens = List.of(new AckToken(null), new AckToken(null));
+        access.expect(tokens);
+        List<Integer> sliceIds = new CopyOnWriteArrayList<>();
+        access.expect(parameters -> {
+            assertEquals(2, parameters.getSlices());
+            sliceIds.add(parameters.getSliceId());
+            parameters.getLocalDataHandler().onMessage(new PutDocumentMessage(new DocumentPut(parameters.getSliceId() == 0 ? doc1 : doc2)),
+                                                       tokens.get(parameters.getSliceId()));
+            var statistics = new VisitorStatistics();
+            statistics.setBucketsVisited(1);
+            statistics.setDocumentsVisited(1);
+            parameters.getControlHandler().onVisitorStatistics(statistics);
+            parameters.getControlHandler().onDone(VisitorControlHandler.CompletionCode.SUCCESS, "done");
+        });
+        var request = driver.createRequest("http://localhost/document/v1?cluster=content&stream=true&parallelism=2", HttpRequest.Method.GET);
+        request.headers().add("Accept", "application/jsonl");
+        var response = driver.sendRequest(request, "");
+        String token = makeIncompleteProgressToken().serializeToString();
+        assertSameJsonLines(String.format(Locale.ROOT, """
+                {"put":"id:space:music::one","fields":{"artist":"Tom Waits","embedding":{"type":"tensor(x[3])","values":[1.0,2.0,3.0]}}}
+                {"put":"id:space:music:n=1:two","fields":{"artist":"Asa-Chan & Jun-Ray","embedding":{"type":"tensor(x[3])","values":[4.0,5.0,6.0]}}}
+                {"sessionStats":{"documentCount":2}}
+                {"continuation":{"token":"0~%s.1~%s","percentFinished":0.0}}
+                """, token, token), response.readAll());
+        assertEquals(200, response.getStatus());
+        assertEquals(List.of(0, 1), sliceIds);
+
+        // Continuing visits only the unfinished slices, from their own progress
+        sliceIds.clear();
+        access.expect(parameters -> {
+            assertEquals(2, parameters.getSlices());
+            assertEquals(token, parameters.getResumeToken().serializeToString());
+            sliceIds.add(parameters.getSliceId());
+            parameters.getControlHandler().onDone(VisitorControlHandler.CompletionCode.SUCCESS, "done");
+        });
+        request = driver.createRequest("http://localhost/document/v1?cluster=content&stream=true&parallelism=2&continuation=1~" + token, HttpRequest.Method.GET);
+        request.headers().add("Accept", "application/jsonl");
+        response = driver.sendRequest(request, "");
+        response.readAll();
+        assertEquals(200, response.getStatus());
+        assertEquals(List.of(1), sliceIds);
+
+        // Continuations of parallel visits require the same parallelism, which requires streaming
+        response = driver.sendRequest("http://localhost/document/v1?cluster=content&stream=true&continuation=1~" + token);
+        assertEquals(400, response.getStatus());
+        response = driver.sendRequest("http://localhost/document/v1?cluster=content&stream=true&parallelism=2&continuation=2~" + token);
+        assertEquals(400, response.getStatus());
+        response = driver.sendRequest("http://localhost/document/v1?cluster=content&parallelism=2");
+        assertEquals(400, response.getStatus());
+        response = driver.sendRequest("http://localhost/document/v1?cluster=content&stream=true&parallelism=65");
+        assertEquals(400, response.getStatus());
+        response = driver.sendRequest("http://localhost/document/v1?cluster=content&stream=true&parallelism=64&slices=" + Integer.MAX_VALUE + "&sliceId=0");
+        assertEquals(400, response.getStatus());
+        driver.close();
+    }
+
+    @Test
+    void parallel_visit_completes_with_all_slices_in_continuation_when_a_session_cannot_be_created() {
+        var driver = new RequestHandlerTestDriver(handler);
+        List<Integer> sliceIds = new CopyOnWriteArrayList<>();
+        access.expect(parameters -> {
+            sliceIds.add(parameters.getSliceId());
+            if (parameters.getSliceId() == 1) throw new IllegalStateException("no more sessions");
+            parameters.getControlHandler().onDone(VisitorControlHandler.CompletionCode.SUCCESS, "done");
+        });
+        var request = driver.createRequest("http://localhost/document/v1?cluster=content&stream=true&parallelism=3", HttpRequest.Method.GET);
+        request.headers().add("Accept", "application/jsonl");
+        var response = driver.sendRequest(request, "");
+        String output = response.readAll();
+        assertTrue(output.contains("Failed creating visitor session: no more sessions"), output);
+        String token = makeIncompleteProgressToken().serializeToString();
+        assertTrue(output.contains(String.format(Locale.ROOT, "\"token\":\"0~%s.1~%s.2~\"", token, token)), output);
+        assertEquals(List.of(0, 1), sliceIds);
+
+        // The slice which was never started is continued from scratch
+        sliceIds.clear();
+        access.expect(parameters -> {
+            assertNull(parameters.getResumeToken());
+            sliceIds.add(parameters.getSliceId());
+            parameters.getControlHandler().onDone(VisitorControlHandler.CompletionCode.SUCCESS, "done");
+        });
+        request = driver.createRequest("http://localhost/document/v1?cluster=content&stream=true&parallelism=3&continuation=2~", HttpRequest.Method.GET);
+        request.headers().add("Accept", "application/jsonl");
+        response = driver.sendRequest(request, "");
+        response.readAll();
+        assertEquals(200, response.getStatus());
+        assertEquals(List.of(2), sliceIds);
         driver.close();
     }
 
@@ -13,6 +13,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.DoubleBinaryOperator;
 
 /**
  * A mixed tensor type. This is class is currently suitable for serialization
@@ -195,6 +196,38 @@ public class MixedTensor implements Tensor {
         return new MixedTensor(type, indexBuilder.build());
     }
 
+    /**
+     * Returns a new tensor where the given cells are modified. Only the dense subspaces containing modified
+     * cells are copied, while the others are shared with this.
+     */
+    @Override
+    public Tensor modify(DoubleBinaryOperator op, Map<TensorAddress, Double> cells) {
+        double[][] modifiedSubspaces = null; // Copies of the modified subspaces, by subspace number
+        for (var cell : cells.entrySet()) {
+            TensorAddress address = cell.getKey();
+            Integer subspace = index.sparseMap.get(address.mappedPartialAddress(index.sparseType, type.dimensions()));
+            if (subspace == null || subspace >= index.denseSubspaces.size()) continue;
+            if ( ! index.isWithinDenseBounds(address)) continue;
+            int denseOffset = index.denseOffsetOf(address);
+
+            if (modifiedSubspaces == null)
+                modifiedSubspaces = new double[index.denseSubspaces.size()][];
+            if (modifiedSubspaces[subspace] == null)
+                modifiedSubspaces[subspace] = index.denseSubspaces.get(subspace).cells.clone();
+            double[] values = modifiedSubspaces[subspace];
+            values[denseOffset] = op.applyAsDouble(values[denseOffset], cell.getValue());
+        }
+        if (modifiedSubspaces == null) return this;
+
+        var indexBuilder = new Index.Builder(type);
+        for (int i = 0; i < index.denseSubspaces.size(); i++) {
+            DenseSubspace subspace = index.denseSubspaces.get(i);
+            indexBuilder.addBlock(modifiedSubspaces[i] == null ? subspace
+                                                               : new DenseSubspace(subspace.sparseAddress, modifiedSubspaces[i]));
+        }
+        return new MixedTensor(type, indexBuilder.build());
+    }
+
     @Override
     public int hashCode() { return Objects.hash(type, index.denseSubspaces); }
 
@@ -502,6 +535,17 @@ public class MixedTensor implements Tensor {
             return (int) offset;
         }
 
+        /** Returns whether the labels of all indexed dimensions in the given address are within their size */
+        private boolean isWithinDenseBounds(TensorAddress address) {
+            for (int i = 0; i < type.dimensions().size(); i++) {
+                TensorType.Dimension dimension = type.dimensions().get(i);
+                if ( ! dimension.isIndexed()) continue;
+                long label = address.numericLabel(i);
+                if (label < 0 || label >= dimension.size().get()) return false;
+            }
+            return true;
+        }
+
         public int denseSubspaceSize() {
             return denseSubspaceSize;
         }
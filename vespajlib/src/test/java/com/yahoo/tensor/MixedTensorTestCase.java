@@ -12,6 +12,7 @@ import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -185,4 +186,16 @@ public class MixedTensorTestCase {
         assertEquals("tensor(x[3]):[4.0, 5.0, 6.0]", indexedTensors.get("key2").toString());
     }
 
+    @Test
+    public void testModifySharesUnmodifiedSubspaces() {
+        TensorType type = new TensorType.Builder().mapped("key").indexed("x", 2).build();
+        MixedTensor tensor = (MixedTensor)Tensor.from(type, "{{key:a,x:0}:1, {key:a,x:1}:2, {key:b,x:0}:3, {key:b,x:1}:4}");
+        Tensor modifier = Tensor.from("tensor(key{},x[3]):{{key:a,x:1}:10, {key:a,x:2}:30, {key:c,x:0}:20}");
+        MixedTensor modified = (MixedTensor)tensor.modify((left, right) -> left + right, modifier.cells());
+        assertEquals(Tensor.from(type, "{{key:a,x:0}:1, {key:a,x:1}:12, {key:b,x:0}:3, {key:b,x:1}:4}"), modified);
+        assertEquals(Tensor.from(type, "{{key:a,x:0}:1, {key:a,x:1}:2, {key:b,x:0}:3, {key:b,x:1}:4}"), tensor);
+        assertSame(tensor.getInternalDenseSubspaces().get(1), modified.getInternalDenseSubspaces().get(1));
+        assertSame(tensor, tensor.modify((left, right) -> right, Tensor.from(type, "{{key:c,x:0}:1}").cells()));
+    }
+
 }
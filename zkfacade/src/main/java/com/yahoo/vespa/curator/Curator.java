@@ -4,12 +4,15 @@ package com.yahoo.vespa.curator;
 import com.yahoo.cloud.config.CuratorConfig;
 import com.yahoo.component.AbstractComponent;
 import com.yahoo.component.annotation.Inject;
+import com.yahoo.compress.CompressionType;
+import com.yahoo.compress.Compressor;
 import com.yahoo.concurrent.DaemonThreadFactory;
 import com.yahoo.path.Path;
 import com.yahoo.vespa.curator.recipes.CuratorCounter;
 import com.yahoo.vespa.defaults.Defaults;
 import com.yahoo.vespa.zookeeper.server.VespaZooKeeperServer;
 import com.yahoo.vespa.zookeeper.client.ZkClientConfigBuilder;
+import org.apache.curator.RetryLoop;
 import org.apache.curator.RetryPolicy;
 import org.apache.curator.framework.CuratorFramework;
 import org.apache.curator.framework.CuratorFrameworkFactory;
@@ -25,6 +28,8 @@ import org.apache.curator.framework.recipes.locks.InterProcessMutex;
 import org.apache.curator.retry.ExponentialBackoffRetry;
 import org.apache.zookeeper.CreateMode;
 import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.Op;
+import org.apache.zookeeper.OpResult;
 import org.apache.zookeeper.client.ZKClientConfig;
 import org.apache.zookeeper.common.ConfigException;
 import org.apache.zookeeper.data.Stat;
@@ -34,13 +39,18 @@ import org.apache.zookeeper.server.quorum.QuorumPeerConfig;
 import java.io.File;
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -48,6 +58,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.CRC32C;
 
 /**
  * Curator interface for Vespa.
@@ -73,6 +84,18 @@ public class Curator extends AbstractComponent implements AutoCloseable {
     private static final RetryPolicy DEFAULT_RETRY_POLICY = new ExponentialBackoffRetry((int) BASE_SLEEP_TIME.toMillis(), MAX_RETRIES);
     private static final int defaultJuteMaxBuffer = new CuratorConfig.Builder().build().juteMaxBuffer();
 
+    // Large data, see setLarge: A header node, starting with a zero byte which text and most binary formats do not,
+    // followed by the compressed data, or by nothing if that is split into chunks stored in children of the header node
+    private static final int largeDataMagic = 0x007a6b4c;
+    private static final byte largeDataVersion = 1;
+    private static final int largeDataHeaderSize = 4 + 1 + 1 + 4 + 4 + 4 + 8;
+    private static final int largeDataSizeOffset = 4 + 1 + 1;
+    private static final String largeDataChunkPrefix = ".chunk-";
+    private static final int largeDataReadAttempts = 3;
+    private static final Compressor largeDataCompressor = new Compressor(CompressionType.LZ4, 5);
+    static final int largeDataMinSize = 16 * 1024;
+    static final int largeDataChunkSize = 256 * 1024;
+
     private final CuratorFramework curatorFramework;
     private final ConnectionSpec connectionSpec;
     private final long juteMaxBuffer;
@@ -80,6 +103,7 @@ public class Curator extends AbstractComponent implements AutoCloseable {
 
     // All lock keys, to allow re-entrance. This will grow forever, but this should be too slow to be a problem
     private final ConcurrentHashMap<Path, Lock> locks = new ConcurrentHashMap<>();
+    private ExecutorService largeDataExecutor = null; // guarded by this
 
     /** Creates a curator instance from a comma-separated string of ZooKeeper host:port strings */
     public static Curator create(String connectionSpec) {
@@ -428,6 +452,207 @@ public class Curator extends AbstractComponent implements AutoCloseable {
         }
     }
 
+    /**
+     * Sets the given data at the given path, like {@link #set(Path, byte[])}, but data of at least
+     * {@link #largeDataMinSize} bytes is compressed, and split into chunks which are written in parallel to
+     * children of the path if it is still larger than {@link #largeDataChunkSize}, such that it may exceed the
+     * max number of bytes allowed per node. The chunks are written before the node referring to them, but this
+     * is not atomic: A reader may get chunks of a concurrent write, and a writer may delete chunks being read.
+     * Readers are correct only because {@link #getLarge} verifies the size and CRC32C of the chunks against
+     * the node referring to them, and reads again if they do not match.
+     * Data set by this must be read by {@link #getLarge}, and the children of the path are reserved for chunks,
+     * see {@link #isLargeDataChunk}.
+     */
+    public void setLarge(Path path, byte[] data) {
+        if (data.length < largeDataMinSize && ! isLargeDataHeader(data)) {
+            if (set(path, data).getNumChildren() > 0) // Any chunks of earlier data are stale now
+                deleteLargeDataChunks(path);
+            return;
+        }
+
+        Compressor.Compression compression = largeDataCompressor.compress(data);
+        byte[] compressed = compression.data();
+        int chunkSize = (int) Math.min(largeDataChunkSize, juteMaxBuffer / 2);
+        int chunkCount = compressed.length + largeDataHeaderSize > chunkSize ? (compressed.length + chunkSize - 1) / chunkSize : 0;
+        ByteBuffer header = ByteBuffer.allocate(largeDataHeaderSize + (chunkCount == 0 ? compressed.length : 0));
+        header.putInt(largeDataMagic)
+              .put(largeDataVersion)
+              .put(compression.type().getCode())
+              .putInt(data.length)
+              .putInt(compressed.length)
+              .putInt(chunkCount)
+              .putLong(checksum(compressed));
+        if (chunkCount == 0)
+            header.put(compressed);
+
+        Map<Path, byte[]> chunks = new LinkedHashMap<>();
+        for (int i = 0; i < chunkCount; i++)
+            chunks.put(path.append(largeDataChunkPrefix + i),
+                       Arrays.copyOfRange(compressed, i * chunkSize, Math.min(compressed.length, (i + 1) * chunkSize)));
+        create(path);
+        setAll(chunks);
+        set(path, header.array());
+        deleteLargeDataChunks(path, chunkCount);
+    }
+
+    /**
+     * Returns the data at the given path, which may be set by either {@link #setLarge} or {@link #set}.
+     * The chunks of data split into several nodes are read by a single multi-read request, when not too large.
+     * Empty is returned if the path does not exist.
+     *
+     * @throws IllegalStateException if the data keeps changing while it is read
+     */
+    public Optional<byte[]> getLarge(Path path) {
+        for (int attempt = 1; ; attempt++) {
+            Optional<byte[]> data = getData(path);
+            if (data.isEmpty() || ! isLargeDataHeader(data.get())) return data;
+
+            ByteBuffer header = ByteBuffer.wrap(data.get());
+            header.getInt(); // magic
+            byte version = header.get();
+            if (version != largeDataVersion)
+                throw new IllegalStateException("Data at " + path.getAbsolute() + " has unknown format version " + version);
+            CompressionType type = CompressionType.valueOf(header.get());
+            int size = header.getInt();
+            int compressedSize = header.getInt();
+            int chunkCount = header.getInt();
+            long checksum = header.getLong();
+
+            Optional<byte[]> compressed = chunkCount == 0 ? Optional.of(Arrays.copyOfRange(data.get(), header.position(), data.get().length))
+                                                          : getLargeDataChunks(path, chunkCount);
+            if (compressed.isPresent() && compressed.get().length == compressedSize && checksum(compressed.get()) == checksum)
+                return Optional.of(largeDataCompressor.decompress(type, compressed.get(), 0, size, Optional.of(compressedSize)));
+
+            if (attempt == largeDataReadAttempts)
+                throw new IllegalStateException("Data at " + path.getAbsolute() + " changed while being read, " +
+                                                "giving up after " + attempt + " attempts");
+        }
+    }
+
+    /**
+     * Returns the size of the data at the given path, as returned by {@link #getLarge}, without reading any chunks
+     * or decompressing it, or empty if the path does not exist.
+     */
+    public Optional<Long> getLargeSize(Path path) {
+        return getData(path).map(data -> isLargeDataHeader(data) ? ByteBuffer.wrap(data).getInt(largeDataSizeOffset)
+                                                                 : data.length)
+                            .map(Integer::longValue);
+    }
+
+    /** Returns whether the given child node name is that of a chunk of data set by {@link #setLarge} */
+    public static boolean isLargeDataChunk(String name) {
+        return name.startsWith(largeDataChunkPrefix);
+    }
+
+    /**
+     * Sets all the given data, creating the nodes if necessary, but not their parents.
+     * This writes in parallel, and returns when all writes are done.
+     */
+    protected void setAll(Map<Path, byte[]> data) {
+        List<Future<?>> writes = new ArrayList<>();
+        for (Map.Entry<Path, byte[]> entry : data.entrySet()) {
+            String absolutePath = entry.getKey().getAbsolute();
+            writes.add(largeDataExecutor().submit(() -> {
+                try {
+                    framework().create().orSetData().forPath(absolutePath, entry.getValue());
+                }
+                catch (Exception e) {
+                    throw new RuntimeException("Could not set data at " + absolutePath, e);
+                }
+            }));
+        }
+        try {
+            for (Future<?> write : writes)
+                write.get();
+        }
+        catch (InterruptedException e) {
+            writes.forEach(write -> write.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while setting data at " + data.size() + " paths", e);
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw new RuntimeException("Could not set data at " + data.size() + " paths", e.getCause());
+        }
+    }
+
+    /**
+     * Returns the data at each of the given paths, in order, or empty for those which do not exist.
+     * This reads with as few multi-read requests as possible, while keeping each response well within the
+     * max number of bytes allowed, given that the data of each node is at most half of that.
+     */
+    protected List<Optional<byte[]>> getAll(List<Path> paths) {
+        int nodesPerRead = (int) Math.max(1, juteMaxBuffer / 2 / Math.min(largeDataChunkSize, juteMaxBuffer / 2));
+        List<Optional<byte[]>> data = new ArrayList<>(paths.size());
+        for (int start = 0; start < paths.size(); start += nodesPerRead) {
+            List<Op> reads = paths.subList(start, Math.min(paths.size(), start + nodesPerRead)).stream()
+                                  .map(path -> Op.getData(path.getAbsolute()))
+                                  .toList();
+            try {
+                List<OpResult> results = RetryLoop.callWithRetry(framework().getZookeeperClient(),
+                                                                 () -> framework().getZookeeperClient().getZooKeeper().multi(reads));
+                for (OpResult result : results)
+                    data.add(result instanceof OpResult.GetDataResult read ? Optional.of(read.getData()) : Optional.empty());
+            }
+            catch (Exception e) {
+                throw new RuntimeException("Could not read data at " + reads.size() + " paths, starting at " +
+                                           paths.get(start).getAbsolute(), e);
+            }
+        }
+        return data;
+    }
+
+    private Optional<byte[]> getLargeDataChunks(Path path, int chunkCount) {
+        List<Path> chunkPaths = new ArrayList<>(chunkCount);
+        for (int i = 0; i < chunkCount; i++)
+            chunkPaths.add(path.append(largeDataChunkPrefix + i));
+        List<Optional<byte[]>> chunks = getAll(chunkPaths);
+        if (chunks.stream().anyMatch(Optional::isEmpty)) return Optional.empty(); // Rewritten while we read
+
+        ByteBuffer data = ByteBuffer.allocate(chunks.stream().mapToInt(chunk -> chunk.get().length).sum());
+        chunks.forEach(chunk -> data.put(chunk.get()));
+        return Optional.of(data.array());
+    }
+
+    /**
+     * Deletes the chunks of data set by {@link #setLarge} at the given path, which are left behind when the path is
+     * then set by {@link #set}. Such stale chunks are never read, as they are referred to only by the data they were
+     * written with, but they take space until the path is deleted.
+     */
+    public void deleteLargeDataChunks(Path path) {
+        deleteLargeDataChunks(path, 0);
+    }
+
+    /** Deletes the chunks of the given path with index at least the given one, left by a previous write of larger data */
+    private void deleteLargeDataChunks(Path path, int fromIndex) {
+        for (String child : getChildren(path)) {
+            if ( ! isLargeDataChunk(child)) continue;
+            try {
+                if (Integer.parseInt(child.substring(largeDataChunkPrefix.length())) >= fromIndex)
+                    delete(path.append(child));
+            }
+            catch (NumberFormatException e) {
+                // Not ours
+            }
+        }
+    }
+
+    private synchronized ExecutorService largeDataExecutor() {
+        if (largeDataExecutor == null)
+            largeDataExecutor = Executors.newFixedThreadPool(8, new DaemonThreadFactory("curator-large-data-"));
+        return largeDataExecutor;
+    }
+
+    private static boolean isLargeDataHeader(byte[] data) {
+        return data.length >= largeDataHeaderSize && ByteBuffer.wrap(data).getInt() == largeDataMagic;
+    }
+
+    private static long checksum(byte[] data) {
+        CRC32C checksum = new CRC32C();
+        checksum.update(data);
+        return checksum.getValue();
+    }
+
     /**
      * Returns the stat data at the given path.
      * Empty is returned if the path does not exist.
@@ -472,6 +697,10 @@ public class Curator extends AbstractComponent implements AutoCloseable {
            if (e instanceof InterruptedException) Thread.currentThread().interrupt();
         }
         executor.shutdownNow();
+        synchronized (this) {
+            if (largeDataExecutor != null)
+                largeDataExecutor.shutdownNow();
+        }
     }
 
     @Override
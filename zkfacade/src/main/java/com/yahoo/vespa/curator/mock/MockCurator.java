@@ -9,6 +9,8 @@ import org.apache.curator.framework.recipes.locks.InterProcessLock;
 
 import java.time.Clock;
 import java.time.Duration;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ExecutorService;
 
@@ -111,4 +113,14 @@ public class MockCurator extends Curator {
     @Override
     public int zooKeeperEnsembleCount() { return 1; }
 
+    @Override
+    protected void setAll(Map<Path, byte[]> data) {
+        data.forEach(this::set);
+    }
+
+    @Override
+    protected List<Optional<byte[]>> getAll(List<Path> paths) {
+        return paths.stream().map(this::getData).toList();
+    }
+
 }
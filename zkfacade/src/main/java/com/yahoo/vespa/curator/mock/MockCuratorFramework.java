@@ -434,7 +434,10 @@ public class MockCuratorFramework implements CuratorFramework  {
         if (version != -1 && version != node.version())
             throw new KeeperException.BadVersionException("expected version " + version + ", but was " + node.version());
         node.setContent(content);
-        if (stat != null) stat.setVersion(node.version());
+        if (stat != null) {
+            stat.setVersion(node.version());
+            stat.setNumChildren(node.children().size());
+        }
         listeners.notify(Path.fromString(pathString), content, PathChildrenCacheEvent.Type.CHILD_UPDATED);
     }
 
@@ -0,0 +1,121 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.curator;
+
+import com.yahoo.path.Path;
+import com.yahoo.vespa.curator.mock.MockCurator;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests setting and getting data which may be compressed and split into chunks.
+ */
+public class CuratorLargeDataTest {
+
+    private final Curator curator = new MockCurator();
+    private final Path path = Path.fromString("/foo/bar");
+
+    @Test
+    public void small_data_is_stored_as_is() {
+        byte[] data = "small".getBytes(StandardCharsets.UTF_8);
+        curator.setLarge(path, data);
+        assertArrayEquals(data, curator.getData(path).get());
+        assertArrayEquals(data, curator.getLarge(path).get());
+    }
+
+    @Test
+    public void large_compressible_data_is_compressed_into_a_single_node() {
+        byte[] data = "compressible ".repeat(Curator.largeDataChunkSize).getBytes(StandardCharsets.UTF_8);
+        curator.setLarge(path, data);
+        assertTrue(curator.getData(path).get().length < Curator.largeDataChunkSize);
+        assertEquals(List.of(), curator.getChildren(path));
+        assertArrayEquals(data, curator.getLarge(path).get());
+    }
+
+    @Test
+    public void large_incompressible_data_is_split_into_chunks() {
+        byte[] data = random(3 * Curator.largeDataChunkSize + 17);
+        curator.setLarge(path, data);
+        assertEquals(4, curator.getChildren(path).size());
+        assertTrue(curator.getChildren(path).stream().allMatch(Curator::isLargeDataChunk));
+        assertArrayEquals(data, curator.getLarge(path).get());
+    }
+
+    @Test
+    public void chunks_of_previous_data_are_removed() {
+        curator.setLarge(path, random(3 * Curator.largeDataChunkSize));
+        assertEquals(3, curator.getChildren(path).size());
+
+        byte[] smaller = random(Curator.largeDataChunkSize + 1);
+        curator.setLarge(path, smaller);
+        assertEquals(2, curator.getChildren(path).size());
+        assertArrayEquals(smaller, curator.getLarge(path).get());
+
+        byte[] small = "small".getBytes(StandardCharsets.UTF_8);
+        curator.setLarge(path, small);
+        assertEquals(List.of(), curator.getChildren(path));
+        assertArrayEquals(small, curator.getLarge(path).get());
+    }
+
+    @Test
+    public void data_set_normally_is_read() {
+        byte[] data = random(2 * Curator.largeDataChunkSize);
+        curator.set(path, data);
+        assertArrayEquals(data, curator.getLarge(path).get());
+        assertEquals(Optional.empty(), curator.getLarge(path.append("missing")));
+    }
+
+    @Test
+    public void chunks_left_when_data_is_set_normally_are_ignored_until_removed() {
+        curator.setLarge(path, random(2 * Curator.largeDataChunkSize));
+        assertEquals(2, curator.getChildren(path).size());
+
+        byte[] data = "small".getBytes(StandardCharsets.UTF_8);
+        curator.set(path, data);
+        assertEquals(2, curator.getChildren(path).size());
+        assertArrayEquals(data, curator.getLarge(path).get());
+
+        curator.deleteLargeDataChunks(path);
+        assertEquals(List.of(), curator.getChildren(path));
+        assertArrayEquals(data, curator.getLarge(path).get());
+    }
+
+    @Test
+    public void size_is_that_of_the_data_before_compression() {
+        byte[] chunked = random(2 * Curator.largeDataChunkSize);
+        curator.setLarge(path, chunked);
+        assertEquals(Optional.of((long) chunked.length), curator.getLargeSize(path));
+
+        byte[] compressed = "compressible ".repeat(Curator.largeDataChunkSize).getBytes(StandardCharsets.UTF_8);
+        curator.setLarge(path, compressed);
+        assertEquals(Optional.of((long) compressed.length), curator.getLargeSize(path));
+
+        curator.set(path, chunked);
+        assertEquals(Optional.of((long) chunked.length), curator.getLargeSize(path));
+        assertEquals(Optional.empty(), curator.getLargeSize(path.append("missing")));
+    }
+
+    @Test
+    public void small_data_which_looks_like_a_header_is_not_mistaken_for_one() {
+        byte[] data = new byte[64];
+        data[1] = 0x7a;
+        data[2] = 0x6b;
+        data[3] = 0x4c;
+        curator.setLarge(path, data);
+        assertArrayEquals(data, curator.getLarge(path).get());
+    }
+
+    private static byte[] random(int size) {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+
+}
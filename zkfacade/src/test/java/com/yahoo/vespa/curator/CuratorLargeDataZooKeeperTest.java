@@ -0,0 +1,85 @@
+// Copyright Vespa.ai. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.curator;
+
+import com.yahoo.path.Path;
+import org.apache.zookeeper.server.ServerCnxnFactory;
+import org.apache.zookeeper.server.ZooKeeperServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests setting and getting large data against an embedded ZooKeeper server, as the parallel chunk writes
+ * and multi-op chunk reads are replaced by simpler implementations in MockCurator.
+ * Data is kept below the default jute.maxbuffer of the server, 1 Mb, as that is read once per JVM.
+ */
+public class CuratorLargeDataZooKeeperTest {
+
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+    private final Path path = Path.fromString("/foo/bar");
+
+    private ServerCnxnFactory factory;
+    private Curator curator;
+
+    @Before
+    public void startServer() throws Exception {
+        File dir = tmpFolder.newFolder();
+        factory = ServerCnxnFactory.createFactory(0, 10);
+        factory.startup(new ZooKeeperServer(dir, dir, 2000));
+        curator = Curator.create("localhost:" + factory.getLocalPort(), Optional.empty());
+    }
+
+    @After
+    public void stopServer() {
+        curator.close();
+        factory.shutdown();
+    }
+
+    @Test
+    public void chunked_data_is_written_and_read() {
+        byte[] data = random(3 * Curator.largeDataChunkSize - 17);
+        curator.setLarge(path, data);
+        assertEquals(3, curator.getChildren(path).size());
+        assertArrayEquals(data, curator.getLarge(path).get());
+
+        byte[] smaller = random(Curator.largeDataChunkSize + 1);
+        curator.setLarge(path, smaller);
+        assertEquals(2, curator.getChildren(path).size());
+        assertArrayEquals(smaller, curator.getLarge(path).get());
+    }
+
+    @Test
+    public void chunks_left_when_data_is_set_normally_are_ignored_until_removed() {
+        curator.setLarge(path, random(2 * Curator.largeDataChunkSize));
+        assertEquals(2, curator.getChildren(path).size());
+
+        byte[] data = "small".getBytes(StandardCharsets.UTF_8);
+        curator.set(path, data);
+        assertEquals(2, curator.getChildren(path).size());
+        assertArrayEquals(data, curator.getLarge(path).get());
+
+        curator.deleteLargeDataChunks(path);
+        assertEquals(List.of(), curator.getChildren(path));
+        assertArrayEquals(data, curator.getLarge(path).get());
+    }
+
+    private static byte[] random(int size) {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+
+}